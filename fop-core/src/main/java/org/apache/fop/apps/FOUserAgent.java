@@ -25,6 +25,7 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.net.URISyntaxException;
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
 
 import javax.xml.transform.Source;
@@ -45,6 +46,7 @@ import org.apache.fop.accessibility.Accessibility;
 import org.apache.fop.accessibility.DummyStructureTreeEventHandler;
 import org.apache.fop.accessibility.StructureTreeEventHandler;
 import org.apache.fop.apps.io.InternalResourceResolver;
+import org.apache.fop.area.CachedRenderPagesModel;
 import org.apache.fop.configuration.Configuration;
 import org.apache.fop.configuration.ConfigurationException;
 import org.apache.fop.events.DefaultEventBroadcaster;
@@ -55,6 +57,9 @@ import org.apache.fop.events.FOPEventListenerProxy;
 import org.apache.fop.events.LoggingEventListener;
 import org.apache.fop.fo.ElementMappingRegistry;
 import org.apache.fop.fo.FOEventHandler;
+import org.apache.fop.fonts.EmbedFontInfo;
+import org.apache.fop.fonts.FontConfig;
+import org.apache.fop.fonts.FontConfigurator;
 import org.apache.fop.fonts.FontManager;
 import org.apache.fop.hyphenation.HyphenationTreeCache;
 import org.apache.fop.layoutmgr.LayoutManagerMaker;
@@ -105,6 +110,11 @@ public class FOUserAgent {
     private FOEventHandler foEventHandlerOverride;
     private boolean locatorEnabled = true; // true by default (for error messages).
     private boolean conserveMemoryPolicy;
+    private int conserveMemoryResidentPages = CachedRenderPagesModel.DEFAULT_RESIDENT_PAGES;
+    private long conserveMemorySpillLimit = CachedRenderPagesModel.DEFAULT_SPILL_MEMORY_LIMIT;
+    private boolean asyncRendering;
+    private int pageBreakingLookahead;
+    private boolean incrementalLayout;
     private EventBroadcaster eventBroadcaster = new FOPEventBroadcaster();
     private StructureTreeEventHandler structureTreeEventHandler
             = DummyStructureTreeEventHandler.INSTANCE;
@@ -641,6 +651,131 @@ public class FOUserAgent {
         this.conserveMemoryPolicy = conserveMemoryPolicy;
     }
 
+    /**
+     * Returns the number of pages waiting for the resolution of forward references that are
+     * kept in memory as they are while memory-conservation is enabled.
+     *
+     * @return the number of resident pages
+     */
+    public int getConserveMemoryResidentPages() {
+        return this.conserveMemoryResidentPages;
+    }
+
+    /**
+     * Sets the number of pages waiting for the resolution of forward references that are
+     * kept in memory as they are while memory-conservation is enabled. The least recently
+     * used of the other waiting pages are spilled out of the area tree.
+     *
+     * @param residentPages the number of resident pages, 0 to spill all waiting pages
+     */
+    public void setConserveMemoryResidentPages(int residentPages) {
+        if (residentPages < 0) {
+            throw new IllegalArgumentException(
+                    "The number of resident pages must not be negative: " + residentPages);
+        }
+        this.conserveMemoryResidentPages = residentPages;
+    }
+
+    /**
+     * Returns the maximum number of bytes of memory outside the Java heap used for spilled
+     * pages while memory-conservation is enabled.
+     *
+     * @return the spill memory limit in bytes
+     */
+    public long getConserveMemorySpillLimit() {
+        return this.conserveMemorySpillLimit;
+    }
+
+    /**
+     * Sets the maximum number of bytes of memory outside the Java heap used for spilled
+     * pages while memory-conservation is enabled. Pages spilled beyond that limit are
+     * written to a temporary resource.
+     *
+     * @param spillLimit the spill memory limit in bytes, 0 to spill all pages to the
+     *          temporary resource
+     */
+    public void setConserveMemorySpillLimit(long spillLimit) {
+        if (spillLimit < 0) {
+            throw new IllegalArgumentException(
+                    "The spill memory limit must not be negative: " + spillLimit);
+        }
+        this.conserveMemorySpillLimit = spillLimit;
+    }
+
+    /**
+     * Check whether asynchronous rendering is enabled. If enabled, finished pages are
+     * handed to a dedicated rendering thread in document order while layout continues
+     * on the parsing thread.
+     *
+     * @return true if pages are rendered on a separate thread
+     */
+    public boolean isAsyncRenderingEnabled() {
+        return this.asyncRendering;
+    }
+
+    /**
+     * Controls whether finished pages should be rendered on a separate thread so layout
+     * and rendering of a document can overlap. This is ignored when the memory-conservation
+     * policy or accessibility is enabled.
+     *
+     * @param asyncRendering true to render pages on a separate thread
+     */
+    public void setAsyncRendering(boolean asyncRendering) {
+        this.asyncRendering = asyncRendering;
+    }
+
+    /**
+     * Returns the number of pages the page breaker may look ahead before it commits to
+     * a page break.
+     *
+     * @return the page-breaking lookahead, 0 if page breaking is unbounded
+     */
+    public int getPageBreakingLookahead() {
+        return this.pageBreakingLookahead;
+    }
+
+    /**
+     * Sets the number of pages the page breaker may look ahead before it commits to a
+     * page break. By default (0), page breaks are chosen optimally over a whole flow,
+     * which costs superlinear time and memory on very long flows without forced breaks.
+     * A positive value bounds the work per page, so that such flows are laid out in
+     * linear time, but page breaks that would only pay off more pages ahead than the
+     * lookahead are not found.
+     *
+     * @param lookahead the number of pages to look ahead, 0 for unbounded
+     */
+    public void setPageBreakingLookahead(int lookahead) {
+        if (lookahead < 0) {
+            throw new IllegalArgumentException("The lookahead must not be negative: " + lookahead);
+        }
+        this.pageBreakingLookahead = lookahead;
+    }
+
+    /**
+     * Check whether incremental layout is enabled. If enabled, the element list of a flow
+     * is built and broken into pages in slices, and pages are finished as soon as their
+     * breaks are settled instead of once the whole flow has been broken.
+     *
+     * @return true if flows are laid out incrementally
+     */
+    public boolean isIncrementalLayoutEnabled() {
+        return this.incrementalLayout;
+    }
+
+    /**
+     * Controls whether flows should be laid out incrementally. This bounds the memory used
+     * by layout for long flows without forced breaks, as the element lists and positions
+     * of finished pages can be released early. Slices are only cut between the children
+     * of a flow, so a single very long table or block is still laid out at once. Page
+     * breaks near the end of a slice are chosen without regard to content more than a
+     * couple of pages ahead, which may differ from the breaks found for the whole flow.
+     *
+     * @param incrementalLayout true to lay out flows incrementally
+     */
+    public void setIncrementalLayout(boolean incrementalLayout) {
+        this.incrementalLayout = incrementalLayout;
+    }
+
     /**
      * Check whether complex script features are enabled.
      *
@@ -663,6 +798,20 @@ public class FOUserAgent {
         return factory.getRendererConfig(this, getRendererConfiguration(mimeType), configCreator);
     }
 
+    /**
+     * Returns the list of fonts resulting from a renderer's font configuration. The list is
+     * built once per font configuration and shared by all rendering runs of the FopFactory.
+     *
+     * @param fontConfig the font configuration of the renderer
+     * @param configurator the configurator that builds the font list on the first request
+     * @return the (unmodifiable) list of configured fonts
+     * @throws FOPException if an error occurs while processing the font configuration
+     */
+    public List<EmbedFontInfo> getConfiguredFonts(FontConfig fontConfig,
+            FontConfigurator<EmbedFontInfo> configurator) throws FOPException {
+        return factory.getConfiguredFonts(fontConfig, configurator);
+    }
+
     /**
      * Returns a {@link Configuration} object for which contains renderer configuration for a given
      * MIME type.
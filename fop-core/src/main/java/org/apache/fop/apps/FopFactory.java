@@ -25,6 +25,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URI;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -43,6 +44,9 @@ import org.apache.fop.apps.io.ResourceResolverFactory;
 import org.apache.fop.configuration.Configuration;
 import org.apache.fop.fo.ElementMapping;
 import org.apache.fop.fo.ElementMappingRegistry;
+import org.apache.fop.fonts.EmbedFontInfo;
+import org.apache.fop.fonts.FontConfig;
+import org.apache.fop.fonts.FontConfigurator;
 import org.apache.fop.fonts.FontManager;
 import org.apache.fop.hyphenation.HyphenationTreeCache;
 import org.apache.fop.layoutmgr.LayoutManagerMaker;
@@ -89,6 +93,8 @@ public final class FopFactory implements ImageContext {
 
     private final Map<String, RendererConfig> rendererConfig;
 
+    private final Map<FontConfig, List<EmbedFontInfo>> configuredFonts;
+
     private HyphenationTreeCache hyphenationTreeCache;
 
     private FopFactory(FopFactoryConfig config) {
@@ -101,6 +107,7 @@ public final class FopFactory implements ImageContext {
         this.xmlHandlers = new XMLHandlerRegistry();
         this.imageHandlers = new ImageHandlerRegistry();
         rendererConfig = new HashMap<String, RendererConfig>();
+        configuredFonts = new HashMap<FontConfig, List<EmbedFontInfo>>();
     }
 
     /**
@@ -316,6 +323,26 @@ public final class FopFactory implements ImageContext {
         return config;
     }
 
+    /**
+     * Returns the list of fonts resulting from a renderer's font configuration. The list is cached
+     * such that font directories and auto-detected fonts are only scanned once per font
+     * configuration, per FopFactory instance, instead of once per rendering run.
+     *
+     * @param fontConfig the font configuration of the renderer
+     * @param configurator the configurator that builds the font list on the first request
+     * @return the (unmodifiable) list of configured fonts
+     * @throws FOPException when an error occurs while processing the font configuration
+     */
+    synchronized List<EmbedFontInfo> getConfiguredFonts(FontConfig fontConfig,
+            FontConfigurator<EmbedFontInfo> configurator) throws FOPException {
+        List<EmbedFontInfo> fonts = configuredFonts.get(fontConfig);
+        if (fonts == null) {
+            fonts = configurator.configure(fontConfig);
+            configuredFonts.put(fontConfig, fonts);
+        }
+        return fonts;
+    }
+
     /**
      * Add the element mapping with the given class name.
      * @param elementMapping the class name representing the element mapping.
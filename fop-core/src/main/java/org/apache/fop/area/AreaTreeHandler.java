@@ -23,6 +23,7 @@ package org.apache.fop.area;
 import java.io.OutputStream;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
 import org.xml.sax.SAXException;
 
@@ -41,6 +42,8 @@ import org.apache.fop.fo.pagination.AbstractPageSequence;
 import org.apache.fop.fo.pagination.PageSequence;
 import org.apache.fop.fo.pagination.Root;
 import org.apache.fop.fo.pagination.bookmarks.BookmarkTree;
+import org.apache.fop.hyphenation.HyphenationTree;
+import org.apache.fop.hyphenation.HyphenationTreeCache;
 import org.apache.fop.layoutmgr.ExternalDocumentLayoutManager;
 import org.apache.fop.layoutmgr.LayoutManagerMaker;
 import org.apache.fop.layoutmgr.LayoutManagerMapping;
@@ -131,6 +134,10 @@ public class AreaTreeHandler extends FOEventHandler {
             OutputStream stream) throws FOPException {
         if (userAgent.isConserveMemoryPolicyEnabled()) {
             this.model = new CachedRenderPagesModel(userAgent, outputFormat, fontInfo, stream);
+        } else if (userAgent.isAsyncRenderingEnabled() && !userAgent.isAccessibilityEnabled()) {
+            // the structure tree is built on the parsing thread and shares the output
+            // document with the renderer, so accessible output is always rendered in-line
+            this.model = new AsyncRenderPagesModel(userAgent, outputFormat, fontInfo, stream);
         } else {
             this.model = new RenderPagesModel(userAgent, outputFormat, fontInfo, stream);
         }
@@ -526,6 +533,14 @@ public class AreaTreeHandler extends FOEventHandler {
                         / (double) timeUsed) : -1);
                 log.debug("Avg render time: " + perPage + "ms/page (" + ppm + "pages/min)");
             }
+            HyphenationTreeCache hyphenationTreeCache = foUserAgent.getHyphenationTreeCache();
+            if (hyphenationTreeCache != null) {
+                for (Map.Entry<String, HyphenationTree> entry
+                        : hyphenationTreeCache.getHyphenationTrees().entrySet()) {
+                    log.debug("Hyphenation word cache (" + entry.getKey() + "): "
+                            + entry.getValue().getWordCache());
+                }
+            }
         }
     }
 }
@@ -0,0 +1,292 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.area;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.xml.sax.SAXException;
+
+import org.apache.fop.apps.FOPException;
+import org.apache.fop.apps.FOUserAgent;
+import org.apache.fop.fonts.FontInfo;
+import org.apache.fop.render.Graphics2DAdapter;
+import org.apache.fop.render.ImageAdapter;
+import org.apache.fop.render.Renderer;
+
+/**
+ * A render pages model that renders pages on a dedicated thread. Layout continues
+ * on the parsing thread while finished pages are passed on, in document order, to a
+ * single rendering thread. Pages with unresolved forward references are held back in
+ * the prepared list exactly as in {@link RenderPagesModel} and are only handed over
+ * once they are resolved (or at the end of the document).
+ * <p>
+ * The number of renderer operations which may be pending at any time is bounded so a
+ * slow renderer throttles layout instead of accumulating pages in memory.
+ * <p>
+ * The layout and the rendering thread share the {@link FontInfo} of the document, whose
+ * font instance cache and used fonts are safe for concurrent use. The rendering thread
+ * ends when it has been idle for a while, so it does not outlive a document whose layout
+ * failed before {@link #endDocument()} was reached.
+ */
+public class AsyncRenderPagesModel extends RenderPagesModel {
+
+    /** The maximum number of renderer operations waiting to be executed. */
+    private static final int MAX_PENDING_OPERATIONS = 32;
+
+    /** The number of seconds the rendering thread waits for operations before it ends. */
+    private static final long KEEP_ALIVE_SECONDS = 10;
+
+    private final ThreadPoolExecutor executor;
+
+    private final Semaphore pending = new Semaphore(MAX_PENDING_OPERATIONS);
+
+    /** The first failure that occurred on the rendering thread, if any. */
+    private volatile Throwable failure;
+
+    /**
+     * Main Constructor
+     * @param userAgent FOUserAgent object for process
+     * @param outputFormat the MIME type of the output format to use (ex. "application/pdf").
+     * @param fontInfo FontInfo object
+     * @param stream OutputStream
+     * @throws FOPException if the renderer cannot be properly initialized
+     */
+    public AsyncRenderPagesModel(FOUserAgent userAgent, String outputFormat,
+            FontInfo fontInfo, OutputStream stream) throws FOPException {
+        super(userAgent, outputFormat, fontInfo, stream);
+        this.executor = new ThreadPoolExecutor(1, 1, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "FOP renderer");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+        this.renderer = new QueuedRenderer(this.renderer);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void releasePage(final PageViewport pageViewport) {
+        submit(new Runnable() {
+            public void run() {
+                pageViewport.clear();
+            }
+        });
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void endDocument() throws SAXException {
+        try {
+            super.endDocument();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Queues an operation for the rendering thread. Blocks while too many operations
+     * are pending.
+     * @param operation the operation
+     */
+    private void submit(final Runnable operation) {
+        rethrowFailure();
+        try {
+            pending.acquire();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the renderer");
+        }
+        executor.execute(new Runnable() {
+            public void run() {
+                try {
+                    if (failure == null) {
+                        operation.run();
+                    }
+                } catch (Throwable t) {
+                    failure = t;
+                } finally {
+                    pending.release();
+                }
+            }
+        });
+    }
+
+    /** Waits until all queued operations have been executed. */
+    private void awaitPendingOperations() {
+        try {
+            pending.acquire(MAX_PENDING_OPERATIONS);
+            pending.release(MAX_PENDING_OPERATIONS);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the renderer");
+        }
+    }
+
+    private void rethrowFailure() {
+        Throwable t = failure;
+        if (t != null) {
+            executor.shutdownNow();
+        }
+        if (t instanceof RuntimeException) {
+            throw (RuntimeException) t;
+        } else if (t instanceof Error) {
+            throw (Error) t;
+        } else if (t != null) {
+            throw new RuntimeException(t);
+        }
+    }
+
+    /**
+     * Wraps checked exceptions thrown by the delegate renderer so they can be passed
+     * back to the layout thread.
+     */
+    private static final class RenderingException extends RuntimeException {
+
+        private static final long serialVersionUID = -6412938475022348710L;
+
+        RenderingException(Exception cause) {
+            super(cause);
+        }
+    }
+
+    /**
+     * Renderer decorator which executes all state-changing operations on the rendering
+     * thread in the order in which they were issued.
+     */
+    private final class QueuedRenderer implements Renderer {
+
+        private final Renderer delegate;
+
+        QueuedRenderer(Renderer delegate) {
+            this.delegate = delegate;
+        }
+
+        public String getMimeType() {
+            return delegate.getMimeType();
+        }
+
+        public void startRenderer(OutputStream outputStream) throws IOException {
+            throw new IllegalStateException("The renderer has already been started");
+        }
+
+        public void stopRenderer() throws IOException {
+            submit(new Runnable() {
+                public void run() {
+                    try {
+                        delegate.stopRenderer();
+                    } catch (IOException ioe) {
+                        throw new RenderingException(ioe);
+                    }
+                }
+            });
+            awaitPendingOperations();
+            Throwable t = failure;
+            if (t instanceof RenderingException && t.getCause() instanceof IOException) {
+                throw (IOException) t.getCause();
+            }
+            rethrowFailure();
+        }
+
+        public FOUserAgent getUserAgent() {
+            return delegate.getUserAgent();
+        }
+
+        public void setupFontInfo(FontInfo fontInfo) throws FOPException {
+            throw new IllegalStateException("The renderer has already been set up");
+        }
+
+        public boolean supportsOutOfOrder() {
+            return delegate.supportsOutOfOrder();
+        }
+
+        public void setDocumentLocale(final Locale locale) {
+            submit(new Runnable() {
+                public void run() {
+                    delegate.setDocumentLocale(locale);
+                }
+            });
+        }
+
+        public void processOffDocumentItem(final OffDocumentItem odi) {
+            submit(new Runnable() {
+                public void run() {
+                    delegate.processOffDocumentItem(odi);
+                }
+            });
+        }
+
+        public Graphics2DAdapter getGraphics2DAdapter() {
+            return delegate.getGraphics2DAdapter();
+        }
+
+        public ImageAdapter getImageAdapter() {
+            return delegate.getImageAdapter();
+        }
+
+        public void preparePage(final PageViewport page) {
+            submit(new Runnable() {
+                public void run() {
+                    delegate.preparePage(page);
+                }
+            });
+        }
+
+        public void startPageSequence(final LineArea seqTitle) {
+            submit(new Runnable() {
+                public void run() {
+                    delegate.startPageSequence(seqTitle);
+                }
+            });
+        }
+
+        public void startPageSequence(final PageSequence pageSequence) {
+            submit(new Runnable() {
+                public void run() {
+                    delegate.startPageSequence(pageSequence);
+                }
+            });
+        }
+
+        public void renderPage(final PageViewport page) throws IOException, FOPException {
+            submit(new Runnable() {
+                public void run() {
+                    try {
+                        delegate.renderPage(page);
+                    } catch (IOException ioe) {
+                        throw new RenderingException(ioe);
+                    } catch (FOPException fe) {
+                        throw new RenderingException(fe);
+                    }
+                }
+            });
+        }
+    }
+
+}
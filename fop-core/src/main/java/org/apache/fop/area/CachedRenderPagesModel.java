@@ -19,24 +19,12 @@
 
 package org.apache.fop.area;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.OutputStream;
-import java.net.URI;
-import java.util.HashMap;
 import java.util.Iterator;
-import java.util.Map;
 
 import org.xml.sax.SAXException;
 
-import org.apache.commons.io.IOUtils;
-
-import org.apache.xmlgraphics.io.TempResourceURIGenerator;
-
 import org.apache.fop.apps.FOPException;
 import org.apache.fop.apps.FOUserAgent;
 import org.apache.fop.fonts.FontInfo;
@@ -44,17 +32,19 @@ import org.apache.fop.fonts.FontInfo;
 /**
  * A simple cached render pages model.
  * If the page is prepared for later rendering then this saves
- * the page contents to a file and once the page is resolved
- * the contents are reloaded.
+ * the page contents to a {@link PageSpillStore} and once the page
+ * is resolved the contents are reloaded. The most recently used
+ * prepared pages are kept as they are.
  */
 public class CachedRenderPagesModel extends RenderPagesModel {
 
-    private Map<PageViewport, URI> pageMap = new HashMap<PageViewport, URI>();
+    /** The default number of prepared pages kept as they are. */
+    public static final int DEFAULT_RESIDENT_PAGES = 8;
 
-    /** Base directory to save temporary file in, typically points to the user's temp dir. */
-    private final URI tempBaseURI;
-    private static final TempResourceURIGenerator TEMP_URI_GENERATOR
-            = new TempResourceURIGenerator("cached-pages");
+    /** The default limit of the off-heap memory used for spilled pages (32 MB). */
+    public static final long DEFAULT_SPILL_MEMORY_LIMIT = 32L * 1024 * 1024;
+
+    private final PageSpillStore spillStore;
 
     /**
      * Main Constructor
@@ -67,7 +57,17 @@ public class CachedRenderPagesModel extends RenderPagesModel {
     public CachedRenderPagesModel(FOUserAgent userAgent, String outputFormat,
             FontInfo fontInfo, OutputStream stream) throws FOPException {
         super(userAgent, outputFormat, fontInfo, stream);
-        tempBaseURI = TEMP_URI_GENERATOR.generate();
+        spillStore = new PageSpillStore(userAgent.getConserveMemoryResidentPages(),
+                userAgent.getConserveMemorySpillLimit(), fontInfo, userAgent.getResourceResolver());
+    }
+
+    /**
+     * Returns the store holding the contents of the prepared pages. Its statistics show how
+     * many pages were spilled and restored.
+     * @return the page spill store
+     */
+    public PageSpillStore getSpillStore() {
+        return spillStore;
     }
 
     /** {@inheritDoc} */
@@ -78,18 +78,7 @@ public class CachedRenderPagesModel extends RenderPagesModel {
             if (pageViewport.isResolved() || renderUnresolved) {
                 if (pageViewport != newpage) {
                     try {
-                        // load page from cache
-                        URI tempURI = pageMap.get(pageViewport);
-                        log.debug("Loading page from: " + tempURI);
-                        InputStream inStream = renderer.getUserAgent().getResourceResolver().getResource(tempURI);
-                        ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(inStream));
-                        try {
-                            pageViewport.loadPage(in);
-                        } finally {
-                            IOUtils.closeQuietly(inStream);
-                            IOUtils.closeQuietly(in);
-                        }
-                        pageMap.remove(pageViewport);
+                        spillStore.restorePage(pageViewport);
                     } catch (Exception e) {
                         AreaEventProducer eventProducer = AreaEventProducer.Provider.get(
                                 renderer.getUserAgent().getEventBroadcaster());
@@ -97,8 +86,12 @@ public class CachedRenderPagesModel extends RenderPagesModel {
                     }
                 }
 
+                if (!renderer.supportsOutOfOrder()
+                        && pageViewport.getPageSequence().isFirstPage(pageViewport)) {
+                    renderer.startPageSequence(pageViewport.getPageSequence());
+                }
                 renderPage(pageViewport);
-                pageViewport.clear();
+                releasePage(pageViewport);
                 iter.remove();
             } else {
                 if (!renderer.supportsOutOfOrder()) {
@@ -107,35 +100,24 @@ public class CachedRenderPagesModel extends RenderPagesModel {
             }
         }
         if (newpage != null && newpage.getPage() != null) {
-            savePage(newpage);
-            newpage.clear();
+            spillStore.addPage(newpage);
+            PageViewport page;
+            while ((page = spillStore.getPageToSpill()) != null) {
+                savePage(page);
+            }
         }
         return renderer.supportsOutOfOrder() || prepared.isEmpty();
     }
 
     /**
      * Save a page.
-     * It saves the contents of the page to a file.
+     * It spills the contents of the page to the page spill store.
      *
      * @param page the page to prepare
      */
     protected void savePage(PageViewport page) {
         try {
-            // save page to cache
-            ObjectOutputStream tempstream;
-            String fname = "/fop-page-" + page.getPageIndex() + ".ser";
-            URI tempURI = URI.create(tempBaseURI + fname);
-            OutputStream outStream = renderer.getUserAgent().getResourceResolver().getOutputStream(tempURI);
-            tempstream = new ObjectOutputStream(new BufferedOutputStream(outStream));
-            try {
-                page.savePage(tempstream);
-            } finally {
-                IOUtils.closeQuietly(tempstream);
-            }
-            pageMap.put(page, tempURI);
-            if (log.isDebugEnabled()) {
-                log.debug("Page saved to temporary file: " + tempURI);
-            }
+            spillStore.spillPage(page);
         } catch (IOException ioe) {
             AreaEventProducer eventProducer
                 = AreaEventProducer.Provider.get(
@@ -147,7 +129,14 @@ public class CachedRenderPagesModel extends RenderPagesModel {
     /** {@inheritDoc} */
     @Override
     public void endDocument() throws SAXException {
-        super.endDocument();
+        try {
+            super.endDocument();
+        } finally {
+            if (log.isDebugEnabled()) {
+                log.debug(spillStore);
+            }
+            spillStore.close();
+        }
     }
 }
 
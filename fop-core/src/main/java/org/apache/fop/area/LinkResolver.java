@@ -35,7 +35,7 @@ public class LinkResolver implements Resolvable, Serializable {
     private boolean resolved;
     private String idRef;
     private Area area;
-    private transient List<Resolvable> dependents;
+    private List<Resolvable> dependents;
 
     public LinkResolver() {
         this(null, null);
@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.area;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.fop.area.inline.UnresolvedPageNumber;
+import org.apache.fop.fonts.FontInfo;
+
+/**
+ * Encodes the contents of pages for the time they are spilled out of the area tree and
+ * decodes them again when they are rendered. The pages are written with the area classes'
+ * own serialization, but the codec exploits the fact that a spilled page is always read back
+ * by the same process that wrote it: the class descriptors are kept in a table shared by all
+ * the pages instead of being written to and parsed from every page, classes are resolved
+ * from that table instead of being looked up by name, and the pages carry no stream header.
+ * The fonts of unresolved page numbers, which are not serializable, are restored from the
+ * font information of the document when a page is read back.
+ * <p>
+ * A codec is not thread-safe. The data it writes is only readable by the same codec.
+ */
+final class PageCodec {
+
+    private final FontInfo fontInfo;
+
+    private final Map<Class<?>, Integer> classIndex = new HashMap<Class<?>, Integer>();
+    private final List<ObjectStreamClass> classes = new ArrayList<ObjectStreamClass>();
+
+    /**
+     * Creates a new codec.
+     * @param fontInfo the font information the pages are laid out with
+     */
+    PageCodec(FontInfo fontInfo) {
+        this.fontInfo = fontInfo;
+    }
+
+    /**
+     * Writes the contents of a page and releases them from the page.
+     * @param page the page to encode
+     * @param out the stream to write to
+     * @throws IOException if an I/O error occurs
+     */
+    void encode(PageViewport page, OutputStream out) throws IOException {
+        ObjectOutputStream objectOut = new PageOutputStream(out);
+        page.savePage(objectOut);
+        objectOut.flush();
+    }
+
+    /**
+     * Reads the contents of a page written by {@link #encode(PageViewport, OutputStream)}
+     * and restores them on the page.
+     * @param page the page to decode
+     * @param in the stream to read from
+     * @throws IOException if an I/O error occurs
+     * @throws ClassNotFoundException if the data refers to an unknown class
+     */
+    void decode(PageViewport page, InputStream in) throws IOException, ClassNotFoundException {
+        page.loadPage(new PageInputStream(in));
+    }
+
+    private final class PageOutputStream extends ObjectOutputStream {
+
+        PageOutputStream(OutputStream out) throws IOException {
+            super(out);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected void writeStreamHeader() {
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected void writeClassDescriptor(ObjectStreamClass desc) throws IOException {
+            Class<?> cl = desc.forClass();
+            Integer index = classIndex.get(cl);
+            if (index == null) {
+                index = classes.size();
+                classes.add(desc);
+                classIndex.put(cl, index);
+            }
+            writeInt(index);
+        }
+    }
+
+    private final class PageInputStream extends ObjectInputStream {
+
+        PageInputStream(InputStream in) throws IOException {
+            super(in);
+            enableResolveObject(true);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected void readStreamHeader() {
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected ObjectStreamClass readClassDescriptor() throws IOException {
+            int index = readInt();
+            if (index < 0 || index >= classes.size()) {
+                throw new IOException("Invalid class descriptor reference: " + index);
+            }
+            return classes.get(index);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) {
+            return desc.forClass();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected Object resolveObject(Object obj) {
+            if (obj instanceof UnresolvedPageNumber) {
+                ((UnresolvedPageNumber) obj).restoreFont(fontInfo);
+            }
+            return obj;
+        }
+    }
+}
@@ -0,0 +1,342 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.area;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.IOUtils;
+
+import org.apache.xmlgraphics.io.TempResourceURIGenerator;
+
+import org.apache.fop.apps.io.InternalResourceResolver;
+import org.apache.fop.fonts.FontInfo;
+
+/**
+ * Holds the contents of the pages that wait for the resolution of forward references while
+ * the memory-conservation policy is enabled. The most recently used pages stay in the area
+ * tree as they are. Beyond that, pages are encoded with a {@link PageCodec} and spilled,
+ * first to chunks of memory outside the Java heap and, once the memory limit is reached, to
+ * temporary resources obtained from the resource resolver of the user agent, one per page.
+ * Pages are read back directly from their own resource, in any order, and each resource is
+ * read once, which lets the default temporary resource resolver delete it.
+ */
+public class PageSpillStore {
+
+    /** The size of the off-heap chunks in bytes. */
+    static final int CHUNK_SIZE = 64 * 1024;
+
+    private static final TempResourceURIGenerator TEMP_URI_GENERATOR
+            = new TempResourceURIGenerator("spilled-pages");
+
+    private final int residentPages;
+    private final int maxChunks;
+
+    private final InternalResourceResolver resourceResolver;
+    private final PageCodec codec;
+    private final PageBuffer buffer = new PageBuffer();
+
+    /** The resident pages in the order of their last use, least recently used first. */
+    private final Map<PageViewport, Boolean> resident
+            = new LinkedHashMap<PageViewport, Boolean>(16, 0.75f, true);
+    private final Map<PageViewport, SpilledPage> spilled
+            = new HashMap<PageViewport, SpilledPage>();
+
+    private final List<ByteBuffer> freeChunks = new ArrayList<ByteBuffer>();
+    private int allocatedChunks;
+    private int usedChunks;
+
+    private URI tempBaseURI;
+
+    private int spilledPageCount;
+    private int restoredPageCount;
+    private long spilledBytes;
+    private long restoredBytes;
+    private long diskBytes;
+
+    /**
+     * Creates a new store.
+     * @param residentPages the number of pages kept in the area tree as they are
+     * @param memoryLimit the maximum number of bytes of off-heap memory used for spilled pages
+     * @param fontInfo the font information the pages are laid out with
+     * @param resourceResolver the resolver for the temporary resources pages are spilled to
+     */
+    public PageSpillStore(int residentPages, long memoryLimit, FontInfo fontInfo,
+            InternalResourceResolver resourceResolver) {
+        this.resourceResolver = resourceResolver;
+        this.codec = new PageCodec(fontInfo);
+        this.residentPages = Math.max(0, residentPages);
+        this.maxChunks = (int) Math.min(Integer.MAX_VALUE, Math.max(0, memoryLimit) / CHUNK_SIZE);
+    }
+
+    /**
+     * Adds a page whose contents are to be kept until it is rendered. The page becomes the
+     * most recently used resident page.
+     * @param page the page
+     */
+    public void addPage(PageViewport page) {
+        resident.put(page, Boolean.TRUE);
+    }
+
+    /**
+     * Returns the least recently used resident page if there are more resident pages than
+     * the store keeps. The page is to be spilled with {@link #spillPage(PageViewport)}.
+     * @return the page to spill, or null if no page needs to be spilled
+     */
+    public PageViewport getPageToSpill() {
+        if (resident.size() <= residentPages) {
+            return null;
+        }
+        return resident.keySet().iterator().next();
+    }
+
+    /**
+     * Spills the contents of a page out of the area tree. If this fails, the page keeps its
+     * contents and is no longer managed by the store.
+     * @param page the page
+     * @throws IOException if an I/O error occurs
+     */
+    public void spillPage(PageViewport page) throws IOException {
+        resident.remove(page);
+        buffer.reset();
+        codec.encode(page, buffer);
+        int length = buffer.size();
+        SpilledPage spilledPage;
+        int chunkCount = (length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        if (usedChunks + chunkCount <= maxChunks) {
+            ByteBuffer[] chunks = new ByteBuffer[chunkCount];
+            for (int i = 0; i < chunkCount; i++) {
+                chunks[i] = acquireChunk();
+                chunks[i].put(buffer.getBytes(), i * CHUNK_SIZE,
+                        Math.min(CHUNK_SIZE, length - i * CHUNK_SIZE));
+            }
+            spilledPage = new SpilledPage(chunks, null, length);
+        } else {
+            if (tempBaseURI == null) {
+                tempBaseURI = TEMP_URI_GENERATOR.generate();
+            }
+            URI tempURI = URI.create(tempBaseURI + "-" + spilledPageCount);
+            OutputStream out = resourceResolver.getOutputStream(tempURI);
+            try {
+                out.write(buffer.getBytes(), 0, length);
+                out.close();
+            } finally {
+                IOUtils.closeQuietly(out);
+            }
+            spilledPage = new SpilledPage(null, tempURI, length);
+            diskBytes += length;
+        }
+        spilled.put(page, spilledPage);
+        spilledPageCount++;
+        spilledBytes += length;
+    }
+
+    /**
+     * Restores the contents of a page for rendering and stops managing the page. Resident
+     * pages and pages the store does not know are left as they are.
+     * @param page the page
+     * @throws IOException if an I/O error occurs
+     * @throws ClassNotFoundException if the spilled data refers to an unknown class
+     */
+    public void restorePage(PageViewport page) throws IOException, ClassNotFoundException {
+        if (resident.remove(page) != null) {
+            return;
+        }
+        SpilledPage spilledPage = spilled.remove(page);
+        if (spilledPage == null) {
+            return;
+        }
+        int length = spilledPage.length;
+        byte[] bytes = buffer.getBytes(length);
+        if (spilledPage.chunks != null) {
+            for (int i = 0; i < spilledPage.chunks.length; i++) {
+                ByteBuffer chunk = spilledPage.chunks[i];
+                chunk.flip();
+                chunk.get(bytes, i * CHUNK_SIZE, chunk.remaining());
+                releaseChunk(chunk);
+            }
+        } else {
+            InputStream in = resourceResolver.getResource(spilledPage.tempURI);
+            try {
+                new DataInputStream(in).readFully(bytes, 0, length);
+            } finally {
+                IOUtils.closeQuietly(in);
+            }
+        }
+        codec.decode(page, new ByteArrayInputStream(bytes, 0, length));
+        restoredPageCount++;
+        restoredBytes += length;
+    }
+
+    private ByteBuffer acquireChunk() {
+        usedChunks++;
+        if (freeChunks.isEmpty()) {
+            allocatedChunks++;
+            return ByteBuffer.allocateDirect(CHUNK_SIZE);
+        }
+        ByteBuffer chunk = freeChunks.remove(freeChunks.size() - 1);
+        chunk.clear();
+        return chunk;
+    }
+
+    private void releaseChunk(ByteBuffer chunk) {
+        usedChunks--;
+        freeChunks.add(chunk);
+    }
+
+    /**
+     * Releases the memory held by the store and reads back the temporary resources of the
+     * pages still spilled, so the resource resolver can delete them. These pages are lost.
+     */
+    public void close() {
+        for (Iterator<SpilledPage> iter = spilled.values().iterator(); iter.hasNext();) {
+            SpilledPage spilledPage = iter.next();
+            if (spilledPage.chunks != null) {
+                for (ByteBuffer chunk : spilledPage.chunks) {
+                    releaseChunk(chunk);
+                }
+            } else {
+                discard(spilledPage.tempURI);
+            }
+            iter.remove();
+        }
+        resident.clear();
+        //Leave it to the garbage collector to free the native memory
+        freeChunks.clear();
+        allocatedChunks = 0;
+    }
+
+    private void discard(URI tempURI) {
+        try {
+            IOUtils.closeQuietly(resourceResolver.getResource(tempURI));
+        } catch (IOException ioe) {
+            //ignore, the page is not needed anymore
+        }
+    }
+
+    /**
+     * Returns the number of pages spilled so far.
+     * @return the number of spilled pages
+     */
+    public int getSpilledPageCount() {
+        return spilledPageCount;
+    }
+
+    /**
+     * Returns the number of spilled pages restored so far.
+     * @return the number of restored pages
+     */
+    public int getRestoredPageCount() {
+        return restoredPageCount;
+    }
+
+    /**
+     * Returns the number of encoded bytes of all the pages spilled so far.
+     * @return the number of spilled bytes
+     */
+    public long getSpilledBytes() {
+        return spilledBytes;
+    }
+
+    /**
+     * Returns the number of encoded bytes of all the pages restored so far.
+     * @return the number of restored bytes
+     */
+    public long getRestoredBytes() {
+        return restoredBytes;
+    }
+
+    /**
+     * Returns the number of bytes of the spilled pages written to temporary resources
+     * because the memory limit was reached.
+     * @return the number of bytes spilled to temporary resources
+     */
+    public long getDiskBytes() {
+        return diskBytes;
+    }
+
+    /**
+     * Returns the amount of off-heap memory currently allocated for spilled pages.
+     * @return the number of bytes of allocated off-heap memory
+     */
+    public long getMemoryBytes() {
+        return (long) allocatedChunks * CHUNK_SIZE;
+    }
+
+    /**
+     * Returns the number of pages currently kept in the area tree as they are.
+     * @return the number of resident pages
+     */
+    public int getResidentPageCount() {
+        return resident.size();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return "PageSpillStore: spilled " + spilledPageCount + " pages (" + spilledBytes
+                + " bytes), restored " + restoredPageCount + " pages (" + restoredBytes
+                + " bytes), " + diskBytes + " bytes spilled to temporary resources";
+    }
+
+    private static final class SpilledPage {
+
+        private final ByteBuffer[] chunks;
+        private final URI tempURI;
+        private final int length;
+
+        SpilledPage(ByteBuffer[] chunks, URI tempURI, int length) {
+            this.chunks = chunks;
+            this.tempURI = tempURI;
+            this.length = length;
+        }
+    }
+
+    /** A byte array output stream giving access to its buffer, which is reused for all pages. */
+    private static final class PageBuffer extends ByteArrayOutputStream {
+
+        PageBuffer() {
+            super(CHUNK_SIZE);
+        }
+
+        byte[] getBytes() {
+            return buf;
+        }
+
+        byte[] getBytes(int length) {
+            if (buf.length < length) {
+                buf = new byte[Math.max(length, buf.length * 2)];
+            }
+            return buf;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.area.inline;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StreamCorruptedException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.fop.area.Area;
+
+/**
+ * Serializes the child areas of an inline parent. Words and spaces make up most of the areas
+ * of a page, so those without any traits or attachments are written field by field in a
+ * compact form instead of going through the reflective default serialization. All other
+ * children are serialized as usual.
+ */
+final class InlineAreaCodec {
+
+    private static final int OBJECT = 0;
+    private static final int WORD = 1;
+    private static final int SPACE = 2;
+
+    private static final int REVERSED = 1;
+    private static final int NEXT_IS_SPACE = 2;
+    private static final int HAS_LETTER_ADJUST = 4;
+    private static final int HAS_LEVELS = 8;
+    private static final int ADJUSTABLE = 16;
+
+    private InlineAreaCodec() {
+    }
+
+    /**
+     * Writes the child areas of an inline parent.
+     * @param parent the inline parent
+     * @param inlines the child areas
+     * @param out the stream to write to
+     * @throws IOException if an I/O error occurs
+     */
+    static void writeInlines(InlineParent parent, List<InlineArea> inlines, ObjectOutputStream out)
+            throws IOException {
+        writeVarint(out, inlines.size());
+        for (InlineArea inline : inlines) {
+            Class<?> cl = inline.getClass();
+            if (cl == WordArea.class && isPlain(parent, inline)
+                    && ((WordArea) inline).getGlyphPositionAdjustments() == null) {
+                WordArea word = (WordArea) inline;
+                int[] letterAdjust = word.getLetterAdjustArray();
+                int[] levels = word.getBidiLevels();
+                out.write(WORD);
+                writeCommon(out, word,
+                        (word.isReversed() ? REVERSED : 0)
+                        | (word.isNextIsSpace() ? NEXT_IS_SPACE : 0)
+                        | (letterAdjust != null ? HAS_LETTER_ADJUST : 0)
+                        | (levels != null ? HAS_LEVELS : 0));
+                out.writeUTF(word.getWord());
+                if (letterAdjust != null) {
+                    writeInts(out, letterAdjust);
+                }
+                if (levels != null) {
+                    writeInts(out, levels);
+                }
+            } else if (cl == SpaceArea.class && isPlain(parent, inline)) {
+                SpaceArea space = (SpaceArea) inline;
+                out.write(SPACE);
+                writeCommon(out, space, space.isAdjustable() ? ADJUSTABLE : 0);
+                out.writeChar(space.space);
+            } else {
+                out.write(OBJECT);
+                out.writeObject(inline);
+            }
+        }
+    }
+
+    /**
+     * Reads the child areas of an inline parent written by
+     * {@link #writeInlines(InlineParent, List, ObjectOutputStream)}.
+     * @param parent the inline parent
+     * @param in the stream to read from
+     * @return the child areas
+     * @throws IOException if an I/O error occurs
+     * @throws ClassNotFoundException if a child area is of an unknown class
+     */
+    static List<InlineArea> readInlines(InlineParent parent, ObjectInputStream in)
+            throws IOException, ClassNotFoundException {
+        int count = readVarint(in);
+        List<InlineArea> inlines = new ArrayList<InlineArea>(count);
+        for (int i = 0; i < count; i++) {
+            int type = in.read();
+            if (type == WORD || type == SPACE) {
+                int blockProgressionOffset = readVarint(in);
+                int bidiLevel = readVarint(in);
+                int ipd = readVarint(in);
+                int bpd = readVarint(in);
+                int flags = in.read();
+                InlineArea inline;
+                if (type == WORD) {
+                    String word = in.readUTF();
+                    int[] letterAdjust = (flags & HAS_LETTER_ADJUST) != 0 ? readInts(in) : null;
+                    int[] levels = (flags & HAS_LEVELS) != 0 ? readInts(in) : null;
+                    inline = new WordArea(blockProgressionOffset, -1, word, letterAdjust, levels,
+                            null, (flags & REVERSED) != 0, (flags & NEXT_IS_SPACE) != 0);
+                    inline.setBidiLevel(bidiLevel);
+                } else {
+                    inline = new SpaceArea(blockProgressionOffset, bidiLevel, in.readChar(),
+                            (flags & ADJUSTABLE) != 0);
+                }
+                inline.setIPD(ipd);
+                inline.setBPD(bpd);
+                inline.setParentArea(parent);
+                inlines.add(inline);
+            } else if (type == OBJECT) {
+                inlines.add((InlineArea) in.readObject());
+            } else {
+                throw new StreamCorruptedException("Invalid inline area type: " + type);
+            }
+        }
+        return inlines;
+    }
+
+    /** Returns true if the state of the given area is fully described by its compact form. */
+    private static boolean isPlain(InlineParent parent, InlineArea inline) {
+        return inline.getParentArea() == parent
+                && inline.getAreaClass() == Area.CLASS_NORMAL
+                && inline.getTraits() == null
+                && inline.getChangeBarList() == null
+                && inline.getAdjustingInfo() == null
+                && inline.getForeignAttributes().isEmpty()
+                && !inline.hasExtensionAttachments();
+    }
+
+    private static void writeCommon(ObjectOutputStream out, InlineArea inline, int flags)
+            throws IOException {
+        writeVarint(out, inline.getBlockProgressionOffset());
+        writeVarint(out, inline.getBidiLevel());
+        writeVarint(out, inline.getIPD());
+        writeVarint(out, inline.getBPD());
+        out.write(flags);
+    }
+
+    private static void writeInts(ObjectOutputStream out, int[] values) throws IOException {
+        writeVarint(out, values.length);
+        for (int value : values) {
+            writeVarint(out, value);
+        }
+    }
+
+    private static int[] readInts(ObjectInputStream in) throws IOException {
+        int[] values = new int[readVarint(in)];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = readVarint(in);
+        }
+        return values;
+    }
+
+    /** Writes a signed integer in as few bytes as its magnitude needs. */
+    private static void writeVarint(ObjectOutputStream out, int value) throws IOException {
+        int n = (value << 1) ^ (value >> 31);
+        while ((n & ~0x7F) != 0) {
+            out.write((n & 0x7F) | 0x80);
+            n >>>= 7;
+        }
+        out.write(n);
+    }
+
+    private static int readVarint(ObjectInputStream in) throws IOException {
+        int n = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new StreamCorruptedException("Unexpected end of an inline area");
+            }
+            n |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (n >>> 1) ^ -(n & 1);
+            }
+        }
+        throw new StreamCorruptedException("Malformed integer in an inline area");
+    }
+}
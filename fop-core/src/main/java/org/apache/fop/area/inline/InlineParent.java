@@ -21,6 +21,7 @@ package org.apache.fop.area.inline;
 
 import java.io.IOException;
 import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -37,7 +38,7 @@ public class InlineParent extends InlineArea {
     /**
      * The list of inline areas added to this inline parent.
      */
-    protected List<InlineArea> inlines = new ArrayList<InlineArea>();
+    protected transient List<InlineArea> inlines = new ArrayList<InlineArea>();
 
     /** Controls whether the IPD is automatically adjusted based on the area's children. */
     protected transient boolean autoSize;
@@ -52,8 +53,14 @@ public class InlineParent extends InlineArea {
      */
     private int maxAfterEdge;
 
+    private void writeObject(ObjectOutputStream oos) throws IOException {
+        oos.defaultWriteObject();
+        InlineAreaCodec.writeInlines(this, inlines, oos);
+    }
+
     private void readObject(ObjectInputStream ois) throws ClassNotFoundException, IOException {
         ois.defaultReadObject();
+        inlines = InlineAreaCodec.readInlines(this, ois);
     }
 
     @Override
@@ -21,12 +21,15 @@ package org.apache.fop.area.inline;
 
 import java.io.IOException;
 import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.List;
 
 import org.apache.fop.area.PageViewport;
 import org.apache.fop.area.Resolvable;
 import org.apache.fop.complexscripts.bidi.InlineRun;
 import org.apache.fop.fonts.Font;
+import org.apache.fop.fonts.FontInfo;
+import org.apache.fop.fonts.FontTriplet;
 
 /**
  * Unresolvable page number area.
@@ -50,6 +53,9 @@ public class UnresolvedPageNumber extends TextArea implements Resolvable {
 
     //Transient fields
     private transient Font font;
+    /** The font triplet and size of a deserialized area until its font is restored */
+    private transient FontTriplet fontTriplet;
+    private transient int fontSize;
 
     public UnresolvedPageNumber() {
         this(null, null, FIRST);
@@ -80,8 +86,29 @@ public class UnresolvedPageNumber extends TextArea implements Resolvable {
         pageType = type;
     }
 
+    private void writeObject(ObjectOutputStream oos) throws IOException {
+        oos.defaultWriteObject();
+        oos.writeObject(font != null ? font.getFontTriplet() : null);
+        oos.writeInt(font != null ? font.getFontSize() : 0);
+    }
+
     private void readObject(ObjectInputStream ois) throws ClassNotFoundException, IOException {
         ois.defaultReadObject();
+        fontTriplet = (FontTriplet) ois.readObject();
+        fontSize = ois.readInt();
+    }
+
+    /**
+     * Restores the font of a deserialized unresolved page number, so its IPD can be updated
+     * once it is resolved.
+     *
+     * @param fontInfo the font information the area was laid out with
+     */
+    public void restoreFont(FontInfo fontInfo) {
+        if (font == null && fontTriplet != null) {
+            font = fontInfo.getFontInstance(fontTriplet, fontSize);
+        }
+        fontTriplet = null;
     }
 
     /**
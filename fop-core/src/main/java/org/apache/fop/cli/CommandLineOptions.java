@@ -51,6 +51,7 @@ import org.apache.fop.pdf.PDFEncryptionParams;
 import org.apache.fop.pdf.PDFXMode;
 import org.apache.fop.render.Renderer;
 import org.apache.fop.render.awt.AWTRenderer;
+import org.apache.fop.render.intermediate.IFBinarySerializer;
 import org.apache.fop.render.intermediate.IFContext;
 import org.apache.fop.render.intermediate.IFDocumentHandler;
 import org.apache.fop.render.intermediate.IFSerializer;
@@ -100,6 +101,9 @@ public class CommandLineOptions {
     private File areatreefile;
     /* intermediate format input file */
     private File iffile;
+    /* zero-based range of the pages of the intermediate format input file to render */
+    private int ifStartPage;
+    private int ifEndPage = Integer.MAX_VALUE;
     /* area tree input file */
     private File imagefile;
     /* output file */
@@ -220,10 +224,16 @@ public class CommandLineOptions {
 
             //Make sure the prepared XMLRenderer is used
             foUserAgent.setRendererOverride(xmlRenderer);
-        } else if (MimeConstants.MIME_FOP_IF.equals(outputmode)
+        } else if ((MimeConstants.MIME_FOP_IF.equals(outputmode)
+                    || MimeConstants.MIME_FOP_IF_BINARY.equals(outputmode))
                 && mimicRenderer != null) {
             // render from FO to Intermediate Format
-            IFSerializer serializer = new IFSerializer(new IFContext(foUserAgent));
+            IFSerializer serializer;
+            if (MimeConstants.MIME_FOP_IF_BINARY.equals(outputmode)) {
+                serializer = new IFBinarySerializer(new IFContext(foUserAgent));
+            } else {
+                serializer = new IFSerializer(new IFContext(foUserAgent));
+            }
             IFDocumentHandler targetHandler
                 = foUserAgent.getRendererFactory().createDocumentHandler(
                         foUserAgent, mimicRenderer);
@@ -349,7 +359,10 @@ public class CommandLineOptions {
             } else if (args[i].equals("-at")) {
                 i = i + parseAreaTreeOption(args, i);
             } else if (args[i].equals("-if")) {
-                i = i + parseIntermediateFormatOption(args, i);
+                i = i + parseIntermediateFormatOption(args, i, MimeConstants.MIME_FOP_IF);
+            } else if (args[i].equals("-ifbin")) {
+                i = i + parseIntermediateFormatOption(args, i,
+                        MimeConstants.MIME_FOP_IF_BINARY);
             } else if (args[i].equals("-a")) {
                 this.renderingOptions.put(Accessibility.ACCESSIBILITY, Boolean.TRUE);
             } else if (args[i].equals("-v")) {
@@ -757,8 +770,9 @@ public class CommandLineOptions {
         }
     }
 
-    private int parseIntermediateFormatOption(String[] args, int i) throws FOPException {
-        setOutputMode(MimeConstants.MIME_FOP_IF);
+    private int parseIntermediateFormatOption(String[] args, int i, String mimeType)
+            throws FOPException {
+        setOutputMode(mimeType);
         if ((i + 1 == args.length)
                 || (args[i + 1].charAt(0) == '-')) {
             throw new FOPException("you must specify the intermediate format output file");
@@ -805,6 +819,18 @@ public class CommandLineOptions {
                 iffile = new File(filename);
                 baseURI = getBaseURI(iffile);
             }
+            if (i + 2 < args.length && args[i + 2].matches("\\d+(-\\d+)?")) {
+                if (iffile == null) {
+                    throw new FOPException(
+                            "a page range for the '-ifin' option requires an input file");
+                }
+                String[] startend = args[i + 2].split("-");
+                ifStartPage = Math.max(Integer.parseInt(startend[0]) - 1, 0);
+                if (startend.length > 1) {
+                    ifEndPage = Integer.parseInt(startend[1]);
+                }
+                return 2;
+            }
             return 1;
         }
     }
@@ -1069,6 +1095,9 @@ public class CommandLineOptions {
             case AREATREE_INPUT:
                 return new AreaTreeInputHandler(areatreefile);
             case IF_INPUT:
+                if (ifStartPage > 0 || ifEndPage < Integer.MAX_VALUE) {
+                    return new IFInputHandler(iffile, ifStartPage, ifEndPage);
+                }
                 return new IFInputHandler(iffile);
             case XSLT_INPUT:
                 InputHandler handler = new InputHandler(xmlfile, xsltfile, xsltParams);
@@ -1227,7 +1256,8 @@ public class CommandLineOptions {
             + "  -fo  infile       xsl:fo input file  \n"
             + "  -xml infile       xml input file, must be used together with -xsl \n"
             + "  -atin infile      area tree input file \n"
-            + "  -ifin infile      intermediate format input file \n"
+            + "  -ifin infile [from[-to]] intermediate format input file (XML or binary) \n"
+            + "                    (a page range renders only these pages of a binary file)\n"
             + "  -imagein infile   image input file (piping through stdin not supported)\n"
             + "  -xsl stylesheet   xslt stylesheet \n \n"
             + "  -param name value <value> to use for parameter <name> in xslt stylesheet\n"
@@ -1254,6 +1284,7 @@ public class CommandLineOptions {
             + " (outfile req'd)\n"
             + "                    specify optional mime output to allow the IF to be converted\n"
             + "                    to final format later\n"
+            + "  -ifbin [mime] out same as -if, but in the compact binary intermediate format\n"
             + "  -print            input file will be rendered and sent to the printer \n"
             + "                    see options with \"-print help\" \n"
             + "  -out mime outfile input will be rendered using the given MIME type\n"
@@ -1333,6 +1364,10 @@ public class CommandLineOptions {
                 log.info("intermediate input file: from stdin");
             } else {
                 log.info("intermediate input file: " + iffile.toString());
+                if (ifStartPage > 0 || ifEndPage < Integer.MAX_VALUE) {
+                    log.info("pages: " + (ifStartPage + 1) + "-"
+                            + (ifEndPage < Integer.MAX_VALUE ? String.valueOf(ifEndPage) : ""));
+                }
             }
             break;
         case IMAGE_INPUT:
@@ -1374,6 +1409,9 @@ public class CommandLineOptions {
         } else if (MimeConstants.MIME_FOP_IF.equals(outputmode)) {
             log.info("intermediate format");
             log.info("output file: " + outfile.toString());
+        } else if (MimeConstants.MIME_FOP_IF_BINARY.equals(outputmode)) {
+            log.info("binary intermediate format");
+            log.info("output file: " + outfile.toString());
         } else {
             log.info(outputmode);
             if (isOutputToStdOut()) {
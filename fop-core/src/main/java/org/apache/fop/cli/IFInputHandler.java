@@ -19,7 +19,11 @@
 
 package org.apache.fop.cli;
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.Vector;
 
@@ -27,18 +31,24 @@ import javax.xml.transform.Result;
 import javax.xml.transform.sax.SAXResult;
 import javax.xml.transform.stream.StreamResult;
 
+import org.apache.commons.io.IOUtils;
+
 import org.apache.fop.apps.FOPException;
 import org.apache.fop.apps.FOUserAgent;
+import org.apache.fop.render.intermediate.IFBinaryParser;
 import org.apache.fop.render.intermediate.IFDocumentHandler;
 import org.apache.fop.render.intermediate.IFException;
 import org.apache.fop.render.intermediate.IFParser;
 import org.apache.fop.render.intermediate.IFUtil;
 
 /**
- * InputHandler for the intermediate format XML as input.
+ * InputHandler for the intermediate format XML, or its binary form, as input.
  */
 public class IFInputHandler extends InputHandler {
 
+    private int startPage;
+    private int endPage = Integer.MAX_VALUE;
+
     /**
      * Constructor for XML-&gt;XSLT-&gt;intermediate XML input
      * @param xmlfile XML file
@@ -58,6 +68,19 @@ public class IFInputHandler extends InputHandler {
         super(iffile);
     }
 
+    /**
+     * Constructor for intermediate input rendering only a range of pages. The intermediate
+     * format document must be in the binary form.
+     * @param iffile the file to read the intermediate format document from.
+     * @param startPage the zero-based index of the first page to render
+     * @param endPage the zero-based index of the page after the last page to render
+     */
+    public IFInputHandler(File iffile, int startPage, int endPage) {
+        super(iffile);
+        this.startPage = startPage;
+        this.endPage = endPage;
+    }
+
     /** {@inheritDoc} */
     public void renderTo(FOUserAgent userAgent, String outputFormat, OutputStream out)
                 throws FOPException {
@@ -68,15 +91,45 @@ public class IFInputHandler extends InputHandler {
             documentHandler.setResult(new StreamResult(out));
             IFUtil.setupFonts(documentHandler);
 
-            //Create IF parser
-            IFParser parser = new IFParser();
+            if (startPage > 0 || endPage < Integer.MAX_VALUE) {
+                if (!isBinaryFormat()) {
+                    throw new FOPException("Rendering a range of pages requires the binary"
+                            + " intermediate format");
+                }
+                new IFBinaryParser().parse(sourcefile, startPage, endPage, documentHandler,
+                        userAgent);
+            } else if (isBinaryFormat()) {
+                InputStream in = new BufferedInputStream(new FileInputStream(sourcefile));
+                try {
+                    new IFBinaryParser().parse(in, documentHandler, userAgent);
+                } finally {
+                    IOUtils.closeQuietly(in);
+                }
+            } else {
+                //Create IF parser
+                IFParser parser = new IFParser();
 
-            // Resulting SAX events are sent to the parser
-            Result res = new SAXResult(parser.getContentHandler(documentHandler, userAgent));
+                // Resulting SAX events are sent to the parser
+                Result res = new SAXResult(parser.getContentHandler(documentHandler, userAgent));
 
-            transformTo(res);
+                transformTo(res);
+            }
         } catch (IFException ife) {
             throw new FOPException(ife);
+        } catch (IOException ioe) {
+            throw new FOPException(ioe);
+        }
+    }
+
+    private boolean isBinaryFormat() throws IOException {
+        if (sourcefile == null) {
+            return false;
+        }
+        InputStream in = new FileInputStream(sourcefile);
+        try {
+            return IFBinaryParser.isBinaryFormat(in);
+        } finally {
+            IOUtils.closeQuietly(in);
         }
     }
 
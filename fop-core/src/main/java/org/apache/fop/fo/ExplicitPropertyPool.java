@@ -0,0 +1,171 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.fo;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.xml.sax.Attributes;
+
+import org.apache.fop.fo.properties.Property;
+
+/**
+ * Interns the explicit property vectors of {@link StaticPropertyList}s, so that FOs with
+ * the same attributes in the same context share one vector instead of converting their
+ * attributes again.
+ * <p>
+ * The explicit values of an FO depend on its attributes and on the values of its
+ * ancestors, for instance through relative font sizes. Vectors are therefore keyed by
+ * the element, its attributes and the key of the parent property list. The key of a
+ * property list whose vector has not been interned is the property list itself, so its
+ * descendants can still share vectors among themselves.
+ * <p>
+ * Attribute sets whose converted values may refer to the FO itself or to properties
+ * of other FOs are never interned: percentages, functions, "inherit", foreign attributes,
+ * ids and column numbers. Neither are attribute sets that produced warnings, so that
+ * every occurrence is reported.
+ * <p>
+ * A pool is used by a single FO tree builder and is not thread-safe.
+ */
+final class ExplicitPropertyPool {
+
+    /** The maximum number of interned vectors, the pool is cleared when it is full */
+    private static final int MAX_SIZE = 1024;
+
+    private static final Object NO_PARENT = new Object();
+
+    private final Map<Key, Entry> vectors = new HashMap<Key, Entry>();
+
+    /**
+     * Creates the key for the explicit properties of a property list.
+     * @param pList the property list
+     * @param attributes the attributes of the FO
+     * @return the key or null if the explicit properties should not be interned
+     */
+    Key createKey(StaticPropertyList pList, Attributes attributes) {
+        int count = attributes.getLength();
+        String[] names = new String[count * 2];
+        for (int i = 0; i < count; i++) {
+            String uri = attributes.getURI(i);
+            String name = attributes.getQName(i);
+            String value = attributes.getValue(i);
+            if (uri != null && uri.length() > 0
+                    && !"xml:lang".equals(name) && !"xml:base".equals(name)) {
+                return null;
+            }
+            if ("id".equals(name) || name.startsWith("column-number")
+                    || value.indexOf('%') >= 0 || value.indexOf('(') >= 0
+                    || value.trim().equals("inherit")) {
+                return null;
+            }
+            names[i * 2] = name;
+            names[i * 2 + 1] = value;
+        }
+        PropertyList parent = pList.getParentPropertyList();
+        Object parentKey;
+        if (parent == null) {
+            parentKey = NO_PARENT;
+        } else if (parent instanceof StaticPropertyList) {
+            parentKey = ((StaticPropertyList) parent).getContextKey();
+        } else {
+            parentKey = parent;
+        }
+        return new Key(parentKey, pList.getFObj().getNameId(), names);
+    }
+
+    /**
+     * Returns an interned vector.
+     * @param key the key
+     * @return the entry holding the canonical key and the vector, or null if not found
+     */
+    Entry get(Key key) {
+        return vectors.get(key);
+    }
+
+    /**
+     * Interns a vector. It must not be modified afterwards.
+     * @param key the key
+     * @param explicit the vector of explicit properties
+     */
+    void put(Key key, Property[] explicit) {
+        if (vectors.size() >= MAX_SIZE) {
+            vectors.clear();
+        }
+        vectors.put(key, new Entry(key, explicit));
+    }
+
+    /** Removes all interned vectors. */
+    void clear() {
+        vectors.clear();
+    }
+
+    /** @return the number of interned vectors */
+    int size() {
+        return vectors.size();
+    }
+
+    /** An interned vector with its canonical key. */
+    static final class Entry {
+
+        final Key key;
+        final Property[] explicit;
+
+        Entry(Key key, Property[] explicit) {
+            this.key = key;
+            this.explicit = explicit;
+        }
+    }
+
+    /** The key of an explicit property vector. */
+    static final class Key {
+
+        private final Object parentKey;
+        private final int nameId;
+        private final String[] attributes;
+        private final int hash;
+
+        Key(Object parentKey, int nameId, String[] attributes) {
+            this.parentKey = parentKey;
+            this.nameId = nameId;
+            this.attributes = attributes;
+            this.hash = (parentKey.hashCode() * 31 + nameId) * 31 + Arrays.hashCode(attributes);
+        }
+
+        /** {@inheritDoc} */
+        public int hashCode() {
+            return hash;
+        }
+
+        /** {@inheritDoc} */
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return hash == other.hash && nameId == other.nameId
+                    && parentKey.equals(other.parentKey)
+                    && Arrays.equals(attributes, other.attributes);
+        }
+    }
+}
@@ -23,6 +23,7 @@ import java.awt.Color;
 import java.nio.CharBuffer;
 import java.text.CharacterIterator;
 import java.text.StringCharacterIterator;
+import java.util.Arrays;
 import java.util.NoSuchElementException;
 import java.util.Stack;
 
@@ -30,8 +31,10 @@ import org.xml.sax.Locator;
 
 import org.apache.fop.accessibility.StructureTreeElement;
 import org.apache.fop.apps.FOPException;
+import org.apache.fop.apps.FOUserAgent;
 import org.apache.fop.complexscripts.bidi.DelimitedTextRange;
 import org.apache.fop.datatypes.Length;
+import org.apache.fop.datatypes.PercentBaseContext;
 import org.apache.fop.fo.flow.Block;
 import org.apache.fop.fo.pagination.PageSequence;
 import org.apache.fop.fo.properties.CommonFont;
@@ -39,9 +42,11 @@ import org.apache.fop.fo.properties.CommonHyphenation;
 import org.apache.fop.fo.properties.CommonTextDecoration;
 import org.apache.fop.fo.properties.KeepProperty;
 import org.apache.fop.fo.properties.Property;
+import org.apache.fop.fo.properties.PropertyCache;
 import org.apache.fop.fo.properties.SpaceProperty;
 import org.apache.fop.fonts.TextFragment;
 import org.apache.fop.util.CharUtilities;
+import org.apache.fop.util.CompareUtil;
 
 /**
  * A text node (PCDATA) in the formatting object tree.
@@ -51,27 +56,9 @@ public class FOText extends FONode implements CharSequence, TextFragment {
     /** the <code>CharBuffer</code> containing the text */
     private CharBuffer charBuffer;
 
-    // cached iterator
-    private CharacterIterator charIterator;
-
     // The value of FO traits (refined properties) that apply to #PCDATA
-    // (aka implicit sequence of fo:character)
-    private CommonFont commonFont;
-    private CommonHyphenation commonHyphenation;
-    private Color color;
-    private KeepProperty keepTogether;
-    private Property letterSpacing;
-    private SpaceProperty lineHeight;
-    private int whiteSpaceTreatment;
-    private int whiteSpaceCollapse;
-    private int textTransform;
-    private Property wordSpacing;
-    private int wrapOption;
-    private Length baselineShift;
-    private String country;
-    private String language;
-    private String script;
-    // End of trait values
+    // (aka implicit sequence of fo:character), shared by the text nodes with the same values
+    private TextTraits traits = TextTraits.NONE;
 
     /**
      * Points to the previous FOText object created within the current
@@ -91,13 +78,10 @@ public class FOText extends FONode implements CharSequence, TextFragment {
      */
     private Block ancestorBlock;
 
-    /** Holds the text decoration values. May be null */
-    private CommonTextDecoration textDecoration;
-
     private StructureTreeElement structureTreeElement;
 
-    /* bidi levels */
-    private int[] bidiLevels;
+    /* bidi levels, allocated when the first level is set */
+    private byte[] bidiLevels;
 
     private static final int IS_WORD_CHAR_FALSE = 0;
     private static final int IS_WORD_CHAR_TRUE = 1;
@@ -182,27 +166,17 @@ public class FOText extends FONode implements CharSequence, TextFragment {
 
     /** {@inheritDoc} */
     public void bind(PropertyList pList) throws FOPException {
-        this.commonFont = pList.getFontProps();
-        this.commonHyphenation = pList.getHyphenationProps();
-        this.color = pList.get(Constants.PR_COLOR).getColor(getUserAgent());
-        this.keepTogether = pList.get(Constants.PR_KEEP_TOGETHER).getKeep();
-        this.lineHeight = pList.get(Constants.PR_LINE_HEIGHT).getSpace();
-        this.letterSpacing = pList.get(Constants.PR_LETTER_SPACING);
-        this.whiteSpaceCollapse = pList.get(Constants.PR_WHITE_SPACE_COLLAPSE).getEnum();
-        this.whiteSpaceTreatment = pList.get(Constants.PR_WHITE_SPACE_TREATMENT).getEnum();
-        this.textTransform = pList.get(Constants.PR_TEXT_TRANSFORM).getEnum();
-        this.wordSpacing = pList.get(Constants.PR_WORD_SPACING);
-        this.wrapOption = pList.get(Constants.PR_WRAP_OPTION).getEnum();
-        this.textDecoration = pList.getTextDecorationProps();
-        this.baselineShift = pList.get(Constants.PR_BASELINE_SHIFT).getLength();
-        this.country = pList.get(Constants.PR_COUNTRY).getString();
-        this.language = pList.get(Constants.PR_LANGUAGE).getString();
-        this.script = pList.get(Constants.PR_SCRIPT).getString();
+        this.traits = TextTraits.getInstance(pList, getUserAgent());
     }
 
     /** {@inheritDoc} */
     public void endOfNode() throws FOPException {
         if (charBuffer != null) {
+            // the text is complete, move it to the shared storage
+            FOTreeBuilderContext builderContext = getBuilderContext();
+            if (builderContext != null) {
+                charBuffer = builderContext.getTextStorage().store(charBuffer);
+            }
             charBuffer.rewind();
         }
         super.endOfNode();
@@ -224,7 +198,7 @@ public class FOText extends FONode implements CharSequence, TextFragment {
      * @return true if this will create an area in the output
      */
     public boolean willCreateArea() {
-        if (whiteSpaceCollapse == Constants.EN_FALSE
+        if (traits.whiteSpaceCollapse == Constants.EN_FALSE
                 && charBuffer.limit() > 0) {
             return true;
         }
@@ -277,7 +251,7 @@ public class FOText extends FONode implements CharSequence, TextFragment {
      */
     private void textTransform() {
         if (getBuilderContext().inMarker()
-                || textTransform == Constants.EN_NONE) {
+                || traits.textTransform == Constants.EN_NONE) {
             return;
         }
 
@@ -288,7 +262,7 @@ public class FOText extends FONode implements CharSequence, TextFragment {
         int pos = -1;
         while (++pos < lim) {
             c = charBuffer.get();
-            switch (textTransform) {
+            switch (traits.textTransform) {
                 case Constants.EN_UPPERCASE:
                     tmp.put(Character.toUpperCase(c));
                     break;
@@ -586,86 +560,83 @@ public class FOText extends FONode implements CharSequence, TextFragment {
      * @return the Common Font Properties.
      */
     public CommonFont getCommonFont() {
-        return commonFont;
+        return traits.commonFont;
     }
 
     /**
      * @return the Common Hyphenation Properties.
      */
     public CommonHyphenation getCommonHyphenation() {
-        return commonHyphenation;
+        return traits.commonHyphenation;
     }
 
     /**
      * @return the "color" trait.
      */
     public Color getColor() {
-        return color;
+        return traits.color;
     }
 
     /**
      * @return the "keep-together" trait.
      */
     public KeepProperty getKeepTogether() {
-        return keepTogether;
+        return traits.keepTogether;
     }
 
     /**
      * @return the "letter-spacing" trait.
      */
     public Property getLetterSpacing() {
-        return letterSpacing;
+        return traits.letterSpacing;
     }
 
     /**
      * @return the "line-height" trait.
      */
     public SpaceProperty getLineHeight() {
-        return lineHeight;
+        return traits.lineHeight;
     }
 
     /**
      * @return the "white-space-treatment" trait
      */
     public int getWhitespaceTreatment() {
-        return whiteSpaceTreatment;
+        return traits.whiteSpaceTreatment;
     }
 
     /**
      * @return the "word-spacing" trait.
      */
     public Property getWordSpacing() {
-        return wordSpacing;
+        return traits.wordSpacing;
     }
 
     /**
      * @return the "wrap-option" trait.
      */
     public int getWrapOption() {
-        return wrapOption;
+        return traits.wrapOption;
     }
 
     /** @return the "text-decoration" trait. */
     public CommonTextDecoration getTextDecoration() {
-        return textDecoration;
+        return traits.textDecoration;
     }
 
     /** @return the baseline-shift trait */
     public Length getBaseLineShift() {
-        return baselineShift;
+        return traits.baselineShift;
     }
 
     /** @return the country trait */
     public String getCountry() {
-        return country;
+        return traits.country;
     }
 
     @Override
-    public synchronized CharacterIterator getIterator() {
-        if (charIterator != null) {
-            charIterator = new StringCharacterIterator(toString());
-        }
-        return charIterator;
+    public CharacterIterator getIterator() {
+        return new StringCharacterIterator(toString());
     }
 
     @Override
@@ -680,12 +651,12 @@ public class FOText extends FONode implements CharSequence, TextFragment {
 
     @Override
     public String getLanguage() {
-        return language;
+        return traits.language;
     }
 
     @Override
     public String getScript() {
-        return script;
+        return traits.script;
     }
 
     @Override
@@ -771,11 +742,9 @@ public class FOText extends FONode implements CharSequence, TextFragment {
     public void setBidiLevel(int level, int start, int end) {
         if (start < end) {
             if (bidiLevels == null) {
-                bidiLevels = new int [ length() ];
-            }
-            for (int i = start, n = end; i < n; i++) {
-                bidiLevels [ i ] = level;
+                bidiLevels = new byte [ length() ];
             }
+            Arrays.fill(bidiLevels, start, end, (byte) level);
             if (parent != null) {
                 ((FObj) parent).setBidiLevel(level);
             }
@@ -791,7 +760,7 @@ public class FOText extends FONode implements CharSequence, TextFragment {
      * in case no bidi levels have been assigned
      */
     public int[] getBidiLevels() {
-        return bidiLevels;
+        return (bidiLevels != null) ? getBidiLevels(0, bidiLevels.length) : null;
     }
 
     /**
@@ -807,7 +776,9 @@ public class FOText extends FONode implements CharSequence, TextFragment {
             assert start <= end;
             int n = end - start;
             int[] bidiLevels = new int [ n ];
-            System.arraycopy(this.bidiLevels, start + 0, bidiLevels, 0, n);
+            for (int i = 0; i < n; i++) {
+                bidiLevels [ i ] = this.bidiLevels [ start + i ];
+            }
             return bidiLevels;
         } else {
             return null;
@@ -842,6 +813,152 @@ public class FOText extends FONode implements CharSequence, TextFragment {
         return ranges;
     }
 
+    /**
+     * The traits of a text node. Text nodes with the same traits share one instance.
+     */
+    private static final class TextTraits {
+
+        private static final PropertyCache<TextTraits> CACHE = new PropertyCache<TextTraits>();
+
+        /** The traits of text nodes that are not bound, e.g. in markers */
+        static final TextTraits NONE = new TextTraits();
+
+        /**
+         * Used to check the consistency of absolute line heights, whose values do not depend
+         * on a layout context.
+         */
+        private static final PercentBaseContext ABSOLUTE_CONTEXT = new PercentBaseContext() {
+            public int getBaseLength(int lengthBase, FObj fobj) {
+                throw new IllegalStateException("Not a relative length");
+            }
+        };
+
+        private CommonFont commonFont;
+        private CommonHyphenation commonHyphenation;
+        private Color color;
+        private KeepProperty keepTogether;
+        private Property letterSpacing;
+        private SpaceProperty lineHeight;
+        /** true if lineHeight will not change any more and may be compared by value */
+        private boolean lineHeightSettled;
+        private int whiteSpaceTreatment;
+        private int whiteSpaceCollapse;
+        private int textTransform;
+        private Property wordSpacing;
+        private int wrapOption;
+        /** Holds the text decoration values. May be null */
+        private CommonTextDecoration textDecoration;
+        private Length baselineShift;
+        private String country;
+        private String language;
+        private String script;
+
+        private int hash;
+
+        static TextTraits getInstance(PropertyList pList, FOUserAgent userAgent)
+                throws FOPException {
+            TextTraits traits = new TextTraits();
+            traits.commonFont = pList.getFontProps();
+            traits.commonHyphenation = pList.getHyphenationProps();
+            traits.color = pList.get(Constants.PR_COLOR).getColor(userAgent);
+            traits.keepTogether = pList.get(Constants.PR_KEEP_TOGETHER).getKeep();
+            traits.lineHeight = pList.get(Constants.PR_LINE_HEIGHT).getSpace();
+            traits.lineHeightSettled = settle(traits.lineHeight);
+            traits.letterSpacing = pList.get(Constants.PR_LETTER_SPACING);
+            traits.whiteSpaceCollapse = pList.get(Constants.PR_WHITE_SPACE_COLLAPSE).getEnum();
+            traits.whiteSpaceTreatment = pList.get(Constants.PR_WHITE_SPACE_TREATMENT).getEnum();
+            traits.textTransform = pList.get(Constants.PR_TEXT_TRANSFORM).getEnum();
+            traits.wordSpacing = pList.get(Constants.PR_WORD_SPACING);
+            traits.wrapOption = pList.get(Constants.PR_WRAP_OPTION).getEnum();
+            traits.textDecoration = pList.getTextDecorationProps();
+            traits.baselineShift = pList.get(Constants.PR_BASELINE_SHIFT).getLength();
+            traits.country = pList.get(Constants.PR_COUNTRY).getString();
+            traits.language = pList.get(Constants.PR_LANGUAGE).getString();
+            traits.script = pList.get(Constants.PR_SCRIPT).getString();
+            return CACHE.fetch(traits);
+        }
+
+        /**
+         * Layout checks the consistency of a line height the first time it reads its value, and
+         * may change its components and its hash code then. This runs the check now if the
+         * components are absolute lengths, as they are in most cases.
+         * @param lineHeight the line height
+         * @return true if the line height is consistent, false if its check has to wait for
+         * a layout context
+         */
+        private static boolean settle(SpaceProperty lineHeight) {
+            if (!isAbsolute(lineHeight.getMinimum(null))
+                    || !isAbsolute(lineHeight.getOptimum(null))
+                    || !isAbsolute(lineHeight.getMaximum(null))) {
+                return false;
+            }
+            lineHeight.getOptimum(ABSOLUTE_CONTEXT);
+            return true;
+        }
+
+        private static boolean isAbsolute(Property component) {
+            return component.isAuto()
+                    || (component.getLength() != null && component.getLength().isAbsolute());
+        }
+
+        /** {@inheritDoc} */
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof TextTraits)) {
+                return false;
+            }
+            TextTraits other = (TextTraits) obj;
+            // colors are canonical instances, and equal colors may differ in their alternatives
+            return color == other.color
+                    && whiteSpaceTreatment == other.whiteSpaceTreatment
+                    && whiteSpaceCollapse == other.whiteSpaceCollapse
+                    && textTransform == other.textTransform
+                    && wrapOption == other.wrapOption
+                    && CompareUtil.equal(commonFont, other.commonFont)
+                    && CompareUtil.equal(commonHyphenation, other.commonHyphenation)
+                    && CompareUtil.equal(keepTogether, other.keepTogether)
+                    && CompareUtil.equal(letterSpacing, other.letterSpacing)
+                    && (lineHeightSettled && other.lineHeightSettled
+                            ? CompareUtil.equal(lineHeight, other.lineHeight)
+                            : lineHeight == other.lineHeight)
+                    && CompareUtil.equal(wordSpacing, other.wordSpacing)
+                    && CompareUtil.equal(textDecoration, other.textDecoration)
+                    && CompareUtil.equal(baselineShift, other.baselineShift)
+                    && CompareUtil.equal(country, other.country)
+                    && CompareUtil.equal(language, other.language)
+                    && CompareUtil.equal(script, other.script);
+        }
+
+        /** {@inheritDoc} */
+        public int hashCode() {
+            if (hash == 0) {
+                int result = 17;
+                result = 31 * result + System.identityHashCode(color);
+                result = 31 * result + whiteSpaceTreatment;
+                result = 31 * result + whiteSpaceCollapse;
+                result = 31 * result + textTransform;
+                result = 31 * result + wrapOption;
+                result = 31 * result + CompareUtil.getHashCode(commonFont);
+                result = 31 * result + CompareUtil.getHashCode(commonHyphenation);
+                result = 31 * result + CompareUtil.getHashCode(keepTogether);
+                result = 31 * result + CompareUtil.getHashCode(letterSpacing);
+                result = 31 * result + (lineHeightSettled
+                        ? CompareUtil.getHashCode(lineHeight)
+                        : System.identityHashCode(lineHeight));
+                result = 31 * result + CompareUtil.getHashCode(wordSpacing);
+                result = 31 * result + CompareUtil.getHashCode(textDecoration);
+                result = 31 * result + CompareUtil.getHashCode(baselineShift);
+                result = 31 * result + CompareUtil.getHashCode(country);
+                result = 31 * result + CompareUtil.getHashCode(language);
+                result = 31 * result + CompareUtil.getHashCode(script);
+                hash = result;
+            }
+            return hash;
+        }
+    }
+
     private static class MapRange {
         private int start;
         private int end;
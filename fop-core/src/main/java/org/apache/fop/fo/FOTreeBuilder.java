@@ -71,6 +71,9 @@ public class FOTreeBuilder extends DefaultHandler {
     /** Provides information used during tree building stage. */
     private FOTreeBuilderContext builderContext;
 
+    /** Interns the explicit properties of FOs with the same attributes. */
+    private final ExplicitPropertyPool explicitPropertyPool = new ExplicitPropertyPool();
+
     /** The object that handles formatting and rendering to a stream */
     private FOEventHandler foEventHandler;
 
@@ -113,7 +116,8 @@ public class FOTreeBuilder extends DefaultHandler {
         builderContext = new FOTreeBuilderContext();
         builderContext.setPropertyListMaker(new PropertyListMaker() {
             public PropertyList make(FObj fobj, PropertyList parentPropertyList) {
-                return new StaticPropertyList(fobj, parentPropertyList);
+                return new StaticPropertyList(fobj, parentPropertyList,
+                        builderContext.inMarker() ? null : explicitPropertyPool);
             }
         });
     }
@@ -368,6 +372,11 @@ public class FOTreeBuilder extends DefaultHandler {
                 currentPropertyList = currentPropertyList.getParentPropertyList();
             }
 
+            if (currentFObj.getNameId() == Constants.FO_PAGE_SEQUENCE) {
+                // the interned properties may refer to the FOs of the page-sequence
+                explicitPropertyPool.clear();
+            }
+
             if (currentFObj.getNameId() == Constants.FO_MARKER) {
                 if (nestedMarkerDepth == 0) {
                     builderContext.switchMarkerContext(false);
@@ -43,6 +43,11 @@ public class FOTreeBuilderContext {
      */
     protected XMLWhiteSpaceHandler whiteSpaceHandler = new XMLWhiteSpaceHandler();
 
+    /**
+     * The shared storage for the characters of text nodes
+     */
+    private final TextStorage textStorage = new TextStorage();
+
     /**
      * Indicates whether processing descendants of a marker
      */
@@ -82,6 +87,14 @@ public class FOTreeBuilderContext {
         return whiteSpaceHandler;
     }
 
+    /**
+     * Returns the storage for the characters of text nodes.
+     * @return the text storage
+     */
+    TextStorage getTextStorage() {
+        return textStorage;
+    }
+
     /**
      * Switch to or from marker context
      * (used by FOTreeBuilder when processing
@@ -71,6 +71,9 @@ public abstract class PropertyList {
 
     private final UnknownPropertyHandler unknownPropertyHandler = new UnknownPropertyHandler();
 
+    /** True if an attribute could not be converted to a property */
+    private boolean invalidProperties;
+
     /**
      * Basic constructor.
      * @param fObjToAttach  the FO this PropertyList should be attached to
@@ -481,6 +484,7 @@ public abstract class PropertyList {
             if (propertyMaker == null) {
                 log.warn("No PropertyMaker registered for " + attributeName
                         + ". Ignoring property.");
+                invalidProperties = true;
                 return;
             }
 
@@ -508,6 +512,7 @@ public abstract class PropertyList {
                     putExplicit(propId, prop);
                 }
             } catch (PropertyException e) {
+                invalidProperties = true;
                 fobj.getFOValidationEventProducer().invalidPropertyValue(this, fobj.getName(),
                         attributeName, attributeValue, e, fobj.locator);
             }
@@ -554,11 +559,19 @@ public abstract class PropertyList {
     protected void handleInvalidProperty(QName attr)
                     throws ValidationException {
         if (!attr.getQName().startsWith("xmlns")) {
+            invalidProperties = true;
             fobj.getFOValidationEventProducer().invalidProperty(this, fobj.getName(),
                     attr, true, fobj.locator);
         }
     }
 
+    /**
+     * @return true if an attribute of the FO could not be converted to a property
+     */
+    boolean hasInvalidProperties() {
+        return invalidProperties;
+    }
+
     /**
      * Finds the first or base part (up to any period) of an attribute name.
      * For example, if input is "space-before.minimum", should return
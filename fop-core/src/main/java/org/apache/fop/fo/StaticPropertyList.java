@@ -19,26 +19,86 @@
 
 package org.apache.fop.fo;
 
+import org.xml.sax.Attributes;
+
 import org.apache.fop.fo.expr.PropertyException;
 import org.apache.fop.fo.properties.Property;
 
 /**
  * A very fast implementation of PropertyList that uses arrays to store
  * the explicit set properties and another array to store cached values.
+ * The array of explicit properties may be interned in an {@link ExplicitPropertyPool},
+ * in which case it is copied before it is changed.
  */
 public class StaticPropertyList extends PropertyList {
-    private final Property[] explicit;
+    private Property[] explicit;
     private final Property[] values;
 
+    /** The pool the explicit properties are interned in, null to not intern them */
+    private final ExplicitPropertyPool pool;
+    /** True if the explicit properties are interned and must be copied before a change */
+    private boolean explicitShared;
+    /** The key of the interned explicit properties */
+    private Object contextKey;
+
     /**
      * Construct a StaticPropertyList.
      * @param fObjToAttach The FObj object.
      * @param parentPropertyList The parent property list.
      */
     public StaticPropertyList(FObj fObjToAttach, PropertyList parentPropertyList) {
+        this(fObjToAttach, parentPropertyList, null);
+    }
+
+    /**
+     * Construct a StaticPropertyList whose explicit properties are shared with the ones of
+     * other property lists with the same attributes in the same context.
+     * @param fObjToAttach The FObj object.
+     * @param parentPropertyList The parent property list.
+     * @param pool the pool to intern the explicit properties in, or null
+     */
+    StaticPropertyList(FObj fObjToAttach, PropertyList parentPropertyList,
+            ExplicitPropertyPool pool) {
         super(fObjToAttach, parentPropertyList);
-        explicit = new Property[Constants.PROPERTY_COUNT + 1];
+        this.pool = pool;
         values = new Property[Constants.PROPERTY_COUNT + 1];
+        if (pool == null) {
+            explicit = new Property[Constants.PROPERTY_COUNT + 1];
+        }
+    }
+
+    /** {@inheritDoc} */
+    public void addAttributesToList(Attributes attributes) throws ValidationException {
+        ExplicitPropertyPool.Key key = (pool != null && explicit == null)
+                ? pool.createKey(this, attributes) : null;
+        if (key != null) {
+            ExplicitPropertyPool.Entry shared = pool.get(key);
+            if (shared != null) {
+                explicit = shared.explicit;
+                explicitShared = true;
+                contextKey = shared.key;
+                return;
+            }
+        }
+        if (explicit == null) {
+            explicit = new Property[Constants.PROPERTY_COUNT + 1];
+        }
+        super.addAttributesToList(attributes);
+        if (key != null && getUnknownPropertyValues().isEmpty() && !hasInvalidProperties()) {
+            pool.put(key, explicit);
+            explicitShared = true;
+            contextKey = key;
+        }
+    }
+
+    /**
+     * Returns the key that identifies the context this property list provides to its
+     * children: the key of its explicit properties if they are interned, otherwise the
+     * property list itself.
+     * @return the context key
+     */
+    Object getContextKey() {
+        return contextKey != null ? contextKey : this;
     }
 
     /**
@@ -47,7 +107,7 @@ public class StaticPropertyList extends PropertyList {
      * @return The value if the property is explicitly set, otherwise null.
      */
     public Property getExplicit(int propId) {
-        return explicit[propId];
+        return explicit != null ? explicit[propId] : null;
     }
 
     /**
@@ -56,6 +116,13 @@ public class StaticPropertyList extends PropertyList {
      * @param value The value of the property to set.
      */
     public void putExplicit(int propId, Property value) {
+        if (explicit == null) {
+            explicit = new Property[Constants.PROPERTY_COUNT + 1];
+        } else if (explicitShared) {
+            explicit = explicit.clone();
+            explicitShared = false;
+            contextKey = null;
+        }
         explicit[propId] = value;
         if (values[propId] != null) { // if the cached value is set overwrite it
             values[propId] = value;
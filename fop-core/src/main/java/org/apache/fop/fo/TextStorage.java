@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.fo;
+
+import java.nio.CharBuffer;
+
+/**
+ * Stores the characters of completed {@link FOText} nodes in shared chunks. A text node
+ * gets a view on its part of a chunk, instead of holding its own, partly unused array.
+ * Most text nodes of a document are short, so the per-array overhead and the slack left
+ * by growing the buffer while the characters arrive make up a good part of their size.
+ * <p>
+ * Views may be changed in place, for instance by white-space handling, but never grow.
+ * A chunk is reclaimed once none of the text nodes stored in it is referenced anymore.
+ */
+final class TextStorage {
+
+    /** The size of a chunk of characters */
+    static final int CHUNK_SIZE = 4096;
+
+    /** Texts longer than this get an array of their own */
+    private static final int MAX_SHARED_LENGTH = CHUNK_SIZE / 8;
+
+    private char[] chunk;
+    private int used;
+
+    /**
+     * Copies the characters of a buffer into the storage.
+     * @param text the buffer, whose characters from zero up to its limit are stored
+     * @return a buffer with the same characters, which cannot grow
+     */
+    CharBuffer store(CharBuffer text) {
+        int length = text.limit();
+        text.rewind();
+        if (length > MAX_SHARED_LENGTH) {
+            char[] chars = new char[length];
+            text.get(chars);
+            text.rewind();
+            return CharBuffer.wrap(chars);
+        }
+        if (chunk == null || used + length > CHUNK_SIZE) {
+            chunk = new char[CHUNK_SIZE];
+            used = 0;
+        }
+        text.get(chunk, used, length);
+        text.rewind();
+        CharBuffer view = CharBuffer.wrap(chunk, used, length).slice();
+        used += length;
+        return view;
+    }
+}
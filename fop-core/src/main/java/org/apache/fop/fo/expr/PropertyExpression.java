@@ -0,0 +1,296 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.fo.expr;
+
+import org.apache.xmlgraphics.util.UnitConv;
+
+import org.apache.fop.datatypes.Length;
+import org.apache.fop.datatypes.LengthBase;
+import org.apache.fop.datatypes.Numeric;
+import org.apache.fop.datatypes.PercentBase;
+import org.apache.fop.fo.properties.ColorProperty;
+import org.apache.fop.fo.properties.FixedLength;
+import org.apache.fop.fo.properties.ListProperty;
+import org.apache.fop.fo.properties.NumberProperty;
+import org.apache.fop.fo.properties.PercentLength;
+import org.apache.fop.fo.properties.Property;
+
+/**
+ * A compiled property expression. The tree of expressions is built once by the
+ * {@link PropertyParser} and evaluated for every property list it is specified on.
+ * Expressions do not depend on the context they are evaluated in and may be shared
+ * between threads.
+ */
+abstract class PropertyExpression {
+
+    /**
+     * Evaluates the expression.
+     * @param propInfo the context in which the expression is evaluated
+     * @return the resulting property
+     * @throws PropertyException if the expression cannot be evaluated in the given context
+     */
+    abstract Property evaluate(PropertyInfo propInfo) throws PropertyException;
+
+    /**
+     * A value that does not depend on the context, such as a literal, a number or an
+     * absolute length. Such values are canonical instances from the property cache.
+     */
+    static final class Constant extends PropertyExpression {
+
+        private final Property value;
+
+        Constant(Property value) {
+            this.value = value;
+        }
+
+        Property evaluate(PropertyInfo propInfo) {
+            return value;
+        }
+    }
+
+    /** An NCName, interpreted later by the property maker. */
+    static final class NCName extends PropertyExpression {
+
+        private final String name;
+
+        NCName(String name) {
+            this.name = name;
+        }
+
+        Property evaluate(PropertyInfo propInfo) {
+            return new NCnameProperty(name);
+        }
+    }
+
+    /** A percentage, resolved against the percent base of the context. */
+    static final class Percentage extends PropertyExpression {
+
+        private final double value;
+
+        /**
+         * @param value the percentage as a fraction, eg. 0.5 for 50%
+         */
+        Percentage(double value) {
+            this.value = value;
+        }
+
+        Property evaluate(PropertyInfo propInfo) throws PropertyException {
+            /*
+             * Get the length base value object from the Maker. If null, then
+             * this property can't have % values. Treat it as a real number.
+             */
+            PercentBase pcBase = propInfo.getPercentBase();
+            if (pcBase == null) {
+                // WARNING? Interpret as a decimal fraction, eg. 50% = .5
+                return NumberProperty.getInstance(value);
+            }
+            if (pcBase.getDimension() == 0) {
+                return NumberProperty.getInstance(value * pcBase.getBaseValue());
+            } else if (pcBase.getDimension() == 1) {
+                if (pcBase instanceof LengthBase) {
+                    if (value == 0.0) {
+                        return FixedLength.ZERO_FIXED_LENGTH;
+                    }
+
+                    //If the base of the percentage is known
+                    //and absolute, it can be resolved by the
+                    //parser
+                    Length base = ((LengthBase) pcBase).getBaseLength();
+                    if (base != null && base.isAbsolute()) {
+                        return FixedLength.getInstance(value * base.getValue());
+                    }
+                }
+                return new PercentLength(value, pcBase);
+            } else {
+                throw new PropertyException("Illegal percent dimension value");
+            }
+        }
+    }
+
+    /** A length relative to the current font size. */
+    static final class RelativeLength extends PropertyExpression {
+
+        private final double ems;
+
+        RelativeLength(double ems) {
+            this.ems = ems;
+        }
+
+        Property evaluate(PropertyInfo propInfo) throws PropertyException {
+            return (Property) NumericOp.multiply(NumberProperty.getInstance(ems),
+                    propInfo.currentFontSize());
+        }
+    }
+
+    /** A length in pixels, which depends on the source resolution. */
+    static final class PixelLength extends PropertyExpression {
+
+        private final double pixels;
+
+        PixelLength(double pixels) {
+            this.pixels = pixels;
+        }
+
+        Property evaluate(PropertyInfo propInfo) {
+            //pass the ratio between target-resolution and
+            //the default resolution of 72dpi
+            float resolution = propInfo.getPropertyList().getFObj()
+                    .getUserAgent().getSourceResolution();
+            return FixedLength.getInstance(pixels, "px", UnitConv.IN2PT / resolution);
+        }
+    }
+
+    /** A color specification, which may depend on the color spaces of the user agent. */
+    static final class ColorSpecification extends PropertyExpression {
+
+        private final String colorSpec;
+
+        ColorSpecification(String colorSpec) {
+            this.colorSpec = colorSpec;
+        }
+
+        Property evaluate(PropertyInfo propInfo) throws PropertyException {
+            return ColorProperty.getInstance(propInfo.getUserAgent(), colorSpec);
+        }
+    }
+
+    /** A function call. */
+    static final class FunctionCall extends PropertyExpression {
+
+        private final Function function;
+        private final PropertyExpression[] args;
+
+        FunctionCall(Function function, PropertyExpression[] args) {
+            this.function = function;
+            this.args = args;
+        }
+
+        Property evaluate(PropertyInfo propInfo) throws PropertyException {
+            // Push new function (for function context: getPercentBase())
+            propInfo.pushFunction(function);
+            int numReq = function.getRequiredArgsCount();
+            int numOpt = function.getOptionalArgsCount();
+            int numArgs = Math.max(args.length, numReq + numOpt);
+            Property[] values = new Property[numArgs];
+            for (int i = 0; i < args.length; i++) {
+                values[i] = args[i].evaluate(propInfo);
+            }
+            for (int i = args.length; i < numArgs; i++) {
+                values[i] = function.getOptionalArgDefault(i - numReq, propInfo);
+            }
+            Property prop = function.eval(values, propInfo);
+            propInfo.popFunction();
+            return prop;
+        }
+    }
+
+    /** A numeric operation on two operands. */
+    static final class Operation extends PropertyExpression {
+
+        static final int ADDITION = 1;
+        static final int SUBTRACTION = 2;
+        static final int MULTIPLY = 3;
+        static final int DIVIDE = 4;
+        static final int MODULO = 5;
+
+        private final int operator;
+        private final PropertyExpression op1;
+        private final PropertyExpression op2;
+
+        Operation(int operator, PropertyExpression op1, PropertyExpression op2) {
+            this.operator = operator;
+            this.op1 = op1;
+            this.op2 = op2;
+        }
+
+        Property evaluate(PropertyInfo propInfo) throws PropertyException {
+            Property prop1 = op1.evaluate(propInfo);
+            Property prop2 = op2.evaluate(propInfo);
+            if (operator == MODULO) {
+                Number n1 = prop1.getNumber();
+                Number n2 = prop2.getNumber();
+                if (n1 == null || n2 == null) {
+                    throw new PropertyException("Non number operand to modulo");
+                }
+                return NumberProperty.getInstance(n1.doubleValue() % n2.doubleValue());
+            }
+            Numeric n1 = prop1.getNumeric();
+            Numeric n2 = prop2.getNumeric();
+            switch (operator) {
+            case ADDITION:
+                if (n1 == null || n2 == null) {
+                    throw new PropertyException("Non numeric operand in addition");
+                }
+                return (Property) NumericOp.addition(n1, n2);
+            case SUBTRACTION:
+                if (n1 == null || n2 == null) {
+                    throw new PropertyException("Non numeric operand in subtraction");
+                }
+                return (Property) NumericOp.subtraction(n1, n2);
+            case MULTIPLY:
+                if (n1 == null || n2 == null) {
+                    throw new PropertyException("Non numeric operand in multiplication");
+                }
+                return (Property) NumericOp.multiply(n1, n2);
+            default:
+                if (n1 == null || n2 == null) {
+                    throw new PropertyException("Non numeric operand in division");
+                }
+                return (Property) NumericOp.divide(n1, n2);
+            }
+        }
+    }
+
+    /** A unary minus. */
+    static final class Negation extends PropertyExpression {
+
+        private final PropertyExpression op;
+
+        Negation(PropertyExpression op) {
+            this.op = op;
+        }
+
+        Property evaluate(PropertyInfo propInfo) throws PropertyException {
+            Numeric n = op.evaluate(propInfo).getNumeric();
+            if (n == null) {
+                throw new PropertyException("Non numeric operand to unary minus");
+            }
+            return (Property) NumericOp.negate(n);
+        }
+    }
+
+    /** A space separated list of expressions. */
+    static final class ListExpression extends PropertyExpression {
+
+        private final PropertyExpression[] items;
+
+        ListExpression(PropertyExpression[] items) {
+            this.items = items;
+        }
+
+        Property evaluate(PropertyInfo propInfo) throws PropertyException {
+            ListProperty propList = new ListProperty(items[0].evaluate(propInfo));
+            for (int i = 1; i < items.length; i++) {
+                propList.addProperty(items[i].evaluate(propInfo));
+            }
+            return propList;
+        }
+    }
+}
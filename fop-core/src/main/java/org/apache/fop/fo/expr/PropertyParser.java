@@ -21,18 +21,11 @@ package org.apache.fop.fo.expr;
 
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
-import org.apache.xmlgraphics.util.UnitConv;
-
-import org.apache.fop.datatypes.Length;
-import org.apache.fop.datatypes.LengthBase;
-import org.apache.fop.datatypes.Numeric;
-import org.apache.fop.datatypes.PercentBase;
-import org.apache.fop.fo.properties.ColorProperty;
 import org.apache.fop.fo.properties.FixedLength;
-import org.apache.fop.fo.properties.ListProperty;
 import org.apache.fop.fo.properties.NumberProperty;
-import org.apache.fop.fo.properties.PercentLength;
 import org.apache.fop.fo.properties.Property;
 import org.apache.fop.fo.properties.StringProperty;
 
@@ -40,13 +33,23 @@ import org.apache.fop.fo.properties.StringProperty;
  * Class to parse XSL-FO property expressions.
  * This class is heavily based on the epxression parser in James Clark's
  * XT, an XSLT processor.
+ * <p>
+ * Expressions are compiled into a tree of {@link PropertyExpression}s, which is cached
+ * by the text of the expression and evaluated in the context of each property list.
+ * Documents tend to repeat a small number of distinct expressions many times.
  */
 public final class PropertyParser extends PropertyTokenizer {
-    private PropertyInfo propInfo;    // Maker and propertyList related info
 
     private static final String RELUNIT = "em";
     private static final HashMap FUNCTION_TABLE = new HashMap();
 
+    /** The maximum number of cached expressions, the cache is cleared when it is full */
+    private static final int MAX_CACHED_EXPRESSIONS = 4096;
+
+    /** The compiled expressions by their text */
+    private static final ConcurrentMap<String, PropertyExpression> EXPRESSION_CACHE
+            = new ConcurrentHashMap<String, PropertyExpression>();
+
     static {
         // Initialize the HashMap of XSL-defined functions
         FUNCTION_TABLE.put("ceiling", new CeilingFunction());
@@ -89,79 +92,89 @@ public final class PropertyParser extends PropertyTokenizer {
     public static Property parse(String expr, PropertyInfo propInfo)
             throws PropertyException {
         try {
-            return new PropertyParser(expr, propInfo).parseProperty();
+            return compile(expr).evaluate(propInfo);
         } catch (PropertyException exc) {
             exc.setPropertyInfo(propInfo);
             throw exc;
         }
     }
 
+    /**
+     * Compiles a property expression, or returns the cached compiled expression.
+     * @param expr The specified value (attribute on the xml element).
+     * @return the compiled expression
+     * @throws PropertyException If the "expr" cannot be parsed.
+     */
+    static PropertyExpression compile(String expr) throws PropertyException {
+        PropertyExpression compiled = EXPRESSION_CACHE.get(expr);
+        if (compiled == null) {
+            compiled = new PropertyParser(expr).parseProperty();
+            if (EXPRESSION_CACHE.size() >= MAX_CACHED_EXPRESSIONS) {
+                EXPRESSION_CACHE.clear();
+            }
+            EXPRESSION_CACHE.put(expr, compiled);
+        }
+        return compiled;
+    }
 
     /**
-     * Private constructor. Called by the static parse() method.
+     * Private constructor. Called by the static compile() method.
      * @param propExpr The specified value (attribute on the xml element).
-     * @param pInfo A PropertyInfo object representing the context in
-     * which the property expression is to be evaluated.
      */
-    private PropertyParser(String propExpr, PropertyInfo pInfo) {
+    private PropertyParser(String propExpr) {
         super(propExpr);
-        this.propInfo = pInfo;
     }
 
     /**
      * Parse the property expression described in the instance variables.
      * Note: If the property expression String is empty, a StringProperty
      * object holding an empty String is returned.
-     * @return A Property object holding the parsed result.
+     * @return The compiled expression.
      * @throws PropertyException If the "expr" cannot be parsed as a Property.
      */
-    private Property parseProperty() throws PropertyException {
+    private PropertyExpression parseProperty() throws PropertyException {
         next();
         if (currentToken == TOK_EOF) {
             // if prop value is empty string, force to StringProperty
-            return StringProperty.getInstance("");
+            return new PropertyExpression.Constant(StringProperty.getInstance(""));
         }
-        ListProperty propList = null;
+        List<PropertyExpression> propList = null;
         while (true) {
-            Property prop = parseAdditiveExpr();
+            PropertyExpression prop = parseAdditiveExpr();
             if (currentToken == TOK_EOF) {
                 if (propList != null) {
-                    propList.addProperty(prop);
-                    return propList;
+                    propList.add(prop);
+                    return new PropertyExpression.ListExpression(
+                            propList.toArray(new PropertyExpression[propList.size()]));
                 } else {
                     return prop;
                 }
             } else {
                 if (propList == null) {
-                    propList = new ListProperty(prop);
-                } else {
-                    propList.addProperty(prop);
+                    propList = new java.util.ArrayList<PropertyExpression>();
                 }
+                propList.add(prop);
             }
-            // throw new PropertyException("unexpected token");
         }
-        // return prop;
     }
 
     /**
-     * Try to parse an addition or subtraction expression and return the
-     * resulting Property.
+     * Try to parse an addition or subtraction expression.
      */
-    private Property parseAdditiveExpr() throws PropertyException {
-        // Evaluate and put result on the operand stack
-        Property prop = parseMultiplicativeExpr();
+    private PropertyExpression parseAdditiveExpr() throws PropertyException {
+        PropertyExpression prop = parseMultiplicativeExpr();
         loop:
         while (true) {
             switch (currentToken) {
             case TOK_PLUS:
                 next();
-                prop = evalAddition(prop.getNumeric(),
-                                    parseMultiplicativeExpr().getNumeric());
+                prop = new PropertyExpression.Operation(PropertyExpression.Operation.ADDITION,
+                        prop, parseMultiplicativeExpr());
                 break;
             case TOK_MINUS:
                 next();
-                prop = evalSubtraction(prop.getNumeric(),
-                                    parseMultiplicativeExpr().getNumeric());
+                prop = new PropertyExpression.Operation(PropertyExpression.Operation.SUBTRACTION,
+                        prop, parseMultiplicativeExpr());
                 break;
             default:
                 break loop;
@@ -171,28 +184,27 @@ public final class PropertyParser extends PropertyTokenizer {
     }
 
     /**
-     * Try to parse a multiply, divide or modulo expression and return
-     * the resulting Property.
+     * Try to parse a multiply, divide or modulo expression.
      */
-    private Property parseMultiplicativeExpr() throws PropertyException {
-        Property prop = parseUnaryExpr();
+    private PropertyExpression parseMultiplicativeExpr() throws PropertyException {
+        PropertyExpression prop = parseUnaryExpr();
         loop:
         while (true) {
             switch (currentToken) {
             case TOK_DIV:
                 next();
-                prop = evalDivide(prop.getNumeric(),
-                                  parseUnaryExpr().getNumeric());
+                prop = new PropertyExpression.Operation(PropertyExpression.Operation.DIVIDE,
+                        prop, parseUnaryExpr());
                 break;
             case TOK_MOD:
                 next();
-                prop = evalModulo(prop.getNumber(),
-                                  parseUnaryExpr().getNumber());
+                prop = new PropertyExpression.Operation(PropertyExpression.Operation.MODULO,
+                        prop, parseUnaryExpr());
                 break;
             case TOK_MULTIPLY:
                 next();
-                prop = evalMultiply(prop.getNumeric(),
-                                    parseUnaryExpr().getNumeric());
+                prop = new PropertyExpression.Operation(PropertyExpression.Operation.MULTIPLY,
+                        prop, parseUnaryExpr());
                 break;
             default:
                 break loop;
@@ -202,13 +214,12 @@ public final class PropertyParser extends PropertyTokenizer {
     }
 
     /**
-     * Try to parse a unary minus expression and return the
-     * resulting Property.
+     * Try to parse a unary minus expression.
      */
-    private Property parseUnaryExpr() throws PropertyException {
+    private PropertyExpression parseUnaryExpr() throws PropertyException {
         if (currentToken == TOK_MINUS) {
             next();
-            return evalNegate(parseUnaryExpr().getNumeric());
+            return new PropertyExpression.Negation(parseUnaryExpr());
         }
         return parsePrimaryExpr();
     }
@@ -226,15 +237,15 @@ public final class PropertyParser extends PropertyTokenizer {
     }
 
     /**
-     * Try to parse a primary expression and return the
-     * resulting Property.
+     * Try to parse a primary expression.
      * A primary expression is either a parenthesized expression or an
      * expression representing a primitive Property datatype, such as a
      * string literal, an NCname, a number or a unit expression, or a
      * function call expression.
+     * Values that do not depend on the context are resolved right away.
      */
-    private Property parsePrimaryExpr() throws PropertyException {
-        Property prop;
+    private PropertyExpression parsePrimaryExpr() throws PropertyException {
+        PropertyExpression prop;
         if (currentToken == TOK_COMMA) {
             //Simply skip commas, for example for font-family
             next();
@@ -247,57 +258,27 @@ public final class PropertyParser extends PropertyTokenizer {
             return prop;
 
         case TOK_LITERAL:
-            prop = StringProperty.getInstance(currentTokenValue);
+            prop = new PropertyExpression.Constant(StringProperty.getInstance(currentTokenValue));
             break;
 
         case TOK_NCNAME:
             // Interpret this in context of the property or do it later?
-            prop = new NCnameProperty(currentTokenValue);
+            prop = new PropertyExpression.NCName(currentTokenValue);
             break;
 
         case TOK_FLOAT:
-            prop = NumberProperty.getInstance(Double.valueOf(currentTokenValue));
+            prop = new PropertyExpression.Constant(
+                    NumberProperty.getInstance(Double.valueOf(currentTokenValue)));
             break;
 
         case TOK_INTEGER:
-            prop = NumberProperty.getInstance(Integer.valueOf(currentTokenValue));
+            prop = new PropertyExpression.Constant(
+                    NumberProperty.getInstance(Integer.valueOf(currentTokenValue)));
             break;
 
         case TOK_PERCENT:
-            /*
-             * Get the length base value object from the Maker. If null, then
-             * this property can't have % values. Treat it as a real number.
-             */
-            double pcval = Double.parseDouble(
-                    currentTokenValue.substring(0, currentTokenValue.length() - 1)) / 100.0;
-            PercentBase pcBase = this.propInfo.getPercentBase();
-            if (pcBase != null) {
-                if (pcBase.getDimension() == 0) {
-                    prop = NumberProperty.getInstance(pcval * pcBase.getBaseValue());
-                } else if (pcBase.getDimension() == 1) {
-                    if (pcBase instanceof LengthBase) {
-                        if (pcval == 0.0) {
-                            prop = FixedLength.ZERO_FIXED_LENGTH;
-                            break;
-                        }
-
-                        //If the base of the percentage is known
-                        //and absolute, it can be resolved by the
-                        //parser
-                        Length base = ((LengthBase)pcBase).getBaseLength();
-                        if (base != null && base.isAbsolute()) {
-                            prop = FixedLength.getInstance(pcval * base.getValue());
-                            break;
-                        }
-                    }
-                    prop = new PercentLength(pcval, pcBase);
-                } else {
-                    throw new PropertyException("Illegal percent dimension value");
-                }
-            } else {
-                // WARNING? Interpret as a decimal fraction, eg. 50% = .5
-                prop = NumberProperty.getInstance(pcval);
-            }
+            prop = new PropertyExpression.Percentage(Double.parseDouble(
+                    currentTokenValue.substring(0, currentTokenValue.length() - 1)) / 100.0);
             break;
 
         case TOK_NUMERIC:
@@ -306,27 +287,18 @@ public final class PropertyParser extends PropertyTokenizer {
             String unitPart = currentTokenValue.substring(numLen);
             double numPart = Double.parseDouble(currentTokenValue.substring(0, numLen));
             if (RELUNIT.equals(unitPart)) {
-                prop = (Property) NumericOp.multiply(
-                                    NumberProperty.getInstance(numPart),
-                                    propInfo.currentFontSize());
+                prop = new PropertyExpression.RelativeLength(numPart);
+            } else if ("px".equals(unitPart)) {
+                prop = new PropertyExpression.PixelLength(numPart);
             } else {
-                if ("px".equals(unitPart)) {
-                    //pass the ratio between target-resolution and
-                    //the default resolution of 72dpi
-                    float resolution = propInfo.getPropertyList().getFObj()
-                            .getUserAgent().getSourceResolution();
-                    prop = FixedLength.getInstance(
-                            numPart, unitPart,
-                             UnitConv.IN2PT / resolution);
-                } else {
-                    //use default resolution of 72dpi
-                    prop = FixedLength.getInstance(numPart, unitPart);
-                }
+                //use default resolution of 72dpi
+                prop = new PropertyExpression.Constant(
+                        FixedLength.getInstance(numPart, unitPart));
             }
             break;
 
         case TOK_COLORSPEC:
-            prop = ColorProperty.getInstance(propInfo.getUserAgent(), currentTokenValue);
+            prop = new PropertyExpression.ColorSpecification(currentTokenValue);
             break;
 
         case TOK_FUNCTION_LPAR:
@@ -336,11 +308,7 @@ public final class PropertyParser extends PropertyTokenizer {
                                             + currentTokenValue);
             }
             next();
-            // Push new function (for function context: getPercentBase())
-            propInfo.pushFunction(function);
-            prop = function.eval(parseArgs(function), propInfo);
-            propInfo.popFunction();
-            return prop;
+            return new PropertyExpression.FunctionCall(function, parseArgs(function));
 
         default:
             // TODO: add the token or the expr to the error message.
@@ -353,23 +321,25 @@ public final class PropertyParser extends PropertyTokenizer {
     /**
      * Parse a comma separated list of function arguments. Each argument
      * may itself be an expression. This method consumes the closing right
-     * parenthesis of the argument list.
+     * parenthesis of the argument list. Defaults for missing optional
+     * arguments are supplied when the function call is evaluated.
      * @param function The function object for which the arguments are collected.
-     * @return An array of Property objects representing the arguments found.
+     * @return An array of expressions representing the arguments found.
      * @throws PropertyException If the number of arguments found isn't equal
      * to the number expected or if another argument parsing error occurs.
      */
-    Property[] parseArgs(Function function) throws PropertyException {
+    PropertyExpression[] parseArgs(Function function) throws PropertyException {
         int numReq = function.getRequiredArgsCount();   // # required args
         int numOpt = function.getOptionalArgsCount();   // # optional args
         boolean hasVar = function.hasVariableArgs();    // has variable args
-        List<Property> args = new java.util.ArrayList<Property>(numReq + numOpt);
+        List<PropertyExpression> args
+                = new java.util.ArrayList<PropertyExpression>(numReq + numOpt);
         if (currentToken == TOK_RPAR) {
             // No args: func()
             next();
         } else {
             while (true) {
-                Property p = parseAdditiveExpr();
+                PropertyExpression p = parseAdditiveExpr();
                 int i = args.size();
                 if ((i < numReq) || ((i - numReq) < numOpt) || hasVar) {
                     args.add(p);
@@ -388,115 +358,8 @@ public final class PropertyParser extends PropertyTokenizer {
         if (numArgs < numReq) {
             throw new PropertyException("Expected " + numReq + " required arguments, but only "
                     + numArgs + " specified");
-        } else {
-            for (int i = 0; i < numOpt; i++) {
-                if (args.size() < (numReq + i + 1)) {
-                    args.add(function.getOptionalArgDefault(i, propInfo));
-                }
-            }
-        }
-        return args.toArray(new Property [ args.size() ]);
-    }
-
-    /**
-     * Evaluate an addition operation. If either of the arguments is null,
-     * this means that it wasn't convertible to a Numeric value.
-     * @param op1 A Numeric object (Number or Length-type object)
-     * @param op2 A Numeric object (Number or Length-type object)
-     * @return A new NumericProperty object holding an object which represents
-     * the sum of the two operands.
-     * @throws PropertyException If either operand is null.
-     */
-    private Property evalAddition(Numeric op1,
-                                  Numeric op2) throws PropertyException {
-        if (op1 == null || op2 == null) {
-            throw new PropertyException("Non numeric operand in addition");
-        }
-        return (Property) NumericOp.addition(op1, op2);
-    }
-
-    /**
-     * Evaluate a subtraction operation. If either of the arguments is null,
-     * this means that it wasn't convertible to a Numeric value.
-     * @param op1 A Numeric object (Number or Length-type object)
-     * @param op2 A Numeric object (Number or Length-type object)
-     * @return A new NumericProperty object holding an object which represents
-     * the difference of the two operands.
-     * @throws PropertyException If either operand is null.
-     */
-    private Property evalSubtraction(Numeric op1,
-                                     Numeric op2) throws PropertyException {
-        if (op1 == null || op2 == null) {
-            throw new PropertyException("Non numeric operand in subtraction");
-        }
-        return (Property) NumericOp.subtraction(op1, op2);
-    }
-
-    /**
-     * Evaluate a unary minus operation. If the argument is null,
-     * this means that it wasn't convertible to a Numeric value.
-     * @param op A Numeric object (Number or Length-type object)
-     * @return A new NumericProperty object holding an object which represents
-     * the negative of the operand (multiplication by *1).
-     * @throws PropertyException If the operand is null.
-     */
-    private Property evalNegate(Numeric op) throws PropertyException {
-        if (op == null) {
-            throw new PropertyException("Non numeric operand to unary minus");
-        }
-        return (Property) NumericOp.negate(op);
-    }
-
-    /**
-     * Evaluate a multiplication operation. If either of the arguments is null,
-     * this means that it wasn't convertible to a Numeric value.
-     * @param op1 A Numeric object (Number or Length-type object)
-     * @param op2 A Numeric object (Number or Length-type object)
-     * @return A new NumericProperty object holding an object which represents
-     * the product of the two operands.
-     * @throws PropertyException If either operand is null.
-     */
-    private Property evalMultiply(Numeric op1,
-                                  Numeric op2) throws PropertyException {
-        if (op1 == null || op2 == null) {
-            throw new PropertyException("Non numeric operand in multiplication");
-        }
-        return (Property) NumericOp.multiply(op1, op2);
-    }
-
-
-    /**
-     * Evaluate a division operation. If either of the arguments is null,
-     * this means that it wasn't convertible to a Numeric value.
-     * @param op1 A Numeric object (Number or Length-type object)
-     * @param op2 A Numeric object (Number or Length-type object)
-     * @return A new NumericProperty object holding an object which represents
-     * op1 divided by op2.
-     * @throws PropertyException If either operand is null.
-     */
-    private Property evalDivide(Numeric op1,
-                                Numeric op2) throws PropertyException {
-        if (op1 == null || op2 == null) {
-            throw new PropertyException("Non numeric operand in division");
-        }
-        return (Property) NumericOp.divide(op1, op2);
-    }
-
-    /**
-     * Evaluate a modulo operation. If either of the arguments is null,
-     * this means that it wasn't convertible to a Number value.
-     * @param op1 A Number object
-     * @param op2 A Number object
-     * @return A new NumberProperty object holding an object which represents
-     * op1 mod op2.
-     * @throws PropertyException If either operand is null.
-     */
-    private Property evalModulo(Number op1,
-                                Number op2) throws PropertyException {
-        if (op1 == null || op2 == null) {
-            throw new PropertyException("Non number operand to modulo");
         }
-        return NumberProperty.getInstance(op1.doubleValue() % op2.doubleValue());
+        return args.toArray(new PropertyExpression[numArgs]);
     }
 
 }
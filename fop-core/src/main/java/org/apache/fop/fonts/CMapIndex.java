@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.fonts;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Immutable lookup index over a font's character map. The segments are sorted by their
+ * Unicode start value and a page table (256 code points per page) narrows every lookup down
+ * to the few segments intersecting the code point's page, which are then binary searched.
+ * <p>
+ * The index covers the segments of the character map at the time it was built. If the
+ * segments overlap, the order of the character map is significant and the index covers no
+ * segments at all, leaving the lookup to a linear scan of the character map.
+ */
+final class CMapIndex {
+
+    private static final int PAGE_SHIFT = 8;
+
+    private static final Comparator<CMapSegment> START_ORDER = new Comparator<CMapSegment>() {
+        public int compare(CMapSegment s1, CMapSegment s2) {
+            return s1.getUnicodeStart() < s2.getUnicodeStart() ? -1
+                    : (s1.getUnicodeStart() == s2.getUnicodeStart() ? 0 : 1);
+        }
+    };
+
+    private final int[] starts;
+
+    private final int[] ends;
+
+    private final int[] glyphStarts;
+
+    /** Index of the first segment ending at or after the first code point of each page. */
+    private final int[] pages;
+
+    private final int builtAt;
+
+    private CMapIndex(int[] starts, int[] ends, int[] glyphStarts, int[] pages, int builtAt) {
+        this.starts = starts;
+        this.ends = ends;
+        this.glyphStarts = glyphStarts;
+        this.pages = pages;
+        this.builtAt = builtAt;
+    }
+
+    /**
+     * Builds an index over the given character map.
+     * @param cmap the character map
+     * @return the index
+     */
+    static CMapIndex build(List<CMapSegment> cmap) {
+        int size = cmap.size();
+        CMapSegment[] segments = cmap.toArray(new CMapSegment[size]);
+        Arrays.sort(segments, START_ORDER);
+        int[] starts = new int[size];
+        int[] ends = new int[size];
+        int[] glyphStarts = new int[size];
+        for (int i = 0; i < size; i++) {
+            CMapSegment segment = segments[i];
+            starts[i] = segment.getUnicodeStart();
+            ends[i] = segment.getUnicodeEnd();
+            glyphStarts[i] = segment.getGlyphStartIndex();
+            if (starts[i] < 0 || ends[i] < starts[i] || (i > 0 && starts[i] <= ends[i - 1])) {
+                return new CMapIndex(new int[0], new int[0], new int[0], new int[] {0}, size);
+            }
+        }
+        int lastPage = size > 0 ? ends[size - 1] >>> PAGE_SHIFT : -1;
+        int[] pages = new int[lastPage + 2];
+        int segment = 0;
+        for (int page = 0; page < pages.length; page++) {
+            int firstCodePoint = page << PAGE_SHIFT;
+            while (segment < size && ends[segment] < firstCodePoint) {
+                segment++;
+            }
+            pages[page] = segment;
+        }
+        return new CMapIndex(starts, ends, glyphStarts, pages, size);
+    }
+
+    /**
+     * Returns the number of character map segments the index was built from. Segments
+     * added to the character map afterwards are not covered by this index.
+     * @return the size of the character map when the index was built
+     */
+    int getBuiltAt() {
+        return builtAt;
+    }
+
+    /**
+     * Returns the number of character map segments covered by this index.
+     * @return the number of indexed segments
+     */
+    int getIndexedSegmentCount() {
+        return starts.length;
+    }
+
+    /**
+     * Returns the glyph index for a Unicode code point.
+     * @param c the Unicode code point
+     * @return the glyph index, or {@link SingleByteEncoding#NOT_FOUND_CODE_POINT} if no indexed
+     * segment contains the code point
+     */
+    int findGlyphIndex(int c) {
+        int page = c >>> PAGE_SHIFT;
+        if (c < 0 || page >= pages.length - 1) {
+            return SingleByteEncoding.NOT_FOUND_CODE_POINT;
+        }
+        int lo = pages[page];
+        int hi = Math.min(pages[page + 1], starts.length - 1);
+        // find the last segment starting at or before c
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (starts[mid] <= c) {
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        if (hi >= 0 && starts[hi] <= c && c <= ends[hi]) {
+            return glyphStarts[hi] + c - starts[hi];
+        }
+        return SingleByteEncoding.NOT_FOUND_CODE_POINT;
+    }
+}
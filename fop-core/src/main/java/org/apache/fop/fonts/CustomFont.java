@@ -487,6 +487,7 @@ public abstract class CustomFont extends Typeface
      */
     public void setKerningEnabled(boolean enabled) {
         this.useKerning = enabled;
+        invalidateKerningTable();
     }
 
     /**
@@ -513,6 +514,7 @@ public abstract class CustomFont extends Typeface
             kerning = new HashMap<Integer, Map<Integer, Integer>>();
         }
         this.kerning.put(key, value);
+        invalidateKerningTable();
     }
 
     /**
@@ -526,6 +528,7 @@ public abstract class CustomFont extends Typeface
         } else {
             this.kerning = kerningMap;
         }
+        invalidateKerningTable();
     }
 
     /**
@@ -22,6 +22,7 @@ package org.apache.fop.fonts;
 import java.util.List;
 
 import org.apache.fop.apps.io.InternalResourceResolver;
+import org.apache.fop.fonts.truetype.FontMetricsCache;
 
 /**
  * Sets up a set of custom (embedded) fonts
@@ -31,6 +32,7 @@ public class CustomFontCollection implements FontCollection {
     private final List<EmbedFontInfo> embedFontInfoList;
     private final InternalResourceResolver uriResolver;
     private final boolean useComplexScripts;
+    private final FontMetricsCache metricsCache;
 
     /**
      * Main constructor.
@@ -40,9 +42,23 @@ public class CustomFontCollection implements FontCollection {
      */
     public CustomFontCollection(InternalResourceResolver fontResolver,
             List<EmbedFontInfo> customFonts, boolean useComplexScriptFeatures) {
+        this(fontResolver, customFonts, useComplexScriptFeatures, null);
+    }
+
+    /**
+     * Creates a collection whose fonts load their metrics through a persistent cache if possible.
+     * @param fontResolver a font resolver
+     * @param customFonts the list of custom fonts
+     * @param useComplexScriptFeatures true if complex script features enabled
+     * @param metricsCache the font metrics cache (may be null)
+     */
+    public CustomFontCollection(InternalResourceResolver fontResolver,
+            List<EmbedFontInfo> customFonts, boolean useComplexScriptFeatures,
+            FontMetricsCache metricsCache) {
         this.uriResolver = fontResolver;
         this.embedFontInfoList = customFonts;
         this.useComplexScripts = useComplexScriptFeatures;
+        this.metricsCache = metricsCache;
     }
 
     /** {@inheritDoc} */
@@ -57,7 +73,7 @@ public class CustomFontCollection implements FontCollection {
             internalName = "F" + num;
             num++;
 
-            LazyFont font = new LazyFont(embedFontInfo, this.uriResolver, useComplexScripts);
+            LazyFont font = new LazyFont(embedFontInfo, this.uriResolver, useComplexScripts, metricsCache);
             fontInfo.addMetrics(internalName, font);
 
             List<FontTriplet> triplets = embedFontInfo.getFontTriplets();
@@ -116,6 +116,7 @@ public class DefaultFontConfigurator implements FontConfigurator<EmbedFontInfo>
         for (Directory directory : directories) {
             // add fonts found in directory
             FontFileFinder fontFileFinder = new FontFileFinder(directory.isRecursive() ? -1 : 1, listener);
+            fontFileFinder.setParallelism(fontManager.getFontDetectionParallelism());
             List<URL> fontURLList;
             try {
                 fontURLList = fontFileFinder.find(directory.getDirectory());
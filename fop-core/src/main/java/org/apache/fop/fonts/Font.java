@@ -204,6 +204,10 @@ public class Font implements Substitutable, Positionable {
             return 0;
         }
 
+        if (metric instanceof Typeface) {
+            int width = ((Typeface) metric).getKerningTable().get(ch1, ch2);
+            return width * getFontSize() / 1000;
+        }
         Map<Integer, Integer> kernPair = getKerning().get(ch1);
         if (kernPair != null) {
             Integer width = kernPair.get(ch2);
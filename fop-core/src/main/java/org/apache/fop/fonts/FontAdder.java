@@ -19,9 +19,17 @@
 
 package org.apache.fop.fonts;
 
+import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import org.apache.fop.apps.io.InternalResourceResolver;
 import org.apache.fop.fonts.autodetect.FontInfoFinder;
@@ -59,15 +67,69 @@ public class FontAdder {
         FontInfoFinder finder = new FontInfoFinder();
         finder.setEventListener(listener);
 
+        int parallelism = Math.min(manager.getFontDetectionParallelism(), fontURLList.size());
+        if (parallelism > 1) {
+            addConcurrently(fontURLList, fontInfoList, finder, cache, parallelism);
+            return;
+        }
+        for (URL fontURL : fontURLList) {
+            addFontInfos(finder.find(fontURL.toURI(), resourceResolver, cache), fontInfoList);
+        }
+    }
+
+    /**
+     * Probes the font files on a pool of threads. The font infos are added in the order of
+     * the font URL list, just as if the fonts had been probed one after the other.
+     */
+    private void addConcurrently(List<URL> fontURLList, List<EmbedFontInfo> fontInfoList,
+            final FontInfoFinder finder, final FontCache cache, int parallelism)
+            throws URISyntaxException {
+        List<URI> fontURIList = new ArrayList<URI>(fontURLList.size());
         for (URL fontURL : fontURLList) {
-            EmbedFontInfo[] embedFontInfos = finder.find(fontURL.toURI(), resourceResolver, cache);
-            if (embedFontInfos == null) {
-                continue;
+            fontURIList.add(fontURL.toURI());
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "FOP font detection");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        try {
+            List<Future<EmbedFontInfo[]>> results = new ArrayList<Future<EmbedFontInfo[]>>();
+            for (final URI fontURI : fontURIList) {
+                results.add(executor.submit(new Callable<EmbedFontInfo[]>() {
+                    public EmbedFontInfo[] call() {
+                        return finder.find(fontURI, resourceResolver, cache);
+                    }
+                }));
+            }
+            for (Future<EmbedFontInfo[]> result : results) {
+                addFontInfos(result.get(), fontInfoList);
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while detecting fonts", ie);
+        } catch (ExecutionException ee) {
+            Throwable cause = ee.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
             }
-            for (EmbedFontInfo fontInfo : embedFontInfos) {
-                if (fontInfo != null) {
-                    fontInfoList.add(fontInfo);
-                }
+            throw new IllegalStateException(cause);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void addFontInfos(EmbedFontInfo[] embedFontInfos, List<EmbedFontInfo> fontInfoList) {
+        if (embedFontInfos == null) {
+            return;
+        }
+        for (EmbedFontInfo fontInfo : embedFontInfos) {
+            if (fontInfo != null) {
+                fontInfoList.add(fontInfo);
             }
         }
     }
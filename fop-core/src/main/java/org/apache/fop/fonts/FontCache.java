@@ -260,7 +260,9 @@ public final class FontCache implements Serializable {
      * @return boolean
      */
     public boolean containsFont(String embedUrl) {
-        return (embedUrl != null && getFontFileMap().containsKey(embedUrl));
+        synchronized (changeLock) {
+            return (embedUrl != null && getFontFileMap().containsKey(embedUrl));
+        }
     }
 
     /**
@@ -271,8 +273,10 @@ public final class FontCache implements Serializable {
      * @return font
      */
     public boolean containsFont(EmbedFontInfo fontInfo) {
-        return (fontInfo != null && getFontFileMap().containsKey(
-                getCacheKey(fontInfo)));
+        synchronized (changeLock) {
+            return (fontInfo != null && getFontFileMap().containsKey(
+                    getCacheKey(fontInfo)));
+        }
     }
 
     /**
@@ -351,7 +355,9 @@ public final class FontCache implements Serializable {
      * @return CachedFontFile object
      */
     public CachedFontFile getFontFile(String embedUrl) {
-        return containsFont(embedUrl) ? getFontFileMap().get(embedUrl) : null;
+        synchronized (changeLock) {
+            return containsFont(embedUrl) ? getFontFileMap().get(embedUrl) : null;
+        }
     }
 
     /**
@@ -367,12 +373,16 @@ public final class FontCache implements Serializable {
      *         if it is outdated
      */
     public EmbedFontInfo[] getFontInfos(String embedUrl, long lastModified) {
-        CachedFontFile cff = getFontFile(embedUrl);
-        if (cff.lastModified() == lastModified) {
-            return cff.getEmbedFontInfos();
-        } else {
-            removeFont(embedUrl);
-            return null;
+        synchronized (changeLock) {
+            CachedFontFile cff = getFontFile(embedUrl);
+            if (cff == null) {
+                return null;
+            } else if (cff.lastModified() == lastModified) {
+                return cff.getEmbedFontInfos();
+            } else {
+                removeFont(embedUrl);
+                return null;
+            }
         }
     }
 
@@ -90,6 +90,7 @@ public final class FontDetectorFactory {
                 // search in font base if it is defined and
                 // is a directory but don't recurse
                 FontFileFinder fontFileFinder = new FontFileFinder(eventListener);
+                fontFileFinder.setParallelism(fontManager.getFontDetectionParallelism());
                 URI fontBaseURI = fontManager.getResourceResolver().getBaseURI();
                 File fontBase = FileUtils.toFile(fontBaseURI.toURL());
                 if (fontBase != null) {
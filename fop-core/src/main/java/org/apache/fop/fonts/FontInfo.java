@@ -45,7 +45,7 @@ public class FontInfo {
     /** logging instance */
     protected static final Log log = LogFactory.getLog(FontInfo.class);
 
-    /** Map containing fonts that have been used */
+    /** Map containing fonts that have been used, may be updated by the rendering thread */
     private Map<String, Typeface> usedFonts; //(String = font key)
 
     /** look up a font-triplet to find a font-name */
@@ -71,7 +71,7 @@ public class FontInfo {
         this.triplets = new HashMap<FontTriplet, String>();
         this.tripletPriorities = new HashMap<FontTriplet, Integer>();
         this.fonts = new HashMap<String, Typeface>();
-        this.usedFonts = new HashMap<String, Typeface>();
+        this.usedFonts = Collections.synchronizedMap(new HashMap<String, Typeface>());
     }
 
     /**
@@ -284,7 +284,7 @@ public class FontInfo {
         usedFonts.put(internalName, fonts.get(internalName));
     }
 
-    private Map<FontTriplet, Map<Integer, Font>> getFontInstanceCache() {
+    private synchronized Map<FontTriplet, Map<Integer, Font>> getFontInstanceCache() {
         if (fontInstanceCache == null) {
             fontInstanceCache = new HashMap<FontTriplet, Map<Integer, Font>>();
         }
@@ -293,12 +293,13 @@ public class FontInfo {
 
     /**
      * Retrieves a (possibly cached) Font instance based on a FontTriplet and a font size.
+     * The cache is shared by the layout and the rendering thread.
      *
      * @param triplet the font triplet designating the requested font
      * @param fontSize the font size
      * @return the requested Font instance
      */
-    public Font getFontInstance(FontTriplet triplet, int fontSize) {
+    public synchronized Font getFontInstance(FontTriplet triplet, int fontSize) {
         Map<Integer, Font> sizes = getFontInstanceCache().get(triplet);
         if (sizes == null) {
             sizes = new HashMap<Integer, Font>();
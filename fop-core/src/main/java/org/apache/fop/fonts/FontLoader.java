@@ -26,6 +26,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import org.apache.fop.apps.io.InternalResourceResolver;
+import org.apache.fop.fonts.truetype.FontMetricsCache;
 import org.apache.fop.fonts.truetype.OFFontLoader;
 import org.apache.fop.fonts.type1.Type1FontLoader;
 
@@ -94,6 +95,30 @@ public abstract class FontLoader {
             boolean embedded, EmbeddingMode embeddingMode, EncodingMode encodingMode,
             boolean useKerning, boolean useAdvanced, InternalResourceResolver resourceResolver,
             boolean simulateStyle, boolean embedAsType1, boolean useSVG) throws IOException {
+        return loadFont(fontUris, subFontName, embedded, embeddingMode, encodingMode, useKerning,
+                useAdvanced, resourceResolver, simulateStyle, embedAsType1, useSVG, null);
+    }
+
+    /**
+     * Loads a custom font from a URI, using the given cache for the metrics of TrueType fonts.
+     * @param fontUris the URI to the font
+     * @param subFontName the sub-fontname of a font (for TrueType Collections, null otherwise)
+     * @param embedded indicates whether the font is embedded or referenced
+     * @param embeddingMode the embedding mode of the font
+     * @param encodingMode the requested encoding mode
+     * @param useKerning indicates whether kerning information should be loaded if available
+     * @param useAdvanced indicates whether advanced typographic information shall be loaded if
+     * available
+     * @param resourceResolver the font resolver to use when resolving URIs
+     * @param metricsCache the font metrics cache (may be null)
+     * @return the newly loaded font
+     * @throws IOException In case of an I/O error
+     */
+    public static CustomFont loadFont(FontUris fontUris, String subFontName,
+            boolean embedded, EmbeddingMode embeddingMode, EncodingMode encodingMode,
+            boolean useKerning, boolean useAdvanced, InternalResourceResolver resourceResolver,
+            boolean simulateStyle, boolean embedAsType1, boolean useSVG,
+            FontMetricsCache metricsCache) throws IOException {
         boolean type1 = isType1(fontUris);
         FontLoader loader;
         if (type1) {
@@ -104,8 +129,11 @@ public abstract class FontLoader {
             loader = new Type1FontLoader(fontUris, embedded, embeddingMode, useKerning,
                     resourceResolver);
         } else {
-            loader = new OFFontLoader(fontUris.getEmbed(), subFontName, embedded, embeddingMode,
-                    encodingMode, useKerning, useAdvanced, resourceResolver, simulateStyle, embedAsType1, useSVG);
+            OFFontLoader ofLoader = new OFFontLoader(fontUris.getEmbed(), subFontName, embedded,
+                    embeddingMode, encodingMode, useKerning, useAdvanced, resourceResolver, simulateStyle,
+                    embedAsType1, useSVG);
+            ofLoader.setMetricsCache(metricsCache);
+            loader = ofLoader;
         }
         return loader.getFont();
     }
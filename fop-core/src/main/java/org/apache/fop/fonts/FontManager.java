@@ -19,6 +19,7 @@
 
 package org.apache.fop.fonts;
 
+import java.io.File;
 import java.net.URI;
 import java.util.List;
 
@@ -26,6 +27,7 @@ import org.apache.fop.apps.FOPException;
 import org.apache.fop.apps.io.InternalResourceResolver;
 import org.apache.fop.fonts.FontTriplet.Matcher;
 import org.apache.fop.fonts.substitute.FontSubstitutions;
+import org.apache.fop.fonts.truetype.FontMetricsCache;
 
 // TODO: Refactor fonts package so major font activities (autodetection etc)
 // are all centrally managed and delegated from this class
@@ -43,6 +45,12 @@ public class FontManager {
 
     private FontCacheManager fontCacheManager;
 
+    /** Persistent cache of parsed font metrics (null if disabled) */
+    private FontMetricsCache fontMetricsCache;
+
+    /** Number of threads used to detect fonts */
+    private int fontDetectionParallelism = 1;
+
     /** Font substitutions */
     private FontSubstitutions fontSubstitutions;
 
@@ -133,6 +141,45 @@ public class FontManager {
         return fontCacheManager.load();
     }
 
+    /**
+     * Enables the persistent font metrics cache, which spares parsing TrueType font files
+     * whose metrics have been cached by an earlier run.
+     * @param cacheDirectoryURI the URI of the directory holding the cached metrics, relative
+     * URIs are resolved against the font base
+     */
+    public void setFontMetricsCacheDirectory(URI cacheDirectoryURI) {
+        File directory = new File(resourceResolver.resolveFromBase(cacheDirectoryURI));
+        this.fontMetricsCache = new FontMetricsCache(directory);
+    }
+
+    /**
+     * Returns the persistent font metrics cache.
+     * @return the font metrics cache, or null if it is not enabled
+     */
+    public FontMetricsCache getFontMetricsCache() {
+        return fontMetricsCache;
+    }
+
+    /**
+     * Sets the number of threads used to walk font directories and to probe the font files
+     * found there. The default, 1, detects fonts on the calling thread.
+     * @param parallelism the number of threads (at least 1)
+     */
+    public void setFontDetectionParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Font detection parallelism must be at least 1");
+        }
+        this.fontDetectionParallelism = parallelism;
+    }
+
+    /**
+     * Returns the number of threads used to detect fonts.
+     * @return the font detection parallelism
+     */
+    public int getFontDetectionParallelism() {
+        return fontDetectionParallelism;
+    }
+
     /**
      * Saves the FontCache as necessary
      *
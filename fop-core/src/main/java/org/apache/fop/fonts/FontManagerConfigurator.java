@@ -104,6 +104,26 @@ public class FontManagerConfigurator {
                 LogUtil.handleException(log, mfue, true);
             }
         }
+        if (cfg.getChild("font-metrics-cache", false) != null) {
+            try {
+                fontManager.setFontMetricsCacheDirectory(
+                        URI.create(cfg.getChild("font-metrics-cache").getValue()));
+            } catch (ConfigurationException ce) {
+                LogUtil.handleException(log, ce, strict);
+            } catch (IllegalArgumentException iae) {
+                LogUtil.handleException(log, iae, strict);
+            }
+        }
+        if (cfg.getChild("font-detection-parallelism", false) != null) {
+            try {
+                fontManager.setFontDetectionParallelism(
+                        cfg.getChild("font-detection-parallelism").getValueAsInteger());
+            } catch (ConfigurationException ce) {
+                LogUtil.handleException(log, ce, strict);
+            } catch (IllegalArgumentException iae) {
+                LogUtil.handleException(log, iae, strict);
+            }
+        }
         // [GA] permit configuration control over base14 kerning; without this,
         // there is no way for a user to enable base14 kerning other than by
         // programmatic API;
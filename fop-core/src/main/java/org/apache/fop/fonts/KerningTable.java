@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.fonts;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Immutable, compact representation of a font's kerning map. The character pairs are packed
+ * into a single <code>long</code> key and stored in an open-addressing hash table so that
+ * looking up a kerning value does neither box the characters nor traverse nested maps.
+ */
+final class KerningTable {
+
+    /** Marks an unused slot. The pair (Integer.MIN_VALUE, 0) is never looked up. */
+    private static final long FREE = Long.MIN_VALUE;
+
+    /** A kerning table without any entries. */
+    static final KerningTable EMPTY = new KerningTable(new long[] {FREE}, new int[1], 0);
+
+    private final long[] keys;
+
+    private final int[] values;
+
+    private final int mask;
+
+    private final int size;
+
+    private KerningTable(long[] keys, int[] values, int size) {
+        this.keys = keys;
+        this.values = values;
+        this.mask = keys.length - 1;
+        this.size = size;
+    }
+
+    /**
+     * Compiles a kerning map as returned by {@link FontMetrics#getKerningInfo()}.
+     * @param kerning the kerning map (first character -> (second character -> kerning value))
+     * @return the compiled kerning table
+     */
+    static KerningTable compile(Map<Integer, Map<Integer, Integer>> kerning) {
+        int count = 0;
+        for (Map<Integer, Integer> pairs : kerning.values()) {
+            if (pairs != null) {
+                count += pairs.size();
+            }
+        }
+        if (count == 0) {
+            return EMPTY;
+        }
+        // keep the load factor at or below 0.5
+        int capacity = Integer.highestOneBit(count) << 2;
+        long[] keys = new long[capacity];
+        int[] values = new int[capacity];
+        Arrays.fill(keys, FREE);
+        int mask = capacity - 1;
+        int size = 0;
+        for (Map.Entry<Integer, Map<Integer, Integer>> first : kerning.entrySet()) {
+            if (first.getKey() == null || first.getValue() == null) {
+                continue;
+            }
+            int ch1 = first.getKey();
+            for (Map.Entry<Integer, Integer> second : first.getValue().entrySet()) {
+                if (second.getKey() == null || second.getValue() == null) {
+                    continue;
+                }
+                long key = pack(ch1, second.getKey());
+                if (key == FREE) {
+                    continue;
+                }
+                int slot = hash(key) & mask;
+                while (keys[slot] != FREE && keys[slot] != key) {
+                    slot = (slot + 1) & mask;
+                }
+                if (keys[slot] == FREE) {
+                    size++;
+                }
+                keys[slot] = key;
+                values[slot] = second.getValue();
+            }
+        }
+        return new KerningTable(keys, values, size);
+    }
+
+    /**
+     * Returns the kerning value for a pair of characters.
+     * @param ch1 the first character
+     * @param ch2 the second character
+     * @return the kerning value (in font units), 0 if there is no kerning for the pair
+     */
+    int get(int ch1, int ch2) {
+        if (size == 0) {
+            return 0;
+        }
+        long key = pack(ch1, ch2);
+        int slot = hash(key) & mask;
+        long k;
+        while ((k = keys[slot]) != FREE) {
+            if (k == key) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the number of kerning pairs in this table.
+     * @return the number of kerning pairs
+     */
+    int size() {
+        return size;
+    }
+
+    private static long pack(int ch1, int ch2) {
+        return ((long) ch1 << 32) | (ch2 & 0xFFFFFFFFL);
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32) ^ (int) h;
+    }
+}
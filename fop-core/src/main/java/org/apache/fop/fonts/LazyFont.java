@@ -33,6 +33,7 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.fop.apps.io.InternalResourceResolver;
 import org.apache.fop.complexscripts.fonts.Positionable;
 import org.apache.fop.complexscripts.fonts.Substitutable;
+import org.apache.fop.fonts.truetype.FontMetricsCache;
 
 /**
  * This class is used to defer the loading of a font until it is really used.
@@ -53,8 +54,9 @@ public class LazyFont extends Typeface implements FontDescriptor, Substitutable,
     private final String subFontName;
     private final boolean embedded;
     private final InternalResourceResolver resourceResolver;
+    private final FontMetricsCache metricsCache;
 
-    private boolean isMetricsLoaded;
+    private volatile boolean isMetricsLoaded;
     private Typeface realFont;
     private FontDescriptor realFontDescriptor;
 
@@ -65,6 +67,18 @@ public class LazyFont extends Typeface implements FontDescriptor, Substitutable,
      */
     public LazyFont(EmbedFontInfo fontInfo, InternalResourceResolver resourceResolver,
             boolean useComplexScripts) {
+        this(fontInfo, resourceResolver, useComplexScripts, null);
+    }
+
+    /**
+     * Creates a lazy font which loads the font metrics through a persistent cache if possible.
+     * @param fontInfo  the font info to embed
+     * @param resourceResolver the font resolver to handle font URIs
+     * @param useComplexScripts true if complex script features are enabled
+     * @param metricsCache the font metrics cache (may be null)
+     */
+    public LazyFont(EmbedFontInfo fontInfo, InternalResourceResolver resourceResolver,
+            boolean useComplexScripts, FontMetricsCache metricsCache) {
 
         this.fontUris = fontInfo.getFontUris();
         this.useKerning = fontInfo.getKerning();
@@ -83,6 +97,7 @@ public class LazyFont extends Typeface implements FontDescriptor, Substitutable,
         this.subFontName = fontInfo.getSubFontName();
         this.embedded = fontInfo.isEmbedded();
         this.resourceResolver = resourceResolver;
+        this.metricsCache = metricsCache;
     }
 
     /** {@inheritDoc} */
@@ -97,7 +112,7 @@ public class LazyFont extends Typeface implements FontDescriptor, Substitutable,
         return sbuf.toString();
     }
 
-    private void load(boolean fail) {
+    private synchronized void load(boolean fail) {
         if (!isMetricsLoaded) {
             try {
                 if (fontUris.getMetrics() != null) {
@@ -119,7 +134,8 @@ public class LazyFont extends Typeface implements FontDescriptor, Substitutable,
                         throw new RuntimeException("Cannot load font. No font URIs available.");
                     }
                     realFont = FontLoader.loadFont(fontUris, subFontName, embedded, embeddingMode, encodingMode,
-                            useKerning, useAdvanced, resourceResolver, simulateStyle, embedAsType1, useSVG);
+                            useKerning, useAdvanced, resourceResolver, simulateStyle, embedAsType1, useSVG,
+                            metricsCache);
                 }
                 if (realFont instanceof FontDescriptor) {
                     realFontDescriptor = (FontDescriptor) realFont;
@@ -321,6 +337,12 @@ public class LazyFont extends Typeface implements FontDescriptor, Substitutable,
         return realFont.getKerningInfo();
     }
 
+    @Override
+    KerningTable getKerningTable() {
+        load(true);
+        return realFont.getKerningTable();
+    }
+
     /** {@inheritDoc} */
     public boolean hasFeature(int tableType, String script, String language, String feature) {
         load(true);
@@ -24,6 +24,7 @@ import java.io.InputStream;
 import java.nio.CharBuffer;
 import java.nio.IntBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -85,6 +86,10 @@ public class MultiByteFont extends CIDFont implements Substitutable, Positionabl
     private static final int NUM_MOST_LIKELY_GLYPHS = 256;
     private int[] mostLikelyGlyphs = new int[NUM_MOST_LIKELY_GLYPHS];
 
+    /** The number of segments appended to the cmap after which the lookup index is rebuilt. */
+    private static final int MAX_UNINDEXED_SEGMENTS = 64;
+    private volatile CMapIndex cmapIndex;
+
     //A map to store each used glyph from the CID set against the glyph name.
     private LinkedHashMap<Integer, String> usedGlyphNames = new LinkedHashMap<Integer, String>();
 
@@ -219,7 +224,6 @@ public class MultiByteFont extends CIDFont implements Substitutable, Positionabl
      * @param c the Unicode character index
      * @return the glyph index (or 0 if the glyph is not available)
      */
-    // [TBD] - needs optimization, i.e., change from linear search to binary search
     public int findGlyphIndex(int c) {
         int idx = c;
         int retIdx = SingleByteEncoding.NOT_FOUND_CODE_POINT;
@@ -229,24 +233,46 @@ public class MultiByteFont extends CIDFont implements Substitutable, Positionabl
         if (idx < NUM_MOST_LIKELY_GLYPHS && mostLikelyGlyphs[idx] != 0) {
             return mostLikelyGlyphs[idx];
         }
-        for (CMapSegment i : cmap) {
-            if (retIdx == 0
-                    && i.getUnicodeStart() <= idx
-                    && i.getUnicodeEnd() >= idx) {
+        CMapIndex index = getCMapIndex();
+        if (index.getIndexedSegmentCount() > 0) {
+            retIdx = index.findGlyphIndex(idx);
+        }
+        // segments not covered by the index (e.g. private use mappings added since it was built)
+        for (int s = index.getIndexedSegmentCount(), n = cmap.size(); retIdx == 0 && s < n; s++) {
+            CMapSegment i = cmap.get(s);
+            if (i.getUnicodeStart() <= idx && i.getUnicodeEnd() >= idx) {
                 retIdx = i.getGlyphStartIndex()
                     + idx
                     - i.getUnicodeStart();
-                if (idx < NUM_MOST_LIKELY_GLYPHS) {
-                    mostLikelyGlyphs[idx] = retIdx;
-                }
-                if (retIdx != 0) {
-                    break;
-                }
             }
         }
+        if (retIdx != 0 && idx < NUM_MOST_LIKELY_GLYPHS) {
+            mostLikelyGlyphs[idx] = retIdx;
+        }
         return retIdx;
     }
 
+    /**
+     * Returns the lookup index over the character map, (re)building it if the character map
+     * was replaced or too many segments were appended since it was built.
+     */
+    private CMapIndex getCMapIndex() {
+        CMapIndex index = cmapIndex;
+        if (index == null || cmap.size() - index.getBuiltAt() > MAX_UNINDEXED_SEGMENTS) {
+            index = CMapIndex.build(cmap);
+            cmapIndex = index;
+        }
+        return index;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setCMap(CMapSegment[] cmap) {
+        super.setCMap(cmap);
+        cmapIndex = null;
+        Arrays.fill(mostLikelyGlyphs, 0);
+    }
+
     /**
      * Add a private use mapping {PU,GI} to the existing character map.
      * N.B. Does not insert in order, merely appends to end of existing map.
@@ -361,7 +387,7 @@ public class MultiByteFont extends CIDFont implements Substitutable, Positionabl
 
     /** {@inheritDoc} */
     @Override
-    public char mapChar(char c) {
+    public synchronized char mapChar(char c) {
         notifyMapOperation();
         int glyphIndex = findGlyphIndex(c);
         if (glyphIndex == SingleByteEncoding.NOT_FOUND_CODE_POINT) {
@@ -381,7 +407,7 @@ public class MultiByteFont extends CIDFont implements Substitutable, Positionabl
 
     /** {@inheritDoc} */
     @Override
-    public int mapCodePoint(int cp) {
+    public synchronized int mapCodePoint(int cp) {
         notifyMapOperation();
         int glyphIndex = findGlyphIndex(cp);
         if (glyphIndex == SingleByteEncoding.NOT_FOUND_CODE_POINT) {
@@ -205,7 +205,7 @@ public class SingleByteFont extends CustomFont {
 
     /** {@inheritDoc} */
     @Override
-    public char mapChar(char c) {
+    public synchronized char mapChar(char c) {
         notifyMapOperation();
         char d = lookupChar(c);
         if (d == SingleByteEncoding.NOT_FOUND_CODE_POINT) {
@@ -53,6 +53,9 @@ public abstract class Typeface implements FontMetrics {
 
     private Set<Character> warnedChars;
 
+    /** The kerning information compiled for fast lookups, built on first use. */
+    private volatile KerningTable kerningTable;
+
     /**
      * Get the encoding of the font.
      * @return the encoding
@@ -66,6 +69,28 @@ public abstract class Typeface implements FontMetrics {
      */
     public abstract char mapChar(char c);
 
+    /**
+     * Returns the kerning information of this font compiled into a table that allows
+     * lookups without boxing the characters.
+     * @return the kerning table (empty if the font has no kerning information)
+     */
+    KerningTable getKerningTable() {
+        KerningTable table = kerningTable;
+        if (table == null) {
+            table = hasKerningInfo() ? KerningTable.compile(getKerningInfo()) : KerningTable.EMPTY;
+            kerningTable = table;
+        }
+        return table;
+    }
+
+    /**
+     * Discards the compiled kerning table. Must be called whenever the kerning information
+     * of the font changes.
+     */
+    void invalidateKerningTable() {
+        kerningTable = null;
+    }
+
     /**
      * Used for keeping track of character mapping operations in order to determine if a font
      * was used at all or not.
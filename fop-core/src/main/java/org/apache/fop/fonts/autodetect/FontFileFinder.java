@@ -20,11 +20,16 @@
 package org.apache.fop.fonts.autodetect;
 
 import java.io.File;
+import java.io.FileFilter;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 import org.apache.commons.io.DirectoryWalker;
 import org.apache.commons.io.IOCase;
@@ -47,6 +52,8 @@ public class FontFileFinder extends DirectoryWalker implements FontFinder {
     /** default depth limit of recursion when searching for font files **/
     public static final int DEFAULT_DEPTH_LIMIT = -1;
     private final FontEventListener eventListener;
+    private final int depthLimit;
+    private int parallelism = 1;
 
     /**
      * Default constructor
@@ -64,6 +71,17 @@ public class FontFileFinder extends DirectoryWalker implements FontFinder {
     public FontFileFinder(int depthLimit, FontEventListener listener) {
         super(getDirectoryFilter(), getFileFilter(), depthLimit);
         eventListener = listener;
+        this.depthLimit = depthLimit;
+    }
+
+    /**
+     * Sets the number of threads used to walk the font directories. With a parallelism
+     * greater than 1 the subdirectories are listed concurrently in a fork-join pool; the
+     * order of the results is the same as for a sequential walk.
+     * @param parallelism the number of threads
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
     }
 
     /**
@@ -153,9 +171,7 @@ public class FontFileFinder extends DirectoryWalker implements FontFinder {
         }
         List<File> fontDirs = fontDirFinder.find();
         List<URL> results = new java.util.ArrayList<URL>();
-        for (File dir : fontDirs) {
-            super.walk(dir, results);
-        }
+        walk(fontDirs, results);
         return results;
     }
 
@@ -172,8 +188,83 @@ public class FontFileFinder extends DirectoryWalker implements FontFinder {
         if (!directory.isDirectory()) {
             eventListener.fontDirectoryNotFound(this, dir);
         } else {
-            super.walk(directory, results);
+            walk(Collections.singletonList(directory), results);
         }
         return results;
     }
+
+    private void walk(List<File> directories, List<URL> results) throws IOException {
+        if (parallelism <= 1) {
+            for (File dir : directories) {
+                super.walk(dir, results);
+            }
+            return;
+        }
+        List<DirectoryTask> tasks = new ArrayList<DirectoryTask>(directories.size());
+        for (File dir : directories) {
+            tasks.add(new DirectoryTask(dir, 0));
+        }
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            for (DirectoryTask task : tasks) {
+                pool.execute(task);
+            }
+            for (DirectoryTask task : tasks) {
+                results.addAll(task.join());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Walks a directory like {@link DirectoryWalker} does but forks a task for every
+     * subdirectory.
+     */
+    private final class DirectoryTask extends RecursiveTask<List<URL>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final File directory;
+
+        private final int depth;
+
+        DirectoryTask(File directory, int depth) {
+            this.directory = directory;
+            this.depth = depth;
+        }
+
+        @Override
+        protected List<URL> compute() {
+            List<URL> results = new ArrayList<URL>();
+            if (!handleDirectory(directory, depth, results)) {
+                return results;
+            }
+            int childDepth = depth + 1;
+            if (depthLimit < 0 || childDepth <= depthLimit) {
+                FileFilter filter = FileFilterUtils.orFileFilter(getDirectoryFilter(), getFileFilter());
+                File[] childFiles = directory.listFiles(filter);
+                if (childFiles != null) {
+                    List<DirectoryTask> subtasks = new ArrayList<DirectoryTask>();
+                    for (File childFile : childFiles) {
+                        if (childFile.isDirectory()) {
+                            DirectoryTask subtask = new DirectoryTask(childFile, childDepth);
+                            subtask.fork();
+                            subtasks.add(subtask);
+                        }
+                    }
+                    int next = 0;
+                    for (File childFile : childFiles) {
+                        if (childFile.isDirectory()) {
+                            results.addAll(subtasks.get(next++).join());
+                        } else {
+                            handleFile(childFile, childDepth, results);
+                        }
+                    }
+                }
+            }
+            handleDirectoryEnd(directory, depth, results);
+            return results;
+        }
+    }
 }
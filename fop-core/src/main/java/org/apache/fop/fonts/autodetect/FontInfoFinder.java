@@ -170,8 +170,11 @@ public class FontInfoFinder {
     public EmbedFontInfo[] find(URI fontURI, InternalResourceResolver resourceResolver, FontCache fontCache) {
         URI embedUri = resourceResolver.resolveFromBase(fontURI);
         String embedStr = embedUri.toASCIIString();
-        boolean useKerning = true;
-        boolean useAdvanced = true;
+        // the font is only probed for its names and style: skip the kerning, advanced
+        // typographic and SVG tables, they are loaded when the font is actually used
+        boolean useKerning = false;
+        boolean useAdvanced = false;
+        boolean useSVG = false;
 
         long fileLastModified = -1;
         if (fontCache != null) {
@@ -223,7 +226,7 @@ public class FontInfoFinder {
                 try {
                     OFFontLoader ttfLoader = new OFFontLoader(fontURI, fontName, true,
                             EmbeddingMode.AUTO, EncodingMode.AUTO, useKerning, useAdvanced,
-                            resourceResolver, false, false, true);
+                            resourceResolver, false, false, useSVG);
                     customFont = ttfLoader.getFont();
                     if (this.eventListener != null) {
                         customFont.setEventListener(this.eventListener);
@@ -251,7 +254,7 @@ public class FontInfoFinder {
             try {
                 FontUris fontUris = new FontUris(fontURI, null);
                 customFont = FontLoader.loadFont(fontUris, null, true, EmbeddingMode.AUTO, EncodingMode.AUTO,
-                        useKerning, useAdvanced, resourceResolver, false, false, true);
+                        useKerning, useAdvanced, resourceResolver, false, false, useSVG);
                 if (this.eventListener != null) {
                     customFont.setEventListener(this.eventListener);
                 }
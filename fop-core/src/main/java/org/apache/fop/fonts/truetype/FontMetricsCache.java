@@ -0,0 +1,341 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.fonts.truetype;
+
+import java.awt.Rectangle;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.apache.fop.apps.io.InternalResourceResolver;
+import org.apache.fop.fonts.CIDFontType;
+import org.apache.fop.fonts.CMapSegment;
+import org.apache.fop.fonts.EmbeddingMode;
+import org.apache.fop.fonts.MultiByteFont;
+
+/**
+ * Persistent cache of parsed TrueType font metrics. Every cached font is stored in its own
+ * file in a versioned binary format which is memory-mapped read-only when the font is loaded
+ * again, so that a {@link MultiByteFont} can be materialized without parsing the original
+ * font file.
+ * <p>
+ * Only embedded TrueType fonts (including TrueType Collections) in CID encoding mode are
+ * cached. The advanced typographic tables (GDEF, GSUB and GPOS) are not part of the cache;
+ * if they are needed, they are read from the font file after the cached metrics. An entry
+ * is discarded when the font file's modification time or length has changed.
+ */
+public final class FontMetricsCache {
+
+    private static final Log log = LogFactory.getLog(FontMetricsCache.class);
+
+    /** "FOPM" */
+    private static final int MAGIC = 0x464F504D;
+
+    private static final int VERSION = 1;
+
+    private static final String FILE_EXTENSION = ".metrics";
+
+    private final File directory;
+
+    /**
+     * Creates a font metrics cache.
+     * @param directory the directory the metrics files are stored in
+     */
+    public FontMetricsCache(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Returns the directory the metrics files are stored in.
+     * @return the cache directory
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Materializes a font from its cached metrics.
+     * @param fontFileURI the URI of the font file
+     * @param fontFile the font file
+     * @param ttcFontName the sub-font name of a TrueType Collection (or null)
+     * @param useKerning true if kerning information is required
+     * @param embeddingMode the embedding mode of the font
+     * @param simulateStyle true to simulate font styles
+     * @param resourceResolver the resource resolver of the font
+     * @return the font, or null if there is no valid cache entry for the font file
+     */
+    MultiByteFont load(URI fontFileURI, File fontFile, String ttcFontName, boolean useKerning,
+            EmbeddingMode embeddingMode, boolean simulateStyle,
+            InternalResourceResolver resourceResolver) {
+        String key = createKey(fontFile, ttcFontName, useKerning);
+        File cacheFile = getCacheFile(key);
+        if (!cacheFile.isFile()) {
+            return null;
+        }
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(cacheFile, "r");
+            FileChannel channel = raf.getChannel();
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION
+                    || !key.equals(readString(buffer))
+                    || buffer.getLong() != fontFile.lastModified()
+                    || buffer.getLong() != fontFile.length()) {
+                return null;
+            }
+            MultiByteFont font = new MultiByteFont(resourceResolver, embeddingMode);
+            font.setIsOTFFile(false);
+            font.setTTCName(ttcFontName);
+            font.setSimulateStyle(simulateStyle);
+            font.setFontURI(fontFileURI);
+            font.setFontName(readString(buffer));
+            font.setFullName(readString(buffer));
+            int familyCount = buffer.getInt();
+            Set<String> familyNames = new LinkedHashSet<String>();
+            for (int i = 0; i < familyCount; i++) {
+                familyNames.add(readString(buffer));
+            }
+            font.setFamilyNames(familyNames);
+            font.setFontSubFamilyName(readString(buffer));
+            font.setCapHeight(buffer.getInt());
+            font.setXHeight(buffer.getInt());
+            font.setAscender(buffer.getInt());
+            font.setDescender(buffer.getInt());
+            font.setFontBBox(readInts(buffer));
+            font.setUnderlinePosition(buffer.getInt());
+            font.setUnderlineThickness(buffer.getInt());
+            font.setStrikeoutPosition(buffer.getInt());
+            font.setStrikeoutThickness(buffer.getInt());
+            font.setFlags(buffer.getInt());
+            font.setStemV(buffer.getInt());
+            font.setItalicAngle(buffer.getInt());
+            font.setMissingWidth(0);
+            font.setWeight(buffer.getInt());
+            font.setCIDType(CIDFontType.CIDTYPE2);
+            font.setWidthArray(readInts(buffer));
+            Rectangle[] bboxes = new Rectangle[buffer.getInt()];
+            for (int i = 0; i < bboxes.length; i++) {
+                if (buffer.get() != 0) {
+                    bboxes[i] = new Rectangle(buffer.getInt(), buffer.getInt(), buffer.getInt(),
+                            buffer.getInt());
+                }
+            }
+            font.setBBoxArray(bboxes);
+            CMapSegment[] cmap = new CMapSegment[buffer.getInt()];
+            for (int i = 0; i < cmap.length; i++) {
+                cmap[i] = new CMapSegment(buffer.getInt(), buffer.getInt(), buffer.getInt());
+            }
+            font.setCMap(cmap);
+            int kerningCount = buffer.getInt();
+            for (int i = 0; i < kerningCount; i++) {
+                int ch1 = buffer.getInt();
+                int pairCount = buffer.getInt();
+                Map<Integer, Integer> pairs = new HashMap<Integer, Integer>(pairCount * 2);
+                for (int j = 0; j < pairCount; j++) {
+                    pairs.put(buffer.getInt(), buffer.getInt());
+                }
+                font.putKerningEntry(ch1, pairs);
+            }
+            font.setEmbedURI(fontFileURI);
+            return font;
+        } catch (IOException ioe) {
+            log.warn("Could not read font metrics cache file " + cacheFile + ": " + ioe.getMessage());
+        } catch (RuntimeException re) {
+            // truncated or otherwise corrupt entry: fall back to parsing the font file
+            log.warn("Font metrics cache file " + cacheFile + " is corrupt: " + re);
+        } finally {
+            if (raf != null) {
+                try {
+                    raf.close();
+                } catch (IOException ioe) {
+                    // ignore
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Stores the metrics of a parsed TrueType font.
+     * @param fontFile the font file
+     * @param ttcFontName the sub-font name of a TrueType Collection (or null)
+     * @param useKerning true if the font was parsed with kerning information
+     * @param otf the parsed font
+     */
+    void store(File fontFile, String ttcFontName, boolean useKerning, OpenFont otf) {
+        String key = createKey(fontFile, ttcFontName, useKerning);
+        File cacheFile = getCacheFile(key);
+        File tempFile = null;
+        DataOutputStream out = null;
+        try {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                log.warn("Could not create font metrics cache directory " + directory);
+                return;
+            }
+            tempFile = File.createTempFile("fop", ".tmp", directory);
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeString(out, key);
+            out.writeLong(fontFile.lastModified());
+            out.writeLong(fontFile.length());
+            writeString(out, !otf.getEmbedFontName().equals("")
+                    ? otf.getEmbedFontName() : otf.getPostScriptName());
+            writeString(out, otf.getFullName());
+            Set<String> familyNames = otf.getFamilyNames();
+            out.writeInt(familyNames.size());
+            for (String familyName : familyNames) {
+                writeString(out, familyName);
+            }
+            writeString(out, otf.getSubFamilyName());
+            out.writeInt(otf.getCapHeight());
+            out.writeInt(otf.getXHeight());
+            out.writeInt(otf.getLowerCaseAscent());
+            out.writeInt(otf.getLowerCaseDescent());
+            writeInts(out, otf.getFontBBox());
+            out.writeInt(otf.getUnderlinePosition() - otf.getUnderlineThickness() / 2);
+            out.writeInt(otf.getUnderlineThickness());
+            out.writeInt(otf.getStrikeoutPosition() - otf.getStrikeoutThickness() / 2);
+            out.writeInt(otf.getStrikeoutThickness());
+            out.writeInt(otf.getFlags());
+            out.writeInt(Integer.parseInt(otf.getStemV()));
+            out.writeInt(Integer.parseInt(otf.getItalicAngle()));
+            out.writeInt(otf.getWeightClass());
+            writeInts(out, otf.getWidths());
+            Rectangle[] bboxes = otf.getBoundingBoxes();
+            out.writeInt(bboxes.length);
+            for (Rectangle bbox : bboxes) {
+                out.writeBoolean(bbox != null);
+                if (bbox != null) {
+                    out.writeInt(bbox.x);
+                    out.writeInt(bbox.y);
+                    out.writeInt(bbox.width);
+                    out.writeInt(bbox.height);
+                }
+            }
+            List<CMapSegment> cmap = otf.getCMaps();
+            out.writeInt(cmap.size());
+            for (CMapSegment segment : cmap) {
+                out.writeInt(segment.getUnicodeStart());
+                out.writeInt(segment.getUnicodeEnd());
+                out.writeInt(segment.getGlyphStartIndex());
+            }
+            Map<Integer, Map<Integer, Integer>> kerning = useKerning ? otf.getKerning() : null;
+            if (kerning == null) {
+                out.writeInt(0);
+            } else {
+                out.writeInt(kerning.size());
+                for (Map.Entry<Integer, Map<Integer, Integer>> first : kerning.entrySet()) {
+                    out.writeInt(first.getKey());
+                    out.writeInt(first.getValue().size());
+                    for (Map.Entry<Integer, Integer> second : first.getValue().entrySet()) {
+                        out.writeInt(second.getKey());
+                        out.writeInt(second.getValue());
+                    }
+                }
+            }
+            out.close();
+            out = null;
+            if (cacheFile.exists() && !cacheFile.delete() || !tempFile.renameTo(cacheFile)) {
+                log.warn("Could not write font metrics cache file " + cacheFile);
+            }
+        } catch (IOException ioe) {
+            log.warn("Could not write font metrics cache file " + cacheFile + ": " + ioe.getMessage());
+        } finally {
+            IOUtils.closeQuietly(out);
+            if (tempFile != null && tempFile.exists() && !tempFile.delete()) {
+                tempFile.deleteOnExit();
+            }
+        }
+    }
+
+    private File getCacheFile(String key) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            byte[] hash = digest.digest(key.getBytes("UTF-8"));
+            StringBuilder sb = new StringBuilder(hash.length * 2 + FILE_EXTENSION.length());
+            for (byte b : hash) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+                sb.append(Character.forDigit(b & 0xF, 16));
+            }
+            return new File(directory, sb.append(FILE_EXTENSION).toString());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String createKey(File fontFile, String ttcFontName, boolean useKerning) {
+        return fontFile.getAbsolutePath() + '|' + (ttcFontName != null ? ttcFontName : "")
+                + '|' + useKerning;
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = s.getBytes("UTF-8");
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) throws IOException {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    private static int[] readInts(ByteBuffer buffer) {
+        int[] values = new int[buffer.getInt()];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + values.length * 4);
+        return values;
+    }
+}
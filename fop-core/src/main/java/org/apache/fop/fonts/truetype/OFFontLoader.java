@@ -20,6 +20,7 @@
 package org.apache.fop.fonts.truetype;
 
 import java.awt.Rectangle;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
@@ -56,6 +57,7 @@ public class OFFontLoader extends FontLoader {
     private boolean simulateStyle;
     private boolean embedAsType1;
     private boolean useSVG;
+    private FontMetricsCache metricsCache;
 
     /**
      * Default constructor
@@ -98,6 +100,15 @@ public class OFFontLoader extends FontLoader {
         }
     }
 
+    /**
+     * Sets the persistent cache used to avoid parsing the font file if its metrics have been
+     * cached before.
+     * @param metricsCache the font metrics cache (or null to always parse the font file)
+     */
+    public void setMetricsCache(FontMetricsCache metricsCache) {
+        this.metricsCache = metricsCache;
+    }
+
     /** {@inheritDoc} */
     protected void read() throws IOException {
         read(this.subFontName);
@@ -110,6 +121,19 @@ public class OFFontLoader extends FontLoader {
      * @throws IOException if an I/O error occurs
      */
     private void read(String ttcFontName) throws IOException {
+        File cachedFontFile = getCachedFontFile();
+        if (cachedFontFile != null) {
+            multiFont = metricsCache.load(fontFileURI, cachedFontFile, ttcFontName, useKerning,
+                    embeddingMode, simulateStyle, resourceResolver);
+            if (multiFont != null) {
+                returnFont = multiFont;
+                if (useAdvanced) {
+                    readAdvancedTables(ttcFontName);
+                }
+                loaded = true;
+                return;
+            }
+        }
         InputStream in = resourceResolver.getResource(this.fontFileURI);
         try {
             FontFileReader reader = new FontFileReader(in);
@@ -121,12 +145,67 @@ public class OFFontLoader extends FontLoader {
                 throw new IOException("The font does not have a Unicode cmap table: " + fontFileURI);
             }
             buildFont(otf, ttcFontName);
+            if (cachedFontFile != null) {
+                if (isCFF) {
+                    log.debug("Font metrics of " + fontFileURI + " not cached: CFF font");
+                } else if (otf.svgs != null && !otf.svgs.isEmpty()) {
+                    log.debug("Font metrics of " + fontFileURI + " not cached: SVG glyphs");
+                } else {
+                    metricsCache.store(cachedFontFile, ttcFontName, useKerning, otf);
+                }
+            }
             loaded = true;
         } finally {
             IOUtils.closeQuietly(in);
         }
     }
 
+    /**
+     * Reads the advanced typographic tables of a font whose metrics come from the metrics
+     * cache. These tables are not cached.
+     */
+    private void readAdvancedTables(String ttcFontName) throws IOException {
+        InputStream in = resourceResolver.getResource(this.fontFileURI);
+        try {
+            FontFileReader reader = new FontFileReader(in);
+            OpenFont otf = new TTFFile(useKerning, true);
+            otf.readAdvancedTables(reader, readHeader(reader), ttcFontName);
+            copyAdvanced(otf);
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    /**
+     * Returns the font file if the metrics of this font can be served from the metrics cache.
+     * Single-byte fonts and fonts which are not local files are not cached.
+     */
+    private File getCachedFontFile() {
+        if (metricsCache == null) {
+            return null;
+        }
+        // Same condition as in buildFont(), the encoding mode AUTO has been resolved to CID
+        if (!embedded || encodingMode == EncodingMode.SINGLE_BYTE) {
+            log.debug("Font metrics of " + fontFileURI + " not cached: single-byte font");
+            return null;
+        }
+        URI uri = resourceResolver.resolveFromBase(fontFileURI);
+        if (!"file".equals(uri.getScheme())) {
+            log.debug("Font metrics of " + fontFileURI + " not cached: not a local file");
+            return null;
+        }
+        try {
+            File file = new File(uri);
+            if (file.isFile()) {
+                return file;
+            }
+        } catch (IllegalArgumentException iae) {
+            // not a file URI the file system can resolve
+        }
+        log.debug("Font metrics of " + fontFileURI + " not cached: not a local file");
+        return null;
+    }
+
     public static String readHeader(FontFileReader fontFile) throws IOException {
         if (fontFile != null) {
             fontFile.seekSet(0);
@@ -874,6 +874,28 @@ public abstract class OpenFont {
         readFont(in, header, mbfont.getTTCName());
     }
 
+    /**
+     * Reads only the advanced typographic tables (GDEF, GSUB and GPOS) of a font whose other
+     * data is known already, for instance from a {@link FontMetricsCache}.
+     *
+     * @param in The FontFileReader to use
+     * @param header the header of the font file
+     * @param name The name of the font in a TrueType collection (may be null)
+     * @throws IOException In case of an I/O problem
+     */
+    public void readAdvancedTables(FontFileReader in, String header, String name)
+            throws IOException {
+        initializeFont(in);
+        if (!checkTTC(header, name)) {
+            throw new IOException("Name does not exist in the TrueType collection: " + name);
+        }
+        readDirTabs();
+        // the tables are scaled with the units per em and checked against the number of glyphs
+        readFontHeader();
+        getNumGlyphs();
+        handleCharacterSpacing(in);
+    }
+
     protected abstract void updateBBoxAndOffset() throws IOException;
 
     protected abstract void readName() throws IOException;
@@ -71,21 +71,17 @@ public class ByteVector implements Serializable {
     /**
      * Construct byte vector instance.
      * @param a byte array to use
-     * TODO should n should be initialized to a.length to be consistent with
-     * CharVector behavior? [GA]
      */
     public ByteVector(byte[] a) {
         blockSize = DEFAULT_BLOCK_SIZE;
         array = a;
-        n = 0;
+        n = a.length;
     }
 
     /**
      * Construct byte vector instance.
      * @param a byte array to use
      * @param capacity initial block size
-     * TODO should n should be initialized to a.length to be consistent with
-     * CharVector behavior? [GA]
      */
     public ByteVector(byte[] a, int capacity) {
         if (capacity > 0) {
@@ -94,7 +90,7 @@ public class ByteVector implements Serializable {
             blockSize = DEFAULT_BLOCK_SIZE;
         }
         array = a;
-        n = 0;
+        n = a.length;
     }
 
     /**
@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.hyphenation;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>A cache of the hyphenations of words, attached to a {@link HyphenationTree}. Documents
+ * tend to repeat the same words many times, and each of them would otherwise go through
+ * the pattern matching again.</p>
+ *
+ * <p>The cache may be used concurrently. It holds at most a given number of words and is
+ * cleared when it is full, so that it keeps the words of the documents currently being
+ * processed. It counts hits and misses to judge how well it works.</p>
+ */
+public final class HyphenationCache {
+
+    /** The default maximum number of cached words */
+    public static final int DEFAULT_MAX_SIZE = 10000;
+
+    /** Stands in for words that have no hyphenation points */
+    private static final Object NO_HYPHENATION = new Object();
+
+    private final ConcurrentMap<WordKey, Object> words = new ConcurrentHashMap<WordKey, Object>();
+
+    private final int maxSize;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Creates a cache.
+     * @param maxSize the maximum number of cached words
+     */
+    public HyphenationCache(int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("The cache size must be positive: " + maxSize);
+        }
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Looks up the hyphenation of a word.
+     * @param word the word
+     * @param remainCharCount the minimum number of characters before a hyphenation point
+     * @param pushCharCount the minimum number of characters after a hyphenation point
+     * @param hTree the hyphenation tree to hyphenate the word with if it is not cached
+     * @return the hyphenation of the word or null if the word is not hyphenated
+     */
+    Hyphenation hyphenate(String word, int remainCharCount, int pushCharCount,
+            HyphenationTree hTree) {
+        WordKey key = new WordKey(word, remainCharCount, pushCharCount);
+        Object cached = words.get(key);
+        if (cached != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+            Hyphenation hyphenation = hTree.hyphenateWord(word, remainCharCount, pushCharCount);
+            cached = hyphenation != null ? hyphenation : NO_HYPHENATION;
+            if (words.size() >= maxSize) {
+                words.clear();
+            }
+            words.put(key, cached);
+        }
+        return cached != NO_HYPHENATION ? (Hyphenation) cached : null;
+    }
+
+    /** @return the number of lookups that found the word in the cache */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /** @return the number of lookups that had to hyphenate the word */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /** @return the number of cached words */
+    public int size() {
+        return words.size();
+    }
+
+    /** Removes all words from the cache. The hit and miss counts are kept. */
+    public void clear() {
+        words.clear();
+    }
+
+    /** {@inheritDoc} */
+    public String toString() {
+        return "HyphenationCache[size=" + size() + ", hits=" + getHitCount()
+                + ", misses=" + getMissCount() + "]";
+    }
+
+    private static final class WordKey {
+
+        private final String word;
+        private final int remainCharCount;
+        private final int pushCharCount;
+
+        WordKey(String word, int remainCharCount, int pushCharCount) {
+            this.word = word;
+            this.remainCharCount = remainCharCount;
+            this.pushCharCount = pushCharCount;
+        }
+
+        public boolean equals(Object obj) {
+            if (!(obj instanceof WordKey)) {
+                return false;
+            }
+            WordKey other = (WordKey) obj;
+            return word.equals(other.word) && remainCharCount == other.remainCharCount
+                    && pushCharCount == other.pushCharCount;
+        }
+
+        public int hashCode() {
+            return (word.hashCode() * 31 + remainCharCount) * 31 + pushCharCount;
+        }
+    }
+}
@@ -68,6 +68,11 @@ public class HyphenationTree extends TernaryTree implements PatternConsumer {
      */
     private transient TernaryTree ivalues;
 
+    /**
+     * Cache of hyphenated words.
+     */
+    private transient volatile HyphenationCache wordCache;
+
     /** Default constructor. */
     public HyphenationTree() {
         stoplist = new HashMap(23);    // usually a small table
@@ -165,6 +170,8 @@ public class HyphenationTree extends TernaryTree implements PatternConsumer {
 
         // get rid of the auxiliary map
         ivalues = null;
+        // words hyphenated so far may hyphenate differently now
+        wordCache = null;
     }
 
     /**
@@ -315,7 +322,8 @@ public class HyphenationTree extends TernaryTree implements PatternConsumer {
     }
 
     /**
-     * Hyphenate word and return a Hyphenation object.
+     * Hyphenate word and return a Hyphenation object. The word is looked up in the word
+     * cache of this tree first.
      * @param word the word to be hyphenated
      * @param remainCharCount Minimum number of characters allowed
      * before the hyphenation point.
@@ -326,6 +334,37 @@ public class HyphenationTree extends TernaryTree implements PatternConsumer {
      */
     public Hyphenation hyphenate(String word, int remainCharCount,
                                  int pushCharCount) {
+        return getWordCache().hyphenate(word, remainCharCount, pushCharCount, this);
+    }
+
+    /**
+     * Returns the cache of hyphenated words of this tree, creating it if necessary.
+     * @return the word cache
+     */
+    public HyphenationCache getWordCache() {
+        HyphenationCache cache = wordCache;
+        if (cache == null) {
+            synchronized (this) {
+                cache = wordCache;
+                if (cache == null) {
+                    cache = new HyphenationCache(HyphenationCache.DEFAULT_MAX_SIZE);
+                    wordCache = cache;
+                }
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Hyphenate word without looking it up in the word cache.
+     * @param word the word to be hyphenated
+     * @param remainCharCount Minimum number of characters allowed
+     * before the hyphenation point.
+     * @param pushCharCount Minimum number of characters allowed after
+     * the hyphenation point.
+     * @return the hyphenated word or null if word is not hyphenated
+     */
+    Hyphenation hyphenateWord(String word, int remainCharCount, int pushCharCount) {
         char[] w = word.toCharArray();
         if (isMultiPartWord(w, w.length)) {
             List<char[]> words = splitOnNonCharacters(w);
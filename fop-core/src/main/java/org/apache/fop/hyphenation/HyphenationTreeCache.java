@@ -19,19 +19,54 @@
 
 package org.apache.fop.hyphenation;
 
-import java.util.Hashtable;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * <p>This is a cache for HyphenationTree instances.</p>
+ * <p>The cache may be used concurrently. It holds at most a given number of trees; when
+ * it is full, the least recently used tree is evicted. Trees loaded from user-configured
+ * pattern files are cached separately from the ones for the same language and country
+ * that are loaded from other pattern files.</p>
  */
 public class HyphenationTreeCache {
 
+    /** The default maximum number of cached hyphenation trees */
+    public static final int DEFAULT_MAX_SIZE = 32;
+
     /** Contains the cached hyphenation trees */
-    private Hashtable hyphenTrees = new Hashtable();
+    private final ConcurrentMap<String, CachedTree> hyphenTrees
+            = new ConcurrentHashMap<String, CachedTree>();
     /** Used to avoid multiple error messages for the same language if a pattern file is missing. */
-    private Set missingHyphenationTrees;
+    private final Set<String> missingHyphenationTrees
+            = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    private final int maxSize;
+
+    /** Increases on every access, to determine the least recently used tree */
+    private final AtomicLong clock = new AtomicLong();
+
+    /** Creates a cache holding at most {@link #DEFAULT_MAX_SIZE} hyphenation trees. */
+    public HyphenationTreeCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Creates a cache.
+     * @param maxSize the maximum number of hyphenation trees held by the cache
+     */
+    public HyphenationTreeCache(int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("The cache size must be positive: " + maxSize);
+        }
+        this.maxSize = maxSize;
+    }
 
     /**
      * Looks in the cache if a hyphenation tree is available and returns it if it is found.
@@ -40,16 +75,32 @@ public class HyphenationTreeCache {
      * @return the HyhenationTree instance or null if it's not in the cache
      */
     public HyphenationTree getHyphenationTree(String lang, String country) {
-        String key = constructLlccKey(lang, country);
+        return getHyphenationTree(lang, country, null);
+    }
 
+    /**
+     * Looks in the cache if a hyphenation tree is available and returns it if it is found.
+     * @param lang the language
+     * @param country the country (may be null or "none")
+     * @param hyphPatNames the map of user-configured hyphenation pattern file names
+     * @return the HyhenationTree instance or null if it's not in the cache
+     */
+    public HyphenationTree getHyphenationTree(String lang, String country, Map hyphPatNames) {
         // first try to find it in the cache
-        if (hyphenTrees.containsKey(key)) {
-            return (HyphenationTree)hyphenTrees.get(key);
-        } else if (hyphenTrees.containsKey(lang)) {
-            return (HyphenationTree)hyphenTrees.get(lang);
-        } else {
+        HyphenationTree hTree = get(constructCacheKey(lang, country, hyphPatNames));
+        if (hTree == null) {
+            hTree = get(constructCacheKey(lang, null, hyphPatNames));
+        }
+        return hTree;
+    }
+
+    private HyphenationTree get(String key) {
+        CachedTree cached = hyphenTrees.get(key);
+        if (cached == null) {
             return null;
         }
+        cached.lastAccess = clock.incrementAndGet();
+        return cached.tree;
     }
 
     /**
@@ -86,12 +137,63 @@ public class HyphenationTreeCache {
     }
 
     /**
-     * Cache a hyphenation tree under its key.
+     * Constructs the key under which the hyphenation tree for a language and country is
+     * cached. This is the language/country key, followed by the name of the pattern file
+     * if the user configured one.
+     * @param lang the language
+     * @param country the country (may be null or "none")
+     * @param hyphPatNames the map of user-configured hyphenation pattern file names
+     * @return the resulting key
+     */
+    public static String constructCacheKey(String lang, String country, Map hyphPatNames) {
+        String llccKey = constructLlccKey(lang, country);
+        String userKey = constructUserKey(lang, country, hyphPatNames);
+        return userKey != null ? llccKey + "@" + userKey : llccKey;
+    }
+
+    /**
+     * Cache a hyphenation tree under its key. If the cache is full, the least recently used
+     * hyphenation tree is evicted.
      * @param key the key (ex. "de_CH" or "en")
      * @param hTree the hyphenation tree
      */
     public void cache(String key, HyphenationTree hTree) {
-        hyphenTrees.put(key, hTree);
+        hyphenTrees.put(key, new CachedTree(hTree, clock.incrementAndGet()));
+        while (hyphenTrees.size() > maxSize) {
+            evictLeastRecentlyUsed();
+        }
+    }
+
+    private void evictLeastRecentlyUsed() {
+        Map.Entry<String, CachedTree> eldest = null;
+        for (Iterator<Map.Entry<String, CachedTree>> iter = hyphenTrees.entrySet().iterator();
+                iter.hasNext();) {
+            Map.Entry<String, CachedTree> entry = iter.next();
+            if (eldest == null || entry.getValue().lastAccess < eldest.getValue().lastAccess) {
+                eldest = entry;
+            }
+        }
+        if (eldest != null) {
+            hyphenTrees.remove(eldest.getKey(), eldest.getValue());
+        }
+    }
+
+    /**
+     * Returns the cached hyphenation trees, for instance to report the statistics of their
+     * word caches.
+     * @return a snapshot of the cached hyphenation trees by their keys
+     */
+    public Map<String, HyphenationTree> getHyphenationTrees() {
+        Map<String, HyphenationTree> trees = new TreeMap<String, HyphenationTree>();
+        for (Map.Entry<String, CachedTree> entry : hyphenTrees.entrySet()) {
+            trees.put(entry.getKey(), entry.getValue().tree);
+        }
+        return trees;
+    }
+
+    /** @return the number of cached hyphenation trees */
+    public int size() {
+        return hyphenTrees.size();
     }
 
     /**
@@ -101,9 +203,6 @@ public class HyphenationTreeCache {
      * @param key the key (ex. "de_CH" or "en")
      */
     public void noteMissing(String key) {
-        if (missingHyphenationTrees == null) {
-            missingHyphenationTrees = new java.util.HashSet();
-        }
         missingHyphenationTrees.add(key);
     }
 
@@ -115,7 +214,19 @@ public class HyphenationTreeCache {
      * @return true if the hyphenation tree is unavailable
      */
     public boolean isMissing(String key) {
-        return (missingHyphenationTrees != null && missingHyphenationTrees.contains(key));
+        return missingHyphenationTrees.contains(key);
+    }
+
+    private static final class CachedTree {
+
+        private final HyphenationTree tree;
+
+        private volatile long lastAccess;
+
+        CachedTree(HyphenationTree tree, long lastAccess) {
+            this.tree = tree;
+            this.lastAccess = lastAccess;
+        }
     }
 
 }
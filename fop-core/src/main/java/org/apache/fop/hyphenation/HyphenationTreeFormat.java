@@ -0,0 +1,223 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.hyphenation;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Reads and writes {@link HyphenationTree}s in a compact binary format. Unlike Java
+ * serialization, the format holds the node arrays of the trees as flat blocks that are
+ * copied into the tree in bulk from a single {@link ByteBuffer}, which may be a memory
+ * mapped file. No object is created per node or per pattern.</p>
+ *
+ * <p>The layout is: the magic number and the format version, the pattern tree, the
+ * character class tree, the interletter values, and the hyphenation exceptions. A tree is
+ * written as its root, free node and size, followed by its node arrays and its key
+ * vector. All values are big-endian.</p>
+ */
+public final class HyphenationTreeFormat {
+
+    /** The magic number that starts a compiled pattern file ("FHYP"). */
+    public static final int MAGIC = 0x46485950;
+
+    /** The version of the format. */
+    public static final int VERSION = 1;
+
+    private static final byte EXCEPTION_STRING = 0;
+    private static final byte EXCEPTION_HYPHEN = 1;
+
+    private HyphenationTreeFormat() {
+    }
+
+    /**
+     * Indicates whether the given bytes start a pattern file in this format.
+     * @param bytes the first bytes of a pattern file
+     * @return true if the bytes start with the magic number of this format
+     */
+    public static boolean isFormat(byte[] bytes) {
+        return bytes.length >= 4 && ByteBuffer.wrap(bytes).getInt(0) == MAGIC;
+    }
+
+    /**
+     * Writes a hyphenation tree.
+     * @param hTree the hyphenation tree
+     * @param out the stream to write to, not closed by this method
+     * @throws IOException if an I/O error occurs
+     */
+    public static void write(HyphenationTree hTree, OutputStream out) throws IOException {
+        DataOutputStream dout = new DataOutputStream(out);
+        dout.writeInt(MAGIC);
+        dout.writeInt(VERSION);
+        writeTree(hTree, dout);
+        writeTree(hTree.classmap, dout);
+        dout.writeInt(hTree.vspace.length());
+        dout.write(hTree.vspace.getArray(), 0, hTree.vspace.length());
+        Map<?, ?> stoplist = hTree.stoplist;
+        dout.writeInt(stoplist.size());
+        for (Map.Entry<?, ?> entry : stoplist.entrySet()) {
+            writeString((String) entry.getKey(), dout);
+            List<?> items = (List<?>) entry.getValue();
+            dout.writeInt(items.size());
+            for (Object item : items) {
+                if (item instanceof Hyphen) {
+                    Hyphen hyphen = (Hyphen) item;
+                    dout.writeByte(EXCEPTION_HYPHEN);
+                    writeString(hyphen.preBreak, dout);
+                    writeString(hyphen.noBreak, dout);
+                    writeString(hyphen.postBreak, dout);
+                } else {
+                    dout.writeByte(EXCEPTION_STRING);
+                    writeString((String) item, dout);
+                }
+            }
+        }
+        dout.flush();
+    }
+
+    private static void writeTree(TernaryTree tree, DataOutputStream dout) throws IOException {
+        dout.writeChar(tree.root);
+        dout.writeChar(tree.freenode);
+        dout.writeInt(tree.length);
+        int nodeCount = tree.sc.length;
+        dout.writeInt(nodeCount);
+        writeChars(tree.lo, nodeCount, dout);
+        writeChars(tree.hi, nodeCount, dout);
+        writeChars(tree.eq, nodeCount, dout);
+        writeChars(tree.sc, nodeCount, dout);
+        dout.writeInt(tree.kv.length());
+        writeChars(tree.kv.getArray(), tree.kv.length(), dout);
+    }
+
+    private static void writeChars(char[] chars, int count, DataOutputStream dout)
+            throws IOException {
+        for (int i = 0; i < count; i++) {
+            dout.writeChar(chars[i]);
+        }
+    }
+
+    private static void writeString(String s, DataOutputStream dout) throws IOException {
+        if (s == null) {
+            dout.writeInt(-1);
+        } else {
+            dout.writeInt(s.length());
+            dout.writeChars(s);
+        }
+    }
+
+    /**
+     * Reads a hyphenation tree from a compiled pattern file, which is mapped into memory.
+     * @param file the compiled pattern file
+     * @return the hyphenation tree
+     * @throws IOException if an I/O error occurs or if the file is not in this format
+     */
+    public static HyphenationTree read(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Reads a hyphenation tree. The buffer is read from its current position.
+     * @param buffer the buffer holding the compiled patterns
+     * @return the hyphenation tree
+     * @throws IOException if the buffer does not hold a hyphenation tree in this format
+     */
+    public static HyphenationTree read(ByteBuffer buffer) throws IOException {
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not a compiled hyphenation pattern file");
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported compiled hyphenation pattern version: "
+                        + version);
+            }
+            HyphenationTree hTree = new HyphenationTree();
+            readTree(hTree, buffer);
+            readTree(hTree.classmap, buffer);
+            byte[] values = new byte[buffer.getInt()];
+            buffer.get(values);
+            hTree.vspace = new ByteVector(values);
+            int exceptionCount = buffer.getInt();
+            HashMap<String, ArrayList<Object>> stoplist
+                    = new HashMap<String, ArrayList<Object>>(Math.max(exceptionCount * 2, 23));
+            for (int i = 0; i < exceptionCount; i++) {
+                String word = readString(buffer);
+                int itemCount = buffer.getInt();
+                ArrayList<Object> items = new ArrayList<Object>(itemCount);
+                for (int j = 0; j < itemCount; j++) {
+                    if (buffer.get() == EXCEPTION_HYPHEN) {
+                        items.add(new Hyphen(readString(buffer), readString(buffer),
+                                readString(buffer)));
+                    } else {
+                        items.add(readString(buffer));
+                    }
+                }
+                stoplist.put(word, items);
+            }
+            hTree.stoplist = stoplist;
+            return hTree;
+        } catch (BufferUnderflowException bue) {
+            throw new IOException("Truncated compiled hyphenation pattern file");
+        }
+    }
+
+    private static void readTree(TernaryTree tree, ByteBuffer buffer) {
+        tree.root = buffer.getChar();
+        tree.freenode = buffer.getChar();
+        tree.length = buffer.getInt();
+        int nodeCount = buffer.getInt();
+        tree.lo = readChars(buffer, nodeCount);
+        tree.hi = readChars(buffer, nodeCount);
+        tree.eq = readChars(buffer, nodeCount);
+        tree.sc = readChars(buffer, nodeCount);
+        tree.kv = new CharVector(readChars(buffer, buffer.getInt()));
+    }
+
+    private static char[] readChars(ByteBuffer buffer, int count) {
+        char[] chars = new char[count];
+        buffer.asCharBuffer().get(chars);
+        buffer.position(buffer.position() + count * 2);
+        return chars;
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        return new String(readChars(buffer, length));
+    }
+}
@@ -20,10 +20,12 @@
 package org.apache.fop.hyphenation;
 
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
 import java.util.Map;
 
 import org.xml.sax.InputSource;
@@ -60,17 +62,18 @@ public final class Hyphenator {
     public static HyphenationTree getHyphenationTree(String lang, String country,
                        InternalResourceResolver resourceResolver, Map hyphPatNames, FOUserAgent foUserAgent) {
         String llccKey = HyphenationTreeCache.constructLlccKey(lang, country);
+        String cacheKey = HyphenationTreeCache.constructCacheKey(lang, country, hyphPatNames);
 
         HyphenationTreeCache cache = foUserAgent.getHyphenationTreeCache();
 
         // See if there was an error finding this hyphenation tree before
-        if (cache == null || cache.isMissing(llccKey)) {
+        if (cache == null || cache.isMissing(cacheKey)) {
             return null;
         }
 
         HyphenationTree hTree;
         // first try to find it in the cache
-        hTree = cache.getHyphenationTree(lang, country);
+        hTree = cache.getHyphenationTree(lang, country, hyphPatNames);
         if (hTree != null) {
             return hTree;
         }
@@ -92,7 +95,7 @@ public final class Hyphenator {
 
         // put it into the pattern cache
         if (hTree != null) {
-            cache.cache(llccKey, hTree);
+            cache.cache(cacheKey, hTree);
         } else {
             EventBroadcaster eventBroadcaster = foUserAgent.getEventBroadcaster();
             if (eventBroadcaster == null) {
@@ -102,7 +105,7 @@ public final class Hyphenator {
                 String name = key.replace(HYPTYPE, "").replace(XMLTYPE, "");
                 producer.hyphenationNotFound(cache, name);
             }
-            cache.noteMissing(llccKey);
+            cache.noteMissing(cacheKey);
         }
         return hTree;
     }
@@ -139,8 +142,13 @@ public final class Hyphenator {
     private static HyphenationTree readHyphenationTree(InputStream in) {
         HyphenationTree hTree = null;
         try {
-            ObjectInputStream ois = new ObjectInputStream(in);
-            hTree = (HyphenationTree)ois.readObject();
+            byte[] bytes = IOUtils.toByteArray(in);
+            if (HyphenationTreeFormat.isFormat(bytes)) {
+                hTree = HyphenationTreeFormat.read(ByteBuffer.wrap(bytes));
+            } else {
+                ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes));
+                hTree = (HyphenationTree)ois.readObject();
+            }
         } catch (IOException ioe) {
             log.error("I/O error while loading precompiled hyphenation pattern file", ioe);
         } catch (ClassNotFoundException cnfe) {
@@ -164,7 +172,11 @@ public final class Hyphenator {
             }
             return null;
         }
-        return readHyphenationTree(is);
+        try {
+            return readHyphenationTree(is);
+        } finally {
+            IOUtils.closeQuietly(is);
+        }
     }
 
     /**
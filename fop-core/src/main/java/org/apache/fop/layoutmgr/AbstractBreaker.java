@@ -19,6 +19,7 @@
 
 package org.apache.fop.layoutmgr;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.ListIterator;
 
@@ -222,6 +223,18 @@ public abstract class AbstractBreaker {
     /** footnote separator length */
     protected MinOptMax footnoteSeparatorLength = MinOptMax.ZERO;
 
+    /**
+     * The number of trailing parts of an incomplete element list that are not added yet,
+     * so that the content following the list can still influence their breaks.
+     */
+    private static final int PARTS_KEPT_FOR_CONTINUATION = 2;
+
+    /** Elements of an incomplete element list that are prepended to the next one. */
+    private List<KnuthElement> carriedOverElements;
+
+    /** True if the carried-over elements still start on the current part. */
+    private boolean continuingPart;
+
     /** @return current display alignment */
     protected abstract int getCurrentDisplayAlign();
 
@@ -260,6 +273,33 @@ public abstract class AbstractBreaker {
         return false;
     }
 
+    /**
+     * @return the number of pages the page breaking algorithm may look ahead before it
+     * commits to a page break, 0 if page breaking is unbounded
+     */
+    protected int getPageBreakingLookahead() {
+        return 0;
+    }
+
+    /**
+     * Indicates whether the last element list returned by
+     * {@link #getNextKnuthElements(LayoutContext, int)} is incomplete, that is, whether
+     * it was cut at a legal break between two children only to bound the size of the
+     * element lists, and the content continues in the next element list.
+     * @return true if the last element list is continued by the next one
+     */
+    protected boolean isElementListContinued() {
+        return false;
+    }
+
+    /**
+     * @return true if the next element list starts with elements carried over from
+     * the previous one, on the part on which the previous one ended
+     */
+    protected boolean isContinuingPart() {
+        return continuingPart;
+    }
+
     /**
      * Returns the PageProvider if any. PageBreaker overrides this method because each
      * page may have a different available BPD which needs to be accessible to the breaking
@@ -407,6 +447,7 @@ public abstract class AbstractBreaker {
                          isPartOverflowRecoveryActivated(), autoHeight, isSinglePartFavored());
 
                 alg.setConstantLineWidth(flowBPD);
+                alg.setLookahead(getPageBreakingLookahead());
                 int optimalPageCount = alg.findBreakingPoints(blockList, 1, true,
                         BreakingAlgorithm.ALL_BREAKS);
                 boolean ipdChangesOnNextPage = (alg.getIPDdifference() != 0);
@@ -450,6 +491,10 @@ public abstract class AbstractBreaker {
                     blockListIndex = -1;
                     nextSequenceStartsOn = getNextBlockList(childLC, Constants.EN_COLUMN, positionAtBreak,
                             restartAtLM, firstElementsForRestart);
+                } else if (isElementListContinued()) {
+                    //*** Phase 3 for an incomplete list: only add the settled parts ***
+                    nextSequenceStartsOn = addSettledParts(alg, optimalPageCount, blockList,
+                            nextSequenceStartsOn);
                 } else {
                     log.debug("PLM> optimalPageCount= " + optimalPageCount
                             + " pageBreaks.size()= " + alg.getPageBreaks().size());
@@ -465,6 +510,46 @@ public abstract class AbstractBreaker {
         return true;
     }
 
+    /**
+     * Adds the areas for the leading parts of an incomplete element list, and carries the
+     * elements of the remaining parts over to the next element list. The trailing parts
+     * are kept back because their breaks may still change once the following content is
+     * known. Parts are only added up to the last one that holds all the footnotes cited
+     * so far: the parts following a deferred footnote are carried over with its citation.
+     * @param alg the algorithm that broke the list
+     * @param partCount the number of parts
+     * @param blockList the incomplete element list
+     * @param nextSequenceStartsOn the break condition of the list
+     * @return the break condition for the next element list
+     */
+    private int addSettledParts(PageBreakingAlgorithm alg, int partCount,
+            BlockSequence blockList, int nextSequenceStartsOn) {
+        int settledParts = alg.getPartCountWithoutDeferredFootnotes(
+                partCount - PARTS_KEPT_FOR_CONTINUATION);
+        int carryStart = 0;
+        if (settledParts > 0) {
+            log.debug("PLM> adding " + settledParts + " of " + partCount
+                    + " parts of an incomplete element list");
+            addAreas(alg, settledParts, blockList, blockList);
+            int breakIndex = alg.getPageBreaks().get(settledParts - 1).getLeafPos();
+            // the break is taken: notify its conditional spaces as addAreas() would
+            // have done when starting the next part
+            Position breakPosition = ((KnuthElement) blockList.get(breakIndex)).getPosition();
+            if (breakPosition instanceof SpaceResolver.SpaceHandlingBreakPosition) {
+                ((SpaceResolver.SpaceHandlingBreakPosition) breakPosition).notifyBreakSituation(
+                        true, RelSide.BEFORE);
+            }
+            carryStart = breakIndex + 1;
+            continuingPart = false;
+            nextSequenceStartsOn = Constants.EN_COLUMN;
+        } else {
+            continuingPart = true;
+        }
+        carriedOverElements = new ArrayList<KnuthElement>(
+                blockList.subList(carryStart, blockList.size() - blockList.ignoreAtEnd));
+        return nextSequenceStartsOn;
+    }
+
     /**
      * Returns {@code true} if the given position or one of its descendants
      * corresponds to a non-restartable LM.
@@ -673,6 +758,15 @@ public abstract class AbstractBreaker {
         List<KnuthElement> returnedList;
         if (firstElements == null) {
             returnedList = getNextKnuthElements(childLC, alignment);
+            if (carriedOverElements != null) {
+                if (returnedList == null) {
+                    returnedList = carriedOverElements;
+                } else {
+                    returnedList.addAll(0, carriedOverElements);
+                }
+                carriedOverElements = null;
+                continuingPart = false;
+            }
         } else if (positionAtIPDChange == null) {
             /*
              * No restartable element found after changing IPD break. Simply add the
@@ -19,6 +19,7 @@
 
 package org.apache.fop.layoutmgr;
 
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
@@ -51,6 +52,21 @@ public class FlowLayoutManager extends BlockStackingLayoutManager {
 
     private boolean handlingFloat;
 
+    /**
+     * The number of elements after which an element list is returned early in incremental
+     * layout, at the next break between two children.
+     */
+    private static final int INCREMENTAL_LIST_SIZE = 5000;
+
+    /** True if the last returned element list is continued by the next one. */
+    private boolean elementListContinued;
+
+    /** Unresolved elements held back from a continued element list for the next one. */
+    private List<ListElement> pendingElements;
+
+    /** The keep-with-next pending at the end of a continued element list. */
+    private Keep pendingKeepWithNext;
+
     /**
      * This is the top level layout manager.
      * It is created by the PageSequence FO.
@@ -85,6 +101,19 @@ public class FlowLayoutManager extends BlockStackingLayoutManager {
         List<ListElement> elements = new LinkedList<ListElement>();
 
         boolean isRestart = (restartPosition != null);
+        KnuthBox continuationBox = null;
+        if (elementListContinued && !isRestart) {
+            // stands in for the box that ended the previous element list, so that the
+            // held back elements following it are resolved as usual
+            continuationBox = new KnuthBox(0, null, true);
+            elements.add(continuationBox);
+            elements.addAll(pendingElements);
+            context.updateKeepWithNextPending(pendingKeepWithNext);
+        }
+        elementListContinued = false;
+        pendingElements = null;
+        pendingKeepWithNext = null;
+        boolean incremental = getFObj().getUserAgent().isIncrementalLayoutEnabled();
         // always reset in case of restart (exception: see below)
         boolean doReset = isRestart;
         LayoutManager currentChildLM;
@@ -109,32 +138,78 @@ public class FlowLayoutManager extends BlockStackingLayoutManager {
         }
 
         while (currentChildLM != null) {
+            int childStart = elements.size();
             if (!isRestart || doReset) {
                 if (doReset) {
                     currentChildLM.reset(); // TODO won't work with forced breaks
                 }
                 if (addChildElements(elements, currentChildLM, context, alignment,
                         null, null, null) != null) {
-                    return elements;
+                    return removeContinuationBox(elements, continuationBox);
                 }
             } else {
                 if (addChildElements(elements, currentChildLM, context, alignment, lmStack,
                         restartPosition, restartLM) != null) {
-                    return elements;
+                    return removeContinuationBox(elements, continuationBox);
                 }
                 // restarted; force reset as of next child
                 doReset = true;
             }
+            if (incremental && elements.size() >= INCREMENTAL_LIST_SIZE && childStart > 0
+                    && hasNextChildLM()) {
+                // cut the list after the first box of the last child, so that the spaces
+                // between it and the previous child can be resolved; the elements after
+                // that box are held back and resolved with the next list
+                int cut = findNextBox(elements, childStart);
+                if (cut >= 0) {
+                    List<ListElement> tail = elements.subList(cut + 1, elements.size());
+                    pendingElements = new ArrayList<ListElement>(tail);
+                    tail.clear();
+                    pendingKeepWithNext = context.getKeepWithNextPending();
+                    SpaceResolver.resolveElementList(elements);
+                    elementListContinued = true;
+                    return removeContinuationBox(elements, continuationBox);
+                }
+            }
             currentChildLM = getChildLM();
         }
 
         SpaceResolver.resolveElementList(elements);
         setFinished(true);
 
+        removeContinuationBox(elements, continuationBox);
         assert !elements.isEmpty();
         return elements;
     }
 
+    private static int findNextBox(List<ListElement> elements, int startIndex) {
+        ListIterator<ListElement> iter = elements.listIterator(startIndex);
+        while (iter.hasNext()) {
+            if (iter.next().isBox()) {
+                return iter.previousIndex();
+            }
+        }
+        return -1;
+    }
+
+    private static List<ListElement> removeContinuationBox(List<ListElement> elements,
+            KnuthBox continuationBox) {
+        if (continuationBox != null) {
+            elements.remove(continuationBox);
+        }
+        return elements;
+    }
+
+    /**
+     * Indicates whether the last element list returned by this LM has been cut at a break
+     * between two children to bound its size in incremental layout, so that the content
+     * continues in the next element list.
+     * @return true if the last element list is continued by the next one
+     */
+    boolean isElementListContinued() {
+        return elementListContinued;
+    }
+
     private List<ListElement> addChildElements(List<ListElement> elements,
             LayoutManager childLM, LayoutContext context, int alignment,
             Stack<LayoutManager> lmStack, Position position, LayoutManager restartAtLM) {
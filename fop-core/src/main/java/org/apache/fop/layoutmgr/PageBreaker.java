@@ -105,6 +105,11 @@ public class PageBreaker extends AbstractBreaker {
         return pslm.getPageProvider();
     }
 
+    /** {@inheritDoc} */
+    protected int getPageBreakingLookahead() {
+        return pslm.getPageSequence().getUserAgent().getPageBreakingLookahead();
+    }
+
     /**
      * Starts the page breaking process.
      * @param flowBPD the constant available block-progression-dimension (used for every part)
@@ -163,7 +168,7 @@ public class PageBreaker extends AbstractBreaker {
     protected int getNextBlockList(LayoutContext childLC, int nextSequenceStartsOn,
             Position positionAtIPDChange, LayoutManager restartLM, List firstElements) {
         if (!layoutRedone && !handlingFloat()) {
-            if (!firstPart) {
+            if (!firstPart && !isContinuingPart()) {
                 // if this is the first page that will be created by
                 // the current BlockSequence, it could have a break
                 // condition that must be satisfied;
@@ -287,6 +292,11 @@ public class PageBreaker extends AbstractBreaker {
                 Constants.FO_REGION_BODY).getDisplayAlign();
     }
 
+    /** {@inheritDoc} */
+    protected boolean isElementListContinued() {
+        return childFLM.isElementListContinued();
+    }
+
     /**
      * @return whether or not this flow has more page break opportunities
      */
@@ -20,6 +20,7 @@
 package org.apache.fop.layoutmgr;
 
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
@@ -40,6 +41,12 @@ class PageBreakingAlgorithm extends BreakingAlgorithm {
     /** the logger for the class */
     private static Log log = LogFactory.getLog(PageBreakingAlgorithm.class);
 
+    /**
+     * The maximum number of active nodes kept per page number in bounded lookahead mode,
+     * enough for every fitness class at two breakpoints.
+     */
+    private static final int MAX_ACTIVE_NODES_PER_LINE = 8;
+
     private final LayoutManager topLevelLM;
     private final PageProvider pageProvider;
     private final PageBreakingLayoutListener layoutListener;
@@ -111,6 +118,11 @@ class PageBreakingAlgorithm extends BreakingAlgorithm {
     private int previousFootnoteElementIndex = -2;
     private boolean relayingFootnotes;
 
+    /** The number of pages an active node may lag behind before its page is committed. */
+    private int lookahead;
+    /** The line of the last committed page break, in bounded lookahead mode. */
+    private int committedLine;
+
     /**
      * Construct a page breaking algorithm.
      * @param topLevelLM the top level layout manager
@@ -247,6 +259,7 @@ class PageBreakingAlgorithm extends BreakingAlgorithm {
         insertedFootnotesLength = 0;
         footnoteListIndex = 0;
         footnoteElementIndex = -1;
+        committedLine = 0;
         if (topLevelLM instanceof PageSequenceLayoutManager) {
             PageSequenceLayoutManager pslm = (PageSequenceLayoutManager) topLevelLM;
             if (pslm.handlingStartOfFloat() || pslm.handlingEndOfFloat()) {
@@ -509,6 +522,76 @@ class PageBreakingAlgorithm extends BreakingAlgorithm {
         }
         super.considerLegalBreak(element, elementIdx);
         newFootnotes = false;
+        if (lookahead > 0 && activeNodeCount > 0 && !handlingFloat()) {
+            pruneActiveNodes();
+        }
+    }
+
+    /**
+     * Sets the number of pages the algorithm may look ahead before committing to a page
+     * break. With a lookahead of N, once the best path to the most recent feasible break
+     * is more than N pages past the last committed page, the page break N pages back on
+     * that path is committed and all active nodes not descending from it are dropped.
+     * The number of active nodes per page is also capped. This makes breaking of long
+     * flows linear in time and bounded in memory, at the cost of optimality: a page break
+     * that would only pay off more than N pages later can no longer be chosen.
+     *
+     * @param lookahead the number of pages to look ahead, 0 (the default) for unbounded
+     * total-fit breaking
+     */
+    public void setLookahead(int lookahead) {
+        this.lookahead = lookahead;
+    }
+
+    private void pruneActiveNodes() {
+        KnuthNode bestNode = null;
+        for (int line = startLine; line < endLine; line++) {
+            int count = 0;
+            for (KnuthNode node = getNode(line); node != null; node = node.next) {
+                bestNode = super.compareNodes(bestNode, node);
+                count++;
+            }
+            while (count > MAX_ACTIVE_NODES_PER_LINE) {
+                KnuthNode worstNode = getNode(line);
+                for (KnuthNode node = worstNode.next; node != null; node = node.next) {
+                    if (node.totalDemerits > worstNode.totalDemerits) {
+                        worstNode = node;
+                    }
+                }
+                if (worstNode == bestNode) {
+                    break;
+                }
+                removeNode(line, worstNode);
+                count--;
+            }
+        }
+        int commitLine = bestNode.line - lookahead;
+        if (commitLine <= committedLine) {
+            return;
+        }
+        KnuthNode commitNode = bestNode;
+        while (commitNode.previous != null && commitNode.line > commitLine) {
+            commitNode = commitNode.previous;
+        }
+        committedLine = commitLine;
+        for (int line = startLine; line < endLine; line++) {
+            KnuthNode node = getNode(line);
+            while (node != null) {
+                KnuthNode next = node.next;
+                if (!descendsFrom(node, commitNode)) {
+                    removeNode(line, node);
+                }
+                node = next;
+            }
+        }
+    }
+
+    private static boolean descendsFrom(KnuthNode node, KnuthNode ancestor) {
+        KnuthNode n = node;
+        while (n != null && n.line > ancestor.line) {
+            n = n.previous;
+        }
+        return n == ancestor;
     }
 
     /** {@inheritDoc} */
@@ -1156,6 +1239,40 @@ class PageBreakingAlgorithm extends BreakingAlgorithm {
         return bestActiveNode.line;
     }
 
+    /**
+     * Returns the number of leading parts that contain all the footnotes cited in them,
+     * so that none of their footnotes is deferred to a later part.
+     * @param partCount the number of leading parts to check
+     * @return the largest number of parts, up to partCount, that defer no footnote
+     */
+    int getPartCountWithoutDeferredFootnotes(int partCount) {
+        if (!footnotesPending) {
+            return partCount;
+        }
+        int settledParts = 0;
+        int citedFootnotes = 0;
+        int elementIndex = 0;
+        Iterator<PageBreakPosition> iter = pageBreaks.iterator();
+        for (int part = 0; part < partCount && iter.hasNext(); part++) {
+            PageBreakPosition pbp = iter.next();
+            for (; elementIndex <= pbp.getLeafPos(); elementIndex++) {
+                ListElement element = par.getElement(elementIndex);
+                if (element instanceof KnuthBlockBox && ((KnuthBlockBox) element).hasAnchors()) {
+                    citedFootnotes += ((KnuthBlockBox) element).getElementLists().size();
+                }
+            }
+            int placedFootnotes = pbp.footnoteLastListIndex;
+            if (placedFootnotes >= 0 && pbp.footnoteLastElementIndex
+                    == getFootnoteList(placedFootnotes).size() - 1) {
+                placedFootnotes++;
+            }
+            if (placedFootnotes >= citedFootnotes) {
+                settledParts = part + 1;
+            }
+        }
+        return settledParts;
+    }
+
     /**
      * Obtain the element-list corresponding to the footnote at the given index.
      *
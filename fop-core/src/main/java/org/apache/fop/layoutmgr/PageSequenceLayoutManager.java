@@ -63,6 +63,9 @@ public class PageSequenceLayoutManager extends AbstractPageSequenceLayoutManager
     private int startIntrusionAdjustment;
     private int endIntrusionAdjustment;
 
+    /** Areas of static contents that are reused on the following pages */
+    private StaticContentAreaCache staticContentAreaCache;
+
     /**
      * Constructor
      *
@@ -177,6 +180,16 @@ public class PageSequenceLayoutManager extends AbstractPageSequenceLayoutManager
         }
     }
 
+    /** @return the areas of static contents laid out on earlier pages */
+    StaticContentAreaCache getStaticContentAreaCache() {
+        if (staticContentAreaCache == null) {
+            // tagged static contents must be laid out on every page
+            staticContentAreaCache = new StaticContentAreaCache(
+                    !getPageSequence().getUserAgent().isAccessibilityEnabled());
+        }
+        return staticContentAreaCache;
+    }
+
     /** {@inheritDoc} */
     protected Page createPage(int pageNumber, boolean isBlank) {
         return pageProvider.getPage(isBlank,
@@ -0,0 +1,173 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.layoutmgr;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.fop.area.Area;
+import org.apache.fop.fo.Constants;
+import org.apache.fop.fo.FOElementMapping;
+import org.apache.fop.fo.FONode;
+import org.apache.fop.fo.FObj;
+import org.apache.fop.fo.flow.ChangeBar;
+import org.apache.fop.fo.pagination.SideRegion;
+import org.apache.fop.fo.pagination.StaticContent;
+
+/**
+ * Keeps the areas of static contents laid out on earlier pages of a page-sequence, so
+ * that they can be added to later pages with the same side region without laying them
+ * out again. Headers and footers are often the same on every page of a document.
+ * <p>
+ * Only static contents whose layout cannot depend on the page are kept. Page numbers,
+ * retrieved markers, links, change bars and formatting objects with an id produce
+ * different or page-specific areas on every page, so such static contents are laid out
+ * for each page. The areas are shared between the pages and must not be changed after
+ * layout.
+ */
+final class StaticContentAreaCache {
+
+    private final boolean enabled;
+
+    private final Map<StaticContent, Boolean> reusable = new HashMap<StaticContent, Boolean>();
+
+    private final Map<SideRegion, Entry> entries = new HashMap<SideRegion, Entry>();
+
+    /**
+     * Creates a new cache.
+     * @param enabled false if areas must never be reused, for instance because each of
+     *                them has to be tagged on its own page
+     */
+    StaticContentAreaCache(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Returns the areas of a static content laid out earlier into a side region.
+     * @param staticContent the static content
+     * @param region the side region
+     * @param ipd the inline-progression-dimension of the region
+     * @param bpd the block-progression-dimension of the region
+     * @return the areas or null if the static content has to be laid out
+     */
+    List<Area> getAreas(StaticContent staticContent, SideRegion region, int ipd, int bpd) {
+        Entry entry = entries.get(region);
+        if (entry != null && entry.matches(staticContent, ipd, bpd)) {
+            return entry.areas;
+        }
+        return null;
+    }
+
+    /**
+     * Keeps the areas of a static content laid out into a side region, if they may be
+     * reused on other pages.
+     * @param staticContent the static content
+     * @param region the side region
+     * @param ipd the inline-progression-dimension of the region
+     * @param bpd the block-progression-dimension of the region
+     * @param areas the areas generated for the static content
+     */
+    void putAreas(StaticContent staticContent, SideRegion region, int ipd, int bpd,
+            List<Area> areas) {
+        if (isReusable(staticContent)) {
+            entries.put(region, new Entry(staticContent, ipd, bpd, new ArrayList<Area>(areas)));
+        }
+    }
+
+    /**
+     * Indicates whether the areas of a static content may be reused on other pages.
+     * @param staticContent the static content
+     * @return true if the layout of the static content does not depend on the page
+     */
+    boolean isReusable(StaticContent staticContent) {
+        if (!enabled) {
+            return false;
+        }
+        Boolean result = reusable.get(staticContent);
+        if (result == null) {
+            result = !hasPageDependentContent(staticContent);
+            reusable.put(staticContent, result);
+        }
+        return result;
+    }
+
+    private static boolean hasPageDependentContent(FONode node) {
+        switch (node.getNameId()) {
+        case Constants.FO_PAGE_NUMBER:
+        case Constants.FO_PAGE_NUMBER_CITATION:
+        case Constants.FO_PAGE_NUMBER_CITATION_LAST:
+        case Constants.FO_RETRIEVE_MARKER:
+        case Constants.FO_RETRIEVE_TABLE_MARKER:
+        case Constants.FO_BASIC_LINK:
+        case Constants.FO_CHANGE_BAR_BEGIN:
+        case Constants.FO_CHANGE_BAR_END:
+        case Constants.FO_INDEX_PAGE_CITATION_LIST:
+        case Constants.FO_INDEX_RANGE_BEGIN:
+        case Constants.FO_INDEX_RANGE_END:
+            return true;
+        case Constants.FO_INSTREAM_FOREIGN_OBJECT:
+            // the foreign content becomes a single area
+            return ((FObj) node).hasId();
+        default:
+            break;
+        }
+        if (node instanceof FObj) {
+            // nothing is known about the layout of extension elements
+            FObj fobj = (FObj) node;
+            if (fobj.hasId() || !FOElementMapping.URI.equals(fobj.getNamespaceURI())) {
+                return true;
+            }
+        }
+        List<ChangeBar> changeBars = node.getChangeBarList();
+        if (changeBars != null && !changeBars.isEmpty()) {
+            return true;
+        }
+        FONode.FONodeIterator iter = node.getChildNodes();
+        if (iter != null) {
+            while (iter.hasNext()) {
+                if (hasPageDependentContent(iter.next())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static final class Entry {
+
+        private final StaticContent staticContent;
+        private final int ipd;
+        private final int bpd;
+        private final List<Area> areas;
+
+        Entry(StaticContent staticContent, int ipd, int bpd, List<Area> areas) {
+            this.staticContent = staticContent;
+            this.ipd = ipd;
+            this.bpd = bpd;
+            this.areas = areas;
+        }
+
+        boolean matches(StaticContent staticContent, int ipd, int bpd) {
+            return this.staticContent == staticContent && this.ipd == ipd && this.bpd == bpd;
+        }
+    }
+}
@@ -136,8 +136,25 @@ public class StaticContentLayoutManager extends BlockStackingLayoutManager {
         }
         setContentAreaIPD(targetIPD);
         setContentAreaBPD(targetBPD);
+        RegionReference region = targetRegion;
+        StaticContentAreaCache areaCache = null;
+        if (region != null) {
+            areaCache = getPSLM().getStaticContentAreaCache();
+            List<Area> areas = areaCache.getAreas(getStaticContentFO(), regionFO,
+                    targetIPD, targetBPD);
+            if (areas != null) {
+                for (Area area : areas) {
+                    region.addBlock((Block) area);
+                }
+                return;
+            }
+        }
         breaker = new StaticContentBreaker(this, targetIPD, targetAlign);
         breaker.doLayout(targetBPD, autoHeight);
+        if (areaCache != null && !breaker.isOverflow()) {
+            areaCache.putAreas(getStaticContentFO(), regionFO, targetIPD, targetBPD,
+                    region.getBlocks());
+        }
         if (breaker.isOverflow()) {
             if (!autoHeight) {
                 String page = getPSLM().getCurrentPage().getPageViewport().getPageNumberString();
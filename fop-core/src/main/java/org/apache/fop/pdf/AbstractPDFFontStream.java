@@ -37,4 +37,10 @@ public abstract class AbstractPDFFontStream extends AbstractPDFStream {
         return PDFFilterList.FONT_FILTER;
     }
 
+    /** {@inheritDoc} */
+    @Override
+    protected boolean isConcurrentEncodingSupported() {
+        return true;
+    }
+
 }
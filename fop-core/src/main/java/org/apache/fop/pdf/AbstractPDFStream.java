@@ -20,8 +20,13 @@
 package org.apache.fop.pdf;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.apache.commons.io.output.CountingOutputStream;
 
@@ -41,6 +46,11 @@ public abstract class AbstractPDFStream extends PDFObject {
 
     private PDFNumber refLength = new PDFNumber();
 
+    /** The stream being encoded on a compression thread, if any */
+    private Future<StreamCache> concurrentEncoding;
+
+    private boolean encodingConcurrently;
+
     protected AbstractPDFStream() {
         this(true);
     }
@@ -89,6 +99,7 @@ public abstract class AbstractPDFStream extends PDFObject {
         }
         prepareImplicitFilters();
         getDocument().applyEncryption(this);
+        getDocument().applyCompression(getFilterList(), !encodingConcurrently);
     }
 
     /**
@@ -166,8 +177,9 @@ public abstract class AbstractPDFStream extends PDFObject {
      */
     protected StreamCache encodeStream() throws IOException {
         //Allocate a temporary buffer to find out the size of the encoded stream
-        final StreamCache encodedStream = StreamCacheFactory.getInstance()
-                .createStreamCache(getSizeHint());
+        StreamCacheFactory factory = getDocument() != null
+                ? getDocument().getStreamCacheFactory() : StreamCacheFactory.getInstance();
+        final StreamCache encodedStream = factory.createStreamCache(getSizeHint());
         OutputStream filteredOutput
                 = getFilterList().applyFilters(encodedStream.getOutputStream());
         outputRawStreamData(filteredOutput);
@@ -217,14 +229,27 @@ public abstract class AbstractPDFStream extends PDFObject {
      */
     @Override
     public int output(OutputStream stream) throws IOException {
-        setupFilterList();
+        if (concurrentEncoding == null) {
+            setupFilterList();
+        }
 
         CountingOutputStream cout = new CountingOutputStream(stream);
         StringBuilder textBuffer = new StringBuilder(64);
 
         StreamCache encodedStream = null;
         final Object lengthEntry;
-        if (encodeOnTheFly) {
+        if (concurrentEncoding != null) {
+            encodedStream = waitForConcurrentEncoding();
+            if (encodeOnTheFly) {
+                if (!refLength.hasObjectNumber()) {
+                    registerChildren();
+                }
+                refLength.setNumber(encodedStream.getSize());
+                lengthEntry = refLength;
+            } else {
+                lengthEntry = encodedStream.getSize();
+            }
+        } else if (encodeOnTheFly) {
             if (!refLength.hasObjectNumber()) {
                 registerChildren();
             }
@@ -250,6 +275,73 @@ public abstract class AbstractPDFStream extends PDFObject {
         return cout.getCount();
     }
 
+    /**
+     * Indicates whether the stream data may be encoded on another thread while the
+     * document writes other objects. This requires that producing the raw stream data
+     * does not touch state shared with other objects.
+     * @return true if the stream can be encoded concurrently
+     */
+    protected boolean isConcurrentEncodingSupported() {
+        return false;
+    }
+
+    /**
+     * Called on the thread writing the document right before the stream is handed to a
+     * compression thread. Subclasses whose raw stream data and dictionary entries come from
+     * the same source collect the entries here, so that the source is never used by both
+     * threads at once.
+     */
+    protected void prepareConcurrentEncoding() {
+        //nop
+    }
+
+    /**
+     * Starts encoding the stream on the given executor so that {@link #output(OutputStream)}
+     * only has to write out the result. Must be called on the thread writing the document.
+     * Streams that are too large are left alone; they are deflated in parallel blocks
+     * when written.
+     * @param executor the executor to encode the stream on
+     * @return true if the stream is being encoded
+     * @throws IOException in case of an I/O problem
+     */
+    boolean encodeConcurrently(ExecutorService executor) throws IOException {
+        if (concurrentEncoding != null) {
+            return true;
+        }
+        if (!isConcurrentEncodingSupported()
+                || getSizeHint() >= ParallelDeflateOutputStream.BLOCK_SIZE) {
+            return false;
+        }
+        encodingConcurrently = true;
+        setupFilterList();
+        prepareConcurrentEncoding();
+        concurrentEncoding = executor.submit(new Callable<StreamCache>() {
+            public StreamCache call() throws IOException {
+                return encodeStream();
+            }
+        });
+        return true;
+    }
+
+    private StreamCache waitForConcurrentEncoding() throws IOException {
+        try {
+            return concurrentEncoding.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while encoding a stream");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            } else if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException("Error while encoding a stream", e.getCause());
+        } finally {
+            concurrentEncoding = null;
+            encodingConcurrently = false;
+        }
+    }
+
     @Override
     public void setDocument(PDFDocument doc) {
         dictionary.setDocument(doc);
@@ -0,0 +1,195 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.pdf;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * StreamCache implementation that keeps its data outside the Java heap in a list of
+ * fixed-size direct byte buffers. The buffers are allocated one chunk at a time, so
+ * growing the cache never copies the data already written. Chunks released by
+ * {@link #clear()} go back to the pool of the cache for reuse by later streams. The
+ * caches created for a document share one pool.
+ */
+public class DirectBufferStreamCache implements StreamCache {
+
+    /** The size of a single chunk in bytes. */
+    public static final int CHUNK_SIZE = 16 * 1024;
+
+    private final ChunkPool pool;
+
+    private final List<ByteBuffer> chunks = new ArrayList<ByteBuffer>();
+
+    private int size;
+
+    private OutputStream output;
+
+    /**
+     * Creates a new DirectBufferStreamCache with a pool of its own.
+     */
+    public DirectBufferStreamCache() {
+        this(new ChunkPool());
+    }
+
+    /**
+     * Creates a new DirectBufferStreamCache.
+     * @param pool the pool to take chunks from and to return them to
+     */
+    DirectBufferStreamCache(ChunkPool pool) {
+        this.pool = pool;
+    }
+
+    private ByteBuffer writableChunk() {
+        ByteBuffer chunk = chunks.isEmpty() ? null : chunks.get(chunks.size() - 1);
+        if (chunk == null || !chunk.hasRemaining()) {
+            chunk = pool.acquireChunk();
+            chunks.add(chunk);
+        }
+        return chunk;
+    }
+
+    /**
+     * Get the current OutputStream. Do not store it - it may change
+     * from call to call.
+     * @throws IOException if there is an error getting the output stream
+     * @return the output stream containing the data
+     */
+    public OutputStream getOutputStream() throws IOException {
+        if (output == null) {
+            output = new OutputStream() {
+
+                public void write(int b) throws IOException {
+                    writableChunk().put((byte) b);
+                    size++;
+                }
+
+                public void write(byte[] b, int off, int len) throws IOException {
+                    while (len > 0) {
+                        ByteBuffer chunk = writableChunk();
+                        int count = Math.min(len, chunk.remaining());
+                        chunk.put(b, off, count);
+                        off += count;
+                        len -= count;
+                        size += count;
+                    }
+                }
+            };
+        }
+        return output;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void write(byte[] data) throws IOException {
+        getOutputStream().write(data);
+    }
+
+    /**
+     * Outputs the cached bytes to the given stream. The chunks are copied to the stream
+     * through a channel on it.
+     * @param out the output stream to write to
+     * @return the number of bytes written
+     * @throws IOException if there is an IO error writing to the output stream
+     */
+    public int outputContents(OutputStream out) throws IOException {
+        if (size == 0) {
+            return 0;
+        }
+        //The channel is not closed since that would close the target stream
+        WritableByteChannel channel = Channels.newChannel(out);
+        for (ByteBuffer chunk : chunks) {
+            ByteBuffer contents = chunk.duplicate();
+            contents.flip();
+            while (contents.hasRemaining()) {
+                channel.write(contents);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Returns the current size of the stream.
+     * @throws IOException if there is an error getting the size
+     * @return the length of the stream
+     */
+    public int getSize() throws IOException {
+        return size;
+    }
+
+    /**
+     * Clears and resets the cache, returning its chunks to the pool.
+     * @throws IOException if there is an error closing the stream
+     */
+    public void clear() throws IOException {
+        for (ByteBuffer chunk : chunks) {
+            pool.releaseChunk(chunk);
+        }
+        chunks.clear();
+        size = 0;
+        output = null;
+    }
+
+    /**
+     * A bounded pool of released chunks. The pool may be used by the caches of one
+     * document on several threads.
+     */
+    static final class ChunkPool {
+
+        /** The maximum number of released chunks kept for reuse (4 MB). */
+        private static final int MAX_POOLED_CHUNKS = 256;
+
+        private final Queue<ByteBuffer> chunks = new ConcurrentLinkedQueue<ByteBuffer>();
+
+        private final AtomicInteger size = new AtomicInteger();
+
+        ByteBuffer acquireChunk() {
+            ByteBuffer chunk = chunks.poll();
+            if (chunk == null) {
+                return ByteBuffer.allocateDirect(CHUNK_SIZE);
+            }
+            size.decrementAndGet();
+            chunk.clear();
+            return chunk;
+        }
+
+        void releaseChunk(ByteBuffer chunk) {
+            if (size.incrementAndGet() <= MAX_POOLED_CHUNKS) {
+                chunks.offer(chunk);
+            } else {
+                //Leave it to the garbage collector to free the native memory
+                size.decrementAndGet();
+            }
+        }
+
+        int getPooledChunkCount() {
+            return size.get();
+        }
+    }
+}
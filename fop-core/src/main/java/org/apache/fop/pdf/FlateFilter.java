@@ -21,6 +21,9 @@ package org.apache.fop.pdf;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
 
 import org.apache.xmlgraphics.util.io.FlateEncodeOutputStream;
 
@@ -79,6 +82,9 @@ public class FlateFilter extends PDFFilter {
     private int colors;
     private int bitsPerComponent;
     private int columns;
+    private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+    private ExecutorService executor;
+    private int parallelism;
 
     /**
      * Get the name of this filter.
@@ -208,13 +214,61 @@ public class FlateFilter extends PDFFilter {
     }
 
 
+    /**
+     * Sets the deflate compression level.
+     *
+     * @param level the compression level (0-9 or {@link Deflater#DEFAULT_COMPRESSION})
+     */
+    public void setCompressionLevel(int level) {
+        this.compressionLevel = level;
+    }
+
+    /**
+     * Get the deflate compression level.
+     *
+     * @return the compression level
+     */
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    /**
+     * Sets an executor for deflating large streams in blocks on several threads.
+     *
+     * @param executor the executor to use, or null to deflate on the calling thread
+     * @param parallelism the number of threads of the executor
+     */
+    public void setParallelDeflate(ExecutorService executor, int parallelism) {
+        this.executor = executor;
+        this.parallelism = parallelism;
+    }
+
     /** {@inheritDoc} */
     public OutputStream applyFilter(OutputStream out) throws IOException {
         if (isApplied()) {
             return out;
+        } else if (executor != null) {
+            return new ParallelDeflateOutputStream(out, compressionLevel, executor, parallelism);
+        } else if (compressionLevel != Deflater.DEFAULT_COMPRESSION) {
+            return new LevelDeflaterOutputStream(out, compressionLevel);
         } else {
             return new FlateEncodeOutputStream(out);
         }
     }
 
+    private static final class LevelDeflaterOutputStream extends DeflaterOutputStream {
+
+        LevelDeflaterOutputStream(OutputStream out, int level) {
+            super(out, new Deflater(level));
+        }
+
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                def.end();
+            }
+        }
+    }
+
 }
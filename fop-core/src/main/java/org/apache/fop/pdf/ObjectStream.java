@@ -25,8 +25,6 @@ import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
 
-import org.apache.fop.pdf.xref.CompressedObjectReference;
-
 /**
  * An object stream, as described in section 3.4.6 of the PDF 1.5 Reference.
  */
@@ -47,14 +45,24 @@ public class ObjectStream extends PDFStream {
         put("Extends", previous);
     }
 
-    CompressedObjectReference addObject(CompressedObject obj) {
+    /**
+     * Adds an object to this stream.
+     *
+     * @param obj the object to add
+     * @return the index of the object in this stream
+     */
+    int addObject(CompressedObject obj) {
         if (obj == null) {
             throw new NullPointerException("obj must not be null");
         }
-        CompressedObjectReference reference = new CompressedObjectReference(obj.getObjectNumber(),
-                getObjectNumber(), objects.size());
+        obj.getObjectNumber(); //Direct objects have no number and cannot be compressed
         objects.add(obj);
-        return reference;
+        return objects.size() - 1;
+    }
+
+    @Override
+    protected boolean isConcurrentEncodingSupported() {
+        return false;
     }
 
     @Override
@@ -75,6 +83,14 @@ public class ObjectStream extends PDFStream {
         streamContent.writeTo(out);
     }
 
+    @Override
+    public int output(OutputStream stream) throws IOException {
+        int length = super.output(stream);
+        //Later streams only need the object number of this one for their Extends entry
+        objects = new ArrayList<CompressedObject>();
+        return length;
+    }
+
     @Override
     protected void populateStreamDict(Object lengthEntry) {
         put("Type", OBJ_STM);
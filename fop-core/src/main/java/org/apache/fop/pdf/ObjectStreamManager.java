@@ -19,15 +19,22 @@
 
 package org.apache.fop.pdf;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.fop.pdf.xref.CompressedObjectReference;
+import org.apache.fop.pdf.xref.CompressedObjectTable;
 
 /**
  * Manages a collection of object streams, creating new streams as necessary to keep the
  * number of objects in each stream at the recommended value. Streams are related to each
  * other through the use of the Extends entry in the stream dictionary.
+ * <p>
+ * If an output stream is given, every object stream is written as soon as it is full,
+ * so that only the stream being filled is held in memory. The locations of the
+ * compressed objects are recorded in a {@link CompressedObjectTable}.
  */
 class ObjectStreamManager {
 
@@ -35,24 +42,56 @@ class ObjectStreamManager {
 
     private final PDFDocument pdfDocument;
 
-    private final List<CompressedObjectReference> compressedObjectReferences;
+    private final OutputStream outputStream;
+
+    private final CompressedObjectTable compressedObjects = new CompressedObjectTable();
 
     private int numObjectsInStream;
 
     private ObjectStream currentObjectStream;
 
+    /**
+     * Creates a manager whose object streams are added to the document's trailer objects.
+     * @param pdfDocument the document
+     */
     ObjectStreamManager(PDFDocument pdfDocument) {
+        this(pdfDocument, null);
+    }
+
+    /**
+     * Creates a manager that writes its object streams as soon as they are full.
+     * @param pdfDocument the document
+     * @param outputStream the stream to write the object streams to
+     */
+    ObjectStreamManager(PDFDocument pdfDocument, OutputStream outputStream) {
         this.pdfDocument = pdfDocument;
+        this.outputStream = outputStream;
         createObjectStream();
-        compressedObjectReferences = new ArrayList<CompressedObjectReference>();
     }
 
-    void add(CompressedObject compressedObject) {
+    void add(CompressedObject compressedObject) throws IOException {
         if (numObjectsInStream++ == OBJECT_STREAM_CAPACITY) {
+            sealObjectStream();
             createObjectStream();
             numObjectsInStream = 1;
         }
-        compressedObjectReferences.add(currentObjectStream.addObject(compressedObject));
+        int index = currentObjectStream.addObject(compressedObject);
+        compressedObjects.add(compressedObject.getObjectNumber().getNumber(),
+                currentObjectStream.getObjectNumber().getNumber(), index);
+    }
+
+    /**
+     * Writes the last object stream, if the object streams are written as they fill.
+     * @throws IOException if an I/O error occurs
+     */
+    void finish() throws IOException {
+        sealObjectStream();
+    }
+
+    private void sealObjectStream() throws IOException {
+        if (outputStream != null) {
+            pdfDocument.streamIndirectObject(currentObjectStream, outputStream);
+        }
     }
 
     private void createObjectStream() {
@@ -60,10 +99,24 @@ class ObjectStreamManager {
                 ? new ObjectStream()
                 : new ObjectStream(currentObjectStream);
         pdfDocument.assignObjectNumber(currentObjectStream);
-        pdfDocument.addTrailerObject(currentObjectStream);
+        if (outputStream == null) {
+            pdfDocument.addTrailerObject(currentObjectStream);
+        }
+    }
+
+    CompressedObjectTable getCompressedObjects() {
+        return compressedObjects;
     }
 
     List<CompressedObjectReference> getCompressedObjectReferences() {
-        return compressedObjectReferences;
+        List<CompressedObjectReference> references
+                = new ArrayList<CompressedObjectReference>(compressedObjects.size());
+        for (int i = 0; i < compressedObjects.size(); i++) {
+            references.add(new CompressedObjectReference(
+                    new PDFObjectNumber(compressedObjects.getObjectNumber(i)),
+                    new PDFObjectNumber(compressedObjects.getObjectStreamNumber(i)),
+                    compressedObjects.getIndex(i)));
+        }
+        return references;
     }
 }
@@ -413,6 +413,13 @@ public class PDFCMap extends PDFStream {
         this.base = base;
     }
 
+    /** {@inheritDoc} */
+    @Override
+    protected boolean isConcurrentEncodingSupported() {
+        //The contents are only built when the CMap is written
+        return false;
+    }
+
     /**
      * Creates the CMapBuilder that will build the CMap's content.
      * @param writer a Writer to write the CMap's contents to
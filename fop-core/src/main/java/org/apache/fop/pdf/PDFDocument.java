@@ -33,6 +33,12 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -83,7 +89,7 @@ public class PDFDocument {
     protected long position;
 
     /** the character position of each object */
-    protected List<Long> indirectObjectOffsets = new ArrayList<Long>();
+    protected List<Long> indirectObjectOffsets = new PackedOffsetList();
 
     protected List<PDFStructElem> structureTreeElements;
 
@@ -180,6 +186,16 @@ public class PDFDocument {
 
     private boolean formXObjectEnabled;
 
+    private boolean streamingEnabled;
+
+    private StreamCacheFactory streamCacheFactory = StreamCacheFactory.getInstance();
+
+    private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+
+    private int compressionParallelism = 1;
+
+    private ExecutorService compressionExecutor;
+
     protected boolean outputStarted;
 
     /**
@@ -1023,11 +1039,76 @@ public class PDFDocument {
         //LinkedList) allows for output() methods to create and register objects
         //on the fly even during serialization.
         while (this.objects.size() > 0) {
+            if (compressionParallelism > 1) {
+                encodeStreamsConcurrently();
+            }
             PDFObject object = this.objects.remove(0);
             streamIndirectObject(object, stream);
         }
     }
 
+    /**
+     * Starts encoding the next few streams waiting to be written on the compression
+     * threads, keeping at most two streams per thread in flight.
+     */
+    private void encodeStreamsConcurrently() throws IOException {
+        if (linearizationEnabled || isEncryptionActive()) {
+            return;
+        }
+        int maxPending = compressionParallelism * 2;
+        int maxScanned = maxPending * 8;
+        int pending = 0;
+        int scanned = 0;
+        for (PDFObject object : objects) {
+            if (pending == maxPending || scanned++ == maxScanned) {
+                break;
+            }
+            if (object instanceof AbstractPDFStream
+                    && ((AbstractPDFStream) object).encodeConcurrently(getCompressionExecutor())) {
+                pending++;
+            }
+        }
+    }
+
+    private ExecutorService getCompressionExecutor() {
+        if (compressionExecutor == null) {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(compressionParallelism,
+                    compressionParallelism, 10, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                    new ThreadFactory() {
+                        public Thread newThread(Runnable r) {
+                            Thread thread = new Thread(r, "FOP PDF compression");
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+            //Let the threads of documents which are never finished die
+            executor.allowCoreThreadTimeOut(true);
+            compressionExecutor = executor;
+        }
+        return compressionExecutor;
+    }
+
+    /**
+     * Applies the compression settings of the document to the Flate filters in the
+     * given filter list.
+     * @param filters the filter list of a stream
+     * @param parallelDeflate true if large streams may be deflated in blocks on the
+     * compression threads
+     */
+    void applyCompression(PDFFilterList filters, boolean parallelDeflate) {
+        for (PDFFilter filter : filters.getFilters()) {
+            if (filter instanceof FlateFilter) {
+                FlateFilter flate = (FlateFilter) filter;
+                flate.setCompressionLevel(compressionLevel);
+                if (parallelDeflate && compressionParallelism > 1) {
+                    flate.setParallelDeflate(getCompressionExecutor(), compressionParallelism);
+                } else {
+                    flate.setParallelDeflate(null, 0);
+                }
+            }
+        }
+    }
+
     protected void writeTrailer(OutputStream stream, int first, int last, int size, long mainOffset, long startxref)
             throws IOException {
         TrailerOutputHelper trailerOutputHelper = mayCompressStructureTreeElements()
@@ -1129,6 +1210,10 @@ public class PDFDocument {
         createDestinations();
         output(stream);
         outputTrailerObjectsAndXref(stream);
+        if (compressionExecutor != null) {
+            compressionExecutor.shutdown();
+            compressionExecutor = null;
+        }
     }
 
     private void createDestinations() {
@@ -1221,10 +1306,11 @@ public class PDFDocument {
         public void outputStructureTreeElements(OutputStream stream)
                 throws IOException {
             assert structureTreeElements.size() > 0;
-            structureTreeObjectStreams = new ObjectStreamManager(PDFDocument.this);
+            structureTreeObjectStreams = new ObjectStreamManager(PDFDocument.this, stream);
             for (PDFStructElem structElem : structureTreeElements) {
                 structureTreeObjectStreams.add(structElem);
             }
+            structureTreeObjectStreams.finish();
         }
 
         public long outputCrossReferenceObject(OutputStream stream,
@@ -1233,7 +1319,7 @@ public class PDFDocument {
             assert objects.isEmpty();
             new CrossReferenceStream(PDFDocument.this, ++objectcount, trailerDictionary, position,
                     indirectObjectOffsets,
-                    structureTreeObjectStreams.getCompressedObjectReferences())
+                    structureTreeObjectStreams.getCompressedObjects())
                     .output(stream);
             return position;
         }
@@ -1269,4 +1355,118 @@ public class PDFDocument {
     public void setFormXObjectEnabled(boolean b) {
         formXObjectEnabled = b;
     }
+
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    /**
+     * Sets the compression level used by the Flate filters of the document's streams.
+     * @param level a level between 0 (no compression) and 9 (best compression), or
+     * {@link Deflater#DEFAULT_COMPRESSION}
+     */
+    public void setCompressionLevel(int level) {
+        if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Invalid compression level: " + level);
+        }
+        compressionLevel = level;
+    }
+
+    public int getCompressionParallelism() {
+        return compressionParallelism;
+    }
+
+    /**
+     * Sets the number of threads compressing the document's streams. With more than one
+     * thread, the streams waiting to be written are deflated ahead on the compression
+     * threads while the objects are still written in order, and large streams are
+     * deflated in blocks on several threads. Streams of encrypted documents are only
+     * deflated in blocks.
+     * @param parallelism the number of compression threads
+     */
+    public void setCompressionParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("The compression parallelism must be at least 1");
+        }
+        compressionParallelism = parallelism;
+    }
+
+    /**
+     * Indicates whether the document drops its references to written objects.
+     * @return true if streaming is enabled
+     */
+    public boolean isStreamingEnabled() {
+        return streamingEnabled;
+    }
+
+    /**
+     * Enables the streaming mode in which the document drops its references to objects
+     * as soon as they have been written (see {@link #releaseWrittenObjects()}), so that
+     * the memory needed for a document no longer grows with its number of pages.
+     * Objects written in streaming mode are no longer shared with objects created later
+     * (for example identical links). Streaming has no effect on linearized documents.
+     * @param b true to enable streaming
+     */
+    public void setStreamingEnabled(boolean b) {
+        streamingEnabled = b;
+    }
+
+    /**
+     * Indicates whether streams are cached in direct buffers outside the heap.
+     * @return true if direct buffers are used
+     */
+    public boolean isDirectBuffersEnabled() {
+        return streamCacheFactory.isDirectBuffers();
+    }
+
+    /**
+     * Enables caching streams in direct buffers outside the heap. This applies to the contents
+     * of the content streams written after this call, like those of the pages, and to encoded
+     * streams. Streams are cached once encoded if their length has to be known before they
+     * are written, or if they are encoded ahead on compression threads. This is worth enabling
+     * for large documents whose streams would otherwise need large byte arrays. The buffers
+     * are pooled for the streams of this document.
+     * @param b true to cache streams in direct buffers
+     */
+    public void setDirectBuffersEnabled(boolean b) {
+        if (b != isDirectBuffersEnabled()) {
+            streamCacheFactory = b ? StreamCacheFactory.newDirectBufferInstance()
+                    : StreamCacheFactory.getInstance();
+        }
+    }
+
+    /**
+     * Returns the factory for the caches of encoded streams of this document.
+     * @return the stream cache factory
+     */
+    public StreamCacheFactory getStreamCacheFactory() {
+        return streamCacheFactory;
+    }
+
+    /**
+     * Releases the page-level objects which have been written to the output stream in
+     * streaming mode. Objects which are written with the trailer (the page tree, the
+     * structure tree, the destinations and the GoTo actions) are still kept. Nothing is
+     * released if streaming is disabled or if there are objects which have not been written
+     * yet.
+     */
+    public void releaseWrittenObjects() {
+        if (!streamingEnabled || linearizationEnabled || !objects.isEmpty()) {
+            return;
+        }
+        pageObjs.clear();
+        links.clear();
+        filespecs.clear();
+        gotoremotes.clear();
+        launches.clear();
+    }
+
+    /**
+     * Returns the number of pages the document still holds on to. In streaming mode these are
+     * only the pages which have not been written yet.
+     * @return the number of retained pages
+     */
+    public int getRetainedPageCount() {
+        return pageObjs.size();
+    }
 }
@@ -43,6 +43,9 @@ public class PDFImageXObject extends PDFXObject {
 
     private PDFImage pdfimage;
 
+    /** The image entries of the dictionary, collected before the image is encoded concurrently */
+    private PDFDictionary imageEntries;
+
     /**
      * create an XObject with the given number and name and load the
      * image in the object
@@ -82,31 +85,54 @@ public class PDFImageXObject extends PDFXObject {
     /** {@inheritDoc} */
     protected void populateStreamDict(Object lengthEntry) {
         super.populateStreamDict(lengthEntry);
+        if (imageEntries != null) {
+            //In the order the entries were put, as if they were put right now
+            for (String key : imageEntries.order) {
+                put(key, imageEntries.get(key));
+            }
+            imageEntries = null;
+        } else {
+            populateImageEntries(getDictionary());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * The image entries of the dictionary are collected now, so the image is only used by
+     * the compression thread until it has been encoded.
+     */
+    @Override
+    protected void prepareConcurrentEncoding() {
+        imageEntries = new PDFDictionary(this);
+        populateImageEntries(imageEntries);
+    }
+
+    private void populateImageEntries(PDFDictionary dict) {
         if (pdfimage.isPS()) {
-            populateDictionaryFromPS();
+            populateDictionaryFromPS(dict);
         } else {
-            populateDictionaryFromImage();
+            populateDictionaryFromImage(dict);
         }
     }
 
-    private void populateDictionaryFromPS() {
+    private void populateDictionaryFromPS(PDFDictionary dict) {
         getDocumentSafely().getProfile().verifyPSXObjectsAllowed();
-        put("Subtype", new PDFName("PS"));
+        dict.put("Subtype", new PDFName("PS"));
     }
 
-    private void populateDictionaryFromImage() {
-        put("Subtype", new PDFName("Image"));
-        put("Width", pdfimage.getWidth());
-        put("Height", pdfimage.getHeight());
-        put("BitsPerComponent", pdfimage.getBitsPerComponent());
+    private void populateDictionaryFromImage(PDFDictionary dict) {
+        dict.put("Subtype", new PDFName("Image"));
+        dict.put("Width", pdfimage.getWidth());
+        dict.put("Height", pdfimage.getHeight());
+        dict.put("BitsPerComponent", pdfimage.getBitsPerComponent());
 
         PDFICCStream pdfICCStream = pdfimage.getICCStream();
         if (pdfICCStream != null) {
-            put("ColorSpace", new PDFArray(this,
+            dict.put("ColorSpace", new PDFArray(this,
                     new Object[] {new PDFName("ICCBased"), pdfICCStream}));
         } else {
             PDFDeviceColorSpace cs = pdfimage.getColorSpace();
-            put("ColorSpace", new PDFName(cs.getName()));
+            dict.put("ColorSpace", new PDFName(cs.getName()));
         }
 
         if (pdfimage.isInverted()) {
@@ -121,7 +147,7 @@ public class PDFImageXObject extends PDFXObject {
                 decode.add(one);
                 decode.add(zero);
             }
-            put("Decode", decode);
+            dict.put("Decode", decode);
         }
 
         if (pdfimage.isTransparent()) {
@@ -138,14 +164,21 @@ public class PDFImageXObject extends PDFXObject {
                 mask.add(Integer.valueOf(transp.blue255()));
                 mask.add(Integer.valueOf(transp.blue255()));
             }
-            put("Mask", mask);
+            dict.put("Mask", mask);
         }
         PDFReference ref = pdfimage.getSoftMaskReference();
         if (ref != null) {
-            put("SMask", ref);
+            dict.put("SMask", ref);
         }
         //Important: do this at the end so previous values can be overwritten.
-        pdfimage.populateXObjectDictionary(getDictionary());
+        pdfimage.populateXObjectDictionary(dict);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected boolean isConcurrentEncodingSupported() {
+        //PDF/VT digests the image data before it is written
+        return !getDocument().getProfile().isPDFVTActive();
     }
 
     /** {@inheritDoc} */
@@ -154,8 +187,18 @@ public class PDFImageXObject extends PDFXObject {
     }
 
     /** {@inheritDoc} */
+    /**
+     * {@inheritDoc}
+     * The hint is the size of the decoded image data.
+     */
     protected int getSizeHint() throws IOException {
-        return 0;
+        if (pdfimage.isPS()) {
+            return 0;
+        }
+        PDFDeviceColorSpace cs = pdfimage.getColorSpace();
+        int components = cs != null ? cs.getNumComponents() : 1;
+        long rowSize = ((long) pdfimage.getWidth() * components * pdfimage.getBitsPerComponent() + 7) / 8;
+        return (int) Math.min(rowSize * pdfimage.getHeight(), Integer.MAX_VALUE);
     }
 
     /** {@inheritDoc} */
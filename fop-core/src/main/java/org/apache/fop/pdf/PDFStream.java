@@ -38,7 +38,8 @@ import java.security.NoSuchAlgorithmException;
 public class PDFStream extends AbstractPDFStream {
 
     /**
-     * The stream of PDF commands
+     * The stream of PDF commands, created from the stream cache factory of the document when
+     * it is first written to
      */
     protected StreamCache data;
 
@@ -49,34 +50,34 @@ public class PDFStream extends AbstractPDFStream {
      * Create an empty stream object
      */
     public PDFStream() {
-        setUp();
     }
 
     public PDFStream(PDFDictionary dictionary) {
         super(dictionary);
-        setUp();
     }
 
     public PDFStream(PDFDictionary dictionary, boolean encodeOnTheFly) {
         super(dictionary, encodeOnTheFly);
-        setUp();
     }
 
     public PDFStream(boolean encodeOnTheFly) {
         super(encodeOnTheFly);
-        setUp();
     }
 
-    private void setUp() {
-        try {
-            data = StreamCacheFactory.getInstance().createStreamCache();
-            this.streamWriter = new OutputStreamWriter(
-                    getBufferOutputStream(), PDFDocument.ENCODING);
-            //Buffer to minimize calls to the converter
-            this.streamWriter = new java.io.BufferedWriter(this.streamWriter);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+    /**
+     * Returns the cache holding the stream of PDF commands. It is created when first needed
+     * from the stream cache factory of the document, or the default one if the stream does
+     * not belong to a document yet.
+     * @return the stream cache
+     * @throws IOException if the cache cannot be created
+     */
+    protected StreamCache getData() throws IOException {
+        if (data == null) {
+            StreamCacheFactory factory = getDocument() != null
+                    ? getDocument().getStreamCacheFactory() : StreamCacheFactory.getInstance();
+            data = factory.createStreamCache();
         }
+        return data;
     }
 
     /**
@@ -86,7 +87,7 @@ public class PDFStream extends AbstractPDFStream {
      */
     public void add(String s) {
         try {
-            this.streamWriter.write(s);
+            getBufferWriter().write(s);
         } catch (IOException ex) {
             //TODO throw the exception and catch it elsewhere
             ex.printStackTrace();
@@ -114,7 +115,7 @@ public class PDFStream extends AbstractPDFStream {
                 }
             }
             sb.getChars(0, nHave, charBuffer, 0);
-            this.streamWriter.write(charBuffer, 0, nHave);
+            getBufferWriter().write(charBuffer, 0, nHave);
         } catch (IOException ex) {
             //TODO throw the exception and catch it elsewhere
             ex.printStackTrace();
@@ -122,7 +123,9 @@ public class PDFStream extends AbstractPDFStream {
     }
 
     private void flush() throws IOException {
-        this.streamWriter.flush();
+        if (this.streamWriter != null) {
+            this.streamWriter.flush();
+        }
     }
 
     /**
@@ -130,6 +133,16 @@ public class PDFStream extends AbstractPDFStream {
      * @return the Writer
      */
     public Writer getBufferWriter() {
+        if (this.streamWriter == null) {
+            try {
+                this.streamWriter = new OutputStreamWriter(
+                        getData().getOutputStream(), PDFDocument.ENCODING);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            //Buffer to minimize calls to the converter
+            this.streamWriter = new java.io.BufferedWriter(this.streamWriter);
+        }
         return this.streamWriter;
     }
 
@@ -140,10 +153,8 @@ public class PDFStream extends AbstractPDFStream {
      * @throws IOException In case of an I/O problem
      */
     public OutputStream getBufferOutputStream() throws IOException {
-        if (this.streamWriter != null) {
-            flush(); //Just to be sure
-        }
-        return this.data.getOutputStream();
+        flush(); //Just to be sure
+        return getData().getOutputStream();
     }
 
     /**
@@ -152,8 +163,8 @@ public class PDFStream extends AbstractPDFStream {
      * @throws IOException in case of an I/O problem
      */
     public void setData(byte[] data) throws IOException {
-        this.data.clear();
-        this.data.write(data);
+        getData().clear();
+        getData().write(data);
     }
 
     /**
@@ -163,7 +174,7 @@ public class PDFStream extends AbstractPDFStream {
     public int getDataLength() {
         try {
             flush();
-            return data.getSize();
+            return getData().getSize();
         } catch (Exception e) {
             //TODO throw the exception and catch it elsewhere
             e.printStackTrace();
@@ -171,16 +182,22 @@ public class PDFStream extends AbstractPDFStream {
         }
     }
 
+    /** {@inheritDoc} */
+    @Override
+    protected boolean isConcurrentEncodingSupported() {
+        return true;
+    }
+
     /** {@inheritDoc} */
     protected int getSizeHint() throws IOException {
         flush();
-        return data.getSize();
+        return getData().getSize();
     }
 
     /** {@inheritDoc} */
     protected void outputRawStreamData(OutputStream out) throws IOException {
         flush();
-        data.outputContents(out);
+        getData().outputContents(out);
     }
 
     /**
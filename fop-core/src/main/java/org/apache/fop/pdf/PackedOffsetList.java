@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.pdf;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * A list of object offsets backed by a primitive array, so that the offsets of a
+ * document's indirect objects do not need a boxed Long each. Null elements, which
+ * stand for objects without an offset, are supported.
+ */
+final class PackedOffsetList extends AbstractList<Long> implements RandomAccess {
+
+    private static final long NO_OFFSET = -1;
+
+    private long[] offsets = new long[256];
+
+    private int size;
+
+    /** {@inheritDoc} */
+    public Long get(int index) {
+        checkIndex(index);
+        long offset = offsets[index];
+        return offset == NO_OFFSET ? null : Long.valueOf(offset);
+    }
+
+    /** {@inheritDoc} */
+    public int size() {
+        return size;
+    }
+
+    /** {@inheritDoc} */
+    public Long set(int index, Long element) {
+        Long previous = get(index);
+        offsets[index] = element == null ? NO_OFFSET : element;
+        return previous;
+    }
+
+    /** {@inheritDoc} */
+    public void add(int index, Long element) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        if (size == offsets.length) {
+            offsets = Arrays.copyOf(offsets, size * 2);
+        }
+        System.arraycopy(offsets, index, offsets, index + 1, size - index);
+        offsets[index] = element == null ? NO_OFFSET : element;
+        size++;
+        modCount++;
+    }
+
+    /** {@inheritDoc} */
+    public Long remove(int index) {
+        Long previous = get(index);
+        System.arraycopy(offsets, index + 1, offsets, index, size - index - 1);
+        size--;
+        modCount++;
+        return previous;
+    }
+
+    /** {@inheritDoc} */
+    public void clear() {
+        size = 0;
+        modCount++;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+}
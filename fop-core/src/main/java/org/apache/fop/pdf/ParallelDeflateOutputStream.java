@@ -0,0 +1,233 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.pdf;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.Adler32;
+import java.util.zip.Deflater;
+
+/**
+ * OutputStream that produces zlib (FlateDecode) data by deflating blocks of its input on
+ * an executor. Every block is deflated as a separate raw deflate stream, primed with the
+ * last 32 KB of the preceding block as dictionary and terminated by a sync flush, so
+ * the concatenated blocks form one valid deflate stream. Input that fits in a single
+ * block is deflated on the calling thread as usual.
+ */
+final class ParallelDeflateOutputStream extends OutputStream {
+
+    /** The size of the blocks deflated independently. */
+    static final int BLOCK_SIZE = 128 * 1024;
+
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+
+    private final OutputStream out;
+
+    private final int level;
+
+    private final ExecutorService executor;
+
+    private final int maxPendingBlocks;
+
+    private final LinkedList<Future<byte[]>> pendingBlocks = new LinkedList<Future<byte[]>>();
+
+    private final Adler32 checksum = new Adler32();
+
+    private byte[] block = new byte[BLOCK_SIZE];
+
+    private int count;
+
+    private byte[] previousBlock;
+
+    private boolean closed;
+
+    /**
+     * Creates a new stream.
+     * @param out the stream receiving the zlib data
+     * @param level the deflate compression level
+     * @param executor the executor deflating the blocks
+     * @param parallelism the number of threads of the executor
+     */
+    ParallelDeflateOutputStream(OutputStream out, int level, ExecutorService executor,
+            int parallelism) {
+        this.out = out;
+        this.level = level;
+        this.executor = executor;
+        this.maxPendingBlocks = parallelism * 2;
+    }
+
+    /** {@inheritDoc} */
+    public void write(int b) throws IOException {
+        if (count == block.length) {
+            submitBlock(false);
+        }
+        block[count++] = (byte) b;
+    }
+
+    /** {@inheritDoc} */
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (count == block.length) {
+                submitBlock(false);
+            }
+            int chunk = Math.min(len, block.length - count);
+            System.arraycopy(b, off, block, count, chunk);
+            count += chunk;
+            off += chunk;
+            len -= chunk;
+        }
+    }
+
+    private void submitBlock(final boolean last) throws IOException {
+        if (previousBlock == null) {
+            writeHeader();
+        }
+        checksum.update(block, 0, count);
+        final byte[] input = block;
+        final int length = count;
+        final byte[] dictionary = previousBlock;
+        pendingBlocks.add(executor.submit(new Callable<byte[]>() {
+            public byte[] call() {
+                return deflateBlock(input, length, dictionary, last);
+            }
+        }));
+        previousBlock = block;
+        block = new byte[BLOCK_SIZE];
+        count = 0;
+        while (pendingBlocks.size() >= maxPendingBlocks
+                || (!pendingBlocks.isEmpty() && pendingBlocks.getFirst().isDone())) {
+            writeNextBlock();
+        }
+    }
+
+    private byte[] deflateBlock(byte[] input, int length, byte[] dictionary, boolean last) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            if (dictionary != null) {
+                deflater.setDictionary(dictionary, dictionary.length - DICTIONARY_SIZE,
+                        DICTIONARY_SIZE);
+            }
+            deflater.setInput(input, 0, length);
+            ByteArrayOutputStream result = new ByteArrayOutputStream(length / 2);
+            byte[] buf = new byte[8192];
+            if (last) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    int len = deflater.deflate(buf);
+                    result.write(buf, 0, len);
+                }
+            } else {
+                int len;
+                do {
+                    len = deflater.deflate(buf, 0, buf.length, Deflater.SYNC_FLUSH);
+                    result.write(buf, 0, len);
+                } while (len == buf.length);
+            }
+            return result.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private void writeHeader() throws IOException {
+        //zlib header: deflate with a 32K window, compression level hint and check bits
+        int flags;
+        if (level == Deflater.DEFAULT_COMPRESSION || level == 6) {
+            flags = 0x9C;
+        } else if (level < 2) {
+            flags = 0x01;
+        } else if (level < 6) {
+            flags = 0x5E;
+        } else {
+            flags = 0xDA;
+        }
+        out.write(0x78);
+        out.write(flags);
+    }
+
+    private void writeNextBlock() throws IOException {
+        Future<byte[]> next = pendingBlocks.removeFirst();
+        try {
+            out.write(next.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while deflating a stream");
+        } catch (ExecutionException e) {
+            throw new IOException("Error while deflating a stream", e.getCause());
+        }
+    }
+
+    private void deflateSingleBlock() throws IOException {
+        Deflater deflater = new Deflater(level);
+        try {
+            deflater.setInput(block, 0, count);
+            deflater.finish();
+            byte[] buf = new byte[8192];
+            while (!deflater.finished()) {
+                int len = deflater.deflate(buf);
+                out.write(buf, 0, len);
+            }
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /** {@inheritDoc} */
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /** {@inheritDoc} */
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (previousBlock == null) {
+                deflateSingleBlock();
+            } else {
+                submitBlock(true);
+                while (!pendingBlocks.isEmpty()) {
+                    writeNextBlock();
+                }
+                long adler = checksum.getValue();
+                out.write((int) (adler >>> 24) & 0xFF);
+                out.write((int) (adler >>> 16) & 0xFF);
+                out.write((int) (adler >>> 8) & 0xFF);
+                out.write((int) adler & 0xFF);
+            }
+            block = null;
+            previousBlock = null;
+        } finally {
+            for (Future<byte[]> pending : pendingBlocks) {
+                pending.cancel(false);
+            }
+            out.close();
+        }
+    }
+}
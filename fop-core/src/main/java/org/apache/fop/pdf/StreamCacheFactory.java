@@ -26,7 +26,10 @@ import java.io.IOException;
  */
 public final class StreamCacheFactory {
 
-    private static StreamCacheFactory memoryInstance = new StreamCacheFactory();
+    private static StreamCacheFactory memoryInstance = new StreamCacheFactory(null);
+
+    /** The pool of the direct buffers, null if streams are cached on the heap */
+    private final DirectBufferStreamCache.ChunkPool chunkPool;
 
     /**
      * Returns an instance of a StreamCacheFactory with the requested features.
@@ -36,31 +39,64 @@ public final class StreamCacheFactory {
         return memoryInstance;
     }
 
+    /**
+     * Returns a new StreamCacheFactory which caches streams in direct buffers outside
+     * the heap. The caches it creates share a pool of buffers, so a factory is meant to
+     * be used by a single document.
+     * @return StreamCacheFactory the new factory
+     */
+    public static StreamCacheFactory newDirectBufferInstance() {
+        return new StreamCacheFactory(new DirectBufferStreamCache.ChunkPool());
+    }
+
     /**
      * Creates a new StreamCacheFactory.
-     * @param cacheToFile True if file shall be cached using a temporary file
+     * @param chunkPool the pool of direct buffers, null to cache streams on the heap
      */
-    private StreamCacheFactory() {
+    private StreamCacheFactory(DirectBufferStreamCache.ChunkPool chunkPool) {
+        this.chunkPool = chunkPool;
     }
 
     /**
-     * Get the correct implementation (based on cacheToFile) of
+     * Indicates whether this factory caches streams in direct buffers.
+     * @return true if streams are cached in direct buffers
+     */
+    public boolean isDirectBuffers() {
+        return chunkPool != null;
+    }
+
+    /**
+     * Get the correct implementation (based on the buffer pool) of
      * StreamCache.
      * @throws IOException if there is an IO error
      * @return a new StreamCache for caching streams
      */
     public StreamCache createStreamCache() throws IOException {
+        if (chunkPool != null) {
+            return new DirectBufferStreamCache(chunkPool);
+        }
         return new InMemoryStreamCache();
     }
 
     /**
-     * Get the correct implementation (based on cacheToFile) of
+     * Get the correct implementation (based on the buffer pool) of
      * StreamCache.
      * @param hintSize a hint about the approximate expected size of the buffer
      * @throws IOException if there is an IO error
      * @return a new StreamCache for caching streams
      */
     public StreamCache createStreamCache(int hintSize) throws IOException {
+        if (chunkPool != null) {
+            return new DirectBufferStreamCache(chunkPool);
+        }
         return new InMemoryStreamCache(hintSize);
     }
+
+    /**
+     * Returns the number of released buffers kept for reuse.
+     * @return the number of pooled buffers
+     */
+    int getPooledBufferCount() {
+        return chunkPool != null ? chunkPool.getPooledChunkCount() : 0;
+    }
 }
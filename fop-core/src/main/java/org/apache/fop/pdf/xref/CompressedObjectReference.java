@@ -51,8 +51,12 @@ public class CompressedObjectReference implements ObjectReference {
     }
 
     public void output(DataOutputStream out) throws IOException {
+        output(out, objectStreamNumber.getNumber(), index);
+    }
+
+    static void output(DataOutputStream out, int objectStreamNumber, int index) throws IOException {
         out.write(2);
-        out.writeLong(objectStreamNumber.getNumber());
+        out.writeLong(objectStreamNumber);
         out.write(0);
         out.write(index);
     }
@@ -65,4 +69,13 @@ public class CompressedObjectReference implements ObjectReference {
         return objectStreamNumber;
     }
 
+    /**
+     * Returns the index of the compressed object in the object stream.
+     *
+     * @return the index
+     */
+    public int getIndex() {
+        return index;
+    }
+
 }
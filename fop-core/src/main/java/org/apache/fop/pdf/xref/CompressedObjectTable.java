@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.pdf.xref;
+
+import java.util.Arrays;
+
+/**
+ * A compact table of the locations of objects stored in object streams. It holds the
+ * same information as a list of {@link CompressedObjectReference}s in primitive arrays,
+ * so that documents with many compressed objects do not need an object per entry.
+ */
+public class CompressedObjectTable {
+
+    private int[] objectNumbers = new int[64];
+
+    private int[] objectStreamNumbers = new int[64];
+
+    private byte[] indices = new byte[64];
+
+    private int size;
+
+    /**
+     * Adds an entry to the table.
+     *
+     * @param objectNumber the number of the compressed object
+     * @param objectStreamNumber the number of the object stream in which the compressed
+     * object is to be found
+     * @param index the index of the compressed object in the object stream
+     */
+    public void add(int objectNumber, int objectStreamNumber, int index) {
+        if (size == objectNumbers.length) {
+            int capacity = size * 2;
+            objectNumbers = Arrays.copyOf(objectNumbers, capacity);
+            objectStreamNumbers = Arrays.copyOf(objectStreamNumbers, capacity);
+            indices = Arrays.copyOf(indices, capacity);
+        }
+        objectNumbers[size] = objectNumber;
+        objectStreamNumbers[size] = objectStreamNumber;
+        indices[size] = (byte) index;
+        size++;
+    }
+
+    /**
+     * Returns the number of entries in this table.
+     *
+     * @return the number of entries
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of the compressed object of the given entry.
+     *
+     * @param entry an entry index
+     * @return the object number
+     */
+    public int getObjectNumber(int entry) {
+        return objectNumbers[entry];
+    }
+
+    /**
+     * Returns the number of the object stream holding the object of the given entry.
+     *
+     * @param entry an entry index
+     * @return the object stream number
+     */
+    public int getObjectStreamNumber(int entry) {
+        return objectStreamNumbers[entry];
+    }
+
+    /**
+     * Returns the index of the object of the given entry in its object stream.
+     *
+     * @param entry an entry index
+     * @return the index in the object stream
+     */
+    public int getIndex(int entry) {
+        return indices[entry] & 0xFF;
+    }
+}
@@ -19,11 +19,9 @@
 
 package org.apache.fop.pdf.xref;
 
-import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.fop.pdf.PDFArray;
@@ -45,7 +43,11 @@ public class CrossReferenceStream extends CrossReferenceObject {
 
     private final int objectNumber;
 
-    private final List<ObjectReference> objectReferences;
+    private final List<Long> uncompressedObjectReferences;
+
+    private final CompressedObjectTable compressedObjects;
+
+    private final int entryCount;
 
     public CrossReferenceStream(PDFDocument document,
             int objectNumber,
@@ -53,19 +55,46 @@ public class CrossReferenceStream extends CrossReferenceObject {
             long startxref,
             List<Long> uncompressedObjectReferences,
             List<CompressedObjectReference> compressedObjectReferences) {
+        this(document, objectNumber, trailerDictionary, startxref, uncompressedObjectReferences,
+                toTable(compressedObjectReferences));
+    }
+
+    /**
+     * Creates a cross-reference stream.
+     *
+     * @param document the document the stream belongs to
+     * @param objectNumber the object number of the stream
+     * @param trailerDictionary the trailer entries to put in the stream dictionary
+     * @param startxref the offset of the stream
+     * @param uncompressedObjectReferences the offsets of the uncompressed objects, indexed
+     * by object number - 1, null for compressed objects
+     * @param compressedObjects the locations of the objects stored in object streams
+     */
+    public CrossReferenceStream(PDFDocument document,
+            int objectNumber,
+            TrailerDictionary trailerDictionary,
+            long startxref,
+            List<Long> uncompressedObjectReferences,
+            CompressedObjectTable compressedObjects) {
         super(trailerDictionary, startxref);
         this.document = document;
         this.objectNumber = objectNumber;
-        this.objectReferences = new ArrayList<ObjectReference>(uncompressedObjectReferences.size());
-        for (Long offset : uncompressedObjectReferences) {
-            objectReferences.add(offset == null ? null : new UncompressedObjectReference(offset));
+        this.uncompressedObjectReferences = uncompressedObjectReferences;
+        this.compressedObjects = compressedObjects;
+        int count = uncompressedObjectReferences.size();
+        for (int i = 0; i < compressedObjects.size(); i++) {
+            count = Math.max(count, compressedObjects.getObjectNumber(i));
         }
-        for (CompressedObjectReference ref : compressedObjectReferences) {
-            while (ref.getObjectNumber().getNumber() > objectReferences.size()) {
-                objectReferences.add(null);
-            }
-            this.objectReferences.set(ref.getObjectNumber().getNumber() - 1, ref);
+        this.entryCount = count;
+    }
+
+    private static CompressedObjectTable toTable(List<CompressedObjectReference> references) {
+        CompressedObjectTable table = new CompressedObjectTable();
+        for (CompressedObjectReference ref : references) {
+            table.add(ref.getObjectNumber().getNumber(), ref.getObjectStreamNumber().getNumber(),
+                    ref.getIndex());
         }
+        return table;
     }
 
     /** {@inheritDoc} */
@@ -83,21 +112,33 @@ public class CrossReferenceStream extends CrossReferenceObject {
         };
         helperStream.setObjectNumber(new PDFObjectNumber(objectNumber));
         helperStream.setDocument(document);
-        ByteArrayOutputStream byteArray = new ByteArrayOutputStream();
-        DataOutputStream data = new DataOutputStream(byteArray);
+        //Look-up of the compressed objects by object number, 0 for uncompressed objects
+        int[] compressedEntries = new int[entryCount];
+        for (int i = 0; i < compressedObjects.size(); i++) {
+            compressedEntries[compressedObjects.getObjectNumber(i) - 1] = i + 1;
+        }
+        DataOutputStream data = new DataOutputStream(helperStream.getBufferOutputStream());
         addFreeEntryForObject0(data);
-        for (ObjectReference objectReference : objectReferences) {
-            assert objectReference != null;
-            objectReference.output(data);
+        for (int i = 0; i < entryCount; i++) {
+            int compressedEntry = compressedEntries[i] - 1;
+            if (compressedEntry >= 0) {
+                CompressedObjectReference.output(data,
+                        compressedObjects.getObjectStreamNumber(compressedEntry),
+                        compressedObjects.getIndex(compressedEntry));
+            } else {
+                Long offset = i < uncompressedObjectReferences.size()
+                        ? uncompressedObjectReferences.get(i) : null;
+                assert offset != null;
+                UncompressedObjectReference.output(data, offset);
+            }
         }
-        new UncompressedObjectReference(startxref).output(data);
-        data.close();
-        helperStream.setData(byteArray.toByteArray());
+        UncompressedObjectReference.output(data, startxref);
+        data.flush();
         PDFDocument.outputIndirectObject(helperStream, stream);
     }
 
     private void populateDictionary() throws IOException {
-        int objectCount = objectReferences.size() + 1;
+        int objectCount = entryCount + 1;
         PDFDictionary dictionary = trailerDictionary.getDictionary();
         dictionary.put("/Type", XREF);
         dictionary.put("/Size", objectCount + 1);
@@ -33,6 +33,8 @@ public class CrossReferenceTable extends CrossReferenceObject {
 
     private final List<Long> objectReferences;
 
+    private static final int FLUSH_THRESHOLD = 8192;
+
     private final StringBuilder pdf = new StringBuilder(256);
 
     private int last;
@@ -49,11 +51,11 @@ public class CrossReferenceTable extends CrossReferenceObject {
     }
 
     public void output(OutputStream stream) throws IOException {
-        outputXref();
+        outputXref(stream);
         writeTrailer(stream);
     }
 
-    private void outputXref() throws IOException {
+    private void outputXref(OutputStream stream) throws IOException {
         if (first == 0) {
             pdf.append("xref\n0 ");
             pdf.append(last + 1);
@@ -73,6 +75,11 @@ public class CrossReferenceTable extends CrossReferenceObject {
             }
             String loc = padding.substring(s.length()) + s;
             pdf.append(loc).append(" 00000 n \n");
+            //Write the table in pieces rather than holding all entries of a large document
+            if (pdf.length() >= FLUSH_THRESHOLD) {
+                stream.write(PDFDocument.encode(pdf.toString()));
+                pdf.setLength(0);
+            }
         }
     }
 
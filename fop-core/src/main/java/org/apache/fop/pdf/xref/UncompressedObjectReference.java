@@ -39,6 +39,10 @@ class UncompressedObjectReference implements ObjectReference {
     }
 
     public void output(DataOutputStream out) throws IOException {
+        output(out, offset);
+    }
+
+    static void output(DataOutputStream out, long offset) throws IOException {
         out.write(1);
         out.writeLong(offset);
         out.write(0);
@@ -144,7 +144,7 @@ public abstract class PrintRendererConfigurator extends AbstractRendererConfigur
         if (rendererConfigParser == null) {
             fontList = Collections.<EmbedFontInfo>emptyList();
         } else {
-            fontList = fontInfoConfigurator.configure(getRendererConfig(mimeType).getFontInfoConfig());
+            fontList = buildFontList(mimeType);
         }
         return createCollectionFromFontList(resolver, fontList);
     }
@@ -159,11 +159,13 @@ public abstract class PrintRendererConfigurator extends AbstractRendererConfigur
     protected FontCollection createCollectionFromFontList(InternalResourceResolver resolver,
             List<EmbedFontInfo> fontList) {
         return new CustomFontCollection(resolver, fontList,
-                userAgent.isComplexScriptFeaturesEnabled());
+                userAgent.isComplexScriptFeaturesEnabled(),
+                userAgent.getFontManager().getFontMetricsCache());
     }
 
     private List<EmbedFontInfo> buildFontList(String mimeType) throws FOPException {
-        return fontInfoConfigurator.configure(getRendererConfig(mimeType).getFontInfoConfig());
+        return userAgent.getConfiguredFonts(getRendererConfig(mimeType).getFontInfoConfig(),
+                fontInfoConfigurator);
     }
 
     public static PrintRendererConfigurator createDefaultInstance(FOUserAgent userAgent) {
@@ -19,6 +19,7 @@
 
 package org.apache.fop.render.bitmap;
 
+import java.awt.AlphaComposite;
 import java.awt.Dimension;
 import java.awt.Graphics2D;
 import java.awt.RenderingHints;
@@ -26,7 +27,15 @@ import java.awt.geom.Point2D;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.LinkedList;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.logging.Log;
@@ -77,6 +86,19 @@ public abstract class AbstractBitmapDocumentHandler extends AbstractBinaryWritin
     private double scaleFactor = 1.0;
     private Dimension targetBitmapSize;
 
+    /** The number of seconds an idle rendering thread waits for pages before it ends. */
+    private static final long KEEP_ALIVE_SECONDS = 10;
+
+    /** The threads painting and encoding the pages, null if they are painted as they come */
+    private ThreadPoolExecutor executor;
+    /** The pages submitted to the executor and not yet found finished, in page order */
+    private LinkedList<Future<?>> pendingPages;
+    private RasterizedPage currentPage;
+    private final ThreadLocal<BufferedImage> workerImage = new ThreadLocal<BufferedImage>();
+    /** The number of the page written next to the multi-image writer */
+    private int nextPageToWrite;
+    private final Object writeLock = new Object();
+
     /**
      * Default constructor.
      */
@@ -153,6 +175,22 @@ public abstract class AbstractBitmapDocumentHandler extends AbstractBinaryWritin
                         getUserAgent().getOutputFile());
             }
             this.pageCount = 0;
+            int threads = getSettings().getRenderingThreads();
+            if (threads > 1) {
+                this.executor = new ThreadPoolExecutor(threads, threads,
+                        KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                        new ThreadFactory() {
+                            public Thread newThread(Runnable r) {
+                                Thread thread = new Thread(r, "FOP bitmap rendering");
+                                thread.setDaemon(true);
+                                return thread;
+                            }
+                        });
+                //Let the threads and their images go if the document is never finished
+                this.executor.allowCoreThreadTimeOut(true);
+                this.pendingPages = new LinkedList<Future<?>>();
+                this.nextPageToWrite = 1;
+            }
         } catch (IOException e) {
             throw new IFException("I/O error in startDocument()", e);
         }
@@ -164,6 +202,16 @@ public abstract class AbstractBitmapDocumentHandler extends AbstractBinaryWritin
 
     /** {@inheritDoc} */
     public void endDocument() throws IFException {
+        if (this.executor != null) {
+            try {
+                while (!this.pendingPages.isEmpty()) {
+                    waitForPage(this.pendingPages.removeFirst());
+                }
+            } finally {
+                this.executor.shutdownNow();
+                this.executor = null;
+            }
+        }
         try {
             if (this.multiImageWriter != null) {
                 this.multiImageWriter.close();
@@ -228,25 +276,52 @@ public abstract class AbstractBitmapDocumentHandler extends AbstractBinaryWritin
             bitmapHeight = (int) ((this.currentPageDimensions.height * scale / 1000f) + 0.5f);
         }
 
+        if (this.executor != null) {
+            PagePaintRecorder recorder = new PagePaintRecorder(getContext(), getFontInfo());
+            this.currentPage = new RasterizedPage(this.pageCount, bitmapWidth, bitmapHeight,
+                    scale, offset, recorder);
+            return recorder;
+        }
+
         //Set up bitmap to paint on
         if (currentImage == null || currentImage.getWidth() != bitmapWidth
                 || currentImage.getHeight() != bitmapHeight) {
             currentImage = createBufferedImage(bitmapWidth, bitmapHeight);
         }
-        Graphics2D graphics2D = this.currentImage.createGraphics();
+        Graphics2D graphics2D = createGraphics(this.currentImage, scale, offset);
+        return new Java2DPainter(graphics2D, getContext(), getFontInfo(), this);
+    }
+
+    /**
+     * Creates a Graphics2D instance to paint a page on and sets up its background, rendering
+     * hints and coordinate system.
+     * @param image the image to paint on
+     * @param scale the scale of the page
+     * @param offset the offset of the page in the image, or null
+     * @return the Graphics2D instance
+     */
+    private Graphics2D createGraphics(BufferedImage image, double scale, Point2D offset) {
+        int bitmapWidth = image.getWidth();
+        int bitmapHeight = image.getHeight();
+        Graphics2D graphics2D = image.createGraphics();
 
         // draw page background
         if (!getSettings().hasTransparentPageBackground()) {
             graphics2D.setBackground(getSettings().getPageBackgroundColor());
             graphics2D.setPaint(getSettings().getPageBackgroundColor());
             graphics2D.fillRect(0, 0, bitmapWidth, bitmapHeight);
+        } else {
+            // the image is reused from page to page, so clear what the last page left
+            graphics2D.setComposite(AlphaComposite.Clear);
+            graphics2D.fillRect(0, 0, bitmapWidth, bitmapHeight);
+            graphics2D.setComposite(AlphaComposite.SrcOver);
         }
 
         //Set rendering hints
         graphics2D.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS,
                 RenderingHints.VALUE_FRACTIONALMETRICS_ON);
         if (getSettings().isAntiAliasingEnabled()
-                && this.currentImage.getColorModel().getPixelSize() > 1) {
+                && image.getColorModel().getPixelSize() > 1) {
             graphics2D.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
                     RenderingHints.VALUE_ANTIALIAS_ON);
             graphics2D.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING,
@@ -272,8 +347,7 @@ public abstract class AbstractBitmapDocumentHandler extends AbstractBinaryWritin
             graphics2D.translate(offset.getX(), offset.getY());
         }
         graphics2D.scale(scale / 1000f, scale / 1000f);
-
-        return new Java2DPainter(graphics2D, getContext(), getFontInfo(), this);
+        return graphics2D;
     }
 
     /**
@@ -288,31 +362,22 @@ public abstract class AbstractBitmapDocumentHandler extends AbstractBinaryWritin
 
     /** {@inheritDoc} */
     public void endPageContent() throws IFException {
+        if (this.executor != null) {
+            RasterizedPage page = this.currentPage;
+            this.currentPage = null;
+            submitPage(page);
+            return;
+        }
         try {
             if (this.multiImageWriter == null) {
-                switch (this.pageCount) {
-                case 1:
-                    this.imageWriter.writeImage(
-                            this.currentImage, this.outputStream,
-                            getSettings().getWriterParams());
-                    IOUtils.closeQuietly(this.outputStream);
-                    this.outputStream = null;
-                    break;
-                default:
-                    OutputStream out = this.multiFileUtil.createOutputStream(this.pageCount - 1);
-                    if (out == null) {
-                        BitmapRendererEventProducer eventProducer
-                            = BitmapRendererEventProducer.Provider.get(
-                                    getUserAgent().getEventBroadcaster());
-                        eventProducer.stoppingAfterFirstPageNoFilename(this);
-                    } else {
-                        try {
-                            this.imageWriter.writeImage(
-                                    this.currentImage, out,
-                                    getSettings().getWriterParams());
-                        } finally {
-                            IOUtils.closeQuietly(out);
-                        }
+                OutputStream out = getPageOutputStream(this.pageCount);
+                if (out != null) {
+                    try {
+                        this.imageWriter.writeImage(
+                                this.currentImage, out,
+                                getSettings().getWriterParams());
+                    } finally {
+                        IOUtils.closeQuietly(out);
                     }
                 }
             } else {
@@ -324,6 +389,196 @@ public abstract class AbstractBitmapDocumentHandler extends AbstractBinaryWritin
         }
     }
 
+    /**
+     * Returns the stream a page is written to when the pages are written to separate files.
+     * The first page goes to the output stream of the document handler.
+     * @param pageNumber the number of the page, starting at 1
+     * @return the stream, or null if the page cannot be written as no file name is available
+     * @throws IOException if the file of the page cannot be created
+     */
+    private OutputStream getPageOutputStream(int pageNumber) throws IOException {
+        if (pageNumber == 1) {
+            OutputStream out = this.outputStream;
+            this.outputStream = null;
+            return out;
+        }
+        OutputStream out = this.multiFileUtil.createOutputStream(pageNumber - 1);
+        if (out == null) {
+            BitmapRendererEventProducer eventProducer
+                = BitmapRendererEventProducer.Provider.get(
+                        getUserAgent().getEventBroadcaster());
+            eventProducer.stoppingAfterFirstPageNoFilename(this);
+        }
+        return out;
+    }
+
+    /**
+     * Hands a recorded page over to the rendering threads. Pages with images or foreign
+     * objects are painted here because the image handlers share state with the thread laying
+     * out the document; only their encoding is left to the rendering threads. At most twice
+     * as many pages as there are threads are pending at any time.
+     */
+    private void submitPage(RasterizedPage page) throws IFException {
+        if (this.multiImageWriter == null) {
+            try {
+                page.out = getPageOutputStream(page.pageNumber);
+            } catch (IOException ioe) {
+                throw new IFException("I/O error while encoding BufferedImage", ioe);
+            }
+            if (page.out == null) {
+                return;
+            }
+        }
+        if (page.recorder.hasImages()) {
+            page.image = createBufferedImage(page.width, page.height);
+            Graphics2D graphics2D = createGraphics(page.image, page.scale, page.offset);
+            try {
+                page.recorder.replay(graphics2D, getContext(), this);
+            } finally {
+                graphics2D.dispose();
+            }
+        }
+        int threads = getSettings().getRenderingThreads();
+        while (this.pendingPages.size() >= threads * 2) {
+            waitForPage(this.pendingPages.removeFirst());
+        }
+        this.pendingPages.add(this.executor.submit(page));
+        //Report failures early
+        while (!this.pendingPages.isEmpty() && this.pendingPages.getFirst().isDone()) {
+            waitForPage(this.pendingPages.removeFirst());
+        }
+    }
+
+    private void waitForPage(Future<?> page) throws IFException {
+        try {
+            page.get();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            abortRendering();
+            throw new IFException("Interrupted while rendering a page", ie);
+        } catch (ExecutionException ee) {
+            abortRendering();
+            Throwable cause = ee.getCause();
+            if (cause instanceof IFException) {
+                throw (IFException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IFException("Error while rendering page", (Exception) cause);
+        }
+    }
+
+    /**
+     * Stops the rendering threads after a page failed and closes the multi-image writer, as
+     * the document will not be finished.
+     */
+    private void abortRendering() {
+        this.executor.shutdownNow();
+        //Pages still queued are dropped by shutdownNow() and would never complete
+        for (Future<?> page : this.pendingPages) {
+            page.cancel(true);
+        }
+        this.pendingPages.clear();
+        if (this.multiImageWriter != null) {
+            try {
+                this.multiImageWriter.close();
+            } catch (IOException ioe) {
+                log.debug("Error closing the image writer after a failed page", ioe);
+            }
+            this.multiImageWriter = null;
+        }
+    }
+
+    /**
+     * Writes a page to the multi-image writer once all the pages before it are written.
+     * @param pageNumber the number of the page, starting at 1
+     * @param image the image of the page, or null if it could not be painted
+     */
+    private void writeInPageOrder(int pageNumber, BufferedImage image)
+            throws IOException, InterruptedException {
+        synchronized (this.writeLock) {
+            while (this.nextPageToWrite < pageNumber) {
+                this.writeLock.wait();
+            }
+        }
+        try {
+            if (image != null) {
+                this.multiImageWriter.writeImage(image, getSettings().getWriterParams());
+            }
+        } finally {
+            synchronized (this.writeLock) {
+                this.nextPageToWrite++;
+                this.writeLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * A recorded page, painted and encoded on one of the rendering threads. The rendering
+     * threads run the pages in the order they are submitted, so the pages before a page
+     * waiting for its turn to be written are always being rendered and cannot starve it.
+     */
+    private final class RasterizedPage implements Callable<Void> {
+
+        private final int pageNumber;
+        private final int width;
+        private final int height;
+        private final double scale;
+        private final Point2D offset;
+        private final PagePaintRecorder recorder;
+
+        /** The stream the page is written to if the pages are written to separate files */
+        private OutputStream out;
+        /** The image of the page if it is painted before being submitted */
+        private BufferedImage image;
+
+        RasterizedPage(int pageNumber, int width, int height, double scale, Point2D offset,
+                PagePaintRecorder recorder) {
+            this.pageNumber = pageNumber;
+            this.width = width;
+            this.height = height;
+            this.scale = scale;
+            this.offset = offset;
+            this.recorder = recorder;
+        }
+
+        public Void call() throws Exception {
+            BufferedImage painted = null;
+            try {
+                painted = (image != null ? image : paint());
+                if (out != null) {
+                    imageWriter.writeImage(painted, out, getSettings().getWriterParams());
+                }
+            } finally {
+                IOUtils.closeQuietly(out);
+                if (multiImageWriter != null) {
+                    writeInPageOrder(pageNumber, painted);
+                }
+            }
+            return null;
+        }
+
+        /** Paints the page on the image the current rendering thread reuses for its pages. */
+        private BufferedImage paint() throws IFException {
+            BufferedImage target = workerImage.get();
+            if (target == null || target.getWidth() != width || target.getHeight() != height) {
+                target = createBufferedImage(width, height);
+                workerImage.set(target);
+            }
+            Graphics2D graphics2D = createGraphics(target, scale, offset);
+            try {
+                IFContext context = new IFContext(getUserAgent());
+                context.setPageNumber(pageNumber);
+                recorder.replay(graphics2D, context, AbstractBitmapDocumentHandler.this);
+            } finally {
+                graphics2D.dispose();
+            }
+            return target;
+        }
+    }
+
     /** {@inheritDoc} */
     public void endPage() throws IFException {
         this.currentPageDimensions = null;
@@ -26,6 +26,7 @@ import org.apache.fop.render.java2d.Java2DRenderingSettings;
 import static org.apache.fop.render.bitmap.BitmapRendererOption.ANTI_ALIASING;
 import static org.apache.fop.render.bitmap.BitmapRendererOption.COLOR_MODE;
 import static org.apache.fop.render.bitmap.BitmapRendererOption.RENDERING_QUALITY;
+import static org.apache.fop.render.bitmap.BitmapRendererOption.RENDERING_THREADS;
 
 /**
  * This class holds settings used when rendering to bitmaps.
@@ -44,6 +45,9 @@ public class BitmapRenderingSettings extends Java2DRenderingSettings {
     /** true if qualityRendering is set */
     private boolean qualityRendering = (Boolean) RENDERING_QUALITY.getDefaultValue();
 
+    /** the number of threads pages are painted and encoded on */
+    private int renderingThreads = (Integer) RENDERING_THREADS.getDefaultValue();
+
     /**
      * Default constructor. Initializes the settings to their default values.
      */
@@ -107,6 +111,25 @@ public class BitmapRenderingSettings extends Java2DRenderingSettings {
         return this.qualityRendering;
     }
 
+    /**
+     * Sets the number of threads pages are painted and encoded on. With more than one thread,
+     * the painting of each page is recorded and replayed on a pool of threads while the next
+     * pages are laid out, and the pages are encoded on the same threads.
+     * @param threads the number of threads, 1 or less to paint and encode the pages on the
+     *          thread producing them
+     */
+    public void setRenderingThreads(int threads) {
+        this.renderingThreads = threads;
+    }
+
+    /**
+     * Returns the number of threads pages are painted and encoded on.
+     * @return the number of threads
+     */
+    public int getRenderingThreads() {
+        return this.renderingThreads;
+    }
+
     /**
      * Sets the compression method for the image writer.
      * @param compressionMethod the compression method name
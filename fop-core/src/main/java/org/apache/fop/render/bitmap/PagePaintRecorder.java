@@ -0,0 +1,339 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.render.bitmap;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.Paint;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.font.GlyphVector;
+import java.awt.geom.AffineTransform;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.w3c.dom.Document;
+
+import org.apache.fop.fonts.Font;
+import org.apache.fop.fonts.FontInfo;
+import org.apache.fop.fonts.FontTriplet;
+import org.apache.fop.render.intermediate.IFContext;
+import org.apache.fop.render.intermediate.IFDocumentHandler;
+import org.apache.fop.render.intermediate.IFException;
+import org.apache.fop.render.intermediate.IFPainter;
+import org.apache.fop.render.intermediate.IFState;
+import org.apache.fop.render.java2d.FontMetricsMapper;
+import org.apache.fop.render.java2d.Java2DPainter;
+import org.apache.fop.render.java2d.Java2DUtil;
+import org.apache.fop.traits.BorderProps;
+import org.apache.fop.traits.RuleStyle;
+
+/**
+ * {@link IFPainter} implementation that records the painting of a page so it can be replayed
+ * on a Graphics2D instance later, possibly on another thread. The font information is shared
+ * with the thread laying out the document and is not thread-safe, so texts are resolved while
+ * they are recorded: they are replayed with their Java2D font, glyph codes and glyph positions
+ * and never look up fonts again. Images and foreign objects are recorded as they are. Pages
+ * using them have to be replayed on the thread that recorded them.
+ */
+final class PagePaintRecorder implements IFPainter {
+
+    private final IFContext context;
+    private final FontInfo fontInfo;
+    private final IFState state = IFState.create();
+
+    private final List<Command> commands = new ArrayList<Command>();
+    private boolean images;
+
+    /**
+     * Creates a new recorder.
+     * @param context the IF context of the document handler
+     * @param fontInfo the font information
+     */
+    PagePaintRecorder(IFContext context, FontInfo fontInfo) {
+        this.context = context;
+        this.fontInfo = fontInfo;
+    }
+
+    /**
+     * Indicates whether images or foreign objects were painted on the page. If so, the page
+     * has to be replayed on the thread that recorded it.
+     * @return true if the page contains images or foreign objects
+     */
+    boolean hasImages() {
+        return images;
+    }
+
+    /**
+     * Replays the recorded painting.
+     * @param g2d the Graphics2D instance to paint on, set up for the page
+     * @param ifContext the IF context for the painter
+     * @param documentHandler the document handler the painter belongs to
+     * @throws IFException if an error occurs while painting
+     */
+    void replay(Graphics2D g2d, IFContext ifContext, IFDocumentHandler documentHandler)
+            throws IFException {
+        ReplayPainter painter = new ReplayPainter(g2d, ifContext, fontInfo, documentHandler);
+        for (Command command : commands) {
+            command.paint(painter);
+        }
+    }
+
+    private static Rectangle copy(Rectangle rect) {
+        return rect != null ? new Rectangle(rect) : null;
+    }
+
+    private static AffineTransform[] copy(AffineTransform[] transforms) {
+        AffineTransform[] copies = new AffineTransform[transforms.length];
+        for (int i = 0; i < transforms.length; i++) {
+            copies[i] = new AffineTransform(transforms[i]);
+        }
+        return copies;
+    }
+
+    /** {@inheritDoc} */
+    public void startViewport(AffineTransform transform, Dimension size, Rectangle clipRect) {
+        startViewport(new AffineTransform[] {transform}, size, clipRect);
+    }
+
+    /** {@inheritDoc} */
+    public void startViewport(AffineTransform[] transforms, final Dimension size,
+            Rectangle clipRect) {
+        final AffineTransform[] at = copy(transforms);
+        final Rectangle clip = copy(clipRect);
+        commands.add(new Command() {
+            void paint(ReplayPainter painter) throws IFException {
+                painter.startViewport(at, size, clip);
+            }
+        });
+    }
+
+    /** {@inheritDoc} */
+    public void endViewport() {
+        commands.add(new Command() {
+            void paint(ReplayPainter painter) throws IFException {
+                painter.endViewport();
+            }
+        });
+    }
+
+    /** {@inheritDoc} */
+    public void startGroup(AffineTransform transform, String layer) {
+        startGroup(new AffineTransform[] {transform}, layer);
+    }
+
+    /** {@inheritDoc} */
+    public void startGroup(AffineTransform[] transforms, final String layer) {
+        final AffineTransform[] at = copy(transforms);
+        commands.add(new Command() {
+            void paint(ReplayPainter painter) throws IFException {
+                painter.startGroup(at, layer);
+            }
+        });
+    }
+
+    /** {@inheritDoc} */
+    public void endGroup() {
+        commands.add(new Command() {
+            void paint(ReplayPainter painter) throws IFException {
+                painter.endGroup();
+            }
+        });
+    }
+
+    /** {@inheritDoc} */
+    public void setFont(String family, String style, Integer weight, String variant, Integer size,
+            Color color) {
+        if (family != null) {
+            state.setFontFamily(family);
+        }
+        if (style != null) {
+            state.setFontStyle(style);
+        }
+        if (weight != null) {
+            state.setFontWeight(weight);
+        }
+        if (variant != null) {
+            state.setFontVariant(variant);
+        }
+        if (size != null) {
+            state.setFontSize(size);
+        }
+        if (color != null) {
+            state.setTextColor(color);
+        }
+    }
+
+    /** {@inheritDoc} */
+    public void drawText(final int x, final int y, int letterSpacing, int wordSpacing,
+            int[][] dp, final String text) {
+        FontTriplet triplet = new FontTriplet(
+                state.getFontFamily(), state.getFontStyle(), state.getFontWeight());
+        Font font = fontInfo.getFontInstance(triplet, state.getFontSize());
+        FontMetricsMapper mapper = (FontMetricsMapper) fontInfo.getMetricsFor(font.getFontName());
+        final java.awt.Font awtFont = mapper.getFont(state.getFontSize() * 1000);
+        final Color color = state.getTextColor();
+        final int[] glyphCodes = Java2DUtil.getGlyphCodes(text, font, fontInfo);
+        final float[] positions = Java2DUtil.getGlyphPositions(
+                text, font, letterSpacing, wordSpacing, dp);
+        commands.add(new Command() {
+            void paint(ReplayPainter painter) {
+                painter.drawText(x, y, color, awtFont, text, glyphCodes, positions);
+            }
+        });
+    }
+
+    /** {@inheritDoc} */
+    public void drawText(int x, int y, int letterSpacing, int wordSpacing, int[][] dp,
+            String text, boolean nextIsSpace) {
+        drawText(x, y, letterSpacing, wordSpacing, dp, text);
+    }
+
+    /** {@inheritDoc} */
+    public void clipRect(Rectangle rect) {
+        final Rectangle clip = copy(rect);
+        commands.add(new Command() {
+            void paint(ReplayPainter painter) throws IFException {
+                painter.clipRect(clip);
+            }
+        });
+    }
+
+    /** {@inheritDoc} */
+    public void clipBackground(Rectangle rect, final BorderProps bpsBefore,
+            final BorderProps bpsAfter, final BorderProps bpsStart, final BorderProps bpsEnd) {
+        final Rectangle clip = copy(rect);
+        commands.add(new Command() {
+            void paint(ReplayPainter painter) throws IFException {
+                painter.clipBackground(clip, bpsBefore, bpsAfter, bpsStart, bpsEnd);
+            }
+        });
+    }
+
+    /** {@inheritDoc} */
+    public boolean isBackgroundRequired(BorderProps bpsBefore, BorderProps bpsAfter,
+            BorderProps bpsStart, BorderProps bpsEnd) {
+        //Like the Java2D painter
+        return true;
+    }
+
+    /** {@inheritDoc} */
+    public void fillRect(Rectangle rect, final Paint fill) {
+        final Rectangle r = copy(rect);
+        commands.add(new Command() {
+            void paint(ReplayPainter painter) throws IFException {
+                painter.fillRect(r, fill);
+            }
+        });
+    }
+
+    /** {@inheritDoc} */
+    public void drawBorderRect(Rectangle rect, final BorderProps top, final BorderProps bottom,
+            final BorderProps left, final BorderProps right, final Color innerBackgroundColor) {
+        final Rectangle r = copy(rect);
+        commands.add(new Command() {
+            void paint(ReplayPainter painter) throws IFException {
+                painter.drawBorderRect(r, top, bottom, left, right, innerBackgroundColor);
+            }
+        });
+    }
+
+    /** {@inheritDoc} */
+    public void drawLine(Point start, Point end, final int width, final Color color,
+            final RuleStyle style) {
+        final Point p1 = new Point(start);
+        final Point p2 = new Point(end);
+        commands.add(new Command() {
+            void paint(ReplayPainter painter) throws IFException {
+                painter.drawLine(p1, p2, width, color, style);
+            }
+        });
+    }
+
+    /** {@inheritDoc} */
+    public void drawImage(final String uri, Rectangle rect) {
+        final Rectangle r = copy(rect);
+        images = true;
+        commands.add(new ImageCommand(context.getForeignAttributes()) {
+            void paintImage(ReplayPainter painter) throws IFException {
+                painter.drawImage(uri, r);
+            }
+        });
+    }
+
+    /** {@inheritDoc} */
+    public void drawImage(final Document doc, Rectangle rect) {
+        final Rectangle r = copy(rect);
+        images = true;
+        commands.add(new ImageCommand(context.getForeignAttributes()) {
+            void paintImage(ReplayPainter painter) throws IFException {
+                painter.drawImage(doc, r);
+            }
+        });
+    }
+
+    /** A recorded painting operation. */
+    private abstract static class Command {
+
+        abstract void paint(ReplayPainter painter) throws IFException;
+    }
+
+    /** A recorded image, painted with the foreign attributes in effect when it was recorded. */
+    private abstract static class ImageCommand extends Command {
+
+        private final Map foreignAttributes;
+
+        ImageCommand(Map foreignAttributes) {
+            this.foreignAttributes = foreignAttributes;
+        }
+
+        void paint(ReplayPainter painter) throws IFException {
+            painter.getContext().setForeignAttributes(foreignAttributes);
+            try {
+                paintImage(painter);
+            } finally {
+                painter.getContext().resetForeignAttributes();
+            }
+        }
+
+        abstract void paintImage(ReplayPainter painter) throws IFException;
+    }
+
+    /** The Java2D painter the recorded painting is replayed with. */
+    private static final class ReplayPainter extends Java2DPainter {
+
+        ReplayPainter(Graphics2D g2d, IFContext context, FontInfo fontInfo,
+                IFDocumentHandler documentHandler) {
+            super(g2d, context, fontInfo, documentHandler);
+        }
+
+        void drawText(int x, int y, Color color, java.awt.Font font, String text,
+                int[] glyphCodes, float[] positions) {
+            getState().updateColor(color);
+            Graphics2D g2d = getState().getGraph();
+            g2d.setFont(font);
+            GlyphVector gv = Java2DUtil.createGlyphVector(text, g2d, glyphCodes);
+            Java2DUtil.setGlyphPositions(gv, positions);
+            g2d.drawGlyphVector(gv, x, y);
+        }
+    }
+}
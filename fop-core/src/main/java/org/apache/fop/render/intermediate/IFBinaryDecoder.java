@@ -0,0 +1,402 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.render.intermediate;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+import org.apache.fop.render.intermediate.IFBinaryFormat.Name;
+import org.apache.fop.render.intermediate.IFBinaryFormat.PageIndex;
+
+/**
+ * Decodes the binary form of an intermediate format document, described in
+ * {@link IFBinaryFormat}, into SAX events.
+ */
+final class IFBinaryDecoder {
+
+    private final InputStream in;
+
+    private final byte[] buffer = new byte[8192];
+    private int pos;
+    private int limit;
+    private long bufferOffset;
+
+    private char[] chars = new char[256];
+
+    private final List<String> strings = new ArrayList<String>();
+    private final List<Name> names = new ArrayList<Name>();
+    private final List<Name> elements = new ArrayList<Name>();
+    private final AttributesImpl atts = new AttributesImpl();
+
+    private int pageDepth = -1;
+    private int pageStrings;
+    private int pageNames;
+
+    private PageIndex pageIndex;
+    private int startPage;
+    private int endPage = Integer.MAX_VALUE;
+    private int pageCount;
+
+    /**
+     * Creates a new decoder.
+     * @param in the stream to read the binary form from
+     */
+    IFBinaryDecoder(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * Reads the page index of a binary intermediate format file.
+     * @param file the file
+     * @return the page index
+     * @throws IOException if an I/O error occurs or the file has no valid page index
+     */
+    static PageIndex readPageIndex(RandomAccessFile file) throws IOException {
+        byte[] header = new byte[IFBinaryFormat.MAGIC.length + 1];
+        file.seek(0);
+        file.readFully(header);
+        IFBinaryDecoder decoder = new IFBinaryDecoder(new ByteArrayInputStream(header));
+        if (decoder.readHeader() < IFBinaryFormat.PAGE_INDEX_VERSION) {
+            throw new IOException("The binary intermediate format document has no page index");
+        }
+        long length = file.length();
+        file.seek(length - IFBinaryFormat.INDEX_OFFSET_LENGTH);
+        long indexOffset = file.readLong();
+        if (indexOffset < header.length
+                || indexOffset > length - IFBinaryFormat.INDEX_OFFSET_LENGTH) {
+            throw new IOException("Invalid page index offset in binary intermediate format: "
+                    + indexOffset);
+        }
+        byte[] index = new byte[(int) (length - IFBinaryFormat.INDEX_OFFSET_LENGTH
+                - indexOffset)];
+        file.seek(indexOffset);
+        file.readFully(index);
+        decoder = new IFBinaryDecoder(new ByteArrayInputStream(index));
+        int count = decoder.readVarint();
+        if (count < 0 || count > index.length / 2) {
+            throw new IOException("Invalid page count in binary intermediate format: " + count);
+        }
+        long[] starts = new long[count];
+        long[] ends = new long[count];
+        long previousEnd = 0;
+        for (int i = 0; i < count; i++) {
+            starts[i] = previousEnd + decoder.readVarlong();
+            ends[i] = starts[i] + decoder.readVarlong();
+            if (starts[i] < previousEnd || ends[i] < starts[i] || ends[i] > indexOffset) {
+                throw new IOException("Invalid page index entry in binary intermediate format");
+            }
+            previousEnd = ends[i];
+        }
+        return new PageIndex(starts, ends);
+    }
+
+    /**
+     * Decodes a whole document.
+     * @param handler the handler receiving the SAX events
+     * @throws IOException if an I/O error occurs or the stream is not a binary intermediate
+     *             format document
+     * @throws SAXException if the handler reports an error
+     */
+    void decode(ContentHandler handler) throws IOException, SAXException {
+        readHeader();
+        handler.startDocument();
+        while (true) {
+            int op = readByte();
+            switch (op) {
+            case IFBinaryFormat.START_ELEMENT:
+                startElement(handler);
+                break;
+            case IFBinaryFormat.END_ELEMENT:
+                endElement(handler);
+                break;
+            case IFBinaryFormat.CHARACTERS:
+                int length = readLiteral();
+                handler.characters(chars, 0, length);
+                break;
+            case IFBinaryFormat.START_PREFIX_MAPPING:
+                String prefix = readString();
+                handler.startPrefixMapping(prefix, readString());
+                break;
+            case IFBinaryFormat.END_PREFIX_MAPPING:
+                handler.endPrefixMapping(readString());
+                break;
+            case IFBinaryFormat.PROCESSING_INSTRUCTION:
+                String target = readString();
+                handler.processingInstruction(target, readString());
+                break;
+            case IFBinaryFormat.END_DOCUMENT:
+                handler.endDocument();
+                return;
+            default:
+                throw new IOException("Invalid opcode in binary intermediate format: " + op);
+            }
+        }
+    }
+
+    /**
+     * Decodes a document, leaving out the pages outside of a range. The stream must be
+     * positioned at the start of the file the page index was read from.
+     * @param handler the handler receiving the SAX events
+     * @param pageIndex the page index of the document
+     * @param startPage the zero-based index of the first page to decode
+     * @param endPage the zero-based index of the page after the last page to decode
+     * @throws IOException if an I/O error occurs or the stream is not a binary intermediate
+     *             format document
+     * @throws SAXException if the handler reports an error
+     */
+    void decode(ContentHandler handler, PageIndex pageIndex, int startPage, int endPage)
+            throws IOException, SAXException {
+        this.pageIndex = pageIndex;
+        this.startPage = startPage;
+        this.endPage = endPage;
+        decode(handler);
+    }
+
+    private int readHeader() throws IOException {
+        for (byte b : IFBinaryFormat.MAGIC) {
+            if (readByte() != (b & 0xFF)) {
+                throw new IOException("Not a binary intermediate format document");
+            }
+        }
+        int version = readVarint();
+        if (version < 1 || version > IFBinaryFormat.VERSION) {
+            throw new IOException("Unsupported version of the binary intermediate format: "
+                    + version);
+        }
+        return version;
+    }
+
+    private void startElement(ContentHandler handler) throws IOException, SAXException {
+        Name element = readName();
+        boolean page = pageDepth < 0 && IFBinaryFormat.isPage(element.uri, element.localName);
+        if (page) {
+            int pageNumber = pageCount++;
+            if (pageNumber < startPage || pageNumber >= endPage) {
+                skipPage(pageNumber);
+                return;
+            }
+        }
+        elements.add(element);
+        if (page) {
+            pageDepth = elements.size();
+            pageStrings = strings.size();
+            pageNames = names.size();
+        }
+        atts.clear();
+        for (int i = readVarint(); i > 0; i--) {
+            Name name = readName();
+            atts.addAttribute(name.uri, name.localName, name.qName, name.type, readValue());
+        }
+        handler.startElement(element.uri, element.localName, element.qName, atts);
+    }
+
+    private void endElement(ContentHandler handler) throws IOException, SAXException {
+        if (elements.isEmpty()) {
+            throw new IOException("Unbalanced end of element in binary intermediate format");
+        }
+        if (elements.size() == pageDepth) {
+            while (strings.size() > pageStrings) {
+                strings.remove(strings.size() - 1);
+            }
+            while (names.size() > pageNames) {
+                names.remove(names.size() - 1);
+            }
+            pageDepth = -1;
+        }
+        Name element = elements.remove(elements.size() - 1);
+        handler.endElement(element.uri, element.localName, element.qName);
+    }
+
+    private void skipPage(int pageNumber) throws IOException {
+        if (pageNumber >= pageIndex.getPageCount()
+                || pageIndex.starts[pageNumber] != getPosition()) {
+            throw new IOException("The page index does not match the binary intermediate format"
+                    + " document at page " + pageNumber);
+        }
+        skip(pageIndex.ends[pageNumber] - pageIndex.starts[pageNumber]);
+    }
+
+    private Name readName() throws IOException {
+        int ref = readVarint();
+        if (ref == IFBinaryFormat.NEW_NAME) {
+            String uri = readString();
+            String localName = readString();
+            String qName = readString();
+            String type = readString();
+            Name name = new Name(uri, localName, qName, type);
+            names.add(name);
+            return name;
+        } else if (ref > 0 && ref <= names.size()) {
+            return names.get(ref - 1);
+        } else {
+            throw new IOException("Invalid name reference in binary intermediate format: " + ref);
+        }
+    }
+
+    private String readValue() throws IOException {
+        int type = readByte();
+        switch (type) {
+        case IFBinaryFormat.VALUE_INT:
+            return Integer.toString(readSignedVarint());
+        case IFBinaryFormat.VALUE_INT_ARRAY:
+            StringBuilder sb = new StringBuilder();
+            for (int i = readVarint(); i > 0; i--) {
+                sb.append(readSignedVarint());
+                if (i > 1) {
+                    sb.append(' ');
+                }
+            }
+            return sb.toString();
+        case IFBinaryFormat.VALUE_STRING:
+            return readString();
+        default:
+            throw new IOException("Invalid value type in binary intermediate format: " + type);
+        }
+    }
+
+    private String readString() throws IOException {
+        int ref = readVarint();
+        switch (ref) {
+        case IFBinaryFormat.NULL_STRING:
+            return null;
+        case IFBinaryFormat.NEW_STRING:
+            int length = readLiteral();
+            String s = new String(chars, 0, length);
+            strings.add(s);
+            return s;
+        case IFBinaryFormat.LITERAL_STRING:
+            length = readLiteral();
+            return new String(chars, 0, length);
+        default:
+            int index = ref - IFBinaryFormat.FIRST_STRING_REF;
+            if (index < 0 || index >= strings.size()) {
+                throw new IOException(
+                        "Invalid string reference in binary intermediate format: " + ref);
+            }
+            return strings.get(index);
+        }
+    }
+
+    /**
+     * Reads a literal into the character buffer.
+     * @return the number of characters read
+     */
+    private int readLiteral() throws IOException {
+        int byteLength = readVarint();
+        if (chars.length < byteLength) {
+            chars = new char[Math.max(byteLength, chars.length * 2)];
+        }
+        int length = 0;
+        int end = byteLength;
+        while (end > 0) {
+            int b = readByte();
+            if (b < 0x80) {
+                chars[length++] = (char) b;
+                end--;
+            } else if (b < 0xE0) {
+                chars[length++] = (char) (((b & 0x1F) << 6) | (readByte() & 0x3F));
+                end -= 2;
+            } else {
+                int b2 = readByte();
+                chars[length++] = (char) (((b & 0x0F) << 12) | ((b2 & 0x3F) << 6)
+                        | (readByte() & 0x3F));
+                end -= 3;
+            }
+        }
+        return length;
+    }
+
+    private int readSignedVarint() throws IOException {
+        int n = readVarint();
+        return (n >>> 1) ^ -(n & 1);
+    }
+
+    private int readVarint() throws IOException {
+        int n = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = readByte();
+            n |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return n;
+            }
+        }
+        throw new IOException("Invalid varint in binary intermediate format");
+    }
+
+    private long readVarlong() throws IOException {
+        long n = 0;
+        for (int shift = 0; shift < 63; shift += 7) {
+            int b = readByte();
+            n |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return n;
+            }
+        }
+        throw new IOException("Invalid varint in binary intermediate format");
+    }
+
+    private int readByte() throws IOException {
+        if (pos == limit) {
+            bufferOffset += limit;
+            limit = in.read(buffer, 0, buffer.length);
+            pos = 0;
+            if (limit <= 0) {
+                limit = 0;
+                throw new EOFException("Unexpected end of binary intermediate format");
+            }
+        }
+        return buffer[pos++] & 0xFF;
+    }
+
+    private void skip(long n) throws IOException {
+        if (n <= limit - pos) {
+            pos += n;
+            return;
+        }
+        long remaining = n - (limit - pos);
+        bufferOffset += limit;
+        pos = 0;
+        limit = 0;
+        while (remaining > 0) {
+            long skipped = in.skip(remaining);
+            if (skipped <= 0) {
+                if (in.read() < 0) {
+                    throw new EOFException("Unexpected end of binary intermediate format");
+                }
+                skipped = 1;
+            }
+            remaining -= skipped;
+            bufferOffset += skipped;
+        }
+    }
+
+    private long getPosition() {
+        return bufferOffset + pos;
+    }
+}
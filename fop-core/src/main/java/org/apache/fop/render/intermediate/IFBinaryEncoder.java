@@ -0,0 +1,394 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.render.intermediate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+
+import org.apache.fop.render.intermediate.IFBinaryFormat.Name;
+
+/**
+ * Encodes the SAX events of an intermediate format document into the binary form described
+ * in {@link IFBinaryFormat}.
+ */
+final class IFBinaryEncoder implements ContentHandler {
+
+    private final OutputStream out;
+    private final boolean closeStream;
+
+    private final byte[] buffer = new byte[8192];
+    private int count;
+    private long flushed;
+
+    private final Map<String, Integer> stringIndex = new HashMap<String, Integer>();
+    private final List<String> strings = new ArrayList<String>();
+    private final Map<Name, Integer> nameIndex = new HashMap<Name, Integer>();
+    private final List<Name> names = new ArrayList<Name>();
+
+    private int depth;
+    private int pageDepth = -1;
+    private int pageStrings;
+    private int pageNames;
+
+    private long[] pageStarts = new long[64];
+    private long[] pageEnds = new long[64];
+    private int pageCount;
+
+    /**
+     * Creates a new encoder.
+     * @param out the stream to write the binary form to
+     * @param closeStream true if the stream is to be closed at the end of the document
+     */
+    IFBinaryEncoder(OutputStream out, boolean closeStream) {
+        this.out = out;
+        this.closeStream = closeStream;
+    }
+
+    /** {@inheritDoc} */
+    public void setDocumentLocator(Locator locator) {
+    }
+
+    /** {@inheritDoc} */
+    public void startDocument() throws SAXException {
+        try {
+            for (byte b : IFBinaryFormat.MAGIC) {
+                writeByte(b);
+            }
+            writeVarint(IFBinaryFormat.VERSION);
+        } catch (IOException ioe) {
+            throw new SAXException(ioe);
+        }
+    }
+
+    /** {@inheritDoc} */
+    public void endDocument() throws SAXException {
+        try {
+            writeByte(IFBinaryFormat.END_DOCUMENT);
+            writePageIndex();
+            flushBuffer();
+            if (closeStream) {
+                out.close();
+            } else {
+                out.flush();
+            }
+        } catch (IOException ioe) {
+            throw new SAXException(ioe);
+        }
+    }
+
+    /** {@inheritDoc} */
+    public void startPrefixMapping(String prefix, String uri) throws SAXException {
+        try {
+            writeByte(IFBinaryFormat.START_PREFIX_MAPPING);
+            writeString(prefix);
+            writeString(uri);
+        } catch (IOException ioe) {
+            throw new SAXException(ioe);
+        }
+    }
+
+    /** {@inheritDoc} */
+    public void endPrefixMapping(String prefix) throws SAXException {
+        try {
+            writeByte(IFBinaryFormat.END_PREFIX_MAPPING);
+            writeString(prefix);
+        } catch (IOException ioe) {
+            throw new SAXException(ioe);
+        }
+    }
+
+    /** {@inheritDoc} */
+    public void startElement(String uri, String localName, String qName, Attributes atts)
+            throws SAXException {
+        try {
+            writeByte(IFBinaryFormat.START_ELEMENT);
+            writeName(uri, localName, qName, null);
+            depth++;
+            if (pageDepth < 0 && IFBinaryFormat.isPage(uri, localName)) {
+                pageDepth = depth;
+                pageStrings = strings.size();
+                pageNames = names.size();
+                if (pageCount == pageStarts.length) {
+                    pageStarts = Arrays.copyOf(pageStarts, pageCount * 2);
+                    pageEnds = Arrays.copyOf(pageEnds, pageCount * 2);
+                }
+                pageStarts[pageCount] = getPosition();
+            }
+            int length = atts.getLength();
+            writeVarint(length);
+            for (int i = 0; i < length; i++) {
+                writeName(atts.getURI(i), atts.getLocalName(i), atts.getQName(i),
+                        atts.getType(i));
+                writeValue(atts.getValue(i));
+            }
+        } catch (IOException ioe) {
+            throw new SAXException(ioe);
+        }
+    }
+
+    /** {@inheritDoc} */
+    public void endElement(String uri, String localName, String qName) throws SAXException {
+        try {
+            writeByte(IFBinaryFormat.END_ELEMENT);
+        } catch (IOException ioe) {
+            throw new SAXException(ioe);
+        }
+        if (depth == pageDepth) {
+            pageEnds[pageCount++] = getPosition();
+            while (strings.size() > pageStrings) {
+                stringIndex.remove(strings.remove(strings.size() - 1));
+            }
+            while (names.size() > pageNames) {
+                nameIndex.remove(names.remove(names.size() - 1));
+            }
+            pageDepth = -1;
+        }
+        depth--;
+    }
+
+    /** {@inheritDoc} */
+    public void characters(char[] ch, int start, int length) throws SAXException {
+        try {
+            writeByte(IFBinaryFormat.CHARACTERS);
+            writeLiteral(ch, start, length);
+        } catch (IOException ioe) {
+            throw new SAXException(ioe);
+        }
+    }
+
+    /** {@inheritDoc} */
+    public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+        characters(ch, start, length);
+    }
+
+    /** {@inheritDoc} */
+    public void processingInstruction(String target, String data) throws SAXException {
+        try {
+            writeByte(IFBinaryFormat.PROCESSING_INSTRUCTION);
+            writeString(target);
+            writeString(data);
+        } catch (IOException ioe) {
+            throw new SAXException(ioe);
+        }
+    }
+
+    /** {@inheritDoc} */
+    public void skippedEntity(String name) {
+    }
+
+    private void writePageIndex() throws IOException {
+        long indexOffset = getPosition();
+        writeVarint(pageCount);
+        long previousEnd = 0;
+        for (int i = 0; i < pageCount; i++) {
+            writeVarint(pageStarts[i] - previousEnd);
+            writeVarint(pageEnds[i] - pageStarts[i]);
+            previousEnd = pageEnds[i];
+        }
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            writeByte((int) (indexOffset >>> shift));
+        }
+    }
+
+    private void writeName(String uri, String localName, String qName, String type)
+            throws IOException {
+        Name name = new Name(uri, localName, qName, type);
+        Integer index = nameIndex.get(name);
+        if (index != null) {
+            writeVarint(index + 1);
+        } else {
+            writeVarint(IFBinaryFormat.NEW_NAME);
+            writeString(uri);
+            writeString(localName);
+            writeString(qName);
+            writeString(type);
+            nameIndex.put(name, names.size());
+            names.add(name);
+        }
+    }
+
+    private void writeValue(String value) throws IOException {
+        int length = value.length();
+        int values = 1;
+        for (int i = 0; i < length; i++) {
+            if (value.charAt(i) == ' ') {
+                values++;
+            }
+        }
+        long first = parseInt(value, 0, values == 1 ? length : value.indexOf(' '));
+        if (first == Long.MIN_VALUE) {
+            writeByte(IFBinaryFormat.VALUE_STRING);
+            writeString(value);
+        } else if (values == 1) {
+            writeByte(IFBinaryFormat.VALUE_INT);
+            writeSignedVarint((int) first);
+        } else {
+            int[] ints = new int[values];
+            ints[0] = (int) first;
+            int start = value.indexOf(' ') + 1;
+            for (int i = 1; i < values; i++) {
+                int end = value.indexOf(' ', start);
+                long n = parseInt(value, start, end < 0 ? length : end);
+                if (n == Long.MIN_VALUE) {
+                    writeByte(IFBinaryFormat.VALUE_STRING);
+                    writeString(value);
+                    return;
+                }
+                ints[i] = (int) n;
+                start = end + 1;
+            }
+            writeByte(IFBinaryFormat.VALUE_INT_ARRAY);
+            writeVarint(values);
+            for (int n : ints) {
+                writeSignedVarint(n);
+            }
+        }
+    }
+
+    /**
+     * Parses an integer, written the way {@link Integer#toString(int)} writes it.
+     * @return the integer, or Long.MIN_VALUE if the characters are not such an integer
+     */
+    private static long parseInt(String s, int start, int end) {
+        boolean negative = start < end && s.charAt(start) == '-';
+        int digits = negative ? start + 1 : start;
+        if (digits == end || end - digits > 10
+                || (s.charAt(digits) == '0' && (end - digits > 1 || negative))) {
+            return Long.MIN_VALUE;
+        }
+        long n = 0;
+        for (int i = digits; i < end; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return Long.MIN_VALUE;
+            }
+            n = n * 10 + (c - '0');
+        }
+        n = negative ? -n : n;
+        return n < Integer.MIN_VALUE || n > Integer.MAX_VALUE ? Long.MIN_VALUE : n;
+    }
+
+    private void writeString(String s) throws IOException {
+        if (s == null) {
+            writeVarint(IFBinaryFormat.NULL_STRING);
+            return;
+        }
+        Integer index = stringIndex.get(s);
+        if (index != null) {
+            writeVarint(index + IFBinaryFormat.FIRST_STRING_REF);
+        } else if (strings.size() < IFBinaryFormat.MAX_STRINGS
+                && s.length() <= IFBinaryFormat.MAX_SHARED_STRING_LENGTH) {
+            writeVarint(IFBinaryFormat.NEW_STRING);
+            writeLiteral(s);
+            stringIndex.put(s, strings.size());
+            strings.add(s);
+        } else {
+            writeVarint(IFBinaryFormat.LITERAL_STRING);
+            writeLiteral(s);
+        }
+    }
+
+    private void writeLiteral(String s) throws IOException {
+        int length = s.length();
+        int byteLength = 0;
+        for (int i = 0; i < length; i++) {
+            byteLength += getByteLength(s.charAt(i));
+        }
+        writeVarint(byteLength);
+        for (int i = 0; i < length; i++) {
+            writeChar(s.charAt(i));
+        }
+    }
+
+    private void writeLiteral(char[] ch, int start, int length) throws IOException {
+        int byteLength = 0;
+        for (int i = start; i < start + length; i++) {
+            byteLength += getByteLength(ch[i]);
+        }
+        writeVarint(byteLength);
+        for (int i = start; i < start + length; i++) {
+            writeChar(ch[i]);
+        }
+    }
+
+    private static int getByteLength(char c) {
+        return c < 0x80 ? 1 : (c < 0x800 ? 2 : 3);
+    }
+
+    private void writeChar(char c) throws IOException {
+        if (c < 0x80) {
+            writeByte(c);
+        } else if (c < 0x800) {
+            writeByte(0xC0 | (c >> 6));
+            writeByte(0x80 | (c & 0x3F));
+        } else {
+            writeByte(0xE0 | (c >> 12));
+            writeByte(0x80 | ((c >> 6) & 0x3F));
+            writeByte(0x80 | (c & 0x3F));
+        }
+    }
+
+    private void writeSignedVarint(int n) throws IOException {
+        writeVarint((n << 1) ^ (n >> 31));
+    }
+
+    private void writeVarint(int n) throws IOException {
+        while ((n & ~0x7F) != 0) {
+            writeByte((n & 0x7F) | 0x80);
+            n >>>= 7;
+        }
+        writeByte(n);
+    }
+
+    private void writeVarint(long n) throws IOException {
+        while ((n & ~0x7FL) != 0) {
+            writeByte((int) (n & 0x7F) | 0x80);
+            n >>>= 7;
+        }
+        writeByte((int) n);
+    }
+
+    private void writeByte(int b) throws IOException {
+        if (count == buffer.length) {
+            flushBuffer();
+        }
+        buffer[count++] = (byte) b;
+    }
+
+    private void flushBuffer() throws IOException {
+        out.write(buffer, 0, count);
+        flushed += count;
+        count = 0;
+    }
+
+    private long getPosition() {
+        return flushed + count;
+    }
+}
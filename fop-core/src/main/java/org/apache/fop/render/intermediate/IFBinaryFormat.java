@@ -0,0 +1,170 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.render.intermediate;
+
+/**
+ * Constants of the binary encoding of the intermediate format.
+ * <p>
+ * The binary form carries the same events as the XML form, as a stream of opcodes:
+ * <pre>
+ * file      := document index index-offset:int64
+ * document  := MAGIC version:varint token* END_DOCUMENT
+ * token     := START_ELEMENT name count:varint (name value)*
+ *            | END_ELEMENT
+ *            | CHARACTERS literal
+ *            | START_PREFIX_MAPPING string string
+ *            | END_PREFIX_MAPPING string
+ *            | PROCESSING_INSTRUCTION string string
+ * name      := varint: 0 = new name (string uri, string local name, string qualified name,
+ *                      string attribute type), n = n-th name defined so far
+ * string    := varint: 0 = null, 1 = new entry of the string table (literal),
+ *                      2 = literal, n = the (n - 3)-th entry of the string table
+ * literal   := length:varint CESU-8 bytes (UTF-8 with surrogates encoded one by one)
+ * value     := VALUE_INT zigzag-varint | VALUE_INT_ARRAY count:varint zigzag-varint*
+ *            | VALUE_STRING string
+ * index     := count:varint (gap:varint length:varint)*
+ * </pre>
+ * Font names, colours, URIs and the names of elements and attributes thus appear only once,
+ * and coordinates take one to four bytes. Names and strings first used inside a page are
+ * forgotten at the end of the page, so that the tables do not grow with the number of pages
+ * and a page can be decoded knowing only what precedes the first page.
+ * <p>
+ * The page index following the document gives, for each page, where its scope starts (just
+ * after the name of the page element) as the distance from the end of the previous page, and
+ * its length up to and including the end of the page element. Since a page defines nothing
+ * used outside of it, a reader can skip the pages it does not need. The index is found
+ * through its offset, written big-endian in the last eight bytes of the file. Version 1 files
+ * have no index.
+ */
+final class IFBinaryFormat {
+
+    /** The first bytes of a binary intermediate format document */
+    static final byte[] MAGIC = {'%', 'F', 'O', 'P', '-', 'I', 'F', 'B'};
+
+    /** The version of the encoding */
+    static final int VERSION = 2;
+
+    /** The first version with a page index */
+    static final int PAGE_INDEX_VERSION = 2;
+
+    /** The length of the index offset at the end of the file */
+    static final int INDEX_OFFSET_LENGTH = 8;
+
+    static final int START_ELEMENT = 1;
+    static final int END_ELEMENT = 2;
+    static final int CHARACTERS = 3;
+    static final int START_PREFIX_MAPPING = 4;
+    static final int END_PREFIX_MAPPING = 5;
+    static final int PROCESSING_INSTRUCTION = 6;
+    static final int END_DOCUMENT = 7;
+
+    static final int VALUE_STRING = 0;
+    static final int VALUE_INT = 1;
+    static final int VALUE_INT_ARRAY = 2;
+
+    static final int NEW_NAME = 0;
+
+    static final int NULL_STRING = 0;
+    static final int NEW_STRING = 1;
+    static final int LITERAL_STRING = 2;
+    static final int FIRST_STRING_REF = 3;
+
+    /** The maximum number of entries of the string table */
+    static final int MAX_STRINGS = 1 << 16;
+
+    /** Longer strings are not added to the string table */
+    static final int MAX_SHARED_STRING_LENGTH = 256;
+
+    private IFBinaryFormat() {
+    }
+
+    /**
+     * Indicates whether an element starts the scope of the names and strings of a page.
+     * @param uri the namespace URI of the element
+     * @param localName the local name of the element
+     * @return true for the page element of the intermediate format
+     */
+    static boolean isPage(String uri, String localName) {
+        return IFConstants.EL_PAGE.equals(localName) && IFConstants.NAMESPACE.equals(uri);
+    }
+
+    /**
+     * The page index of a binary intermediate format file.
+     */
+    static final class PageIndex {
+
+        /** The offsets where the scope of each page starts */
+        final long[] starts;
+
+        /** The offsets just after the end of each page */
+        final long[] ends;
+
+        PageIndex(long[] starts, long[] ends) {
+            this.starts = starts;
+            this.ends = ends;
+        }
+
+        int getPageCount() {
+            return starts.length;
+        }
+    }
+
+    /**
+     * The name of an element or attribute. The type is null for elements.
+     */
+    static final class Name {
+
+        final String uri;
+        final String localName;
+        final String qName;
+        final String type;
+
+        Name(String uri, String localName, String qName, String type) {
+            this.uri = uri;
+            this.localName = localName;
+            this.qName = qName;
+            this.type = type;
+        }
+
+        private static boolean equals(String s1, String s2) {
+            return s1 == null ? s2 == null : s1.equals(s2);
+        }
+
+        private static int hashCode(String s) {
+            return s == null ? 0 : s.hashCode();
+        }
+
+        /** {@inheritDoc} */
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Name)) {
+                return false;
+            }
+            Name other = (Name) obj;
+            return equals(localName, other.localName) && equals(qName, other.qName)
+                    && equals(uri, other.uri) && equals(type, other.type);
+        }
+
+        /** {@inheritDoc} */
+        public int hashCode() {
+            return ((hashCode(uri) * 31 + hashCode(localName)) * 31 + hashCode(qName)) * 31
+                    + hashCode(type);
+        }
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.render.intermediate;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+import org.apache.commons.io.IOUtils;
+
+import org.apache.fop.apps.FOUserAgent;
+import org.apache.fop.render.intermediate.IFBinaryFormat.PageIndex;
+import org.apache.fop.render.intermediate.extensions.DocumentNavigationExtensionConstants;
+import org.apache.fop.util.DelegatingContentHandler;
+
+/**
+ * This is a parser for the binary intermediate format written by {@link IFBinarySerializer},
+ * which converts the intermediate file into {@link IFPainter} events. The events are the same
+ * as those {@link IFParser} produces for the equivalent XML.
+ * <p>
+ * Files carry an index of their pages, so that a range of pages can be rendered again without
+ * decoding the pages before it. The document header, the page sequences and the document
+ * trailer are still passed on to the document handler, so fonts and resources are set up as
+ * for the whole document. The painted pages are numbered from zero, as in a document of their
+ * own. Document navigation (bookmarks, named destinations and links) is left out, since it may
+ * point to pages that are not painted.
+ */
+public class IFBinaryParser {
+
+    /**
+     * Parses a binary intermediate file and paints it.
+     * @param in the stream to read the intermediate file from
+     * @param documentHandler the intermediate format document handler used to process the IF events
+     * @param userAgent the user agent
+     * @throws IFException if the stream is not a valid binary intermediate file or if an
+     *             IF-related error occurs inside the target document handler
+     */
+    public void parse(InputStream in, IFDocumentHandler documentHandler, FOUserAgent userAgent)
+            throws IFException {
+        ContentHandler handler = new IFParser().getContentHandler(documentHandler, userAgent);
+        try {
+            new IFBinaryDecoder(in).decode(handler);
+        } catch (SAXException se) {
+            throw toIFException(se);
+        } catch (IOException ioe) {
+            throw new IFException("I/O error while reading the binary intermediate format", ioe);
+        }
+    }
+
+    /**
+     * Parses a range of pages of a binary intermediate file and paints them. The pages
+     * before the range are skipped using the page index of the file.
+     * @param file the intermediate file
+     * @param startPage the zero-based index of the first page to paint
+     * @param endPage the zero-based index of the page after the last page to paint
+     * @param documentHandler the intermediate format document handler used to process the IF events
+     * @param userAgent the user agent
+     * @throws IFException if the file is not a valid binary intermediate file with a page
+     *             index or if an IF-related error occurs inside the target document handler
+     */
+    public void parse(File file, int startPage, int endPage, IFDocumentHandler documentHandler,
+            FOUserAgent userAgent) throws IFException {
+        if (startPage < 0 || endPage < startPage) {
+            throw new IllegalArgumentException("Invalid page range: " + startPage + "-" + endPage);
+        }
+        ContentHandler handler = new IFParser().getContentHandler(documentHandler, userAgent);
+        InputStream in = null;
+        try {
+            PageIndex pageIndex = readPageIndex(file);
+            if (startPage > 0 || endPage < pageIndex.getPageCount()) {
+                handler = new PageRangeFilter(handler);
+            }
+            in = new FileInputStream(file);
+            new IFBinaryDecoder(in).decode(handler, pageIndex, startPage, endPage);
+        } catch (SAXException se) {
+            throw toIFException(se);
+        } catch (IOException ioe) {
+            throw new IFException("I/O error while reading the binary intermediate format", ioe);
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    /**
+     * Returns the number of pages of a binary intermediate file, as given by its page index.
+     * @param file the intermediate file
+     * @return the number of pages
+     * @throws IOException if an I/O error occurs or the file is not a binary intermediate
+     *             file with a page index
+     */
+    public static int getPageCount(File file) throws IOException {
+        return readPageIndex(file).getPageCount();
+    }
+
+    private static PageIndex readPageIndex(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            return IFBinaryDecoder.readPageIndex(raf);
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static IFException toIFException(SAXException se) {
+        //Unpack original IFException if applicable
+        if (se.getException() instanceof IFException) {
+            return (IFException) se.getException();
+        }
+        return new IFException("Error while parsing the binary intermediate format", se);
+    }
+
+    /**
+     * Indicates whether a stream contains an intermediate file in the binary form. The first
+     * bytes of the stream are consumed.
+     * @param in the stream
+     * @return true if the stream starts like a binary intermediate file
+     * @throws IOException if an I/O error occurs
+     */
+    public static boolean isBinaryFormat(InputStream in) throws IOException {
+        for (byte b : IFBinaryFormat.MAGIC) {
+            if (in.read() != b) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Numbers the pages of a page range from zero and leaves out the elements of the document
+     * navigation extension.
+     */
+    private static final class PageRangeFilter extends DelegatingContentHandler {
+
+        private int pageIndex;
+        private int navigationDepth;
+
+        PageRangeFilter(ContentHandler handler) {
+            super(handler);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes atts)
+                throws SAXException {
+            if (navigationDepth > 0
+                    || DocumentNavigationExtensionConstants.NAMESPACE.equals(uri)) {
+                navigationDepth++;
+            } else if (IFBinaryFormat.isPage(uri, localName)) {
+                AttributesImpl pageAtts = new AttributesImpl(atts);
+                int index = pageAtts.getIndex("index");
+                if (index >= 0) {
+                    pageAtts.setValue(index, Integer.toString(pageIndex));
+                }
+                pageIndex++;
+                super.startElement(uri, localName, qName, pageAtts);
+            } else {
+                super.startElement(uri, localName, qName, atts);
+            }
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void endElement(String uri, String localName, String qName)
+                throws SAXException {
+            if (navigationDepth > 0) {
+                navigationDepth--;
+            } else {
+                super.endElement(uri, localName, qName);
+            }
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void characters(char[] ch, int start, int length) throws SAXException {
+            if (navigationDepth == 0) {
+                super.characters(ch, start, length);
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.render.intermediate;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+
+import javax.xml.transform.Result;
+import javax.xml.transform.stream.StreamResult;
+
+import org.xml.sax.ContentHandler;
+
+import org.apache.fop.apps.MimeConstants;
+
+/**
+ * IFPainter implementation that serializes the intermediate format to its compact binary
+ * form. The binary form carries exactly the same information as the XML written by
+ * {@link IFSerializer} and is read back with {@link IFBinaryParser}. It is much smaller and
+ * faster to parse than the XML, which makes it the better choice for large documents that
+ * are laid out once and rendered several times.
+ */
+public class IFBinarySerializer extends IFSerializer {
+
+    /** The MIME type of the binary intermediate format */
+    public static final String MIME_TYPE = MimeConstants.MIME_FOP_IF_BINARY;
+
+    public IFBinarySerializer(IFContext context) {
+        super(context);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String getMimeType() {
+        return MIME_TYPE;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected ContentHandler createContentHandler(Result result) throws IFException {
+        if (!(result instanceof StreamResult)) {
+            throw new UnsupportedOperationException(
+                    "Unsupported Result subclass: " + result.getClass().getName());
+        }
+        StreamResult streamResult = (StreamResult) result;
+        OutputStream out = streamResult.getOutputStream();
+        boolean ownOutputStream = false;
+        if (out == null) {
+            if (streamResult.getWriter() != null) {
+                throw new IllegalArgumentException(
+                        "FOP cannot use a Writer. Please supply an OutputStream!");
+            }
+            try {
+                URI resultURI = URI.create(streamResult.getSystemId());
+                out = new BufferedOutputStream(
+                        getUserAgent().getResourceResolver().getOutputStream(resultURI));
+            } catch (IOException ioe) {
+                throw new IFException("I/O error while opening output stream" , ioe);
+            }
+            ownOutputStream = true;
+        }
+        return new IFBinaryEncoder(out, ownOutputStream);
+    }
+}
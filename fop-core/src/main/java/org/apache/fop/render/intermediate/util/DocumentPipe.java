@@ -0,0 +1,172 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.render.intermediate.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A bounded pipe carrying the bytes of one document from the thread writing them to the
+ * thread reading them. The bytes travel in chunks through a queue of limited capacity, so the
+ * writer blocks when it gets too far ahead of the reader.
+ */
+final class DocumentPipe {
+
+    private static final byte[] END = new byte[0];
+
+    private final BlockingQueue<byte[]> chunks;
+
+    private final int chunkSize;
+
+    private final OutputStream out = new PipeOutputStream();
+
+    private final InputStream in = new PipeInputStream();
+
+    /**
+     * Creates a new pipe.
+     * @param capacity the maximum number of chunks waiting to be read
+     * @param chunkSize the size of the chunks
+     */
+    DocumentPipe(int capacity, int chunkSize) {
+        this.chunks = new ArrayBlockingQueue<byte[]>(capacity);
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Returns the end the writer writes to. Closing it marks the end of the document.
+     * @return the output stream of the pipe
+     */
+    OutputStream getOutputStream() {
+        return out;
+    }
+
+    /**
+     * Returns the end the reader reads from.
+     * @return the input stream of the pipe
+     */
+    InputStream getInputStream() {
+        return in;
+    }
+
+    private final class PipeOutputStream extends OutputStream {
+
+        private byte[] chunk = new byte[chunkSize];
+        private int count;
+        private boolean closed;
+
+        /** {@inheritDoc} */
+        public void write(int b) throws IOException {
+            if (count == chunk.length) {
+                putChunk();
+            }
+            chunk[count++] = (byte) b;
+        }
+
+        /** {@inheritDoc} */
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (count == chunk.length) {
+                    putChunk();
+                }
+                int n = Math.min(len, chunk.length - count);
+                System.arraycopy(b, off, chunk, count, n);
+                count += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        /** {@inheritDoc} */
+        public void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                if (count > 0) {
+                    byte[] last = new byte[count];
+                    System.arraycopy(chunk, 0, last, 0, count);
+                    put(last);
+                }
+                put(END);
+            }
+        }
+
+        private void putChunk() throws IOException {
+            put(chunk);
+            chunk = new byte[chunkSize];
+            count = 0;
+        }
+
+        private void put(byte[] b) throws IOException {
+            try {
+                chunks.put(b);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while writing to the pipe");
+            }
+        }
+    }
+
+    private final class PipeInputStream extends InputStream {
+
+        private byte[] chunk = new byte[0];
+        private int pos;
+
+        /** {@inheritDoc} */
+        public int read() throws IOException {
+            if (!nextChunk()) {
+                return -1;
+            }
+            return chunk[pos++] & 0xFF;
+        }
+
+        /** {@inheritDoc} */
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!nextChunk()) {
+                return -1;
+            }
+            int n = Math.min(len, chunk.length - pos);
+            System.arraycopy(chunk, pos, b, off, n);
+            pos += n;
+            return n;
+        }
+
+        private boolean nextChunk() throws IOException {
+            while (pos == chunk.length) {
+                if (chunk == END) {
+                    return false;
+                }
+                try {
+                    chunk = chunks.take();
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while reading from the pipe");
+                }
+                pos = 0;
+            }
+            return true;
+        }
+    }
+}
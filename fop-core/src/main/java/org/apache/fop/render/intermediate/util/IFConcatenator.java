@@ -20,24 +20,51 @@
 package org.apache.fop.render.intermediate.util;
 
 import java.awt.Dimension;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import javax.xml.transform.Source;
 import javax.xml.transform.TransformerException;
+import javax.xml.transform.stream.StreamResult;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.NullOutputStream;
 
 import org.apache.xmlgraphics.xmp.Metadata;
 
+import org.apache.fop.apps.FOUserAgent;
+import org.apache.fop.render.intermediate.IFBinaryParser;
+import org.apache.fop.render.intermediate.IFBinarySerializer;
+import org.apache.fop.render.intermediate.IFContext;
 import org.apache.fop.render.intermediate.IFDocumentHandler;
 import org.apache.fop.render.intermediate.IFDocumentNavigationHandler;
 import org.apache.fop.render.intermediate.IFException;
 import org.apache.fop.render.intermediate.IFParser;
+import org.apache.fop.render.intermediate.extensions.AbstractAction;
+import org.apache.fop.render.intermediate.extensions.Bookmark;
+import org.apache.fop.render.intermediate.extensions.BookmarkTree;
+import org.apache.fop.render.intermediate.extensions.GoToXYAction;
+import org.apache.fop.render.intermediate.extensions.Link;
+import org.apache.fop.render.intermediate.extensions.NamedDestination;
 
 /**
  * This class allows to concatenate multiple intermediate format files to a single output file
  * in the final format. It is based on the SAX API and is therefore very fast and does not
  * require to load the individual documents into memory as DOM documents, for example.
  * <p>
- * Note: This class will filter/ignore any document navigation events. Support for this may be
- * added later.
+ * Document navigation is merged: links and actions are adjusted to the new page indices, and
+ * the bookmarks and named destinations of all documents are written to the document trailer
+ * of the output file. The IDs of actions are made unique by prefixing them with the number of
+ * the document they come from.
  * <p>
  * Note: document-level extensions will only be transferred from the first document passed in.
  * If you need to merge extensions from all the concatenated documents, you may have to merge
@@ -45,10 +72,20 @@ import org.apache.fop.render.intermediate.IFParser;
  */
 public class IFConcatenator {
 
+    /** The number of chunks of a parsed document that may wait to be painted */
+    private static final int PIPE_CAPACITY = 16;
+
+    /** The size of the chunks of a parsed document */
+    private static final int PIPE_CHUNK_SIZE = 64 * 1024;
+
     private IFDocumentHandler targetHandler;
 
     private int nextPageIndex;
     private boolean inFirstDocument = true;
+    private int documentCount;
+
+    private final BookmarkTree bookmarkTree = new BookmarkTree();
+    private final List<NamedDestination> namedDestinations = new ArrayList<NamedDestination>();
 
     /**
      * Creates a new IF concatenator.
@@ -71,8 +108,18 @@ public class IFConcatenator {
     }
 
     private void endDocument() throws IFException {
-        this.targetHandler.startPageTrailer();
-        this.targetHandler.endPageTrailer();
+        this.targetHandler.startDocumentTrailer();
+        IFDocumentNavigationHandler navigationHandler
+                = this.targetHandler.getDocumentNavigationHandler();
+        if (navigationHandler != null) {
+            for (NamedDestination destination : namedDestinations) {
+                navigationHandler.renderNamedDestination(destination);
+            }
+            if (!bookmarkTree.getBookmarks().isEmpty()) {
+                navigationHandler.renderBookmarkTree(bookmarkTree);
+            }
+        }
+        this.targetHandler.endDocumentTrailer();
         this.targetHandler.endDocument();
     }
 
@@ -85,8 +132,8 @@ public class IFConcatenator {
     }
 
     /**
-     * Properly finishes the current output file by creating an empty document trailer and calling
-     * {@link IFDocumentHandler#endDocument()}.
+     * Properly finishes the current output file by creating a document trailer with the merged
+     * document navigation and calling {@link IFDocumentHandler#endDocument()}.
      * @throws IFException if an IF-related error occurs
      */
     public void finish() throws IFException {
@@ -107,12 +154,130 @@ public class IFConcatenator {
                 getTargetHandler().getContext().getUserAgent());
     }
 
+    /**
+     * Appends several intermediate format documents to the current output file, in the given
+     * order, just like {@link #appendDocument(Source)} does. The documents are parsed
+     * concurrently on a pool of threads while the target document handler receives the pages of
+     * one document after the other on the calling thread. Only a bounded amount of the parsed
+     * content of each document is buffered, and only a bounded number of documents is parsed
+     * ahead of the one being painted. This method shall not be called after {@link #finish()}
+     * has been called.
+     * @param sources the JAXP Sources identifying the input documents
+     * @param parallelism the maximum number of documents parsed at the same time
+     * @throws TransformerException if an XML-related exception occurs during
+     * @throws IFException if an IF-related error occurs
+     */
+    public void appendDocuments(List<? extends Source> sources, int parallelism)
+            throws TransformerException, IFException {
+        if (parallelism <= 1) {
+            for (Source src : sources) {
+                appendDocument(src);
+            }
+            return;
+        }
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(parallelism, parallelism,
+                0, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "FOP IF concatenation");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        try {
+            //The documents are parsed in order, so the document painted next is always
+            //parsed or being parsed, and the workers blocked on full pipes cannot starve it
+            LinkedList<ParsedDocument> pending = new LinkedList<ParsedDocument>();
+            Iterator<? extends Source> iter = sources.iterator();
+            while (iter.hasNext() || !pending.isEmpty()) {
+                while (iter.hasNext() && pending.size() < parallelism * 2) {
+                    ParsedDocument document = new ParsedDocument(iter.next());
+                    executor.execute(document);
+                    pending.add(document);
+                }
+                appendParsedDocument(pending.removeFirst());
+            }
+        } finally {
+            //Stops the workers still parsing if painting failed
+            executor.shutdownNow();
+        }
+    }
+
+    private void appendParsedDocument(ParsedDocument document)
+            throws TransformerException, IFException {
+        InputStream in = document.pipe.getInputStream();
+        try {
+            new IFBinaryParser().parse(in, new IFPageSequenceFilter(getTargetHandler()),
+                    getTargetHandler().getContext().getUserAgent());
+            //Consume the page index so the worker can finish
+            IOUtils.copy(in, new NullOutputStream());
+        } catch (IFException ife) {
+            document.rethrowFailure();
+            throw ife;
+        } catch (IOException ioe) {
+            document.rethrowFailure();
+            throw new IFException("I/O error while reading a parsed document", ioe);
+        }
+        document.rethrowFailure();
+    }
+
+    /**
+     * An intermediate format document parsed on a worker thread into the binary form.
+     */
+    private final class ParsedDocument implements Runnable {
+
+        private final Source src;
+
+        private final DocumentPipe pipe = new DocumentPipe(PIPE_CAPACITY, PIPE_CHUNK_SIZE);
+
+        /** The exception of the worker, set before the end of the pipe is written */
+        private volatile Exception failure;
+
+        ParsedDocument(Source src) {
+            this.src = src;
+        }
+
+        public void run() {
+            OutputStream out = pipe.getOutputStream();
+            try {
+                FOUserAgent userAgent = getTargetHandler().getContext().getUserAgent();
+                IFBinarySerializer serializer = new IFBinarySerializer(new IFContext(userAgent));
+                serializer.setResult(new StreamResult(out));
+                new IFParser().parse(src, serializer, userAgent);
+            } catch (Exception e) {
+                failure = e;
+            } finally {
+                IOUtils.closeQuietly(out);
+            }
+        }
+
+        void rethrowFailure() throws TransformerException, IFException {
+            Exception e = failure;
+            if (e instanceof TransformerException) {
+                throw (TransformerException) e;
+            } else if (e instanceof IFException) {
+                throw (IFException) e;
+            } else if (e instanceof RuntimeException) {
+                throw (RuntimeException) e;
+            } else if (e != null) {
+                throw new IFException("Error while parsing an intermediate format document", e);
+            }
+        }
+    }
+
     private class IFPageSequenceFilter extends IFDocumentHandlerProxy {
 
         private boolean inPageSequence;
 
+        private final int firstPageIndex;
+
+        private final String idPrefix;
+
+        private IFDocumentNavigationHandler navigationFilter;
+
         public IFPageSequenceFilter(IFDocumentHandler delegate) {
             super(delegate);
+            this.firstPageIndex = nextPageIndex;
+            this.idPrefix = "doc" + (documentCount++) + "_";
         }
 
         /** {@inheritDoc} */
@@ -182,8 +347,80 @@ public class IFConcatenator {
 
         /** {@inheritDoc} */
         public IFDocumentNavigationHandler getDocumentNavigationHandler() {
-            return null; //Document Navigation is filtered!!!
+            if (navigationFilter == null) {
+                IFDocumentNavigationHandler navigationHandler
+                        = super.getDocumentNavigationHandler();
+                if (navigationHandler != null) {
+                    navigationFilter = new IFNavigationFilter(navigationHandler);
+                }
+            }
+            return navigationFilter;
+        }
+
+        /**
+         * Adjusts the page index and ID of an action to the concatenated document.
+         */
+        private void adjustAction(AbstractAction action) {
+            if (action == null) {
+                return;
+            }
+            if (action.hasID()) {
+                action.setID(idPrefix + action.getID());
+            }
+            if (action instanceof GoToXYAction && action.isComplete()) {
+                GoToXYAction goTo = (GoToXYAction) action;
+                goTo.setPageIndex(goTo.getPageIndex() + firstPageIndex);
+            }
+        }
+
+        private void adjustBookmarks(List bookmarks) {
+            for (Object o : bookmarks) {
+                Bookmark bookmark = (Bookmark) o;
+                adjustAction(bookmark.getAction());
+                adjustBookmarks(bookmark.getChildBookmarks());
+            }
         }
 
+        private class IFNavigationFilter implements IFDocumentNavigationHandler {
+
+            private final IFDocumentNavigationHandler delegate;
+
+            IFNavigationFilter(IFDocumentNavigationHandler delegate) {
+                this.delegate = delegate;
+            }
+
+            /** {@inheritDoc} */
+            public void renderNamedDestination(NamedDestination destination) {
+                adjustAction(destination.getAction());
+                namedDestinations.add(destination);
+            }
+
+            /** {@inheritDoc} */
+            public void renderBookmarkTree(BookmarkTree tree) {
+                adjustBookmarks(tree.getBookmarks());
+                for (Object o : tree.getBookmarks()) {
+                    bookmarkTree.addBookmark((Bookmark) o);
+                }
+            }
+
+            /** {@inheritDoc} */
+            public void renderLink(Link link) throws IFException {
+                adjustAction(link.getAction());
+                delegate.renderLink(link);
+            }
+
+            /** {@inheritDoc} */
+            public void addResolvedAction(AbstractAction action) throws IFException {
+                adjustAction(action);
+                delegate.addResolvedAction(action);
+            }
+
+            /** {@inheritDoc} */
+            public int getPageIndex() {
+                //Page indices read from the document are relative to its first page
+                int pageIndex = delegate.getPageIndex();
+                return pageIndex >= 0 ? pageIndex - firstPageIndex : pageIndex;
+            }
+        }
     }
 }
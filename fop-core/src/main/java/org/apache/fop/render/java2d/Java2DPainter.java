@@ -27,7 +27,6 @@ import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.font.GlyphVector;
 import java.awt.geom.AffineTransform;
-import java.awt.geom.Point2D;
 import java.io.IOException;
 import java.util.Stack;
 
@@ -46,7 +45,6 @@ import org.apache.fop.render.intermediate.IFException;
 import org.apache.fop.render.intermediate.IFState;
 import org.apache.fop.traits.BorderProps;
 import org.apache.fop.traits.RuleStyle;
-import org.apache.fop.util.CharUtilities;
 
 /**
  * {@link org.apache.fop.render.intermediate.IFPainter} implementation that paints on a Graphics2D
@@ -240,45 +238,8 @@ public class Java2DPainter extends AbstractIFPainter<IFDocumentHandler> {
 
         Graphics2D g2d = this.g2dState.getGraph();
         GlyphVector gv = Java2DUtil.createGlyphVector(text, g2d, font, fontInfo);
-        Point2D cursor = new Point2D.Float(0, 0);
-
-        int l = text.length();
-
-        if (dp != null && dp[0] != null && (dp[0][0] != 0 || dp[0][1] != 0)) {
-            cursor.setLocation(cursor.getX() + dp[0][0], cursor.getY() - dp[0][1]);
-            gv.setGlyphPosition(0, cursor);
-        }
-
-        int currentIdx = 0;
-        for (int i = 0; i < l; i++) {
-            int orgChar = text.codePointAt(i);
-            // The dp (GPOS/kerning adjustment) is performed over glyphs and not
-            // characters (GlyphMapping.processWordMapping). The length of dp is
-            // adjusted later to fit the length of the String adding trailing 0.
-            // This means that it's probably ok to consume one of the 2 surrogate
-            // pairs.
-            i += CharUtilities.incrementIfNonBMP(orgChar);
-
-            float xGlyphAdjust = 0;
-            float yGlyphAdjust = 0;
-            int cw = font.getCharWidth(orgChar);
-
-            if ((wordSpacing != 0) && CharUtilities.isAdjustableSpace(orgChar)) {
-                xGlyphAdjust += wordSpacing;
-            }
-            xGlyphAdjust += letterSpacing;
-            if (dp != null && i < dp.length && dp[i] != null) {
-                xGlyphAdjust += dp[i][2] - dp[i][0];
-                yGlyphAdjust += dp[i][3] - dp[i][1];
-            }
-            if (dp != null && i < dp.length - 1 && dp[i + 1] != null) {
-                xGlyphAdjust += dp[i + 1][0];
-                yGlyphAdjust += dp[i + 1][1];
-            }
-
-            cursor.setLocation(cursor.getX() + cw + xGlyphAdjust, cursor.getY() - yGlyphAdjust);
-            gv.setGlyphPosition(++currentIdx, cursor);
-        }
+        Java2DUtil.setGlyphPositions(gv,
+                Java2DUtil.getGlyphPositions(text, font, letterSpacing, wordSpacing, dp));
         g2d.drawGlyphVector(gv, x, y);
     }
 
@@ -21,6 +21,7 @@ package org.apache.fop.render.java2d;
 
 import java.awt.Graphics2D;
 import java.awt.font.GlyphVector;
+import java.awt.geom.Point2D;
 import java.util.Arrays;
 
 import org.apache.fop.apps.FOUserAgent;
@@ -76,13 +77,24 @@ public final class Java2DUtil {
      * @return an instance of {@link GlyphVector}
      */
     public static GlyphVector createGlyphVector(String text, Graphics2D g2d, Font font, FontInfo fontInfo) {
-        MultiByteFont multiByteFont = getMultiByteFont(font.getFontName(), fontInfo);
+        return createGlyphVector(text, g2d, getGlyphCodes(text, font, fontInfo));
+    }
 
-        if (multiByteFont == null) {
+    /**
+     * Creates an instance of {@link GlyphVector} from the glyph indexes returned by
+     * {@link #getGlyphCodes(String, Font, FontInfo)}, or from the characters of the text if
+     * there are none. The font of the given Graphics2D instance is used.
+     *
+     * @param text Text to render
+     * @param g2d  the target Graphics2D instance
+     * @param glyphCodes the glyph indexes or null
+     * @return an instance of {@link GlyphVector}
+     */
+    public static GlyphVector createGlyphVector(String text, Graphics2D g2d, int[] glyphCodes) {
+        if (glyphCodes == null) {
             return createGlyphVector(text, g2d);
         }
-
-        return createGlyphVectorMultiByteFont(text, g2d, multiByteFont);
+        return g2d.getFont().createGlyphVector(g2d.getFontRenderContext(), glyphCodes);
     }
 
     /**
@@ -98,14 +110,24 @@ public final class Java2DUtil {
     }
 
     /**
-     * Creates a {@link GlyphVector} using glyph indexes instead of characters. To correctly support the advanced font
-     * features we have to build the GlyphVector passing the glyph indexes instead of the characters. This because some
-     * of the chars in text might have been replaced by an internal font representation during
-     * GlyphMapping.processWordMapping. Eg 'fi' replaced with the corresponding character in the font ligatures table
-     * (GSUB).
+     * Returns the glyph indexes a text is rendered with if the font is a {@link MultiByteFont}.
+     * To correctly support the advanced font features we have to build the GlyphVector passing
+     * the glyph indexes instead of the characters. This because some of the chars in text might
+     * have been replaced by an internal font representation during
+     * GlyphMapping.processWordMapping. Eg 'fi' replaced with the corresponding character in the
+     * font ligatures table (GSUB).
+     *
+     * @param text Text to render
+     * @param font the font instance
+     * @param fontInfo the font information
+     * @return the glyph indexes, or null if the glyph vector is to be created from characters
      */
-    private static GlyphVector createGlyphVectorMultiByteFont(String text, Graphics2D g2d,
-            MultiByteFont multiByteFont) {
+    public static int[] getGlyphCodes(String text, Font font, FontInfo fontInfo) {
+        MultiByteFont multiByteFont = getMultiByteFont(font.getFontName(), fontInfo);
+        if (multiByteFont == null) {
+            return null;
+        }
+
         int[] glyphCodes = new int[text.length()];
         int currentIdx = 0;
 
@@ -119,8 +141,88 @@ public final class Java2DUtil {
         if (currentIdx != text.length()) {
             glyphCodes = Arrays.copyOf(glyphCodes, currentIdx);
         }
+        return glyphCodes;
+    }
 
-        return g2d.getFont().createGlyphVector(g2d.getFontRenderContext(), glyphCodes);
+    /**
+     * Calculates the positions of the glyphs of a text from the character widths of its font,
+     * the letter and word spacing and the glyph position adjustments.
+     *
+     * @param text Text to render
+     * @param font the font instance
+     * @param letterSpacing additional spacing between characters (may be 0)
+     * @param wordSpacing additional spacing between words (may be 0)
+     * @param dp an array of 4-tuples, expressing [X,Y] placment adjustments and [X,Y] advancement
+     *     adjustments, in that order (may be null)
+     * @return the x and y coordinates of every glyph, followed by those of the end of the text
+     * @see #setGlyphPositions(GlyphVector, float[])
+     */
+    public static float[] getGlyphPositions(String text, Font font, int letterSpacing,
+            int wordSpacing, int[][] dp) {
+        int l = text.length();
+        float[] positions = new float[2 * (l + 1)];
+        Point2D cursor = new Point2D.Float(0, 0);
+
+        if (dp != null && dp[0] != null && (dp[0][0] != 0 || dp[0][1] != 0)) {
+            cursor.setLocation(cursor.getX() + dp[0][0], cursor.getY() - dp[0][1]);
+            positions[0] = (float) cursor.getX();
+            positions[1] = (float) cursor.getY();
+        }
+
+        int currentIdx = 0;
+        for (int i = 0; i < l; i++) {
+            int orgChar = text.codePointAt(i);
+            // The dp (GPOS/kerning adjustment) is performed over glyphs and not
+            // characters (GlyphMapping.processWordMapping). The length of dp is
+            // adjusted later to fit the length of the String adding trailing 0.
+            // This means that it's probably ok to consume one of the 2 surrogate
+            // pairs.
+            i += CharUtilities.incrementIfNonBMP(orgChar);
+
+            float xGlyphAdjust = 0;
+            float yGlyphAdjust = 0;
+            int cw = font.getCharWidth(orgChar);
+
+            if ((wordSpacing != 0) && CharUtilities.isAdjustableSpace(orgChar)) {
+                xGlyphAdjust += wordSpacing;
+            }
+            xGlyphAdjust += letterSpacing;
+            if (dp != null && i < dp.length && dp[i] != null) {
+                xGlyphAdjust += dp[i][2] - dp[i][0];
+                yGlyphAdjust += dp[i][3] - dp[i][1];
+            }
+            if (dp != null && i < dp.length - 1 && dp[i + 1] != null) {
+                xGlyphAdjust += dp[i + 1][0];
+                yGlyphAdjust += dp[i + 1][1];
+            }
+
+            cursor.setLocation(cursor.getX() + cw + xGlyphAdjust, cursor.getY() - yGlyphAdjust);
+            currentIdx++;
+            positions[2 * currentIdx] = (float) cursor.getX();
+            positions[2 * currentIdx + 1] = (float) cursor.getY();
+        }
+        if (currentIdx != l) {
+            positions = Arrays.copyOf(positions, 2 * (currentIdx + 1));
+        }
+        return positions;
+    }
+
+    /**
+     * Applies the glyph positions calculated by
+     * {@link #getGlyphPositions(String, Font, int, int, int[][])} to a glyph vector.
+     *
+     * @param gv the glyph vector
+     * @param positions the x and y coordinates of every glyph and of the end of the text
+     */
+    public static void setGlyphPositions(GlyphVector gv, float[] positions) {
+        Point2D cursor = new Point2D.Float(positions[0], positions[1]);
+        if (positions[0] != 0 || positions[1] != 0) {
+            gv.setGlyphPosition(0, cursor);
+        }
+        for (int i = 1, n = positions.length / 2; i < n; i++) {
+            cursor.setLocation(positions[2 * i], positions[2 * i + 1]);
+            gv.setGlyphPosition(i, cursor);
+        }
     }
 
     /**
@@ -298,6 +298,7 @@ public class PDFDocumentHandler extends AbstractBinaryWritingIFDocumentHandler {
             if (!pdfDoc.isLinearizationEnabled()) {
                 this.generator.flushPDFDoc();
                 this.generator = null;
+                pdfDoc.releaseWrittenObjects();
             }
         } catch (IOException ioe) {
             throw new IFException("I/O error in endPage()", ioe);
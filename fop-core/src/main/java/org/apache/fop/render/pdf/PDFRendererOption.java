@@ -21,6 +21,7 @@ package org.apache.fop.render.pdf;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.zip.Deflater;
 
 import org.apache.fop.apps.io.InternalResourceResolver;
 import org.apache.fop.pdf.PDFAMode;
@@ -99,6 +100,43 @@ public enum PDFRendererOption implements RendererConfigOption {
             return Boolean.valueOf(value);
         }
     },
+    STREAMING("streaming", false) {
+        @Override
+        Boolean deserialize(String value) {
+            return Boolean.valueOf(value);
+        }
+    },
+    /** Rendering Options key for caching streams in direct buffers, default: false */
+    DIRECT_BUFFERS("direct-buffers", false) {
+        @Override
+        Boolean deserialize(String value) {
+            return Boolean.valueOf(value);
+        }
+    },
+    /**
+     * Rendering Options key for the Flate compression level: "speed", "size", "default" or
+     * a level between 0 and 9, default: {@link Deflater#DEFAULT_COMPRESSION}
+     */
+    COMPRESSION_LEVEL("compression-level", Deflater.DEFAULT_COMPRESSION) {
+        @Override
+        Integer deserialize(String value) {
+            if ("speed".equals(value)) {
+                return Deflater.BEST_SPEED;
+            } else if ("size".equals(value)) {
+                return Deflater.BEST_COMPRESSION;
+            } else if ("default".equals(value)) {
+                return Deflater.DEFAULT_COMPRESSION;
+            }
+            return Integer.valueOf(value);
+        }
+    },
+    /** Rendering Options key for the number of threads compressing streams, default: 1 */
+    COMPRESSION_THREADS("compression-threads", 1) {
+        @Override
+        Integer deserialize(String value) {
+            return Integer.valueOf(value);
+        }
+    },
     /** Rendering Options key for the ICC profile for the output intent. */
     OUTPUT_PROFILE("output-profile") {
         @Override
@@ -31,6 +31,9 @@ import org.apache.fop.pdf.PDFVTMode;
 import org.apache.fop.pdf.PDFXMode;
 import org.apache.fop.pdf.Version;
 
+import static org.apache.fop.render.pdf.PDFRendererOption.COMPRESSION_LEVEL;
+import static org.apache.fop.render.pdf.PDFRendererOption.COMPRESSION_THREADS;
+import static org.apache.fop.render.pdf.PDFRendererOption.DIRECT_BUFFERS;
 import static org.apache.fop.render.pdf.PDFRendererOption.DISABLE_SRGB_COLORSPACE;
 import static org.apache.fop.render.pdf.PDFRendererOption.FILTER_LIST;
 import static org.apache.fop.render.pdf.PDFRendererOption.FORM_XOBJECT;
@@ -41,6 +44,7 @@ import static org.apache.fop.render.pdf.PDFRendererOption.PDF_A_MODE;
 import static org.apache.fop.render.pdf.PDFRendererOption.PDF_UA_MODE;
 import static org.apache.fop.render.pdf.PDFRendererOption.PDF_VT_MODE;
 import static org.apache.fop.render.pdf.PDFRendererOption.PDF_X_MODE;
+import static org.apache.fop.render.pdf.PDFRendererOption.STREAMING;
 import static org.apache.fop.render.pdf.PDFRendererOption.VERSION;
 
 /**
@@ -147,4 +151,20 @@ public final class PDFRendererOptionsConfig {
     public Boolean getFormXObjectEnabled() {
         return (Boolean)properties.get(FORM_XOBJECT);
     }
+
+    public Boolean getStreamingEnabled() {
+        return (Boolean)properties.get(STREAMING);
+    }
+
+    public Boolean getDirectBuffersEnabled() {
+        return (Boolean)properties.get(DIRECT_BUFFERS);
+    }
+
+    public Integer getCompressionLevel() {
+        return (Integer)properties.get(COMPRESSION_LEVEL);
+    }
+
+    public Integer getCompressionThreads() {
+        return (Integer)properties.get(COMPRESSION_THREADS);
+    }
 }
@@ -621,6 +621,10 @@ class PDFRenderingUtil {
         pdfDoc.setMergeFontsEnabled(rendererConfig.getMergeFontsEnabled());
         pdfDoc.setLinearizationEnabled(rendererConfig.getLinearizationEnabled());
         pdfDoc.setFormXObjectEnabled(rendererConfig.getFormXObjectEnabled());
+        pdfDoc.setStreamingEnabled(rendererConfig.getStreamingEnabled());
+        pdfDoc.setDirectBuffersEnabled(rendererConfig.getDirectBuffersEnabled());
+        pdfDoc.setCompressionLevel(rendererConfig.getCompressionLevel());
+        pdfDoc.setCompressionParallelism(rendererConfig.getCompressionThreads());
 
         return this.pdfDoc;
     }
@@ -18,16 +18,24 @@
 /* $Id$ */
 package org.apache.fop;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectOutputStream;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.junit.Test;
+import org.xml.sax.InputSource;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
 import org.apache.commons.io.IOUtils;
 
@@ -35,8 +43,11 @@ import org.apache.fop.apps.FopFactory;
 import org.apache.fop.apps.io.InternalResourceResolver;
 import org.apache.fop.apps.io.ResourceResolverFactory;
 import org.apache.fop.hyphenation.Hyphenation;
+import org.apache.fop.hyphenation.HyphenationCache;
 import org.apache.fop.hyphenation.HyphenationException;
 import org.apache.fop.hyphenation.HyphenationTree;
+import org.apache.fop.hyphenation.HyphenationTreeCache;
+import org.apache.fop.hyphenation.HyphenationTreeFormat;
 import org.apache.fop.hyphenation.Hyphenator;
 
 public class HyphenationTestCase {
@@ -99,4 +110,117 @@ public class HyphenationTestCase {
         frxml.delete();
         f.delete();
     }
+
+    @Test
+    public void testHyphenatorCompactFormat() throws HyphenationException, IOException {
+        File f = File.createTempFile("hyp", "fop");
+        f.delete();
+        f.mkdir();
+        InternalResourceResolver resourceResolver = ResourceResolverFactory.createDefaultInternalResourceResolver(
+                f.toURI());
+
+        HyphenationTree hTree = new HyphenationTree();
+        hTree.loadPatterns(new File("test/resources/fop/fr.xml").getAbsolutePath());
+        File hyp = new File(f, "fr.hyp");
+        FileOutputStream out = new FileOutputStream(hyp);
+        HyphenationTreeFormat.write(hTree, out);
+        out.close();
+
+        Hyphenation hyph = Hyphenator.hyphenate("fr.hyp" + Hyphenator.HYPTYPE, null, resourceResolver, null,
+                "oello", 0, 0, fopFactory.newFOUserAgent());
+        assertEquals(hyph.toString(), "oel-lo");
+        assertEquals("oel-lo", HyphenationTreeFormat.read(hyp).hyphenate("oello", 0, 0).toString());
+
+        hyp.delete();
+        f.delete();
+    }
+
+    @Test
+    public void testCompactFormatRoundTrip() throws HyphenationException, IOException {
+        String patterns = "<hyphenation-info><hyphen-char value=\"-\"/><hyphen-min before=\"2\" after=\"2\"/>"
+                + "<classes>aA bB cC eE kK nN oO rR tT</classes>"
+                + "<exceptions>back-en ta<hyphen pre=\"k\" no=\"c\" post=\"\"/>cker</exceptions>"
+                + "<patterns>1ba 1be 1ca 1ke 1na 1ne 1ta 1to a1n e1r o1r</patterns></hyphenation-info>";
+        HyphenationTree hTree = new HyphenationTree();
+        hTree.loadPatterns(new InputSource(new StringReader(patterns)));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        HyphenationTreeFormat.write(hTree, out);
+        HyphenationTree read = HyphenationTreeFormat.read(ByteBuffer.wrap(out.toByteArray()));
+
+        String[] words = {"backen", "tacker", "banane", "tortoreto", "Kabbe", "cabernet"};
+        for (String word : words) {
+            Hyphenation expected = hTree.hyphenate(word, 2, 2);
+            Hyphenation actual = read.hyphenate(word, 2, 2);
+            assertEquals(String.valueOf(expected), String.valueOf(actual));
+        }
+        assertEquals(hTree.findPattern("ba"), read.findPattern("ba"));
+    }
+
+    @Test
+    public void testCompactFormatRewrite() throws HyphenationException, IOException {
+        HyphenationTree hTree = new HyphenationTree();
+        hTree.loadPatterns(new File("test/resources/fop/fr.xml").getAbsolutePath());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        HyphenationTreeFormat.write(hTree, out);
+        byte[] written = out.toByteArray();
+
+        HyphenationTree read = HyphenationTreeFormat.read(ByteBuffer.wrap(written));
+        out = new ByteArrayOutputStream();
+        HyphenationTreeFormat.write(read, out);
+        assertArrayEquals(written, out.toByteArray());
+
+        HyphenationTree reread = HyphenationTreeFormat.read(ByteBuffer.wrap(out.toByteArray()));
+        assertEquals("oel-lo", reread.hyphenate("oello", 0, 0).toString());
+        assertEquals(hTree.findPattern("lo"), reread.findPattern("lo"));
+    }
+
+    @Test
+    public void testHyphenationTreeCacheEviction() {
+        HyphenationTreeCache cache = new HyphenationTreeCache(2);
+        HyphenationTree en = new HyphenationTree();
+        HyphenationTree fr = new HyphenationTree();
+        HyphenationTree de = new HyphenationTree();
+        cache.cache("en", en);
+        cache.cache("fr", fr);
+        assertSame(en, cache.getHyphenationTree("en", null));
+        cache.cache("de", de);
+        assertEquals(2, cache.size());
+        assertSame(en, cache.getHyphenationTree("en", "US"));
+        assertSame(de, cache.getHyphenationTree("de", null));
+        assertNull(cache.getHyphenationTree("fr", null));
+    }
+
+    @Test
+    public void testHyphenationTreeCacheKeyedByUserPatterns() {
+        HyphenationTreeCache cache = new HyphenationTreeCache();
+        HyphenationTree de = new HyphenationTree();
+        cache.cache("de", de);
+        assertSame(de, cache.getHyphenationTree("de", null));
+        Map<String, String> hyphPatNames = new HashMap<String, String>();
+        hyphPatNames.put("de", "my-de");
+        assertNull(cache.getHyphenationTree("de", null, hyphPatNames));
+        cache.cache(HyphenationTreeCache.constructCacheKey("de", null, hyphPatNames), new HyphenationTree());
+        assertSame(de, cache.getHyphenationTree("de", null));
+    }
+
+    @Test
+    public void testWordCache() throws HyphenationException {
+        HyphenationTree hTree = new HyphenationTree();
+        hTree.loadPatterns(new File("test/resources/fop/fr.xml").getAbsolutePath());
+        HyphenationCache cache = hTree.getWordCache();
+
+        Hyphenation hyph = hTree.hyphenate("hello", 0, 0);
+        assertEquals("-hel-lo", hyph.toString());
+        assertSame(hyph, hTree.hyphenate("hello", 0, 0));
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+
+        assertEquals("hel-lo", hTree.hyphenate("hello", 2, 2).toString());
+        assertNull(hTree.hyphenate("xyz", 0, 0));
+        assertNull(hTree.hyphenate("xyz", 0, 0));
+        assertEquals(3, cache.getMissCount());
+        assertEquals(2, cache.getHitCount());
+        assertEquals(3, cache.size());
+    }
 }
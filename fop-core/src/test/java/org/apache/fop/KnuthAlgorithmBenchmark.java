@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop;
+
+import org.apache.fop.layoutmgr.BlockKnuthSequence;
+import org.apache.fop.layoutmgr.BreakingAlgorithm;
+import org.apache.fop.layoutmgr.KnuthBox;
+import org.apache.fop.layoutmgr.KnuthGlue;
+import org.apache.fop.layoutmgr.KnuthPenalty;
+import org.apache.fop.layoutmgr.KnuthSequence;
+
+/**
+ * Debug tool to time the breaking algorithm on a long element sequence. The sequence
+ * repeats the pattern of the sequence broken by {@link KnuthAlgorithmTestCase}, a
+ * negative-length glue after each break possibility, and breaks it into lines of the
+ * same width.
+ * <p>
+ * Usage, from the fop directory after "mvn test-compile":
+ * <pre>
+ * java -cp ../fop-core/target/classes:../fop-core/target/test-classes:&lt;dependencies&gt;
+ *     org.apache.fop.KnuthAlgorithmBenchmark [repeats [iterations]]
+ * </pre>
+ * The defaults are 20000 repeats (120000 elements) and 20 timed iterations, after 10
+ * iterations to warm up. The time per run and per element is printed. Compare runs of
+ * the same build on the same machine only.
+ */
+public final class KnuthAlgorithmBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 10;
+
+    private KnuthAlgorithmBenchmark() {
+    }
+
+    private static KnuthSequence createSequence(int repeats) {
+        KnuthSequence seq = new BlockKnuthSequence();
+        for (int i = 0; i < repeats; i++) {
+            seq.add(new KnuthBox(0, null, true));
+            seq.add(new KnuthPenalty(0, KnuthPenalty.INFINITE, false, null, true));
+            seq.add(new KnuthGlue(5000, 0, 0, null, true));
+            seq.add(new KnuthBox(10000, null, false));
+            if (i < repeats - 1) {
+                seq.add(new KnuthPenalty(0, 0, false, null, false));
+                seq.add(new KnuthGlue(-5000, 0, 0, null, true));
+            }
+        }
+        seq.add(new KnuthPenalty(0, KnuthPenalty.INFINITE, false, null, false));
+        seq.add(new KnuthGlue(0, Integer.MAX_VALUE, 0, null, false));
+        seq.add(new KnuthPenalty(0, -KnuthPenalty.INFINITE, false, null, false));
+        return seq;
+    }
+
+    private static int run(KnuthSequence seq) {
+        BenchmarkBreakingAlgorithm algo = new BenchmarkBreakingAlgorithm();
+        algo.setConstantLineWidth(30000);
+        return algo.findBreakingPoints(seq, 1, true, BreakingAlgorithm.ALL_BREAKS);
+    }
+
+    /**
+     * Main method.
+     * @param args the command-line arguments
+     */
+    public static void main(String[] args) {
+        int repeats = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        KnuthSequence seq = createSequence(repeats);
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            run(seq);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            run(seq);
+        }
+        long duration = (System.nanoTime() - start) / iterations;
+        System.out.println(seq.size() + " elements: "
+                + (duration / 1000000.0) + " ms/run, "
+                + ((double) duration / seq.size()) + " ns/element");
+    }
+
+    private static class BenchmarkBreakingAlgorithm extends BreakingAlgorithm {
+
+        BenchmarkBreakingAlgorithm() {
+            super(0, 0, true, true, 0);
+        }
+
+        @Override
+        public void updateData1(int total, double demerits) {
+            //nop
+        }
+
+        @Override
+        public void updateData2(KnuthNode bestActiveNode, KnuthSequence sequence, int total) {
+            //nop
+        }
+
+        @Override
+        protected int filterActiveNodes() {
+            return 0;
+        }
+    }
+}
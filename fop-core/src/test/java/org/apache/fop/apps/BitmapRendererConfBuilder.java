@@ -26,6 +26,7 @@ import static org.apache.fop.render.bitmap.BitmapRendererOption.BACKGROUND_COLOR
 import static org.apache.fop.render.bitmap.BitmapRendererOption.COLOR_MODE;
 import static org.apache.fop.render.bitmap.BitmapRendererOption.JAVA2D_TRANSPARENT_PAGE_BACKGROUND;
 import static org.apache.fop.render.bitmap.BitmapRendererOption.RENDERING_QUALITY_ELEMENT;
+import static org.apache.fop.render.bitmap.BitmapRendererOption.RENDERING_THREADS;
 
 public class BitmapRendererConfBuilder extends RendererConfBuilder {
 
@@ -62,6 +63,11 @@ public class BitmapRendererConfBuilder extends RendererConfBuilder {
         return this;
     }
 
+    public BitmapRendererConfBuilder setRenderingThreads(int threads) {
+        createTextElement(RENDERING_THREADS, String.valueOf(threads));
+        return this;
+    }
+
     public static String getMimeType() {
         return "Bitmap";
     }
@@ -20,16 +20,24 @@
 package org.apache.fop.apps;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
 
 import org.junit.Test;
 import org.xml.sax.SAXException;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import org.apache.fop.config.BaseConstructiveUserConfigTest;
+import org.apache.fop.fonts.EmbedFontInfo;
+import org.apache.fop.fonts.FontConfig;
+import org.apache.fop.fonts.FontConfigurator;
 import org.apache.fop.render.RendererConfig.RendererConfigParser;
 import org.apache.fop.render.pdf.PDFRendererConfig;
 
@@ -63,4 +71,17 @@ public class FopFactoryTestCase extends BaseConstructiveUserConfigTest {
             fail(e.getMessage());
         }
     }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testConfiguredFontsAreCached() throws Exception {
+        FontConfig fontConfig = mock(FontConfig.class);
+        FontConfigurator<EmbedFontInfo> configurator = mock(FontConfigurator.class);
+        List<EmbedFontInfo> fonts = Collections.emptyList();
+        when(configurator.configure(fontConfig)).thenReturn(fonts);
+        FOUserAgent userAgent = fopFactory.newFOUserAgent();
+        assertSame(fonts, userAgent.getConfiguredFonts(fontConfig, configurator));
+        assertSame(fonts, fopFactory.newFOUserAgent().getConfiguredFonts(fontConfig, configurator));
+        verify(configurator, times(1)).configure(fontConfig);
+    }
 }
@@ -0,0 +1,258 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.area;
+
+import java.awt.Rectangle;
+import java.awt.geom.Rectangle2D;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.xmlgraphics.io.Resource;
+import org.apache.xmlgraphics.io.TempResourceResolver;
+
+import org.apache.fop.apps.FOUserAgent;
+import org.apache.fop.apps.Fop;
+import org.apache.fop.apps.FopFactory;
+import org.apache.fop.apps.MimeConstants;
+import org.apache.fop.apps.io.InternalResourceResolver;
+import org.apache.fop.apps.io.ResourceResolverFactory;
+import org.apache.fop.area.inline.InlineArea;
+import org.apache.fop.area.inline.SpaceArea;
+import org.apache.fop.area.inline.TextArea;
+import org.apache.fop.area.inline.WordArea;
+import org.apache.fop.fo.Constants;
+import org.apache.fop.fonts.FontInfo;
+
+/**
+ * Tests the spilling of pages waiting for forward references in {@link CachedRenderPagesModel}.
+ */
+public class CachedRenderPagesModelTestCase {
+
+    private static final int PAGES = 12;
+
+    private final FopFactory fopFactory = FopFactory.newInstance(new File(".").toURI());
+
+    private String createPageXOfYDocument() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<fo:root xmlns:fo=\"http://www.w3.org/1999/XSL/Format\">"
+                + "<fo:layout-master-set>"
+                + "<fo:simple-page-master master-name=\"A5\" page-height=\"21cm\" page-width=\"14.8cm\""
+                + " margin=\"1cm\"><fo:region-body margin-top=\"1cm\"/>"
+                + "<fo:region-before extent=\"1cm\"/></fo:simple-page-master>"
+                + "</fo:layout-master-set>"
+                + "<fo:page-sequence master-reference=\"A5\">"
+                + "<fo:static-content flow-name=\"xsl-region-before\"><fo:block>Page "
+                + "<fo:page-number/> of <fo:page-number-citation ref-id=\"last\"/></fo:block>"
+                + "</fo:static-content><fo:flow flow-name=\"xsl-region-body\">");
+        for (int i = 0; i < PAGES; i++) {
+            sb.append("<fo:block break-before=\"page\" id=\"p" + i + "\" text-align=\"justify\">"
+                    + "Page " + i + " refers to <fo:basic-link internal-destination=\"last\">"
+                    + "the last page <fo:page-number-citation ref-id=\"last\"/></fo:basic-link>"
+                    + " and to <fo:inline background-color=\"yellow\" font-weight=\"bold\">"
+                    + "an inline with traits</fo:inline>, <fo:leader leader-pattern=\"dots\""
+                    + " leader-length=\"2cm\"/> שלום עולם"
+                    + " and ");
+            for (int j = 0; j < 60; j++) {
+                sb.append("word").append(j).append(' ');
+            }
+            sb.append("</fo:block>");
+        }
+        sb.append("<fo:block id=\"last\">The end</fo:block></fo:flow></fo:page-sequence></fo:root>");
+        return sb.toString();
+    }
+
+    private String render(String fo, boolean conserveMemory, int residentPages, long spillLimit,
+            PageSpillStore[] store) throws Exception {
+        FOUserAgent userAgent = fopFactory.newFOUserAgent();
+        userAgent.setConserveMemoryPolicy(conserveMemory);
+        userAgent.setConserveMemoryResidentPages(residentPages);
+        userAgent.setConserveMemorySpillLimit(spillLimit);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AreaTreeHandler handler = new AreaTreeHandler(userAgent, MimeConstants.MIME_FOP_IF, out);
+        userAgent.setFOEventHandlerOverride(handler);
+        Fop fop = fopFactory.newFop(MimeConstants.MIME_FOP_IF, userAgent, out);
+        Transformer transformer = TransformerFactory.newInstance().newTransformer();
+        transformer.transform(new StreamSource(new ByteArrayInputStream(fo.getBytes("UTF-8"))),
+                new SAXResult(fop.getDefaultHandler()));
+        if (store != null) {
+            store[0] = ((CachedRenderPagesModel) handler.getAreaTreeModel()).getSpillStore();
+        }
+        //The header holds the creation date
+        String result = out.toString("UTF-8");
+        return result.substring(result.indexOf("</header>"));
+    }
+
+    @Test
+    public void testSpilledPagesRenderLikeResidentPages() throws Exception {
+        String fo = createPageXOfYDocument();
+        String expected = render(fo, false, 0, 0, null);
+        assertTrue(expected.contains(">" + PAGES + "</text>"));
+        PageSpillStore[] store = new PageSpillStore[1];
+
+        assertEquals(expected, render(fo, true, 1000, 0, store));
+        assertEquals(0, store[0].getSpilledPageCount());
+
+        assertEquals(expected, render(fo, true, 0, 16L * 1024 * 1024, store));
+        assertEquals(PAGES - 1, store[0].getSpilledPageCount());
+        assertEquals(0, store[0].getDiskBytes());
+
+        assertEquals(expected, render(fo, true, 0, 0, store));
+        assertEquals(PAGES - 1, store[0].getSpilledPageCount());
+        assertEquals(store[0].getSpilledBytes(), store[0].getDiskBytes());
+    }
+
+    @Test
+    public void testStatistics() throws Exception {
+        PageSpillStore[] store = new PageSpillStore[1];
+        render(createPageXOfYDocument(), true, 4, PageSpillStore.CHUNK_SIZE, store);
+        PageSpillStore spillStore = store[0];
+        //The last page holds the target of the references, the four pages before it stay
+        assertEquals(PAGES - 1 - 4, spillStore.getSpilledPageCount());
+        assertEquals(spillStore.getSpilledPageCount(), spillStore.getRestoredPageCount());
+        assertEquals(spillStore.getSpilledBytes(), spillStore.getRestoredBytes());
+        assertTrue(spillStore.getDiskBytes() > 0);
+        assertTrue(spillStore.getDiskBytes() < spillStore.getSpilledBytes());
+        assertEquals(0, spillStore.getResidentPageCount());
+        assertEquals(0, spillStore.getMemoryBytes());
+    }
+
+    @Test
+    public void testRestoreFromFileInAnyOrder() throws Exception {
+        MemoryTempResourceResolver tempResolver = new MemoryTempResourceResolver();
+        InternalResourceResolver resourceResolver = ResourceResolverFactory.createInternalResourceResolver(
+                new File(".").toURI(), ResourceResolverFactory.createTempAwareResourceResolver(
+                        tempResolver, ResourceResolverFactory.createDefaultResourceResolver()));
+        PageSpillStore spillStore = new PageSpillStore(0, 0, new FontInfo(), resourceResolver);
+        PageViewport[] pages = new PageViewport[5];
+        for (int i = 0; i < pages.length; i++) {
+            pages[i] = new PageViewport(new Rectangle(), i + 1, String.valueOf(i + 1), null, false);
+            Page page = new Page();
+            page.setRegionViewport(Constants.FO_REGION_BODY,
+                    new RegionViewport(new Rectangle2D.Double(i, 0, 100, 100)));
+            pages[i].setPage(page);
+            spillStore.addPage(pages[i]);
+            spillStore.spillPage(spillStore.getPageToSpill());
+            assertNull(pages[i].getPage());
+        }
+        //One temporary resource per page, through the resolver of the user agent
+        assertEquals(pages.length, tempResolver.resources.size());
+        assertEquals(spillStore.getSpilledBytes(), spillStore.getDiskBytes());
+
+        for (int i : new int[] {3, 0, 4, 1}) {
+            spillStore.restorePage(pages[i]);
+            Rectangle2D viewArea = pages[i].getPage().getRegionViewport(Constants.FO_REGION_BODY)
+                    .getViewArea();
+            assertEquals(i, viewArea.getX(), 0);
+        }
+        assertEquals(4, spillStore.getRestoredPageCount());
+        assertEquals(1, tempResolver.resources.size());
+
+        spillStore.close();
+        assertTrue(tempResolver.resources.isEmpty());
+    }
+
+    /** Keeps temporary resources in memory and, like the default one, drops them once read. */
+    private static class MemoryTempResourceResolver implements TempResourceResolver {
+
+        private final Map<String, ByteArrayOutputStream> resources
+                = new HashMap<String, ByteArrayOutputStream>();
+
+        public Resource getResource(String id) throws IOException {
+            ByteArrayOutputStream bytes = resources.remove(id);
+            if (bytes == null) {
+                throw new IOException("Unknown temporary resource: " + id);
+            }
+            return new Resource(new ByteArrayInputStream(bytes.toByteArray()));
+        }
+
+        public OutputStream getOutputStream(String id) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            resources.put(id, bytes);
+            return bytes;
+        }
+    }
+
+    @Test
+    public void testInlineChildrenSerialization() throws Exception {
+        TextArea text = new TextArea();
+        WordArea plain = new WordArea(3, 1, "plain", new int[] {0, 10, -20, 0, 5}, null, null);
+        plain.setIPD(25000);
+        plain.setBPD(12000);
+        text.addChildArea(plain);
+        SpaceArea space = new SpaceArea(-2, 0, ' ', true);
+        space.setIPD(3000);
+        text.addChildArea(space);
+        WordArea decorated = new WordArea(0, -1, "decorated", null, null,
+                new int[][] {null, {1, 2, 3, 4}, null, null, null, null, null, null, null});
+        decorated.addTrait(Trait.UNDERLINE, Boolean.TRUE);
+        text.addChildArea(decorated);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(text);
+        out.close();
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        TextArea copy = (TextArea) in.readObject();
+
+        List<InlineArea> children = copy.getChildAreas();
+        assertEquals(3, children.size());
+        WordArea word = (WordArea) children.get(0);
+        assertEquals("plain", word.getWord());
+        assertEquals(3, word.getBlockProgressionOffset());
+        assertEquals(1, word.getBidiLevel());
+        assertArrayEquals(new int[] {1, 1, 1, 1, 1}, word.getBidiLevels());
+        assertArrayEquals(new int[] {0, 10, -20, 0, 5}, word.getLetterAdjustArray());
+        assertEquals(25000, word.getIPD());
+        assertEquals(12000, word.getBPD());
+        assertSame(copy, word.getParentArea());
+        SpaceArea spaceCopy = (SpaceArea) children.get(1);
+        assertEquals(" ", spaceCopy.getSpace());
+        assertTrue(spaceCopy.isAdjustable());
+        assertEquals(-2, spaceCopy.getBlockProgressionOffset());
+        assertEquals(3000, spaceCopy.getIPD());
+        assertSame(copy, spaceCopy.getParentArea());
+        WordArea decoratedCopy = (WordArea) children.get(2);
+        assertEquals(Boolean.TRUE, decoratedCopy.getTrait(Trait.UNDERLINE));
+        assertArrayEquals(new int[] {1, 2, 3, 4}, decoratedCopy.glyphPositionAdjustmentsAt(1));
+        assertNull(decoratedCopy.getBidiLevels());
+        assertSame(copy, decoratedCopy.getParentArea());
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.fo;
+
+import java.io.File;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.xml.sax.helpers.AttributesImpl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.apache.fop.apps.FOUserAgent;
+import org.apache.fop.apps.FopFactory;
+import org.apache.fop.fo.properties.FixedLength;
+
+/**
+ * Tests the sharing of explicit properties between property lists.
+ */
+public class ExplicitPropertyPoolTestCase {
+
+    private FOUserAgent userAgent;
+
+    private ExplicitPropertyPool pool;
+
+    private StaticPropertyList parent;
+
+    @Before
+    public void setUp() throws Exception {
+        userAgent = FopFactory.newInstance(new File(".").toURI()).newFOUserAgent();
+        pool = new ExplicitPropertyPool();
+        parent = new StaticPropertyList(mockFObj(Constants.FO_FLOW), null);
+    }
+
+    private FObj mockFObj(int nameId) {
+        FObj fobj = mock(FObj.class);
+        when(fobj.getNameId()).thenReturn(nameId);
+        when(fobj.getUserAgent()).thenReturn(userAgent);
+        when(fobj.getFOValidationEventProducer()).thenReturn(
+                mock(FOValidationEventProducer.class));
+        return fobj;
+    }
+
+    private StaticPropertyList createBlockPropertyList(PropertyList parentList,
+            AttributesImpl attributes) throws ValidationException {
+        StaticPropertyList pList = new StaticPropertyList(mockFObj(Constants.FO_BLOCK),
+                parentList, pool);
+        pList.addAttributesToList(attributes);
+        return pList;
+    }
+
+    private static AttributesImpl attributes(String... namesAndValues) {
+        AttributesImpl attributes = new AttributesImpl();
+        for (int i = 0; i < namesAndValues.length; i += 2) {
+            attributes.addAttribute("", namesAndValues[i], namesAndValues[i], "CDATA",
+                    namesAndValues[i + 1]);
+        }
+        return attributes;
+    }
+
+    @Test
+    public void testSiblingsShareExplicitProperties() throws Exception {
+        AttributesImpl attributes = attributes("space-before", "6pt", "font-weight", "bold");
+        StaticPropertyList first = createBlockPropertyList(parent, attributes);
+        StaticPropertyList second = createBlockPropertyList(parent, attributes);
+        assertEquals(1, pool.size());
+        assertNotNull(first.getExplicit(Constants.PR_SPACE_BEFORE));
+        assertSame(first.getExplicit(Constants.PR_SPACE_BEFORE),
+                second.getExplicit(Constants.PR_SPACE_BEFORE));
+        assertSame(first.getExplicit(Constants.PR_FONT_WEIGHT),
+                second.getExplicit(Constants.PR_FONT_WEIGHT));
+        assertSame(first.getContextKey(), second.getContextKey());
+
+        StaticPropertyList other = createBlockPropertyList(parent,
+                attributes("space-before", "12pt"));
+        assertEquals(2, pool.size());
+        assertNotSame(first.getContextKey(), other.getContextKey());
+    }
+
+    @Test
+    public void testDescendantsOfSharedListsShareExplicitProperties() throws Exception {
+        AttributesImpl attributes = attributes("font-size", "10pt");
+        StaticPropertyList first = createBlockPropertyList(parent, attributes);
+        StaticPropertyList second = createBlockPropertyList(parent, attributes);
+        AttributesImpl childAttributes = attributes("space-after", "1em");
+        StaticPropertyList firstChild = createBlockPropertyList(first, childAttributes);
+        StaticPropertyList secondChild = createBlockPropertyList(second, childAttributes);
+        assertSame(firstChild.getExplicit(Constants.PR_SPACE_AFTER),
+                secondChild.getExplicit(Constants.PR_SPACE_AFTER));
+
+        StaticPropertyList otherParent = new StaticPropertyList(mockFObj(Constants.FO_FLOW),
+                null);
+        StaticPropertyList otherChild = createBlockPropertyList(otherParent, childAttributes);
+        assertNotSame(firstChild.getContextKey(), otherChild.getContextKey());
+    }
+
+    @Test
+    public void testContextDependentAttributesAreNotShared() throws Exception {
+        createBlockPropertyList(parent, attributes("start-indent", "10%"));
+        createBlockPropertyList(parent, attributes("font-size", "inherit"));
+        createBlockPropertyList(parent, attributes("id", "b1", "font-weight", "bold"));
+        createBlockPropertyList(parent, attributes("end-indent", "inherited-property-value()"));
+        assertEquals(0, pool.size());
+
+        StaticPropertyList pList = createBlockPropertyList(parent,
+                attributes("start-indent", "10%"));
+        assertSame(pList, pList.getContextKey());
+    }
+
+    @Test
+    public void testInvalidAttributesAreNotShared() throws Exception {
+        createBlockPropertyList(parent, attributes("space-before", "wide"));
+        createBlockPropertyList(parent, attributes("colour", "red"));
+        assertEquals(0, pool.size());
+    }
+
+    @Test
+    public void testPutExplicitCopiesSharedProperties() throws Exception {
+        AttributesImpl attributes = attributes("space-before", "6pt");
+        StaticPropertyList first = createBlockPropertyList(parent, attributes);
+        StaticPropertyList second = createBlockPropertyList(parent, attributes);
+        second.putExplicit(Constants.PR_SPACE_AFTER, FixedLength.getInstance(1000));
+        assertNull(first.getExplicit(Constants.PR_SPACE_AFTER));
+        assertNotNull(second.getExplicit(Constants.PR_SPACE_AFTER));
+        assertSame(first.getExplicit(Constants.PR_SPACE_BEFORE),
+                second.getExplicit(Constants.PR_SPACE_BEFORE));
+        assertSame(second, second.getContextKey());
+
+        StaticPropertyList third = createBlockPropertyList(parent, attributes);
+        assertNull(third.getExplicit(Constants.PR_SPACE_AFTER));
+    }
+}
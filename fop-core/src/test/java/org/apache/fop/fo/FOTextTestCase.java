@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.fo;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.apache.fop.apps.FOPException;
+import org.apache.fop.apps.FOUserAgent;
+import org.apache.fop.apps.Fop;
+import org.apache.fop.apps.FopFactory;
+import org.apache.fop.apps.MimeConstants;
+import org.apache.fop.area.AreaTreeHandler;
+
+/**
+ * Tests the sharing of the traits of text nodes.
+ */
+public class FOTextTestCase {
+
+    private static final String BLOCK = "<fo:block line-height=\"14pt\" font-size=\"10pt\">";
+
+    /** Collects the text nodes while the document is laid out. */
+    private static class TextCollector extends AreaTreeHandler {
+
+        private final List<FOText> texts = new ArrayList<FOText>();
+
+        TextCollector(FOUserAgent userAgent, OutputStream out) throws FOPException {
+            super(userAgent, MimeConstants.MIME_FOP_AREA_TREE, out);
+        }
+
+        @Override
+        public void characters(FOText foText) {
+            texts.add(foText);
+            super.characters(foText);
+        }
+    }
+
+    private String createPageSequence(String text) {
+        return "<fo:page-sequence master-reference=\"page\">"
+                + "<fo:flow flow-name=\"xsl-region-body\">" + BLOCK + text + "</fo:block>"
+                + "</fo:flow></fo:page-sequence>";
+    }
+
+    @Test
+    public void testTraitsAreSharedAfterLayout() throws Exception {
+        String fo = "<fo:root xmlns:fo=\"http://www.w3.org/1999/XSL/Format\">"
+                + "<fo:layout-master-set><fo:simple-page-master master-name=\"page\""
+                + " page-height=\"10cm\" page-width=\"10cm\"><fo:region-body/>"
+                + "</fo:simple-page-master></fo:layout-master-set>"
+                + createPageSequence("First")
+                + createPageSequence("Second")
+                + "</fo:root>";
+        FopFactory fopFactory = FopFactory.newInstance(new File(".").toURI());
+        FOUserAgent userAgent = fopFactory.newFOUserAgent();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TextCollector collector = new TextCollector(userAgent, out);
+        userAgent.setFOEventHandlerOverride(collector);
+        Fop fop = fopFactory.newFop(MimeConstants.MIME_FOP_AREA_TREE, userAgent, out);
+        Transformer transformer = TransformerFactory.newInstance().newTransformer();
+        transformer.transform(new StreamSource(new ByteArrayInputStream(fo.getBytes("UTF-8"))),
+                new SAXResult(fop.getDefaultHandler()));
+
+        assertEquals(2, collector.texts.size());
+        FOText first = collector.texts.get(0);
+        FOText second = collector.texts.get(1);
+        //The first page sequence is laid out before the text of the second one is read,
+        //each block has its own line-height property
+        assertSame(first.getLineHeight(), second.getLineHeight());
+        assertSame(first.getCommonFont(), second.getCommonFont());
+    }
+}
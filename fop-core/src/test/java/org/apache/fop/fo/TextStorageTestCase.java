@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.fo;
+
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests the shared storage of the characters of text nodes.
+ */
+public class TextStorageTestCase {
+
+    private static CharBuffer buffer(String text) {
+        CharBuffer buffer = CharBuffer.allocate(text.length() * 2);
+        buffer.put(text);
+        buffer.limit(buffer.position());
+        return buffer;
+    }
+
+    @Test
+    public void testShortTextsShareChunks() {
+        TextStorage storage = new TextStorage();
+        CharBuffer first = storage.store(buffer("Hello"));
+        CharBuffer second = storage.store(buffer(" world"));
+        assertEquals("Hello", first.toString());
+        assertEquals(" world", second.toString());
+        assertEquals(5, first.capacity());
+        assertSame(first.array(), second.array());
+    }
+
+    @Test
+    public void testChangesStayWithinView() {
+        TextStorage storage = new TextStorage();
+        CharBuffer first = storage.store(buffer("abc"));
+        CharBuffer second = storage.store(buffer("def"));
+        first.put(2, 'x');
+        first.limit(2);
+        assertEquals("ab", first.toString());
+        assertEquals("def", second.toString());
+    }
+
+    @Test
+    public void testLongTextsAndFullChunks() {
+        TextStorage storage = new TextStorage();
+        char[] chars = new char[TextStorage.CHUNK_SIZE];
+        Arrays.fill(chars, 'a');
+        String longText = new String(chars);
+        CharBuffer stored = storage.store(buffer(longText));
+        assertEquals(longText, stored.toString());
+        assertEquals(TextStorage.CHUNK_SIZE, stored.array().length);
+
+        String text = longText.substring(0, TextStorage.CHUNK_SIZE / 8);
+        CharBuffer first = storage.store(buffer(text));
+        CharBuffer last = first;
+        for (int i = 0; i < 8; i++) {
+            last = storage.store(buffer(text));
+        }
+        assertEquals(text, last.toString());
+        assertNotSame(first.array(), last.array());
+        assertFalse(first.array() == stored.array());
+    }
+}
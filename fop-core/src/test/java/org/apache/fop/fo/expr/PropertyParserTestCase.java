@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.fo.expr;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.apache.fop.fo.Constants;
+import org.apache.fop.fo.PropertyList;
+import org.apache.fop.fo.properties.FixedLength;
+import org.apache.fop.fo.properties.ListProperty;
+import org.apache.fop.fo.properties.Property;
+import org.apache.fop.fo.properties.PropertyMaker;
+
+/**
+ * Tests the compilation and evaluation of property expressions.
+ */
+public class PropertyParserTestCase {
+
+    private static PropertyInfo createPropertyInfo(int fontSize) throws PropertyException {
+        PropertyList pList = mock(PropertyList.class);
+        when(pList.get(Constants.PR_FONT_SIZE)).thenReturn(FixedLength.getInstance(fontSize));
+        PropertyMaker maker = mock(PropertyMaker.class);
+        return new PropertyInfo(maker, pList);
+    }
+
+    private static int evaluateLength(String expr, int fontSize) throws PropertyException {
+        return PropertyParser.parse(expr, createPropertyInfo(fontSize)).getLength().getValue();
+    }
+
+    @Test
+    public void testCompiledExpressionsAreCached() throws PropertyException {
+        PropertyExpression compiled = PropertyParser.compile("from-parent(font-size) * 1.2");
+        assertSame(compiled, PropertyParser.compile("from-parent(font-size) * 1.2"));
+    }
+
+    @Test
+    public void testConstantsAreShared() throws PropertyException {
+        Property first = PropertyParser.parse("12pt", createPropertyInfo(10000));
+        Property second = PropertyParser.parse("12pt", createPropertyInfo(12000));
+        assertSame(first, second);
+        assertSame(FixedLength.getInstance(12000), first);
+    }
+
+    @Test
+    public void testExpressionsAreEvaluatedInTheirContext() throws PropertyException {
+        assertEquals(20000, evaluateLength("2em", 10000));
+        assertEquals(24000, evaluateLength("2em", 12000));
+        assertEquals(26000, evaluateLength("2em + 2pt", 12000));
+        assertEquals(-12000, evaluateLength("-1em", 12000));
+    }
+
+    @Test
+    public void testOperationsAndFunctions() throws PropertyException {
+        assertEquals(6000, evaluateLength("max(1pt, 3pt) * 2", 10000));
+        assertEquals(2000, evaluateLength("(5pt - 1pt) div 2", 10000));
+        assertEquals(1, PropertyParser.parse("7 mod 3", createPropertyInfo(10000))
+                .getNumber().intValue());
+        assertEquals(0.5, PropertyParser.parse("50%", createPropertyInfo(10000))
+                .getNumber().doubleValue(), 0.0);
+    }
+
+    @Test
+    public void testLists() throws PropertyException {
+        Property prop = PropertyParser.parse("1pt 2em", createPropertyInfo(10000));
+        assertTrue(prop instanceof ListProperty);
+        assertEquals(2, prop.getList().size());
+        assertEquals(20000, ((Property) prop.getList().get(1)).getLength().getValue());
+        Property other = PropertyParser.parse("1pt 2em", createPropertyInfo(10000));
+        assertTrue(prop != other);
+    }
+
+    @Test
+    public void testSyntaxErrors() {
+        try {
+            PropertyParser.compile("1pt +");
+            fail("syntax error expected");
+        } catch (PropertyException e) {
+            // expected
+        }
+        try {
+            PropertyParser.compile("no-such-function(1)");
+            fail("unknown function expected");
+        } catch (PropertyException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.fonts;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class CMapIndexTestCase {
+
+    private static int linearLookup(List<CMapSegment> cmap, int c) {
+        for (CMapSegment segment : cmap) {
+            if (segment.getUnicodeStart() <= c && segment.getUnicodeEnd() >= c) {
+                int gi = segment.getGlyphStartIndex() + c - segment.getUnicodeStart();
+                if (gi != 0) {
+                    return gi;
+                }
+            }
+        }
+        return 0;
+    }
+
+    @Test
+    public void testLookupMatchesLinearScan() {
+        Random random = new Random(7);
+        List<CMapSegment> cmap = new ArrayList<CMapSegment>();
+        int start = 0x20;
+        int glyph = 1;
+        while (start < 0x2FFFF) {
+            int length = 1 + random.nextInt(300);
+            cmap.add(new CMapSegment(start, start + length - 1, glyph));
+            glyph += length;
+            start += length + random.nextInt(600);
+        }
+        Collections.shuffle(cmap, random);
+        CMapIndex index = CMapIndex.build(cmap);
+        assertEquals(cmap.size(), index.getIndexedSegmentCount());
+        for (int c = 0; c < 0x30100; c++) {
+            assertEquals(linearLookup(cmap, c), index.findGlyphIndex(c));
+        }
+    }
+
+    @Test
+    public void testOverlappingSegmentsAreNotIndexed() {
+        List<CMapSegment> cmap = Arrays.asList(new CMapSegment(0x41, 0x5A, 10),
+                new CMapSegment(0x50, 0x60, 100));
+        CMapIndex index = CMapIndex.build(cmap);
+        assertEquals(0, index.getIndexedSegmentCount());
+        assertEquals(2, index.getBuiltAt());
+        assertEquals(0, index.findGlyphIndex(0x41));
+    }
+
+    @Test
+    public void testEmpty() {
+        CMapIndex index = CMapIndex.build(Collections.<CMapSegment>emptyList());
+        assertEquals(0, index.findGlyphIndex(0x41));
+    }
+
+    @Test
+    public void testPrivateUseMappingsAfterIndexing() {
+        MultiByteFont font = new MultiByteFont(null, EmbeddingMode.AUTO);
+        font.setCMap(new CMapSegment[] {new CMapSegment(0x41, 0x5A, 10)});
+        assertEquals(10, font.findGlyphIndex(0x41));
+        for (int i = 0; i < 100; i++) {
+            font.addPrivateUseMapping(0xE000 + i, 500 + i);
+            assertEquals(500 + i, font.findGlyphIndex(0xE000 + i));
+        }
+        assertEquals(35, font.findGlyphIndex(0x5A));
+        assertEquals(0, font.findGlyphIndex(0xE100));
+    }
+}
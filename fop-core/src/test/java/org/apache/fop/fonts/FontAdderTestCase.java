@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.fonts;
+
+import java.io.File;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.Mockito.mock;
+
+import org.apache.fop.apps.io.InternalResourceResolver;
+import org.apache.fop.apps.io.ResourceResolverFactory;
+import org.apache.fop.fonts.autodetect.FontFileFinder;
+
+public class FontAdderTestCase {
+
+    private static final String FONT_DIRECTORY = "test/resources/fonts";
+
+    private final InternalResourceResolver resolver
+            = ResourceResolverFactory.createDefaultInternalResourceResolver(new File(".").toURI());
+
+    private List<URL> findFonts(int parallelism) throws Exception {
+        FontFileFinder finder = new FontFileFinder(mock(FontEventListener.class));
+        finder.setParallelism(parallelism);
+        return finder.find(FONT_DIRECTORY);
+    }
+
+    private List<String> detectFonts(List<URL> fontURLs, int parallelism) throws Exception {
+        FontManager fontManager = new FontManager(resolver, FontDetectorFactory.createDefault(),
+                FontCacheManagerFactory.createDisabled());
+        fontManager.setFontDetectionParallelism(parallelism);
+        FontAdder adder = new FontAdder(fontManager, resolver, mock(FontEventListener.class));
+        List<EmbedFontInfo> fontInfos = new ArrayList<EmbedFontInfo>();
+        adder.add(fontURLs, fontInfos);
+        List<String> result = new ArrayList<String>();
+        for (EmbedFontInfo fontInfo : fontInfos) {
+            result.add(fontInfo.getEmbedURI() + " " + fontInfo.getPostScriptName() + " "
+                    + fontInfo.getFontTriplets());
+        }
+        return result;
+    }
+
+    @Test
+    public void testParallelDirectoryWalk() throws Exception {
+        List<URL> expected = findFonts(1);
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, findFonts(4));
+    }
+
+    @Test
+    public void testConcurrentFontDetection() throws Exception {
+        List<URL> fontURLs = findFonts(1);
+        List<String> expected = detectFonts(fontURLs, 1);
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, detectFonts(fontURLs, 4));
+    }
+
+    @Test
+    public void testNonRecursiveWalk() throws Exception {
+        FontFileFinder finder = new FontFileFinder(1, mock(FontEventListener.class));
+        finder.setParallelism(4);
+        assertEquals(new ArrayList<URL>(), finder.find(FONT_DIRECTORY));
+    }
+}
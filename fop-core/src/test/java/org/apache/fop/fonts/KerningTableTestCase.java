@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.fonts;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class KerningTableTestCase {
+
+    @Test
+    public void testLookupMatchesMap() {
+        Map<Integer, Map<Integer, Integer>> kerning = new HashMap<Integer, Map<Integer, Integer>>();
+        Random random = new Random(42);
+        for (int i = 0; i < 2000; i++) {
+            int ch1 = random.nextInt(0x10000);
+            Map<Integer, Integer> pairs = kerning.get(ch1);
+            if (pairs == null) {
+                pairs = new HashMap<Integer, Integer>();
+                kerning.put(ch1, pairs);
+            }
+            pairs.put(random.nextInt(0x10000), random.nextInt(400) - 200);
+        }
+        KerningTable table = KerningTable.compile(kerning);
+        int count = 0;
+        for (Map.Entry<Integer, Map<Integer, Integer>> first : kerning.entrySet()) {
+            for (Map.Entry<Integer, Integer> second : first.getValue().entrySet()) {
+                assertEquals(second.getValue().intValue(),
+                        table.get(first.getKey(), second.getKey()));
+                count++;
+            }
+        }
+        assertEquals(count, table.size());
+        for (int i = 0; i < 2000; i++) {
+            int ch1 = random.nextInt(0x10000);
+            int ch2 = random.nextInt(0x10000);
+            Map<Integer, Integer> pairs = kerning.get(ch1);
+            Integer expected = pairs != null ? pairs.get(ch2) : null;
+            assertEquals(expected != null ? expected : 0, table.get(ch1, ch2));
+        }
+    }
+
+    @Test
+    public void testEmpty() {
+        Map<Integer, Map<Integer, Integer>> kerning = Collections.emptyMap();
+        KerningTable table = KerningTable.compile(kerning);
+        assertSame(KerningTable.EMPTY, table);
+        assertEquals(0, table.get('A', 'V'));
+    }
+
+    @Test
+    public void testPairOrderMatters() {
+        Map<Integer, Map<Integer, Integer>> kerning = new HashMap<Integer, Map<Integer, Integer>>();
+        kerning.put((int) 'A', Collections.singletonMap((int) 'V', -80));
+        KerningTable table = KerningTable.compile(kerning);
+        assertEquals(-80, table.get('A', 'V'));
+        assertEquals(0, table.get('V', 'A'));
+    }
+}
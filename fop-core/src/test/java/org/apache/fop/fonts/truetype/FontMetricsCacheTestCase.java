@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.fonts.truetype;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.commons.io.FileUtils;
+
+import org.apache.fop.apps.io.InternalResourceResolver;
+import org.apache.fop.apps.io.ResourceResolverFactory;
+import org.apache.fop.fonts.EmbeddingMode;
+import org.apache.fop.fonts.EncodingMode;
+import org.apache.fop.fonts.MultiByteFont;
+
+public class FontMetricsCacheTestCase {
+
+    private final InternalResourceResolver resourceResolver
+            = ResourceResolverFactory.createDefaultInternalResourceResolver(new File(".").toURI());
+
+    private File directory;
+
+    private File fontFile;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("fop-metrics", "");
+        directory.delete();
+        fontFile = new File(directory, "DejaVuLGCSerif.ttf");
+        FileUtils.copyFile(new File("test/resources/fonts/ttf/DejaVuLGCSerif.ttf"), fontFile);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    private MultiByteFont loadFont(FontMetricsCache cache, boolean useAdvanced) throws IOException {
+        OFFontLoader loader = new OFFontLoader(fontFile.toURI(), null, true, EmbeddingMode.AUTO,
+                EncodingMode.AUTO, true, useAdvanced, resourceResolver, false, false, true);
+        loader.setMetricsCache(cache);
+        return (MultiByteFont) loader.getFont();
+    }
+
+    @Test
+    public void testCachedMetricsMatchParsedMetrics() throws IOException {
+        FontMetricsCache cache = new FontMetricsCache(new File(directory, "cache"));
+        MultiByteFont parsed = loadFont(cache, false);
+        File[] entries = cache.getDirectory().listFiles();
+        assertEquals(1, entries.length);
+
+        MultiByteFont cached = cache.load(fontFile.toURI(), fontFile, null, true, EmbeddingMode.SUBSET,
+                false, resourceResolver);
+        assertNotNull(cached);
+        assertEquals(parsed.getFontURI(), cached.getFontURI());
+        assertEquals(parsed.getEmbedFileURI(), cached.getEmbedFileURI());
+        assertEquals(parsed.getFontName(), cached.getFontName());
+        assertEquals(parsed.getFullName(), cached.getFullName());
+        assertEquals(parsed.getFamilyNames(), cached.getFamilyNames());
+        assertEquals(parsed.getCIDType(), cached.getCIDType());
+        assertEquals(parsed.getEmbeddingMode(), cached.getEmbeddingMode());
+        assertEquals(parsed.getAscender(), cached.getAscender());
+        assertEquals(parsed.getDescender(), cached.getDescender());
+        assertEquals(parsed.getCapHeight(), cached.getCapHeight());
+        assertEquals(parsed.getXHeight(12000), cached.getXHeight(12000));
+        assertEquals(parsed.getUnderlinePosition(12000), cached.getUnderlinePosition(12000));
+        assertEquals(parsed.getStrikeoutThickness(12000), cached.getStrikeoutThickness(12000));
+        assertEquals(parsed.getFlags(), cached.getFlags());
+        assertEquals(parsed.getWeight(), cached.getWeight());
+        assertEquals(parsed.getItalicAngle(), cached.getItalicAngle());
+        assertArrayEquals(parsed.getFontBBox(), cached.getFontBBox());
+        assertArrayEquals(parsed.getWidths(), cached.getWidths());
+        assertEquals(Arrays.asList(parsed.getCMap()), Arrays.asList(cached.getCMap()));
+        for (char c : "AVg\u00e9\u0416".toCharArray()) {
+            char parsedIndex = parsed.mapChar(c);
+            assertEquals(parsedIndex, cached.mapChar(c));
+            assertEquals(parsed.getBoundingBox(parsedIndex, 1000), cached.getBoundingBox(parsedIndex, 1000));
+        }
+        assertTrue(parsed.hasKerningInfo());
+        assertEquals(parsed.getKerningInfo(), cached.getKerningInfo());
+    }
+
+    @Test
+    public void testModifiedFontFileInvalidatesEntry() throws IOException {
+        FontMetricsCache cache = new FontMetricsCache(new File(directory, "cache"));
+        loadFont(cache, false);
+        assertNotNull(cache.load(fontFile.toURI(), fontFile, null, true, EmbeddingMode.SUBSET,
+                false, resourceResolver));
+        assertTrue(fontFile.setLastModified(fontFile.lastModified() - 10000));
+        assertNull(cache.load(fontFile.toURI(), fontFile, null, true, EmbeddingMode.SUBSET,
+                false, resourceResolver));
+        assertNull(cache.load(fontFile.toURI(), fontFile, null, false, EmbeddingMode.SUBSET,
+                false, resourceResolver));
+    }
+
+    @Test
+    public void testAdvancedTablesAreReadWithCachedMetrics() throws IOException {
+        FontMetricsCache cache = new FontMetricsCache(new File(directory, "cache"));
+        MultiByteFont parsed = loadFont(cache, true);
+        assertNotNull(parsed.getGSUB());
+        assertNotNull(parsed.getGPOS());
+        File[] entries = cache.getDirectory().listFiles();
+        assertEquals(1, entries.length);
+        //The entry would be written again if the font file were parsed
+        assertTrue(entries[0].setLastModified(0));
+
+        MultiByteFont cached = loadFont(cache, true);
+        assertEquals(0, entries[0].lastModified());
+        assertArrayEquals(parsed.getWidths(), cached.getWidths());
+        assertNotNull(cached.getGSUB());
+        assertNotNull(cached.getGPOS());
+        assertEquals(parsed.performsSubstitution(), cached.performsSubstitution());
+        assertEquals(parsed.performsPositioning(), cached.performsPositioning());
+        assertEquals(parsed.getGDEF() != null, cached.getGDEF() != null);
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.layoutmgr;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+
+import javax.xml.transform.Result;
+import javax.xml.transform.Source;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.fop.apps.FOUserAgent;
+import org.apache.fop.apps.Fop;
+import org.apache.fop.apps.FopFactory;
+import org.apache.fop.apps.MimeConstants;
+
+public class IncrementalLayoutTestCase {
+
+    private static String createFO(int blockCount, String blockAttributes) {
+        return createFO(blockCount, blockAttributes, 0);
+    }
+
+    private static String createFO(int blockCount, String blockAttributes, int footnoteInterval) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<fo:root xmlns:fo=\"http://www.w3.org/1999/XSL/Format\">\n"
+                + "  <fo:layout-master-set>\n"
+                + "    <fo:simple-page-master master-name=\"simple\" page-height=\"10cm\" page-width=\"10cm\">\n"
+                + "      <fo:region-body />\n"
+                + "    </fo:simple-page-master>\n"
+                + "  </fo:layout-master-set>\n"
+                + "  <fo:page-sequence master-reference=\"simple\">\n"
+                + "    <fo:flow flow-name=\"xsl-region-body\">\n");
+        for (int i = 0; i < blockCount; i++) {
+            String attributes = String.format(blockAttributes, i % 5 == 0 ? "always" : "auto");
+            sb.append("      <fo:block " + attributes + ">Block " + i);
+            if (footnoteInterval > 0 && i % footnoteInterval == 0) {
+                sb.append("<fo:footnote><fo:inline>*</fo:inline><fo:footnote-body>"
+                        + "<fo:block>Note " + i + "</fo:block><fo:block>Second line</fo:block>"
+                        + "</fo:footnote-body></fo:footnote>");
+            }
+            sb.append("</fo:block>\n");
+        }
+        sb.append("    </fo:flow>\n  </fo:page-sequence>\n</fo:root>");
+        return sb.toString();
+    }
+
+    private static String render(String fo, boolean incremental) throws Exception {
+        FopFactory fopFactory = FopFactory.newInstance(new File(".").toURI());
+        FOUserAgent userAgent = fopFactory.newFOUserAgent();
+        userAgent.setIncrementalLayout(incremental);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Fop fop = fopFactory.newFop(MimeConstants.MIME_FOP_AREA_TREE, userAgent, out);
+        Transformer transformer = TransformerFactory.newInstance().newTransformer();
+        Source src = new StreamSource(new ByteArrayInputStream(fo.getBytes("UTF-8")));
+        Result res = new SAXResult(fop.getDefaultHandler());
+        transformer.transform(src, res);
+        return out.toString("UTF-8");
+    }
+
+    private static void assertSameLayout(String fo) throws Exception {
+        String expected = render(fo, false);
+        assertTrue(expected.contains("<pageViewport"));
+        assertEquals(expected, render(fo, true));
+    }
+
+    @Test
+    public void testLongFlow() throws Exception {
+        assertSameLayout(createFO(4000, ""));
+    }
+
+    @Test
+    public void testLongFlowWithSpaces() throws Exception {
+        assertSameLayout(createFO(4000, "space-before=\"3pt\" space-after=\"2pt\""));
+    }
+
+    @Test
+    public void testLongFlowWithBorders() throws Exception {
+        assertSameLayout(createFO(4000,
+                "border=\"1pt solid black\" padding=\"1pt\" space-before.conditionality=\"retain\""
+                + " space-before=\"2pt\""));
+    }
+
+    @Test
+    public void testLongFlowWithKeeps() throws Exception {
+        assertSameLayout(createFO(4000, "keep-with-next.within-page=\"%s\""));
+    }
+
+    @Test
+    public void testLongFlowWithFootnotes() throws Exception {
+        assertSameLayout(createFO(4000, "", 7));
+    }
+}
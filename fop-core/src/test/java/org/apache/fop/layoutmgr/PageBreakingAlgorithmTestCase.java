@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.layoutmgr;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.fop.fo.Constants;
+import org.apache.fop.layoutmgr.AbstractBreaker.PageBreakPosition;
+import org.apache.fop.traits.MinOptMax;
+
+public class PageBreakingAlgorithmTestCase {
+
+    private static final int PAGE_HEIGHT = 100000;
+
+    private static KnuthSequence createSequence(int lineCount, boolean irregular) {
+        KnuthSequence seq = new BlockKnuthSequence();
+        for (int i = 0; i < lineCount; i++) {
+            int height = irregular ? 6000 + (i * 7919) % 9000 : 12000;
+            seq.add(new KnuthBox(height, null, false));
+            if (i < lineCount - 1) {
+                seq.add(new KnuthPenalty(0, irregular && i % 5 == 0 ? 100 : 0, false, null, false));
+                seq.add(new KnuthGlue(1000, 500, 300, null, false));
+            }
+        }
+        seq.add(new KnuthPenalty(0, KnuthElement.INFINITE, false, null, false));
+        seq.add(new KnuthGlue(0, 10000000, 0, null, false));
+        seq.add(new KnuthPenalty(0, -KnuthElement.INFINITE, false, null, false));
+        return seq;
+    }
+
+    private static List<Integer> breakPages(KnuthSequence seq, int lookahead) {
+        PageBreakingAlgorithm alg = new PageBreakingAlgorithm(null, null, null,
+                Constants.EN_START, Constants.EN_START, MinOptMax.ZERO, true, false, false);
+        alg.setConstantLineWidth(PAGE_HEIGHT);
+        alg.setLookahead(lookahead);
+        alg.findBreakingPoints(seq, 1, true, BreakingAlgorithm.ALL_BREAKS);
+        List<Integer> breaks = new ArrayList<Integer>();
+        for (PageBreakPosition pbp : alg.getPageBreaks()) {
+            breaks.add(pbp.getLeafPos());
+        }
+        return breaks;
+    }
+
+    @Test
+    public void testBoundedLookaheadMatchesOptimumOnRegularContent() {
+        KnuthSequence seq = createSequence(2000, false);
+        List<Integer> expected = breakPages(seq, 0);
+        assertEquals(expected, breakPages(seq, 3));
+    }
+
+    @Test
+    public void testBoundedLookaheadProducesFittingPages() {
+        KnuthSequence seq = createSequence(5000, true);
+        List<Integer> optimal = breakPages(seq, 0);
+        List<Integer> bounded = breakPages(seq, 2);
+        assertEquals(seq.size() - 1, (int) bounded.get(bounded.size() - 1));
+        int start = 0;
+        for (int pageEnd : bounded) {
+            int height = 0;
+            for (int i = start; i < pageEnd; i++) {
+                KnuthElement el = (KnuthElement) seq.get(i);
+                if (el.isBox() || el.isGlue() && i > start) {
+                    height += el.getWidth() - (el.isGlue() ? el.getShrink() : 0);
+                }
+            }
+            assertTrue("Page ending at " + pageEnd + " overflows: " + height,
+                    height <= PAGE_HEIGHT);
+            start = pageEnd + 1;
+        }
+        //The quality trade-off should stay small on ordinary content
+        assertTrue(bounded.size() <= optimal.size() + optimal.size() / 20 + 1);
+    }
+}
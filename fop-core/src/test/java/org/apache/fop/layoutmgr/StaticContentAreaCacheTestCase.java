@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.layoutmgr;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.transform.Result;
+import javax.xml.transform.Source;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.apache.fop.apps.FOPException;
+import org.apache.fop.apps.FOUserAgent;
+import org.apache.fop.apps.Fop;
+import org.apache.fop.apps.FopFactory;
+import org.apache.fop.apps.MimeConstants;
+import org.apache.fop.area.Area;
+import org.apache.fop.area.PageViewport;
+import org.apache.fop.fo.Constants;
+import org.apache.fop.render.xml.XMLRenderer;
+
+/**
+ * Tests the reuse of the areas of static contents on the pages of a page-sequence.
+ */
+public class StaticContentAreaCacheTestCase {
+
+    private static final String FO = "<fo:root xmlns:fo=\"http://www.w3.org/1999/XSL/Format\">\n"
+            + "  <fo:layout-master-set>\n"
+            + "    <fo:simple-page-master master-name=\"simple\" page-height=\"5cm\""
+            + " page-width=\"10cm\">\n"
+            + "      <fo:region-body margin=\"1cm\"/>\n"
+            + "      <fo:region-before extent=\"1cm\"/>\n"
+            + "      <fo:region-after extent=\"1cm\"/>\n"
+            + "    </fo:simple-page-master>\n"
+            + "  </fo:layout-master-set>\n"
+            + "  <fo:page-sequence master-reference=\"simple\">\n"
+            + "    <fo:static-content flow-name=\"xsl-region-before\">\n"
+            + "      <fo:block text-align=\"center\">Header <fo:inline font-weight=\"bold\">text"
+            + "</fo:inline></fo:block>\n"
+            + "    </fo:static-content>\n"
+            + "    <fo:static-content flow-name=\"xsl-region-after\">\n"
+            + "      <fo:block>Page <fo:page-number/></fo:block>\n"
+            + "    </fo:static-content>\n"
+            + "    <fo:flow flow-name=\"xsl-region-body\">\n"
+            + "      <fo:block break-after=\"page\">One</fo:block>\n"
+            + "      <fo:block break-after=\"page\">Two</fo:block>\n"
+            + "      <fo:block>Three</fo:block>\n"
+            + "    </fo:flow>\n"
+            + "  </fo:page-sequence>\n"
+            + "</fo:root>";
+
+    private final List<Area> headers = new ArrayList<Area>();
+
+    private final List<Area> footers = new ArrayList<Area>();
+
+    private String render(boolean accessibility) throws Exception {
+        FopFactory fopFactory = FopFactory.newInstance(new File(".").toURI());
+        FOUserAgent userAgent = fopFactory.newFOUserAgent();
+        userAgent.setAccessibility(accessibility);
+        userAgent.setRendererOverride(new XMLRenderer(userAgent) {
+            public void renderPage(PageViewport page) throws IOException, FOPException {
+                headers.add(getFirstBlock(page, Constants.FO_REGION_BEFORE));
+                footers.add(getFirstBlock(page, Constants.FO_REGION_AFTER));
+                super.renderPage(page);
+            }
+        });
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Fop fop = fopFactory.newFop(MimeConstants.MIME_FOP_AREA_TREE, userAgent, out);
+        Transformer transformer = TransformerFactory.newInstance().newTransformer();
+        Source src = new StreamSource(new ByteArrayInputStream(FO.getBytes("UTF-8")));
+        Result res = new SAXResult(fop.getDefaultHandler());
+        transformer.transform(src, res);
+        return out.toString("UTF-8");
+    }
+
+    private static Area getFirstBlock(PageViewport page, int regionClass) {
+        List<Area> blocks = page.getRegionReference(regionClass).getBlocks();
+        assertEquals(1, blocks.size());
+        return blocks.get(0);
+    }
+
+    private static int count(String text, String part) {
+        int count = 0;
+        for (int i = text.indexOf(part); i >= 0; i = text.indexOf(part, i + 1)) {
+            count++;
+        }
+        return count;
+    }
+
+    @Test
+    public void testStaticAreasAreReused() throws Exception {
+        String areaTree = render(false);
+        assertEquals(3, headers.size());
+        assertEquals(3, count(areaTree, ">Header<"));
+        assertSame(headers.get(0), headers.get(1));
+        assertSame(headers.get(0), headers.get(2));
+    }
+
+    @Test
+    public void testPageNumbersAreLaidOutOnEveryPage() throws Exception {
+        String areaTree = render(false);
+        assertEquals(3, count(areaTree, ">Page<"));
+        for (int i = 1; i <= 3; i++) {
+            assertEquals(1, count(areaTree, ">" + i + "</word>"));
+        }
+        assertNotSame(footers.get(0), footers.get(1));
+    }
+
+    @Test
+    public void testTaggedStaticContentIsNotReused() throws Exception {
+        render(true);
+        assertEquals(3, headers.size());
+        assertNotSame(headers.get(0), headers.get(1));
+    }
+}
@@ -41,6 +41,7 @@ import org.apache.fop.apps.FOUserAgent;
 import org.apache.fop.apps.Fop;
 import org.apache.fop.apps.FopFactory;
 import org.apache.fop.apps.MimeConstants;
+import org.apache.fop.render.pdf.PDFRendererOption;
 
 /**
  * Debug tool to create and process large FO files by replicating them a specified number of times.
@@ -53,12 +54,34 @@ public final class MemoryEater {
 
     private Stats stats;
 
+    private boolean streaming;
+
     private MemoryEater() throws TransformerConfigurationException, MalformedURLException {
         File xsltFile = new File("test/xsl/fo-replicator.xsl");
         Source xslt = new StreamSource(xsltFile);
         replicatorTemplates = tFactory.newTemplates(xslt);
     }
 
+    /**
+     * Replicates an FO file and renders it with the given user agent, like a single run of
+     * this tool. Used by the memory regression tests.
+     * @param foFile the FO file to replicate
+     * @param replicatorRepeats the number of times the FO file is replicated
+     * @param userAgent the user agent to render with
+     * @param outputFormat the MIME type of the output format
+     * @return the number of pages produced
+     * @throws Exception if an error occurs
+     */
+    public static int render(File foFile, int replicatorRepeats, FOUserAgent userAgent,
+            String outputFormat) throws Exception {
+        MemoryEater app = new MemoryEater();
+        Transformer transformer = app.replicatorTemplates.newTransformer();
+        transformer.setParameter("repeats", replicatorRepeats);
+        Fop fop = userAgent.newFop(outputFormat, new NullOutputStream());
+        transformer.transform(new StreamSource(foFile), new SAXResult(fop.getDefaultHandler()));
+        return fop.getResults().getPageCount();
+    }
+
     private void eatMemory(File foFile, int runRepeats, int replicatorRepeats) throws Exception {
         stats = new Stats();
         FopFactory fopFactory = FopFactory.newInstance(foFile.getParentFile().toURI());
@@ -80,6 +103,9 @@ public final class MemoryEater {
         OutputStream out = new NullOutputStream(); //write to /dev/nul
         try {
             FOUserAgent userAgent = fopFactory.newFOUserAgent();
+            if (streaming) {
+                userAgent.getRendererOptions().put(PDFRendererOption.STREAMING.getName(), Boolean.TRUE);
+            }
             Fop fop = fopFactory.newFop(MimeConstants.MIME_PDF, userAgent, out);
             Result res = new SAXResult(fop.getDefaultHandler());
 
@@ -117,6 +143,7 @@ public final class MemoryEater {
             if (args.length > 1) {
                 runRepeats = Integer.parseInt(args[1]);
             }
+            boolean streaming = args.length > 2 && "streaming".equals(args[2]);
             File testFile = new File("examples/fo/basic/readme.fo");
 
             System.out.println("MemoryEater! About to replicate the test file "
@@ -129,6 +156,7 @@ public final class MemoryEater {
             long start = System.currentTimeMillis();
 
             MemoryEater app = new MemoryEater();
+            app.streaming = streaming;
             app.eatMemory(testFile, runRepeats, replicatorRepeats);
 
             long duration = System.currentTimeMillis() - start;
@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.pdf;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+public class DirectBufferStreamCacheTestCase {
+
+    private byte[] createData(int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) (i * 31);
+        }
+        return data;
+    }
+
+    @Test
+    public void testWriteAcrossChunks() throws IOException {
+        DirectBufferStreamCache cache = new DirectBufferStreamCache();
+        byte[] data = createData(DirectBufferStreamCache.CHUNK_SIZE * 2 + 100);
+        OutputStream out = cache.getOutputStream();
+        out.write(data, 0, 10);
+        out.write(data[10]);
+        out.write(data, 11, data.length - 11);
+        assertEquals(data.length, cache.getSize());
+
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+        assertEquals(data.length, cache.outputContents(target));
+        assertArrayEquals(data, target.toByteArray());
+
+        //Writing out the contents must not consume them
+        target.reset();
+        cache.outputContents(target);
+        assertArrayEquals(data, target.toByteArray());
+    }
+
+    @Test
+    public void testClear() throws IOException {
+        DirectBufferStreamCache cache = new DirectBufferStreamCache();
+        cache.write(createData(1000));
+        cache.clear();
+        assertEquals(0, cache.getSize());
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+        assertEquals(0, cache.outputContents(target));
+        assertEquals(0, target.size());
+
+        byte[] data = createData(50);
+        cache.write(data);
+        cache.outputContents(target);
+        assertArrayEquals(data, target.toByteArray());
+    }
+
+    @Test
+    public void testPDFStreamWithDirectBuffers() throws IOException {
+        PDFDocument heapDoc = new PDFDocument("Apache FOP");
+        PDFDocument directDoc = new PDFDocument("Apache FOP");
+        directDoc.setDirectBuffersEnabled(true);
+        assertFalse(heapDoc.isDirectBuffersEnabled());
+        assertTrue(directDoc.isDirectBuffersEnabled());
+
+        byte[] data = createData(DirectBufferStreamCache.CHUNK_SIZE * 3);
+        assertArrayEquals(outputStream(heapDoc, data), outputStream(directDoc, data));
+        assertEquals(0, heapDoc.getStreamCacheFactory().getPooledBufferCount());
+        //The chunks of the encoded stream went back to the pool of the document
+        int pooled = directDoc.getStreamCacheFactory().getPooledBufferCount();
+        assertTrue(pooled > 0);
+        outputStream(directDoc, data);
+        assertEquals(pooled, directDoc.getStreamCacheFactory().getPooledBufferCount());
+    }
+
+    @Test
+    public void testPageContentStreamWithDirectBuffers() throws IOException {
+        PDFDocument doc = new PDFDocument("Apache FOP");
+        //The cache of a stream is created when it is first written to
+        PDFStream earlyStream = doc.getFactory().makeStream(PDFFilterList.CONTENT_FILTER, false);
+        doc.setDirectBuffersEnabled(true);
+        PDFStream stream = doc.getFactory().makeStream(PDFFilterList.CONTENT_FILTER, false);
+        earlyStream.add("q\n");
+        stream.add("q\n");
+        stream.add(new StringBuffer("Q\n"));
+        assertTrue(earlyStream.getData() instanceof DirectBufferStreamCache);
+        assertTrue(stream.getData() instanceof DirectBufferStreamCache);
+        assertEquals(4, stream.getDataLength());
+    }
+
+    @Test
+    public void testPoolsAreNotShared() throws IOException {
+        StreamCacheFactory first = StreamCacheFactory.newDirectBufferInstance();
+        StreamCacheFactory second = StreamCacheFactory.newDirectBufferInstance();
+        assertNotSame(first, second);
+        StreamCache cache = first.createStreamCache();
+        cache.write(createData(DirectBufferStreamCache.CHUNK_SIZE * 2));
+        cache.clear();
+        assertEquals(2, first.getPooledBufferCount());
+        assertEquals(0, second.getPooledBufferCount());
+    }
+
+    private byte[] outputStream(PDFDocument doc, byte[] data) throws IOException {
+        //Not encoded on the fly, so the encoded stream is cached until it is written
+        PDFStream stream = new PDFStream(false);
+        stream.setDocument(doc);
+        stream.setObjectNumber(1);
+        stream.setData(data);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        stream.output(out);
+        return out.toByteArray();
+    }
+}
@@ -19,6 +19,7 @@
 
 package org.apache.fop.pdf;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.List;
@@ -26,6 +27,7 @@ import java.util.List;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import org.apache.fop.pdf.xref.CompressedObjectReference;
@@ -37,7 +39,7 @@ public class ObjectStreamManagerTestCase {
     private MockPdfDocument pdfDocument;
 
     @Test
-    public void add() {
+    public void add() throws IOException {
         final int expectedCapacity = 100;
         final int numCompressedObjects = expectedCapacity * 2 + 1;
         createCompressObjectReferences(numCompressedObjects);
@@ -49,7 +51,7 @@ public class ObjectStreamManagerTestCase {
         assertEquals(objectStreamNumber3, pdfDocument.previous.getObjectNumber().getNumber());
     }
 
-    private void createCompressObjectReferences(int numObjects) {
+    private void createCompressObjectReferences(int numObjects) throws IOException {
         pdfDocument = new MockPdfDocument();
         ObjectStreamManager sut = new ObjectStreamManager(pdfDocument);
         for (int obNum = 1; obNum <= numObjects; obNum++) {
@@ -58,6 +60,57 @@ public class ObjectStreamManagerTestCase {
         compressedObjectReferences = sut.getCompressedObjectReferences();
     }
 
+    @Test
+    public void objectStreamsAreWrittenWhenFull() throws IOException {
+        PDFDocument pdfDocument = new PDFDocument("");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ObjectStreamManager sut = new ObjectStreamManager(pdfDocument, out);
+        for (int obNum = 1; obNum <= 100; obNum++) {
+            sut.add(createWritableObject(obNum));
+        }
+        assertEquals(0, out.size());
+        sut.add(createWritableObject(101));
+        String pdf = out.toString("US-ASCII");
+        assertEquals(1, countOccurrences(pdf, "/ObjStm"));
+        assertTrue(pdf.contains("/N 100"));
+        sut.finish();
+        pdf = out.toString("US-ASCII");
+        assertEquals(2, countOccurrences(pdf, "/ObjStm"));
+        assertTrue(pdf.contains("/N 1\n"));
+        for (PDFObject trailerObject : pdfDocument.trailerObjects) {
+            assertFalse(trailerObject instanceof ObjectStream);
+        }
+
+        List<CompressedObjectReference> references = sut.getCompressedObjectReferences();
+        assertEquals(101, references.size());
+        assertEquals(101, references.get(100).getObjectNumber().getNumber());
+        assertEquals(0, references.get(100).getIndex());
+        assertEquals(99, references.get(99).getIndex());
+    }
+
+    private int countOccurrences(String s, String sub) {
+        int count = 0;
+        for (int i = s.indexOf(sub); i >= 0; i = s.indexOf(sub, i + 1)) {
+            count++;
+        }
+        return count;
+    }
+
+    private CompressedObject createWritableObject(final int objectNumber) {
+        return new CompressedObject() {
+
+            public PDFObjectNumber getObjectNumber() {
+                return new PDFObjectNumber(objectNumber);
+            }
+
+            public int output(OutputStream outputStream) throws IOException {
+                byte[] data = PDFDocument.encode("<< /Object " + objectNumber + " >>\n");
+                outputStream.write(data);
+                return data.length;
+            }
+        };
+    }
+
     private static class MockPdfDocument extends PDFDocument {
 
         private ObjectStream previous;
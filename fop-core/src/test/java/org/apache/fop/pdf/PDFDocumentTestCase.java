@@ -19,12 +19,28 @@
 
 package org.apache.fop.pdf;
 
+import java.awt.geom.Rectangle2D;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.InflaterInputStream;
 
 import org.junit.Test;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.commons.io.IOUtils;
 
 /**
  * Test case for {@link PDFDocument}
@@ -59,4 +75,116 @@ public class PDFDocumentTestCase {
         PDFDocument.flushTextBuffer(textBuffer, out);
         assertEquals(fullString, out.toString());
     }
+
+    private PDFDocument renderPages(boolean streaming, ByteArrayOutputStream out) throws IOException {
+        PDFDocument doc = new PDFDocument("test");
+        doc.setStreamingEnabled(streaming);
+        doc.outputHeader(out);
+        Rectangle2D rect = new Rectangle2D.Double(0, 0, 100, 20);
+        PDFLink previous = null;
+        for (int i = 0; i < 10; i++) {
+            PDFPage page = doc.getFactory().makePage(doc.getResources(), 595, 842, i);
+            PDFLink link = doc.getFactory().makeLink(rect, "http://xmlgraphics.apache.org/fop/",
+                    PDFLink.EXTERNAL, 0);
+            if (previous != null) {
+                if (streaming) {
+                    assertNotSame(previous, link);
+                } else {
+                    assertSame(previous, link);
+                }
+            }
+            previous = link;
+            doc.addObject(page);
+            doc.output(out);
+            doc.releaseWrittenObjects();
+        }
+        doc.outputTrailer(out);
+        return doc;
+    }
+
+    @Test
+    public void testStreamingReleasesWrittenObjects() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PDFDocument doc = renderPages(true, out);
+        assertTrue(doc.pageObjs.isEmpty());
+        String pdf = out.toString("ISO-8859-1");
+        assertTrue(pdf.contains("/Count 10"));
+        assertTrue(pdf.endsWith("%%EOF\n"));
+    }
+
+    @Test
+    public void testWrittenObjectsAreKeptWithoutStreaming() throws IOException {
+        PDFDocument doc = renderPages(false, new ByteArrayOutputStream());
+        assertEquals(10, doc.pageObjs.size());
+    }
+
+    private byte[] outputStreams(int compressionParallelism) throws IOException {
+        PDFDocument doc = new PDFDocument("test");
+        doc.setCompressionParallelism(compressionParallelism);
+        doc.setCreationDate(new Date(0));
+        for (int i = 0; i < 20; i++) {
+            PDFStream stream = new PDFStream();
+            for (int j = 0; j < 100 * i; j++) {
+                stream.add("BT /F1 12 Tf 72 " + j + " Td (Stream " + i + ") Tj ET\n");
+            }
+            doc.registerObject(stream);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        doc.output(out);
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testConcurrentCompressionKeepsOutput() throws IOException {
+        assertArrayEquals(outputStreams(1), outputStreams(4));
+    }
+
+    private byte[] outputImages(int compressionParallelism) throws IOException {
+        PDFDocument doc = new PDFDocument("test");
+        doc.setCompressionParallelism(compressionParallelism);
+        doc.setCreationDate(new Date(0));
+        for (int i = 0; i < 6; i++) {
+            //Every other image is large enough to be deflated in blocks
+            int size = i % 2 == 0 ? 40 : 400;
+            byte[] data = new byte[size * size * 3];
+            for (int j = 0; j < data.length; j++) {
+                data[j] = (byte) (j * (i + 1) / 7);
+            }
+            doc.registerObject(new PDFImageXObject(i, new BitmapImage("img" + i, size, size,
+                    data, null)));
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        doc.output(out);
+        return out.toByteArray();
+    }
+
+    private List<String> inflateStreams(byte[] pdf) throws IOException {
+        List<String> streams = new ArrayList<String>();
+        Pattern pattern = Pattern.compile("(<<.*?>>)\nstream\n(.*?)\nendstream", Pattern.DOTALL);
+        Matcher matcher = pattern.matcher(new String(pdf, "ISO-8859-1"));
+        while (matcher.find()) {
+            byte[] data = matcher.group(2).getBytes("ISO-8859-1");
+            byte[] inflated = IOUtils.toByteArray(new InflaterInputStream(
+                    new ByteArrayInputStream(data)));
+            streams.add(matcher.group(1).replaceAll("/Length \\d+", "") + Arrays.hashCode(inflated));
+        }
+        return streams;
+    }
+
+    @Test
+    public void testConcurrentCompressionOfImages() throws IOException {
+        byte[] expected = outputImages(1);
+        byte[] actual = outputImages(4);
+        //The large images are deflated in blocks
+        assertFalse(Arrays.equals(expected, actual));
+        List<String> streams = inflateStreams(expected);
+        assertEquals(6, streams.size());
+        assertTrue(streams.get(0).contains("/Subtype /Image"));
+        assertEquals(streams, inflateStreams(actual));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCompressionLevel() {
+        new PDFDocument("test").setCompressionLevel(10);
+    }
 }
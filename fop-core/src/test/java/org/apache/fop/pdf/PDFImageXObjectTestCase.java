@@ -21,10 +21,13 @@ package org.apache.fop.pdf;
 
 import java.awt.image.IndexColorModel;
 import java.awt.image.RenderedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -102,4 +105,36 @@ public class PDFImageXObjectTestCase {
             assertEquals(2, ((PDFArray) obj).length());
         }
     }
+
+    @Test
+    public void testSizeHintIsDecodedSize() throws Exception {
+        BitmapImage rgb = new BitmapImage("rgb", 300, 200, new byte[300 * 200 * 3], null);
+        assertEquals(300 * 200 * 3, new PDFImageXObject(0, rgb).getSizeHint());
+        BitmapImage gray = new BitmapImage("gray", 301, 200, new byte[301 * 200], null);
+        gray.setColorSpace(new PDFDeviceColorSpace(PDFDeviceColorSpace.DEVICE_GRAY));
+        assertEquals(301 * 200, new PDFImageXObject(1, gray).getSizeHint());
+    }
+
+    @Test
+    public void testDictionaryPreparedForConcurrentEncoding() throws IOException {
+        PDFDocument doc = new PDFDocument("test");
+        BitmapImage image = new BitmapImage("rgb", 3, 2, new byte[18], null);
+        image.setTransparent(new PDFColor(1, 2, 3));
+        PDFImageXObject serial = new PDFImageXObject(0, image);
+        serial.setDocument(doc);
+        serial.populateStreamDict(10);
+        PDFImageXObject concurrent = new PDFImageXObject(0, image);
+        concurrent.setDocument(doc);
+        concurrent.prepareConcurrentEncoding();
+        assertNull(concurrent.get("Subtype"));
+        concurrent.populateStreamDict(10);
+        assertEquals(serial.getDictionary().order, concurrent.getDictionary().order);
+        assertEquals(outputDictionary(serial), outputDictionary(concurrent));
+    }
+
+    private String outputDictionary(PDFImageXObject image) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        image.getDictionary().output(out);
+        return out.toString("ISO-8859-1");
+    }
 }
@@ -0,0 +1,59 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.pdf;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class PackedOffsetListTestCase {
+
+    @Test
+    public void testBehavesLikeArrayList() {
+        List<Long> expected = new ArrayList<Long>();
+        List<Long> actual = new PackedOffsetList();
+        for (long i = 0; i < 1000; i++) {
+            Long offset = i % 7 == 0 ? null : i * 1000000000L;
+            expected.add(offset);
+            actual.add(offset);
+        }
+        expected.set(500, 42L);
+        actual.set(500, 42L);
+        expected.set(501, null);
+        actual.set(501, null);
+        expected.add(10, 1L);
+        actual.add(10, 1L);
+        expected.remove(20);
+        actual.remove(20);
+        assertEquals(expected, actual);
+        assertNull(actual.get(0));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testGetBeyondSize() {
+        List<Long> list = new PackedOffsetList();
+        list.add(1L);
+        list.get(1);
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.pdf;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.Deflater;
+import java.util.zip.InflaterInputStream;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import org.apache.commons.io.IOUtils;
+
+public class ParallelDeflateOutputStreamTestCase {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @After
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private byte[] createData(int length) {
+        StringBuilder sb = new StringBuilder();
+        int i = 0;
+        while (sb.length() < length) {
+            sb.append("BT /F1 12 Tf 72 ").append(i++ % 700).append(" Td (Hello World) Tj ET\n");
+        }
+        return PDFDocument.encode(sb.substring(0, length));
+    }
+
+    private byte[] deflate(byte[] data, int level) throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        OutputStream out = new ParallelDeflateOutputStream(result, level, executor, 4);
+        //Write in odd-sized pieces to cross block boundaries in the middle of a write
+        int off = 0;
+        while (off < data.length) {
+            int len = Math.min(7777, data.length - off);
+            out.write(data, off, len);
+            off += len;
+        }
+        out.close();
+        return result.toByteArray();
+    }
+
+    private byte[] inflate(byte[] data) throws IOException {
+        return IOUtils.toByteArray(new InflaterInputStream(new ByteArrayInputStream(data)));
+    }
+
+    @Test
+    public void testMultipleBlocks() throws IOException {
+        byte[] data = createData(ParallelDeflateOutputStream.BLOCK_SIZE * 5 + 1234);
+        assertArrayEquals(data, inflate(deflate(data, Deflater.DEFAULT_COMPRESSION)));
+        assertArrayEquals(data, inflate(deflate(data, Deflater.BEST_SPEED)));
+        assertArrayEquals(data, inflate(deflate(data, Deflater.BEST_COMPRESSION)));
+    }
+
+    @Test
+    public void testExactMultipleOfBlockSize() throws IOException {
+        byte[] data = createData(ParallelDeflateOutputStream.BLOCK_SIZE * 2);
+        assertArrayEquals(data, inflate(deflate(data, Deflater.DEFAULT_COMPRESSION)));
+    }
+
+    @Test
+    public void testSingleBlockMatchesSequentialDeflate() throws IOException {
+        byte[] data = createData(5000);
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        OutputStream out = new FlateFilter().applyFilter(expected);
+        out.write(data);
+        out.close();
+        assertArrayEquals(expected.toByteArray(), deflate(data, Deflater.DEFAULT_COMPRESSION));
+    }
+
+    @Test
+    public void testEmptyInput() throws IOException {
+        assertArrayEquals(new byte[0], inflate(deflate(new byte[0], Deflater.DEFAULT_COMPRESSION)));
+    }
+}
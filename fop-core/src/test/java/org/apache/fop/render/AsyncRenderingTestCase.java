@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.render;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+
+import javax.xml.transform.Result;
+import javax.xml.transform.Source;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.fop.apps.FOUserAgent;
+import org.apache.fop.apps.Fop;
+import org.apache.fop.apps.FopFactory;
+import org.apache.fop.apps.MimeConstants;
+import org.apache.fop.fonts.Font;
+import org.apache.fop.fonts.FontInfo;
+import org.apache.fop.fonts.FontTriplet;
+import org.apache.fop.fonts.base14.Base14FontCollection;
+
+public class AsyncRenderingTestCase {
+
+    private static String createFO() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<fo:root xmlns:fo=\"http://www.w3.org/1999/XSL/Format\">\n"
+                + "  <fo:layout-master-set>\n"
+                + "    <fo:simple-page-master master-name=\"simple\" page-height=\"10cm\" page-width=\"10cm\">\n"
+                + "      <fo:region-body />\n"
+                + "    </fo:simple-page-master>\n"
+                + "  </fo:layout-master-set>\n");
+        for (int seq = 0; seq < 5; seq++) {
+            sb.append("  <fo:page-sequence master-reference=\"simple\">\n"
+                    + "    <fo:flow flow-name=\"xsl-region-body\">\n"
+                    + "      <fo:block id=\"seq" + seq + "\">Last page: "
+                    + "<fo:page-number-citation ref-id=\"end\"/></fo:block>\n");
+            for (int i = 0; i < 40; i++) {
+                sb.append("      <fo:block>Sequence " + seq + ", block " + i + "</fo:block>\n");
+            }
+            sb.append("    </fo:flow>\n  </fo:page-sequence>\n");
+        }
+        sb.append("  <fo:page-sequence master-reference=\"simple\">\n"
+                + "    <fo:flow flow-name=\"xsl-region-body\">\n"
+                + "      <fo:block id=\"end\">End</fo:block>\n"
+                + "    </fo:flow>\n  </fo:page-sequence>\n"
+                + "</fo:root>");
+        return sb.toString();
+    }
+
+    private String render(String fo, String mimeType, boolean async) throws Exception {
+        FopFactory fopFactory = FopFactory.newInstance(new File(".").toURI());
+        FOUserAgent userAgent = fopFactory.newFOUserAgent();
+        userAgent.setAsyncRendering(async);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Fop fop = fopFactory.newFop(mimeType, userAgent, out);
+        Transformer transformer = TransformerFactory.newInstance().newTransformer();
+        Source src = new StreamSource(new ByteArrayInputStream(fo.getBytes("UTF-8")));
+        Result res = new SAXResult(fop.getDefaultHandler());
+        transformer.transform(src, res);
+        return out.toString("ISO-8859-1");
+    }
+
+    @Test
+    public void testAsyncOutputMatchesSynchronousOutput() throws Exception {
+        String fo = createFO();
+        String expected = render(fo, MimeConstants.MIME_FOP_AREA_TREE, false);
+        String actual = render(fo, MimeConstants.MIME_FOP_AREA_TREE, true);
+        assertTrue(expected.contains("<pageViewport"));
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testAsyncPDFOutput() throws Exception {
+        String pdf = render(createFO(), MimeConstants.MIME_PDF, true);
+        assertTrue(pdf.startsWith("%PDF-"));
+        assertTrue(pdf.trim().endsWith("%%EOF"));
+    }
+
+    @Test
+    public void testFontInstancesSharedBetweenThreads() throws Exception {
+        final FontInfo fontInfo = new FontInfo();
+        new Base14FontCollection(true).setup(0, fontInfo);
+        final FontTriplet[] triplets = {
+                new FontTriplet("Helvetica", Font.STYLE_NORMAL, Font.WEIGHT_NORMAL),
+                new FontTriplet("Times", Font.STYLE_ITALIC, Font.WEIGHT_BOLD),
+                new FontTriplet("Courier", Font.STYLE_NORMAL, Font.WEIGHT_NORMAL)};
+        final int sizes = 2000;
+        final Font[][][] fonts = new Font[2][triplets.length][sizes];
+        Thread[] threads = new Thread[fonts.length];
+        for (int t = 0; t < threads.length; t++) {
+            final Font[][] result = fonts[t];
+            threads[t] = new Thread() {
+                public void run() {
+                    for (int size = 0; size < sizes; size++) {
+                        for (int i = 0; i < triplets.length; i++) {
+                            result[i][size] = fontInfo.getFontInstance(triplets[i], size * 10);
+                        }
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (int i = 0; i < triplets.length; i++) {
+            for (int size = 0; size < sizes; size++) {
+                Font font = fontInfo.getFontInstance(triplets[i], size * 10);
+                assertSame(font, fonts[0][i][size]);
+                assertSame(font, fonts[1][i][size]);
+            }
+        }
+        assertEquals(triplets.length, fontInfo.getUsedFonts().size());
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.render.bitmap;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.awt.image.RenderedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.apache.commons.io.FileUtils;
+
+import org.apache.xmlgraphics.image.codec.tiff.TIFFImageDecoder;
+import org.apache.xmlgraphics.image.codec.util.SeekableStream;
+
+import org.apache.fop.apps.FOUserAgent;
+import org.apache.fop.apps.Fop;
+import org.apache.fop.apps.FopFactory;
+import org.apache.fop.render.intermediate.IFContext;
+
+/**
+ * Tests the concurrent painting and encoding of pages in {@link AbstractBitmapDocumentHandler}.
+ */
+public class AbstractBitmapDocumentHandlerTestCase {
+
+    private static final int PAGES = 7;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final FopFactory fopFactory = FopFactory.newInstance(new File(".").toURI());
+
+    private String createDocument() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<fo:root xmlns:fo=\"http://www.w3.org/1999/XSL/Format\""
+                + " xmlns:svg=\"http://www.w3.org/2000/svg\">"
+                + "<fo:layout-master-set>"
+                + "<fo:simple-page-master master-name=\"A7\" page-height=\"10.5cm\""
+                + " page-width=\"7.4cm\" margin=\"0.5cm\"><fo:region-body/>"
+                + "</fo:simple-page-master></fo:layout-master-set>"
+                + "<fo:page-sequence master-reference=\"A7\"><fo:flow flow-name=\"xsl-region-body\">");
+        for (int i = 1; i <= PAGES; i++) {
+            sb.append("<fo:block break-before=\"page\" font-size=\"" + (8 + i) + "pt\""
+                    + " border=\"" + i + "pt solid blue\" background-color=\"#ffee" + i + i + "\""
+                    + " text-align=\"justify\">Page " + i + " with "
+                    + "<fo:inline font-weight=\"bold\" color=\"red\">bold red</fo:inline> and "
+                    + "<fo:inline font-family=\"serif\" font-style=\"italic\">italic</fo:inline>"
+                    + " text spread over a few justified lines to be rasterized</fo:block>"
+                    + "<fo:block><fo:leader leader-pattern=\"rule\" leader-length=\"" + i
+                    + "cm\" rule-thickness=\"2pt\"/></fo:block>");
+            if (i == 3) {
+                sb.append("<fo:block><fo:external-graphic content-width=\"2cm\""
+                        + " src=\"test/resources/images/bgimg300dpi.jpg\"/></fo:block>"
+                        + "<fo:block><fo:instream-foreign-object><svg:svg width=\"40\" height=\"20\">"
+                        + "<svg:circle cx=\"10\" cy=\"10\" r=\"8\" fill=\"green\"/></svg:svg>"
+                        + "</fo:instream-foreign-object></fo:block>");
+            }
+        }
+        sb.append("</fo:flow></fo:page-sequence></fo:root>");
+        return sb.toString();
+    }
+
+    private void render(AbstractBitmapDocumentHandler handler, File outputFile, OutputStream out)
+            throws Exception {
+        FOUserAgent userAgent = handler.getContext().getUserAgent();
+        userAgent.setOutputFile(outputFile);
+        userAgent.setDocumentHandlerOverride(handler);
+        Fop fop = fopFactory.newFop(handler.getMimeType(), userAgent, out);
+        Transformer transformer = TransformerFactory.newInstance().newTransformer();
+        transformer.transform(new StreamSource(new ByteArrayInputStream(
+                createDocument().getBytes("UTF-8"))), new SAXResult(fop.getDefaultHandler()));
+    }
+
+    private int[][] renderTIFF(int threads) throws Exception {
+        return renderTIFF(threads, Color.WHITE);
+    }
+
+    private int[][] renderTIFF(int threads, Color pageBackgroundColor) throws Exception {
+        TIFFDocumentHandler handler = new TIFFDocumentHandler(
+                new IFContext(fopFactory.newFOUserAgent()));
+        handler.getSettings().setRenderingThreads(threads);
+        handler.getSettings().setPageBackgroundColor(pageBackgroundColor);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        render(handler, null, out);
+
+        TIFFImageDecoder decoder = new TIFFImageDecoder(
+                SeekableStream.wrapInputStream(new ByteArrayInputStream(out.toByteArray()), true),
+                null);
+        int[][] pages = new int[decoder.getNumPages()][];
+        for (int i = 0; i < pages.length; i++) {
+            RenderedImage image = decoder.decodeAsRenderedImage(i);
+            pages[i] = image.getData().getPixels(0, 0, image.getWidth(), image.getHeight(),
+                    (int[]) null);
+        }
+        return pages;
+    }
+
+    @Test
+    public void testConcurrentTIFFKeepsPageOrder() throws Exception {
+        int[][] expected = renderTIFF(1);
+        assertEquals(PAGES, expected.length);
+        for (int i = 1; i < PAGES; i++) {
+            assertFalse(Arrays.equals(expected[i - 1], expected[i]));
+        }
+        int[][] actual = renderTIFF(3);
+        assertEquals(PAGES, actual.length);
+        for (int i = 0; i < PAGES; i++) {
+            assertArrayEquals("page " + (i + 1), expected[i], actual[i]);
+        }
+    }
+
+    @Test
+    public void testTransparentPagesDoNotShowPreviousPages() throws Exception {
+        int[][] opaque = renderTIFF(1);
+        int[][] sequential = renderTIFF(1, null);
+        int[][] concurrent = renderTIFF(3, null);
+        assertEquals(PAGES, sequential.length);
+        assertEquals(PAGES, concurrent.length);
+        for (int i = 0; i < PAGES; i++) {
+            //RGBA samples: what is left white on an opaque page must be transparent
+            int transparentPixels = 0;
+            for (int j = 0; j < opaque[i].length; j += 4) {
+                if (opaque[i][j] == 255 && opaque[i][j + 1] == 255 && opaque[i][j + 2] == 255) {
+                    assertTrue("page " + (i + 1), sequential[i][j + 3] < 16);
+                    transparentPixels++;
+                }
+            }
+            assertTrue(transparentPixels > 0);
+            assertArrayEquals("page " + (i + 1), sequential[i], concurrent[i]);
+        }
+    }
+
+    private static boolean hasRenderingThreads() {
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().equals("FOP bitmap rendering") && thread.isAlive()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    public void testFailedPageStopsRenderingThreads() throws Exception {
+        TIFFDocumentHandler handler = new TIFFDocumentHandler(
+                new IFContext(fopFactory.newFOUserAgent())) {
+            private int paintedPages;
+
+            protected BufferedImage createBufferedImage(int bitmapWidth, int bitmapHeight) {
+                synchronized (this) {
+                    if (++paintedPages == 2) {
+                        throw new IllegalStateException("Failing page");
+                    }
+                }
+                return super.createBufferedImage(bitmapWidth, bitmapHeight);
+            }
+        };
+        handler.getSettings().setRenderingThreads(2);
+        try {
+            render(handler, null, new ByteArrayOutputStream());
+            fail("The failing page must stop the rendering");
+        } catch (Exception e) {
+            //expected
+        }
+        for (int i = 0; i < 50 && hasRenderingThreads(); i++) {
+            Thread.sleep(100);
+        }
+        assertFalse(hasRenderingThreads());
+    }
+
+    private File renderPNG(int threads) throws Exception {
+        File dir = folder.newFolder("threads" + threads);
+        File outputFile = new File(dir, "page.png");
+        PNGDocumentHandler handler = new PNGDocumentHandler(
+                new IFContext(fopFactory.newFOUserAgent()));
+        handler.getSettings().setRenderingThreads(threads);
+        OutputStream out = FileUtils.openOutputStream(outputFile);
+        try {
+            render(handler, outputFile, out);
+        } finally {
+            out.close();
+        }
+        return dir;
+    }
+
+    @Test
+    public void testConcurrentPNGFiles() throws Exception {
+        File expected = renderPNG(1);
+        File actual = renderPNG(4);
+        assertEquals(PAGES, expected.list().length);
+        assertEquals(PAGES, actual.list().length);
+        for (String name : expected.list()) {
+            assertArrayEquals(name, FileUtils.readFileToByteArray(new File(expected, name)),
+                    FileUtils.readFileToByteArray(new File(actual, name)));
+        }
+    }
+}
@@ -41,6 +41,7 @@ import static org.apache.fop.render.bitmap.BitmapRendererOption.COLOR_MODE_RGBA;
 import static org.apache.fop.render.bitmap.BitmapRendererOption.JAVA2D_TRANSPARENT_PAGE_BACKGROUND;
 import static org.apache.fop.render.bitmap.BitmapRendererOption.RENDERING_QUALITY;
 import static org.apache.fop.render.bitmap.BitmapRendererOption.RENDERING_SPEED;
+import static org.apache.fop.render.bitmap.BitmapRendererOption.RENDERING_THREADS;
 
 public class AbstractBitmapRendererConfigParserTester
         extends AbstractRendererConfigParserTester<BitmapRendererConfBuilder, BitmapRendererConfig> {
@@ -122,4 +123,13 @@ public class AbstractBitmapRendererConfigParserTester
         parseConfig(createRenderer());
         assertEquals(BufferedImage.TYPE_INT_ARGB, (int) conf.getColorMode());
     }
+
+    @Test
+    public void testRenderingThreads() throws Exception {
+        parseConfig(createRenderer().setRenderingThreads(4));
+        assertEquals(4, (int) conf.getRenderingThreads());
+
+        parseConfig(createRenderer());
+        assertEquals(RENDERING_THREADS.getDefaultValue(), conf.getRenderingThreads());
+    }
 }
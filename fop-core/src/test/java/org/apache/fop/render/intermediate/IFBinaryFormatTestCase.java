@@ -0,0 +1,306 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.render.intermediate;
+
+import java.awt.Dimension;
+import java.awt.Point;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.xml.transform.dom.DOMResult;
+import javax.xml.transform.stream.StreamResult;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.DefaultHandler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import org.apache.fop.apps.FOUserAgent;
+import org.apache.fop.apps.FopFactory;
+import org.apache.fop.fonts.FontInfo;
+import org.apache.fop.render.intermediate.extensions.Bookmark;
+import org.apache.fop.render.intermediate.extensions.BookmarkTree;
+import org.apache.fop.render.intermediate.extensions.DocumentNavigationExtensionConstants;
+import org.apache.fop.render.intermediate.extensions.GoToXYAction;
+
+/**
+ * Tests the encoding and decoding of the binary intermediate format.
+ */
+public class IFBinaryFormatTestCase {
+
+    private static final String[] VALUES = {"0", "-5", "123456789", "2147483647",
+        "-2147483648", "2147483648", "-2147483649", "007", "-0", "-", "", "1 2 -3",
+        "0 0 100000 -7", "1  2", "1 2 ", " 1", "1 x", "12345678901", "abc", "#ff0000",
+        "matrix(1.0 0.0 0.0 1.0 0.0 0.0)"};
+
+    private static final String TEXT = "Aé€𝄞\ud800";
+
+    /** Records the attribute values and characters of the events it receives. */
+    private static class Recorder extends DefaultHandler {
+
+        private final List<String> events = new ArrayList<String>();
+
+        public void startElement(String uri, String localName, String qName,
+                Attributes atts) {
+            events.add("<" + qName);
+            for (int i = 0; i < atts.getLength(); i++) {
+                events.add(atts.getQName(i) + "=" + atts.getValue(i));
+            }
+        }
+
+        public void endElement(String uri, String localName, String qName) {
+            events.add("</" + qName);
+        }
+
+        public void characters(char[] ch, int start, int length) {
+            events.add(new String(ch, start, length));
+        }
+    }
+
+    private static void startElement(IFBinaryEncoder encoder, String localName,
+            String... namesAndValues) throws SAXException {
+        AttributesImpl atts = new AttributesImpl();
+        for (int i = 0; i < namesAndValues.length; i += 2) {
+            atts.addAttribute("", namesAndValues[i], namesAndValues[i], "CDATA",
+                    namesAndValues[i + 1]);
+        }
+        encoder.startElement(IFConstants.NAMESPACE, localName, localName, atts);
+    }
+
+    private static void endElement(IFBinaryEncoder encoder, String localName)
+            throws SAXException {
+        encoder.endElement(IFConstants.NAMESPACE, localName, localName);
+    }
+
+    private static List<String> decode(byte[] binary) throws IOException, SAXException {
+        Recorder recorder = new Recorder();
+        new IFBinaryDecoder(new ByteArrayInputStream(binary)).decode(recorder);
+        return recorder.events;
+    }
+
+    @Test
+    public void testValuesAndCharacters() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        IFBinaryEncoder encoder = new IFBinaryEncoder(out, false);
+        encoder.startDocument();
+        startElement(encoder, "document");
+        for (String value : VALUES) {
+            startElement(encoder, "value", "v", value);
+            endElement(encoder, "value");
+        }
+        startElement(encoder, "text");
+        encoder.characters(TEXT.toCharArray(), 0, TEXT.length());
+        endElement(encoder, "text");
+        endElement(encoder, "document");
+        encoder.endDocument();
+
+        List<String> events = decode(out.toByteArray());
+        int i = 1;
+        for (String value : VALUES) {
+            assertEquals("<value", events.get(i++));
+            assertEquals("v=" + value, events.get(i++));
+            assertEquals("</value", events.get(i++));
+        }
+        assertEquals("<text", events.get(i++));
+        assertEquals(TEXT, events.get(i));
+    }
+
+    private static byte[] encodePages(int pages) throws SAXException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        IFBinaryEncoder encoder = new IFBinaryEncoder(out, false);
+        encoder.startDocument();
+        startElement(encoder, "document");
+        for (int i = 0; i < pages; i++) {
+            startElement(encoder, "page", "name", "page");
+            startElement(encoder, "font", "family", "F1");
+            endElement(encoder, "font");
+            endElement(encoder, "page");
+        }
+        endElement(encoder, "document");
+        encoder.endDocument();
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testNamesAndStringsOfPagesAreForgotten() throws Exception {
+        byte[] binary = encodePages(3);
+        // The font family is defined again on every page
+        String text = new String(binary, "ISO-8859-1");
+        assertEquals(3, text.split("F1", -1).length - 1);
+        assertEquals(1, text.split("document", -1).length - 1);
+        List<String> events = decode(binary);
+        assertEquals(1 + 3 * 6 + 1, events.size());
+        assertEquals("family=F1", events.get(events.size() - 4));
+    }
+
+    private static byte[] encodePageSequences() throws SAXException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        IFBinaryEncoder encoder = new IFBinaryEncoder(out, false);
+        encoder.startDocument();
+        startElement(encoder, "document");
+        startElement(encoder, "page-sequence", "xml:lang", "en");
+        for (int i = 0; i < 2; i++) {
+            startElement(encoder, "page", "index", Integer.toString(i));
+            endElement(encoder, "page");
+        }
+        endElement(encoder, "page-sequence");
+        // "de" is defined outside of the pages and used again on the last page
+        startElement(encoder, "page-sequence", "xml:lang", "de");
+        startElement(encoder, "page", "index", "2");
+        startElement(encoder, "font", "family", "de");
+        endElement(encoder, "font");
+        endElement(encoder, "page");
+        endElement(encoder, "page-sequence");
+        endElement(encoder, "document");
+        encoder.endDocument();
+        return out.toByteArray();
+    }
+
+    private static List<String> decodePages(File file, int startPage, int endPage)
+            throws IOException, SAXException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        IFBinaryFormat.PageIndex pageIndex;
+        try {
+            pageIndex = IFBinaryDecoder.readPageIndex(raf);
+        } finally {
+            raf.close();
+        }
+        Recorder recorder = new Recorder();
+        FileInputStream in = new FileInputStream(file);
+        try {
+            new IFBinaryDecoder(in).decode(recorder, pageIndex, startPage, endPage);
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+        return recorder.events;
+    }
+
+    @Test
+    public void testPageRange() throws Exception {
+        byte[] binary = encodePageSequences();
+        File file = File.createTempFile("fop-if", ".ifb");
+        try {
+            FileUtils.writeByteArrayToFile(file, binary);
+            assertEquals(3, IFBinaryParser.getPageCount(file));
+            assertEquals(Arrays.asList("<document", "<page-sequence", "xml:lang=en",
+                    "</page-sequence", "<page-sequence", "xml:lang=de", "<page", "index=2",
+                    "<font", "family=de", "</font", "</page", "</page-sequence", "</document"),
+                    decodePages(file, 2, 3));
+            assertEquals(Arrays.asList("<document", "<page-sequence", "xml:lang=en", "<page",
+                    "index=1", "</page", "</page-sequence", "<page-sequence", "xml:lang=de",
+                    "</page-sequence", "</document"),
+                    decodePages(file, 1, 2));
+            assertEquals(decode(binary), decodePages(file, 0, Integer.MAX_VALUE));
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static Document parsePages(File file, int startPage, int endPage,
+            FOUserAgent userAgent) throws IFException {
+        IFSerializer serializer = new IFSerializer(new IFContext(userAgent));
+        DOMResult result = new DOMResult();
+        serializer.setResult(result);
+        new IFBinaryParser().parse(file, startPage, endPage, serializer, userAgent);
+        return (Document) result.getNode();
+    }
+
+    @Test
+    public void testParsePageRange() throws Exception {
+        FOUserAgent userAgent = FopFactory.newInstance(new File(".").toURI()).newFOUserAgent();
+        File file = File.createTempFile("fop-if", ".ifb");
+        try {
+            IFBinarySerializer serializer = new IFBinarySerializer(new IFContext(userAgent));
+            serializer.setResult(new StreamResult(file));
+            serializer.setDefaultFontInfo(new FontInfo());
+            serializer.startDocument();
+            serializer.startDocumentHeader();
+            serializer.endDocumentHeader();
+            serializer.startPageSequence(null);
+            for (int i = 0; i < 3; i++) {
+                serializer.startPage(i, Integer.toString(i + 1), "A4",
+                        new Dimension(595000, 842000));
+                serializer.startPageContent();
+                serializer.endPageContent();
+                serializer.startPageTrailer();
+                serializer.endPageTrailer();
+                serializer.endPage();
+            }
+            serializer.endPageSequence();
+            serializer.startDocumentTrailer();
+            BookmarkTree bookmarkTree = new BookmarkTree();
+            bookmarkTree.addBookmark(new Bookmark("First page", true,
+                    new GoToXYAction("1", 0, new Point(0, 0), null)));
+            serializer.getDocumentNavigationHandler().renderBookmarkTree(bookmarkTree);
+            serializer.endDocumentTrailer();
+            serializer.endDocument();
+            assertEquals(3, IFBinaryParser.getPageCount(file));
+
+            Document doc = parsePages(file, 0, 3, userAgent);
+            assertEquals(3, doc.getElementsByTagNameNS(IFConstants.NAMESPACE, "page").getLength());
+            assertEquals(1, doc.getElementsByTagNameNS(
+                    DocumentNavigationExtensionConstants.NAMESPACE, "bookmark").getLength());
+
+            // Only the second page, as the first page of a document without navigation
+            doc = parsePages(file, 1, 2, userAgent);
+            NodeList pages = doc.getElementsByTagNameNS(IFConstants.NAMESPACE, "page");
+            assertEquals(1, pages.getLength());
+            Element page = (Element) pages.item(0);
+            assertEquals("0", page.getAttribute("index"));
+            assertEquals("2", page.getAttribute("name"));
+            assertEquals(0, doc.getElementsByTagNameNS(
+                    DocumentNavigationExtensionConstants.NAMESPACE, "*").getLength());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testNotBinaryFormat() throws Exception {
+        byte[] xml = "<?xml version=\"1.0\"?><document/>".getBytes("UTF-8");
+        assertFalse(IFBinaryParser.isBinaryFormat(new ByteArrayInputStream(xml)));
+        assertTrue(IFBinaryParser.isBinaryFormat(new ByteArrayInputStream(IFBinaryFormat.MAGIC)));
+        try {
+            decode(xml);
+            fail("Not a binary intermediate format document");
+        } catch (IOException ioe) {
+            // expected
+        }
+    }
+}
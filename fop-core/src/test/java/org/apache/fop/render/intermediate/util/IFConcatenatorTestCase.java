@@ -0,0 +1,179 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.render.intermediate.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.Source;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXResult;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.apache.fop.apps.FOUserAgent;
+import org.apache.fop.apps.Fop;
+import org.apache.fop.apps.FopFactory;
+import org.apache.fop.apps.MimeConstants;
+import org.apache.fop.render.intermediate.IFContext;
+import org.apache.fop.render.intermediate.IFDocumentHandler;
+import org.apache.fop.render.intermediate.IFSerializer;
+import org.apache.fop.render.intermediate.IFUtil;
+import org.apache.fop.render.intermediate.extensions.DocumentNavigationExtensionConstants;
+
+/**
+ * Tests the concatenation of intermediate format documents.
+ */
+public class IFConcatenatorTestCase {
+
+    private static final int DOCUMENTS = 5;
+
+    /** Two pages, a link and a bookmark to the second page and a named destination */
+    private static final String FO = "<fo:root xmlns:fo='http://www.w3.org/1999/XSL/Format'"
+            + " xmlns:fox='http://xmlgraphics.apache.org/fop/extensions'>"
+            + "<fo:layout-master-set><fo:simple-page-master master-name='A4'"
+            + " page-height='297mm' page-width='210mm'><fo:region-body/>"
+            + "</fo:simple-page-master></fo:layout-master-set>"
+            + "<fo:bookmark-tree><fo:bookmark internal-destination='second'>"
+            + "<fo:bookmark-title>Second page</fo:bookmark-title></fo:bookmark></fo:bookmark-tree>"
+            + "<fo:page-sequence master-reference='A4'><fo:flow flow-name='xsl-region-body'>"
+            + "<fo:block><fo:basic-link internal-destination='second'>Go to page 2</fo:basic-link>"
+            + "</fo:block><fo:block id='second' break-before='page'>Page 2"
+            + "<fox:destination internal-destination='second'/></fo:block>"
+            + "</fo:flow></fo:page-sequence></fo:root>";
+
+    private FopFactory fopFactory;
+
+    private byte[] intermediateFormat;
+
+    @Before
+    public void setUp() throws Exception {
+        fopFactory = FopFactory.newInstance(new File(".").toURI());
+        FOUserAgent userAgent = fopFactory.newFOUserAgent();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Fop fop = fopFactory.newFop(MimeConstants.MIME_FOP_IF, userAgent, out);
+        TransformerFactory.newInstance().newTransformer().transform(
+                new StreamSource(new ByteArrayInputStream(FO.getBytes("UTF-8"))),
+                new SAXResult(fop.getDefaultHandler()));
+        intermediateFormat = out.toByteArray();
+    }
+
+    private List<Source> createSources(int count) {
+        List<Source> sources = new ArrayList<Source>();
+        for (int i = 0; i < count; i++) {
+            sources.add(new StreamSource(new ByteArrayInputStream(intermediateFormat)));
+        }
+        return sources;
+    }
+
+    private byte[] concatenate(String mimeType, List<Source> sources, int parallelism)
+            throws Exception {
+        FOUserAgent userAgent = fopFactory.newFOUserAgent();
+        IFDocumentHandler targetHandler;
+        if (MimeConstants.MIME_FOP_IF.equals(mimeType)) {
+            targetHandler = new IFSerializer(new IFContext(userAgent));
+        } else {
+            targetHandler = userAgent.getRendererFactory().createDocumentHandler(
+                    userAgent, mimeType);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        targetHandler.setResult(new StreamResult(out));
+        IFUtil.setupFonts(targetHandler);
+        IFConcatenator concatenator = new IFConcatenator(targetHandler, null);
+        concatenator.appendDocuments(sources, parallelism);
+        concatenator.finish();
+        return out.toByteArray();
+    }
+
+    private static List<Element> getElements(Document doc, String namespace, String localName) {
+        List<Element> elements = new ArrayList<Element>();
+        NodeList nodes = doc.getElementsByTagNameNS(namespace, localName);
+        for (int i = 0; i < nodes.getLength(); i++) {
+            elements.add((Element) nodes.item(i));
+        }
+        return elements;
+    }
+
+    @Test
+    public void testParallelConcatenationEqualsSerialConcatenation() throws Exception {
+        byte[] serial = concatenate(MimeConstants.MIME_FOP_IF, createSources(DOCUMENTS), 1);
+        byte[] parallel = concatenate(MimeConstants.MIME_FOP_IF, createSources(DOCUMENTS), 3);
+        assertEquals(new String(serial, "UTF-8"), new String(parallel, "UTF-8"));
+    }
+
+    @Test
+    public void testDocumentNavigationIsMerged() throws Exception {
+        byte[] result = concatenate(MimeConstants.MIME_FOP_IF, createSources(DOCUMENTS), 3);
+        DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+        dbf.setNamespaceAware(true);
+        Document doc = dbf.newDocumentBuilder().parse(new ByteArrayInputStream(result));
+        String nav = DocumentNavigationExtensionConstants.NAMESPACE;
+        assertEquals(DOCUMENTS, getElements(doc, nav, "bookmark").size());
+        assertEquals(DOCUMENTS, getElements(doc, nav, "named-destination").size());
+        assertEquals(DOCUMENTS, getElements(doc, nav, "link").size());
+        List<String> bookmarkPages = new ArrayList<String>();
+        for (Element bookmark : getElements(doc, nav, "bookmark")) {
+            Element goTo = (Element) bookmark.getElementsByTagNameNS(nav, "goto-xy").item(0);
+            bookmarkPages.add(goTo.getAttribute("page-index"));
+        }
+        List<String> expectedPages = new ArrayList<String>();
+        for (int i = 0; i < DOCUMENTS; i++) {
+            expectedPages.add(Integer.toString(i * 2 + 1));
+        }
+        assertEquals(expectedPages, bookmarkPages);
+    }
+
+    @Test
+    public void testParallelConcatenationToPDF() throws Exception {
+        byte[] pdf = concatenate(MimeConstants.MIME_PDF, createSources(DOCUMENTS), 3);
+        String text = new String(pdf, "ISO-8859-1");
+        assertTrue(text.startsWith("%PDF-"));
+        assertTrue(text.contains("/Count " + DOCUMENTS * 2));
+    }
+
+    @Test
+    public void testParsingErrorIsReported() throws Exception {
+        List<Source> sources = createSources(DOCUMENTS);
+        sources.set(2, new StreamSource(new ByteArrayInputStream(
+                "<document xmlns='http://xmlgraphics.apache.org/fop/intermediate'>".getBytes(
+                        "UTF-8"))));
+        try {
+            concatenate(MimeConstants.MIME_FOP_IF, sources, 3);
+            fail("The third document is not well-formed");
+        } catch (TransformerException te) {
+            // expected
+        }
+    }
+}
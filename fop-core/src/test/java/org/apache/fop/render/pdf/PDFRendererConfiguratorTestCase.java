@@ -73,4 +73,34 @@ public class PDFRendererConfiguratorTestCase extends
         docHandler.startDocument();
         Assert.assertTrue(getDocHandler().getThePDFDocument().isFormXObjectEnabled());
     }
+
+    @Test
+    public void testStreamingEnabled() throws Exception {
+        parseConfig(createBuilder().setStreamingEnabled(true));
+        docHandler.startDocument();
+        Assert.assertTrue(getDocHandler().getThePDFDocument().isStreamingEnabled());
+    }
+
+    @Test
+    public void testDirectBuffersEnabled() throws Exception {
+        parseConfig(createBuilder().setDirectBuffersEnabled(true));
+        docHandler.startDocument();
+        Assert.assertTrue(getDocHandler().getThePDFDocument().isDirectBuffersEnabled());
+    }
+
+    @Test
+    public void testCompressionSettings() throws Exception {
+        parseConfig(createBuilder().setCompressionLevel("speed").setCompressionThreads(4));
+        docHandler.startDocument();
+        Assert.assertEquals(1, getDocHandler().getThePDFDocument().getCompressionLevel());
+        Assert.assertEquals(4, getDocHandler().getThePDFDocument().getCompressionParallelism());
+    }
+
+    @Test
+    public void testNumericCompressionLevel() throws Exception {
+        parseConfig(createBuilder().setCompressionLevel("9"));
+        docHandler.startDocument();
+        Assert.assertEquals(9, getDocHandler().getThePDFDocument().getCompressionLevel());
+        Assert.assertEquals(1, getDocHandler().getThePDFDocument().getCompressionParallelism());
+    }
 }
@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.render.pdf;
+
+import java.io.File;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.fop.apps.FOUserAgent;
+import org.apache.fop.apps.FopFactory;
+import org.apache.fop.apps.MimeConstants;
+import org.apache.fop.memory.MemoryEater;
+import org.apache.fop.render.intermediate.IFContext;
+import org.apache.fop.render.intermediate.IFException;
+
+/**
+ * Memory regression test for the streaming mode of the PDF output, run on the replicated
+ * documents of {@link MemoryEater}.
+ */
+public class PDFStreamingMemoryTestCase {
+
+    private static final int REPLICATOR_REPEATS = 3;
+
+    /** Records how many pages the document holds on to after each page was written. */
+    private static final class RecordingPDFDocumentHandler extends PDFDocumentHandler {
+
+        private int pages;
+        private int maxRetainedPages;
+        private int retainedPages;
+
+        RecordingPDFDocumentHandler(IFContext context) {
+            super(context);
+        }
+
+        @Override
+        public void endPage() throws IFException {
+            super.endPage();
+            pages++;
+            retainedPages = getPDFDocument().getRetainedPageCount();
+            maxRetainedPages = Math.max(maxRetainedPages, retainedPages);
+        }
+    }
+
+    private RecordingPDFDocumentHandler render(boolean streaming) throws Exception {
+        FopFactory fopFactory = FopFactory.newInstance(new File("examples/fo/basic/").toURI());
+        FOUserAgent userAgent = fopFactory.newFOUserAgent();
+        userAgent.getRendererOptions().put(PDFRendererOption.STREAMING.getName(), streaming);
+        RecordingPDFDocumentHandler handler = new RecordingPDFDocumentHandler(
+                new IFContext(userAgent));
+        userAgent.setDocumentHandlerOverride(handler);
+        int pageCount = MemoryEater.render(new File("examples/fo/basic/readme.fo"),
+                REPLICATOR_REPEATS, userAgent, MimeConstants.MIME_PDF);
+        assertEquals(pageCount, handler.pages);
+        return handler;
+    }
+
+    @Test
+    public void testStreamingReleasesWrittenPages() throws Exception {
+        RecordingPDFDocumentHandler handler = render(true);
+        assertTrue(handler.pages > 10);
+        assertEquals(0, handler.maxRetainedPages);
+    }
+
+    @Test
+    public void testWrittenPagesAreRetainedWithoutStreaming() throws Exception {
+        RecordingPDFDocumentHandler handler = render(false);
+        assertEquals(handler.pages, handler.retainedPages);
+    }
+}